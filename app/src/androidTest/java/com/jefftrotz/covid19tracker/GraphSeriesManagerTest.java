@@ -0,0 +1,158 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import androidx.test.annotation.UiThreadTest;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import com.jjoe64.graphview.GraphView;
+import com.jjoe64.graphview.series.DataPointInterface;
+import com.jjoe64.graphview.series.LineGraphSeries;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests that GraphSeriesManager shows the points built by a GraphPointBuilder with its pooled
+ * points, and that refreshes with the same number of points don't create any objects. Runs on a
+ * device because GraphView needs a real Context.
+ * @author Jeffrey Trotz
+ * @date 5/6/2020
+ * @version 1.0
+ */
+@RunWith(AndroidJUnit4.class)
+public class GraphSeriesManagerTest
+{
+    private static final long START_EPOCH_SECONDS = 1586000000L; // Time of the first row
+    private static final long SECONDS_PER_DAY = 86400; // Time between rows
+    private static final int DAYS = 30; // Number of rows in most of the series
+
+    private GraphView mGraph; // Graph the series is shown on
+    private GraphSeriesManager mManager; // Manager under test
+    private GraphPointBuilder mBuilder; // Builds the points handed to the manager
+
+    @Before
+    public void setUp()
+    {
+        // Runs on the main thread with each @UiThreadTest, which GraphView's gesture detectors need
+        mGraph = new GraphView(InstrumentationRegistry.getInstrumentation().getTargetContext());
+        mManager = new GraphSeriesManager(mGraph);
+        mBuilder = new GraphPointBuilder(SeriesColumn.TIME, SeriesColumn.POSITIVE);
+    }
+
+    @Test
+    @UiThreadTest
+    public void sameLengthRefreshesReuseThePooledPoints()
+    {
+        assertEquals(GraphSeriesManager.Change.RESET, this.show(rows(DAYS, 100)));
+        assertEquals(DAYS, mManager.getShownCount());
+        long allocations = mManager.getAllocationCount();
+        List<DataPointInterface> points = this.shownPoints();
+
+        // Another state, then another again: every point changes but none are created
+        for (int scale = 200; scale <= 1000; scale += 200)
+        {
+            assertEquals(GraphSeriesManager.Change.RESET, this.show(rows(DAYS, scale)));
+            assertEquals(0, mManager.getLastAllocationCount());
+            assertEquals(allocations, mManager.getAllocationCount());
+
+            List<DataPointInterface> shown = this.shownPoints();
+            assertEquals(DAYS, shown.size());
+
+            for (int i = 0; i < DAYS; i++)
+            {
+                assertSame(points.get(i), shown.get(i));
+                assertEquals(mBuilder.getY(i), shown.get(i).getY(), 0);
+            }
+        }
+    }
+
+    @Test
+    @UiThreadTest
+    public void unchangedOrRevisedRefreshesDoNotCreateObjects()
+    {
+        this.show(rows(DAYS, 100));
+        long allocations = mManager.getAllocationCount();
+
+        // A refresh that returned the same data
+        assertEquals(GraphSeriesManager.Change.NONE, this.show(rows(DAYS, 100)));
+        assertEquals(0, mManager.getLastAllocationCount());
+
+        // A revision of the newest day's numbers
+        StateTimeSeries revised = rows(DAYS - 1, 100);
+        revised.append(START_EPOCH_SECONDS + ((DAYS - 1) * SECONDS_PER_DAY), 0, 1, 0);
+        assertEquals(GraphSeriesManager.Change.APPENDED, this.show(revised));
+        assertEquals(0, mManager.getLastAllocationCount());
+        assertEquals(1, this.shownPoints().get(DAYS - 1).getY(), 0);
+        assertEquals(allocations, mManager.getAllocationCount());
+    }
+
+    @Test
+    @UiThreadTest
+    public void newDaysOnlyCreatePointsWhenThePoolGrows()
+    {
+        this.show(rows(DAYS, 100));
+
+        // The pool grows by half, so only the first new day creates points
+        assertEquals(GraphSeriesManager.Change.APPENDED, this.show(rows(DAYS + 1, 100)));
+        int grown = mManager.getLastAllocationCount();
+        assertEquals(1 + (DAYS / 2), grown);
+
+        for (int days = DAYS + 2; days <= DAYS + (DAYS / 2); days++)
+        {
+            assertEquals(GraphSeriesManager.Change.APPENDED, this.show(rows(days, 100)));
+            assertEquals(0, mManager.getLastAllocationCount());
+            assertEquals(days, mManager.getShownCount());
+        }
+    }
+
+    /**
+     * Builds the points for a series and shows them
+     * @param series Series to show
+     * @return Returns how the graph was changed
+     */
+    private GraphSeriesManager.Change show(StateTimeSeries series)
+    {
+        mBuilder.build(series, SeriesWindow.fullHistory());
+        return mManager.update(mBuilder);
+    }
+
+    /**
+     * @return Returns the point objects in the graph's series, oldest first
+     */
+    @SuppressWarnings("unchecked")
+    private List<DataPointInterface> shownPoints()
+    {
+        LineGraphSeries<DataPointInterface> series = (LineGraphSeries<DataPointInterface>) mGraph.getSeries().get(0);
+        List<DataPointInterface> points = new ArrayList<>();
+        Iterator<DataPointInterface> iterator = series.getValues(series.getLowestValueX(), series.getHighestValueX());
+
+        while (iterator.hasNext())
+        {
+            points.add(iterator.next());
+        }
+
+        return points;
+    }
+
+    /**
+     * @param days Number of rows
+     * @param scale Positive tests added each day
+     * @return Returns a day per row with growing totals
+     */
+    private static StateTimeSeries rows(int days, int scale)
+    {
+        StateTimeSeries series = new StateTimeSeries(days);
+
+        for (int day = 0; day < days; day++)
+        {
+            series.append(START_EPOCH_SECONDS + (day * SECONDS_PER_DAY), day * 10L * scale, day * (long) scale, day);
+        }
+
+        return series;
+    }
+}
@@ -0,0 +1,472 @@
+package com.jefftrotz.covid19tracker;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adds the data of a group of states together to get the group's totals. States report at
+ * different times of day, skip days and start reporting on different dates, so every row is put
+ * into a bucket for its day (UTC), and each state's latest totals are carried forward through the
+ * days it has no row. A group's series has a row for every day any of its states reported, holding
+ * the sum of each state's totals as of that day. A state with more than one row in a day counts
+ * its last one.
+ * <p>
+ * The states' series are merged in a single pass over their rows, walking every series at once in
+ * time order. Large groups are split in half with fork/join until each piece is small enough to
+ * merge on its own, and the pieces' totals are then merged the same way.
+ * <p>
+ * Each group's totals are cached along with the member data they were built from. When members
+ * have only had rows added since then (which is how SeriesRepository updates them), only the days
+ * from each member's previous last row onward are recomputed: the member's old data is subtracted
+ * from the cached totals and its new data added. Otherwise the totals are rebuilt from the start.
+ * @author Jeffrey Trotz
+ * @date 4/29/2020
+ * @version 1.0
+ */
+public class AggregationEngine
+{
+    private static final long SECONDS_PER_DAY = 86400; // Number of seconds in a day
+    private static final int SEQUENTIAL_THRESHOLD = 8; // Groups with more states than this are split in half and merged in parallel
+
+    private final ForkJoinPool mPool; // Runs the parallel merges
+    private final Map<String, Cached> mCache = new HashMap<>(); // Totals last computed for each group, by group ID
+    private final AtomicLong mVersions = new AtomicLong(); // Source of snapshot versions
+    private int mFullCount; // Number of times totals were built from the start
+    private int mIncrementalCount; // Number of times cached totals were updated
+
+    /**
+     * Constructor
+     * @param parallelism Number of threads used to merge large groups
+     */
+    public AggregationEngine(int parallelism)
+    {
+        mPool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Computes the totals of a group from the latest data of its states. States that haven't
+     * been loaded into the store yet are left out.
+     * @param group Group of states to add together
+     * @param seriesStore Latest data for each state
+     * @return Returns the group's totals, or null if none of its states have been loaded
+     */
+    public synchronized Aggregate aggregate(RegionGroup group, SeriesStore seriesStore)
+    {
+        // Collect the latest data of each member that's been loaded
+        Map<String, StateTimeSeries> members = new HashMap<>();
+        boolean refreshed = true;
+
+        for (String abbreviation : group.getMembers())
+        {
+            SeriesSnapshot snapshot = seriesStore.get(abbreviation);
+
+            if (snapshot != null && !snapshot.getData().isEmpty())
+            {
+                members.put(abbreviation, snapshot.getData());
+                refreshed &= snapshot.isRefreshed();
+            }
+        }
+
+        if (members.isEmpty())
+        {
+            return null;
+        }
+
+        Cached cached = mCache.get(group.getId());
+        StateTimeSeries totals = cached == null ? null : this.update(cached, members);
+
+        if (totals == null)
+        {
+            totals = this.mergeAll(new ArrayList<>(members.values()));
+            mFullCount++;
+        }
+
+        // Publish a new snapshot only if the totals changed, so the same data isn't drawn twice
+        else if (totals == cached.mTotals)
+        {
+            return new Aggregate(group, cached.mSnapshot, members.size());
+        }
+
+        else
+        {
+            mIncrementalCount++;
+        }
+
+        SeriesSnapshot snapshot = new SeriesSnapshot(group.getId(), mVersions.incrementAndGet(), totals, refreshed);
+        mCache.put(group.getId(), new Cached(totals, members, snapshot));
+        return new Aggregate(group, snapshot, members.size());
+    }
+
+    /**
+     * @return Returns the number of times totals were built from the start
+     */
+    public synchronized int getFullCount()
+    {
+        return mFullCount;
+    }
+
+    /**
+     * @return Returns the number of times cached totals were updated instead of rebuilt
+     */
+    public synchronized int getIncrementalCount()
+    {
+        return mIncrementalCount;
+    }
+
+    /**
+     * Stops the threads used for parallel merges. The engine can't be used afterwards.
+     */
+    public void shutdown()
+    {
+        mPool.shutdown();
+    }
+
+    /**
+     * Updates cached totals with the members that have changed since they were computed
+     * @param cached Totals last computed for the group
+     * @param members Latest data of each member, by abbreviation
+     * @return Returns the cached totals if nothing changed, the updated totals, or null if the
+     * totals have to be rebuilt from the start
+     */
+    private StateTimeSeries update(Cached cached, Map<String, StateTimeSeries> members)
+    {
+        List<StateTimeSeries> inputs = new ArrayList<>();
+        List<Integer> signs = new ArrayList<>();
+        long fromDay = Long.MAX_VALUE;
+
+        // The cached totals are carried forward from the first day that changes
+        inputs.add(cached.mTotals);
+        signs.add(1);
+
+        for (Map.Entry<String, StateTimeSeries> member : members.entrySet())
+        {
+            StateTimeSeries oldData = cached.mMembers.get(member.getKey());
+            StateTimeSeries newData = member.getValue();
+
+            if (oldData == newData)
+            {
+                continue;
+            }
+
+            // Subtract the old data from the last day it covered (rows on that day may have been
+            // replaced by later ones), and add the new data from the same day
+            if (oldData != null)
+            {
+                if (!continuesFrom(newData, oldData))
+                {
+                    return null;
+                }
+
+                fromDay = Math.min(fromDay, dayOf(oldData.getLatestEpochSeconds()));
+                inputs.add(oldData);
+                signs.add(-1);
+            }
+
+            else
+            {
+                fromDay = Math.min(fromDay, dayOf(newData.getEpochSeconds(0)));
+            }
+
+            inputs.add(newData);
+            signs.add(1);
+        }
+
+        // Members that were removed can't be updated in place, and when most members have changed
+        // rebuilding in parallel is faster
+        if (!members.keySet().containsAll(cached.mMembers.keySet()) || inputs.size() > members.size())
+        {
+            return null;
+        }
+
+        if (inputs.size() == 1)
+        {
+            return cached.mTotals;
+        }
+
+        int[] signArray = new int[signs.size()];
+
+        for (int i = 0; i < signArray.length; i++)
+        {
+            signArray[i] = signs.get(i);
+        }
+
+        StateTimeSeries totals = cached.mTotals.sliceRows(0, cached.mTotals.indexAtOrAfter(fromDay * SECONDS_PER_DAY));
+        totals.appendAll(merge(inputs.toArray(new StateTimeSeries[inputs.size()]), signArray, fromDay));
+        totals.trimToSize();
+        return totals;
+    }
+
+    /**
+     * Adds a list of series together, splitting it up and merging the pieces in parallel if it's
+     * large
+     * @param series Series to add together
+     * @return Returns the totals
+     */
+    private StateTimeSeries mergeAll(List<StateTimeSeries> series)
+    {
+        StateTimeSeries[] inputs = series.toArray(new StateTimeSeries[series.size()]);
+
+        if (inputs.length <= SEQUENTIAL_THRESHOLD)
+        {
+            return mergeRange(inputs, 0, inputs.length);
+        }
+
+        return mPool.invoke(new MergeTask(inputs, 0, inputs.length));
+    }
+
+    /**
+     * Adds together a range of series
+     * @param inputs Series to add together
+     * @param from Index of the first series in the range (inclusive)
+     * @param to Index of the last series in the range (exclusive)
+     * @return Returns the totals
+     */
+    private static StateTimeSeries mergeRange(StateTimeSeries[] inputs, int from, int to)
+    {
+        StateTimeSeries[] range = new StateTimeSeries[to - from];
+        int[] signs = new int[range.length];
+        System.arraycopy(inputs, from, range, 0, range.length);
+
+        for (int i = 0; i < signs.length; i++)
+        {
+            signs[i] = 1;
+        }
+
+        StateTimeSeries totals = merge(range, signs, Long.MIN_VALUE);
+        totals.trimToSize();
+        return totals;
+    }
+
+    /**
+     * Adds series together (or subtracts them) day by day in a single pass over their rows. Each
+     * series' totals are carried forward through the days it has no row, and on days with more
+     * than one row the last one counts.
+     * @param inputs Series to add together, each oldest row first
+     * @param signs 1 to add each series, -1 to subtract it
+     * @param fromDay First day (days since epoch) to produce a row for. Each series' totals as of
+     * the day before are carried into it.
+     * @return Returns a series with a row (at midnight UTC) for every day from fromDay on that any
+     * of the inputs has a row
+     */
+    static StateTimeSeries merge(StateTimeSeries[] inputs, int[] signs, long fromDay)
+    {
+        int[] cursors = new int[inputs.length]; // Next row of each input
+        long[][] current = new long[inputs.length][3]; // Totals of each input as of the day being merged (tested, positive, deaths), with its sign applied
+        long tested = 0;
+        long positive = 0;
+        long deaths = 0;
+        int capacity = 0;
+
+        // Start each input at its first row on or after fromDay, carrying in its totals before then
+        for (int i = 0; i < inputs.length; i++)
+        {
+            StateTimeSeries input = inputs[i];
+            int cursor = fromDay == Long.MIN_VALUE ? 0 : input.indexAtOrAfter(fromDay * SECONDS_PER_DAY);
+            cursors[i] = cursor;
+            capacity = Math.max(capacity, input.size() - cursor);
+
+            if (cursor > 0)
+            {
+                current[i][0] = signs[i] * input.getTested(cursor - 1);
+                current[i][1] = signs[i] * input.getPositive(cursor - 1);
+                current[i][2] = signs[i] * input.getDeaths(cursor - 1);
+                tested += current[i][0];
+                positive += current[i][1];
+                deaths += current[i][2];
+            }
+        }
+
+        StateTimeSeries totals = new StateTimeSeries(capacity);
+
+        while (true)
+        {
+            // Find the earliest day any input still has a row for
+            long day = Long.MAX_VALUE;
+
+            for (int i = 0; i < inputs.length; i++)
+            {
+                if (cursors[i] < inputs[i].size())
+                {
+                    day = Math.min(day, dayOf(inputs[i].getEpochSeconds(cursors[i])));
+                }
+            }
+
+            if (day == Long.MAX_VALUE)
+            {
+                break;
+            }
+
+            // Swap each input's totals for its last row on that day
+            for (int i = 0; i < inputs.length; i++)
+            {
+                StateTimeSeries input = inputs[i];
+                int cursor = cursors[i];
+
+                while (cursor < input.size() && dayOf(input.getEpochSeconds(cursor)) == day)
+                {
+                    cursor++;
+                }
+
+                if (cursor > cursors[i])
+                {
+                    long newTested = signs[i] * input.getTested(cursor - 1);
+                    long newPositive = signs[i] * input.getPositive(cursor - 1);
+                    long newDeaths = signs[i] * input.getDeaths(cursor - 1);
+                    tested += newTested - current[i][0];
+                    positive += newPositive - current[i][1];
+                    deaths += newDeaths - current[i][2];
+                    current[i][0] = newTested;
+                    current[i][1] = newPositive;
+                    current[i][2] = newDeaths;
+                    cursors[i] = cursor;
+                }
+            }
+
+            totals.append(day * SECONDS_PER_DAY, tested, positive, deaths);
+        }
+
+        return totals;
+    }
+
+    /**
+     * @param newData Latest data of a state
+     * @param oldData Earlier data of the same state
+     * @return Returns true if the latest data holds the earlier rows plus some new ones
+     */
+    private static boolean continuesFrom(StateTimeSeries newData, StateTimeSeries oldData)
+    {
+        int lastRow = oldData.size() - 1;
+        return newData.size() >= oldData.size()
+            && newData.getEpochSeconds(lastRow) == oldData.getEpochSeconds(lastRow);
+    }
+
+    /**
+     * @param epochSeconds Time in seconds since epoch
+     * @return Returns the number of days since epoch (UTC) at the time
+     */
+    private static long dayOf(long epochSeconds)
+    {
+        long day = epochSeconds / SECONDS_PER_DAY;
+        return epochSeconds < 0 && day * SECONDS_PER_DAY != epochSeconds ? day - 1 : day;
+    }
+
+    /**
+     * Adds together a range of series, splitting it in half and merging the halves in parallel
+     * while it's larger than SEQUENTIAL_THRESHOLD
+     */
+    private static class MergeTask extends RecursiveTask<StateTimeSeries>
+    {
+        private static final long serialVersionUID = 1L; // RecursiveTask is Serializable, but tasks are never serialized
+
+        private final StateTimeSeries[] mInputs; // Every series being added together
+        private final int mFrom; // Index of the first series in the range (inclusive)
+        private final int mTo; // Index of the last series in the range (exclusive)
+
+        /**
+         * Constructor
+         * @param inputs Every series being added together
+         * @param from Index of the first series in the range (inclusive)
+         * @param to Index of the last series in the range (exclusive)
+         */
+        MergeTask(StateTimeSeries[] inputs, int from, int to)
+        {
+            mInputs = inputs;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected StateTimeSeries compute()
+        {
+            if (mTo - mFrom <= SEQUENTIAL_THRESHOLD)
+            {
+                return mergeRange(mInputs, mFrom, mTo);
+            }
+
+            // Merge the second half on another thread while this one merges the first half,
+            // then add the two halves' totals together
+            int middle = (mFrom + mTo) >>> 1;
+            MergeTask secondHalf = new MergeTask(mInputs, middle, mTo);
+            secondHalf.fork();
+            StateTimeSeries first = new MergeTask(mInputs, mFrom, middle).compute();
+            StateTimeSeries second = secondHalf.join();
+            return mergeRange(new StateTimeSeries[] {first, second}, 0, 2);
+        }
+    }
+
+    /**
+     * Totals of a group along with the data they were built from
+     */
+    private static class Cached
+    {
+        final StateTimeSeries mTotals; // Totals of the group
+        final Map<String, StateTimeSeries> mMembers; // Data of each member the totals were built from, by abbreviation
+        final SeriesSnapshot mSnapshot; // Snapshot the totals were published in
+
+        /**
+         * Constructor
+         * @param totals Totals of the group
+         * @param members Data of each member the totals were built from, by abbreviation
+         * @param snapshot Snapshot the totals were published in
+         */
+        Cached(StateTimeSeries totals, Map<String, StateTimeSeries> members, SeriesSnapshot snapshot)
+        {
+            mTotals = totals;
+            mMembers = members;
+            mSnapshot = snapshot;
+        }
+    }
+
+    /**
+     * Totals of a group of states
+     */
+    public static final class Aggregate
+    {
+        private final RegionGroup mGroup; // Group the totals are for
+        private final SeriesSnapshot mSnapshot; // Totals of the group, keyed by the group's ID
+        private final int mMembersLoaded; // Number of the group's states whose data was included
+
+        /**
+         * Constructor
+         * @param group Group the totals are for
+         * @param snapshot Totals of the group, keyed by the group's ID
+         * @param membersLoaded Number of the group's states whose data was included
+         */
+        Aggregate(RegionGroup group, SeriesSnapshot snapshot, int membersLoaded)
+        {
+            mGroup = group;
+            mSnapshot = snapshot;
+            mMembersLoaded = membersLoaded;
+        }
+
+        /**
+         * @return Returns the group the totals are for
+         */
+        public RegionGroup getGroup()
+        {
+            return mGroup;
+        }
+
+        /**
+         * @return Returns the totals of the group, keyed by the group's ID. Snapshots of the same
+         * group get higher versions as the totals change.
+         */
+        public SeriesSnapshot getSnapshot()
+        {
+            return mSnapshot;
+        }
+
+        /**
+         * @return Returns the number of the group's states whose data was included
+         */
+        public int getMembersLoaded()
+        {
+            return mMembersLoaded;
+        }
+    }
+}
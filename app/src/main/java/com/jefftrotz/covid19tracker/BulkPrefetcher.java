@@ -0,0 +1,414 @@
+package com.jefftrotz.covid19tracker;
+
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Downloads and parses the data for many states in parallel, with a limit on how many requests
+ * can run at the same time. Results are published to a SeriesStore as each state finishes, and
+ * progress (including throughput and any per-state failures) is reported on the main thread. Once
+ * every state has finished, or the prefetch is cancelled and the downloads already running have
+ * finished, the downloaded history is stored in the SeriesDatabase in one batch.
+ * @author Jeffrey Trotz
+ * @date 4/17/2020
+ * @version 1.0
+ */
+public class BulkPrefetcher
+{
+    private static final String TAG = "BulkPrefetcher"; // Tag used when logging
+    private static final String IO_EXCEPTION_TEXT = "IO Exception: "; // Text fed into the Log.e() method when an IO exception is logged
+    private static final String SQL_EXCEPTION_TEXT = "SQL Exception: "; // Text fed into the Log.e() method when a SQL exception is logged
+    private static final String RUNTIME_EXCEPTION_TEXT = "Runtime Exception: "; // Text fed into the Log.e() method when an unexpected exception is logged
+    private static final String UNKNOWN_ERROR_TEXT = "Unknown error"; // Failure recorded for a state that stopped without an exception being caught
+
+    /**
+     * Receives progress updates on the main thread
+     */
+    public interface Listener
+    {
+        /**
+         * Called each time a state finishes (successfully or not)
+         * @param progress Progress of the prefetch so far
+         */
+        void onPrefetchProgress(Progress progress);
+
+        /**
+         * Called once every state has finished
+         * @param progress Final results of the prefetch
+         */
+        void onPrefetchComplete(Progress progress);
+    }
+
+    private final SeriesRepository mRepository; // Source of cached and downloaded data
+    private final SeriesStore mSeriesStore; // Where the data for each state is published
+    private final SeriesDatabase mDatabase; // Where the history of every downloaded state is stored
+    private final int mConcurrency; // Maximum number of states downloaded at the same time
+    private final Executor mMainThread; // Runs progress reports on the main thread
+    private ExecutorService mExecutor; // Runs the downloads for the current prefetch
+    private int mTotal; // Number of states in the current prefetch
+    private int mCompleted; // Number of states that have finished (successfully or not)
+    private boolean mCancelled; // Whether the current prefetch was cancelled, in which case the listener isn't called
+    private long mBytesTransferred; // Number of bytes downloaded so far
+    private long mStartTime; // Time the current prefetch started (milliseconds since boot)
+    private Map<String, String> mFailures; // Error message for each state that failed
+    private Map<String, StateTimeSeries> mDownloaded; // Data of each state that succeeded, stored in the database in one batch at the end
+
+    /**
+     * Constructor
+     * @param repository Source of cached and downloaded data
+     * @param seriesStore Where the data for each state is published
+     * @param database Where the history of every downloaded state is stored
+     * @param concurrency Maximum number of states downloaded at the same time
+     */
+    public BulkPrefetcher(SeriesRepository repository, SeriesStore seriesStore, SeriesDatabase database, int concurrency)
+    {
+        this(repository, seriesStore, database, concurrency, new Executor()
+        {
+            private final Handler mMainHandler = new Handler(Looper.getMainLooper()); // Posts to the main thread
+
+            @Override
+            public void execute(Runnable runnable)
+            {
+                mMainHandler.post(runnable);
+            }
+        });
+    }
+
+    /**
+     * Constructor
+     * @param repository Source of cached and downloaded data
+     * @param seriesStore Where the data for each state is published
+     * @param database Where the history of every downloaded state is stored
+     * @param concurrency Maximum number of states downloaded at the same time
+     * @param mainThread Runs progress reports on the main thread (tests run them where they're made)
+     */
+    BulkPrefetcher(SeriesRepository repository, SeriesStore seriesStore, SeriesDatabase database, int concurrency,
+        Executor mainThread)
+    {
+        if (concurrency < 1)
+        {
+            throw new IllegalArgumentException("Concurrency must be at least 1: " + concurrency);
+        }
+
+        mRepository = repository;
+        mSeriesStore = seriesStore;
+        mDatabase = database;
+        mConcurrency = concurrency;
+        mMainThread = mainThread;
+    }
+
+    /**
+     * Starts downloading the data for every state in the list. Does nothing if a prefetch is
+     * already running.
+     * @param abbreviations 2 letter abbreviations of the states to download
+     * @param listener Receives progress updates on the main thread
+     * @return Returns false if a prefetch was already running or the list is empty
+     */
+    public synchronized boolean start(List<String> abbreviations, final Listener listener)
+    {
+        if (this.isRunning() || abbreviations.isEmpty())
+        {
+            return false;
+        }
+
+        mExecutor = Executors.newFixedThreadPool(mConcurrency);
+        mTotal = abbreviations.size();
+        mCompleted = 0;
+        mCancelled = false;
+        mBytesTransferred = 0;
+        mStartTime = SystemClock.elapsedRealtime();
+        mFailures = new LinkedHashMap<>();
+        mDownloaded = new HashMap<>();
+
+        // Queue a download for each state
+        for (final String abbreviation : abbreviations)
+        {
+            mExecutor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    prefetch(abbreviation, listener);
+                }
+            });
+        }
+
+        // Let the threads finish once the queued downloads are done
+        mExecutor.shutdown();
+        return true;
+    }
+
+    /**
+     * Cancels the downloads that haven't started yet and interrupts the ones that have. The states
+     * that have already finished (and the ones that finish while being interrupted) are still
+     * stored in the database, but the listener isn't called again.
+     */
+    public synchronized void cancel()
+    {
+        // Nothing to cancel if no prefetch was started or its data has been stored already
+        if (mExecutor == null || mDownloaded == null)
+        {
+            return;
+        }
+
+        // Downloads that hadn't started are dropped, so only the running ones are left to finish
+        mTotal -= mExecutor.shutdownNow().size();
+        mCancelled = true;
+
+        // If none are running, store what has been downloaded now (off the calling thread, which is
+        // usually the main thread). Otherwise the last one to finish stores it.
+        if (mCompleted == mTotal)
+        {
+            final Map<String, StateTimeSeries> downloaded = mDownloaded;
+            mDownloaded = null;
+
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    write(downloaded);
+                }
+            }).start();
+        }
+    }
+
+    /**
+     * @return Returns true if a prefetch is still running
+     */
+    public synchronized boolean isRunning()
+    {
+        return mExecutor != null && !mExecutor.isTerminated() && mCompleted < mTotal;
+    }
+
+    /**
+     * Reads the cached data for a state, refreshes it from the API and publishes it to the store
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param listener Receives progress updates on the main thread
+     */
+    private void prefetch(String abbreviation, Listener listener)
+    {
+        long bytesTransferred = 0;
+        StateTimeSeries data = null;
+        String error = null;
+
+        try
+        {
+            SeriesRepository.Refresh refresh = mRepository.refresh(abbreviation, mRepository.readCached(abbreviation));
+            data = refresh.getData();
+            mSeriesStore.publish(abbreviation, data, true);
+            bytesTransferred = refresh.getBytesTransferred();
+        }
+
+        // Catch and log IO Exceptions, and remember which state failed
+        catch (IOException ioException)
+        {
+            Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+            error = String.valueOf(ioException.getMessage());
+        }
+
+        // Anything else that goes wrong (e.g. while adding to the cache) only fails this state
+        catch (RuntimeException runtimeException)
+        {
+            Log.e(TAG, RUNTIME_EXCEPTION_TEXT + runtimeException.getMessage(), runtimeException);
+            error = runtimeException.toString();
+        }
+
+        // Always count the state as finished, otherwise the prefetch would never complete
+        finally
+        {
+            this.finish(abbreviation, bytesTransferred, data, error, listener);
+        }
+    }
+
+    /**
+     * Records that a state has finished and reports the progress on the main thread (unless the
+     * prefetch was cancelled). Once every state has finished, the downloaded data is stored in the
+     * database in a single transaction.
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param bytesTransferred Number of bytes downloaded for the state
+     * @param data State's data (null if it failed)
+     * @param error Error message if the state failed (null if it succeeded, or if it stopped
+     * without an exception being caught)
+     * @param listener Receives progress updates on the main thread
+     */
+    private void finish(String abbreviation, long bytesTransferred, StateTimeSeries data, String error,
+        final Listener listener)
+    {
+        final Progress progress;
+        final boolean done;
+        final boolean cancelled;
+        Map<String, StateTimeSeries> downloaded = null;
+
+        synchronized (this)
+        {
+            mCompleted++;
+            mBytesTransferred += bytesTransferred;
+
+            if (error != null || data == null)
+            {
+                mFailures.put(abbreviation, error != null ? error : UNKNOWN_ERROR_TEXT);
+            }
+
+            else
+            {
+                mDownloaded.put(abbreviation, data);
+            }
+
+            progress = new Progress(mTotal, mCompleted, mBytesTransferred,
+                SystemClock.elapsedRealtime() - mStartTime, new LinkedHashMap<String, String>(mFailures));
+            done = mCompleted == mTotal;
+            cancelled = mCancelled;
+
+            if (done)
+            {
+                downloaded = mDownloaded;
+                mDownloaded = null;
+            }
+        }
+
+        if (downloaded != null)
+        {
+            this.write(downloaded);
+        }
+
+        // Nobody is waiting for progress once the prefetch has been cancelled
+        if (cancelled)
+        {
+            return;
+        }
+
+        mMainThread.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (done)
+                {
+                    listener.onPrefetchComplete(progress);
+                }
+
+                else
+                {
+                    listener.onPrefetchProgress(progress);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stores the downloaded data in the database in a single transaction
+     * @param downloaded Data of each state that succeeded
+     */
+    private void write(Map<String, StateTimeSeries> downloaded)
+    {
+        try
+        {
+            mDatabase.write(downloaded);
+        }
+
+        // The data has been published already, so the history just misses these rows until
+        // they're downloaded again
+        catch (SQLException sqlException)
+        {
+            Log.e(TAG, SQL_EXCEPTION_TEXT + sqlException.getMessage());
+        }
+    }
+
+    /**
+     * Snapshot of the progress of a prefetch
+     */
+    public static class Progress
+    {
+        private final int mTotal; // Number of states in the prefetch
+        private final int mCompleted; // Number of states that have finished (successfully or not)
+        private final long mBytesTransferred; // Number of bytes downloaded so far
+        private final long mElapsedMillis; // Time since the prefetch started
+        private final Map<String, String> mFailures; // Error message for each state that failed
+
+        /**
+         * Constructor
+         * @param total Number of states in the prefetch
+         * @param completed Number of states that have finished (successfully or not)
+         * @param bytesTransferred Number of bytes downloaded so far
+         * @param elapsedMillis Time since the prefetch started
+         * @param failures Error message for each state that failed
+         */
+        Progress(int total, int completed, long bytesTransferred, long elapsedMillis, Map<String, String> failures)
+        {
+            mTotal = total;
+            mCompleted = completed;
+            mBytesTransferred = bytesTransferred;
+            mElapsedMillis = elapsedMillis;
+            mFailures = Collections.unmodifiableMap(failures);
+        }
+
+        /**
+         * @return Returns the number of states in the prefetch
+         */
+        public int getTotal()
+        {
+            return mTotal;
+        }
+
+        /**
+         * @return Returns the number of states that have finished (successfully or not)
+         */
+        public int getCompleted()
+        {
+            return mCompleted;
+        }
+
+        /**
+         * @return Returns the number of bytes downloaded so far
+         */
+        public long getBytesTransferred()
+        {
+            return mBytesTransferred;
+        }
+
+        /**
+         * @return Returns the time since the prefetch started in milliseconds
+         */
+        public long getElapsedMillis()
+        {
+            return mElapsedMillis;
+        }
+
+        /**
+         * @return Returns the error message for each state that failed, by state abbreviation
+         */
+        public Map<String, String> getFailures()
+        {
+            return mFailures;
+        }
+
+        /**
+         * @return Returns the number of states finished per second
+         */
+        public double getStatesPerSecond()
+        {
+            return mElapsedMillis == 0 ? 0 : mCompleted * 1000.0 / mElapsedMillis;
+        }
+
+        /**
+         * @return Returns the number of bytes downloaded per second
+         */
+        public double getBytesPerSecond()
+        {
+            return mElapsedMillis == 0 ? 0 : mBytesTransferred * 1000.0 / mElapsedMillis;
+        }
+    }
+}
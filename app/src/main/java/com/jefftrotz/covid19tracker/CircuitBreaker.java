@@ -0,0 +1,167 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.IOException;
+
+/**
+ * Stops requests from being sent to a source that keeps failing. The circuit starts closed and
+ * lets every request through. After FAILURE_THRESHOLD requests in a row have failed it opens, and
+ * requests are turned away straight away (see CircuitOpenException) instead of adding load to a
+ * server that's already struggling and making the user wait for timeouts. Once the open time has
+ * passed the circuit is half open: a single request is let through as a trial, and the circuit
+ * closes again if it works or stays open for another open time if it doesn't.
+ * <p>
+ * One breaker is shared by everything that talks to the same source. All methods are thread safe.
+ * @author Jeffrey Trotz
+ * @date 5/5/2020
+ * @version 1.0
+ */
+public class CircuitBreaker
+{
+    /**
+     * States of the circuit
+     */
+    public enum State
+    {
+        CLOSED, // Requests are sent as usual
+        OPEN, // Requests are turned away until the open time has passed
+        HALF_OPEN // A single trial request has been let through and hasn't finished yet
+    }
+
+    private final int mFailureThreshold; // Number of failures in a row that opens the circuit
+    private final long mOpenMillis; // Time the circuit stays open before a trial request is let through
+    private final Clock mClock; // Source of time
+    private State mState = State.CLOSED; // Current state of the circuit
+    private int mFailureCount; // Number of requests in a row that have failed
+    private long mOpenedAt; // Time the circuit was last opened (Clock.elapsedMillis())
+    private int mOpenCount; // Number of times the circuit has opened
+
+    /**
+     * Constructor
+     * @param failureThreshold Number of failures in a row that opens the circuit
+     * @param openMillis Time the circuit stays open before a trial request is let through
+     * @param clock Source of time (Clock.SYSTEM in the app)
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis, Clock clock)
+    {
+        if (failureThreshold < 1 || openMillis < 0)
+        {
+            throw new IllegalArgumentException("Invalid circuit breaker: " + failureThreshold
+                + " failures, open for " + openMillis + " ms");
+        }
+
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+        mClock = clock;
+    }
+
+    /**
+     * Checks whether a request may be sent. A request that's let through must be followed by a
+     * call to recordSuccess(), recordFailure() or recordCancelled() once it finishes.
+     * @throws CircuitOpenException Thrown if the circuit is open (or a trial request is still
+     * running), so the request must not be sent
+     */
+    public synchronized void acquire() throws CircuitOpenException
+    {
+        if (mState == State.OPEN && mClock.elapsedMillis() - mOpenedAt >= mOpenMillis)
+        {
+            // Let this request through as the trial, and turn the rest away until it finishes
+            mState = State.HALF_OPEN;
+            return;
+        }
+
+        if (mState != State.CLOSED)
+        {
+            throw new CircuitOpenException(this.getRetryAfterMillis());
+        }
+    }
+
+    /**
+     * Records a request that worked, which closes the circuit
+     */
+    public synchronized void recordSuccess()
+    {
+        mState = State.CLOSED;
+        mFailureCount = 0;
+    }
+
+    /**
+     * Records a request that failed. The circuit opens if this was the trial request or enough
+     * requests in a row have now failed.
+     */
+    public synchronized void recordFailure()
+    {
+        mFailureCount++;
+
+        if (mState == State.HALF_OPEN || (mState == State.CLOSED && mFailureCount >= mFailureThreshold))
+        {
+            mState = State.OPEN;
+            mOpenedAt = mClock.elapsedMillis();
+            mOpenCount++;
+        }
+    }
+
+    /**
+     * Records a request that was let through but cancelled before it finished, which says nothing
+     * about the source. If it was the trial request, the next request becomes the trial instead.
+     */
+    public synchronized void recordCancelled()
+    {
+        if (mState == State.HALF_OPEN)
+        {
+            mState = State.OPEN;
+        }
+    }
+
+    /**
+     * @return Returns the current state of the circuit. An open circuit whose open time has passed
+     * is still reported as open until the next request is let through.
+     */
+    public synchronized State getState()
+    {
+        return mState;
+    }
+
+    /**
+     * @return Returns the time left until a trial request is let through in milliseconds (0 if
+     * the circuit isn't open)
+     */
+    public synchronized long getRetryAfterMillis()
+    {
+        return mState == State.CLOSED ? 0 : Math.max(0, mOpenMillis - (mClock.elapsedMillis() - mOpenedAt));
+    }
+
+    /**
+     * @return Returns the number of times the circuit has opened
+     */
+    public synchronized int getOpenCount()
+    {
+        return mOpenCount;
+    }
+
+    /**
+     * Thrown instead of sending a request while the circuit is open
+     */
+    public static class CircuitOpenException extends IOException
+    {
+        private static final long serialVersionUID = 1L; // IOException is Serializable, but these are never serialized
+        private final long mRetryAfterMillis; // Time left until a trial request is let through
+
+        /**
+         * Constructor
+         * @param retryAfterMillis Time left until a trial request is let through in milliseconds
+         */
+        CircuitOpenException(long retryAfterMillis)
+        {
+            super("Source unavailable, not retrying for " + ((retryAfterMillis + 999) / 1000) + " s");
+            mRetryAfterMillis = retryAfterMillis;
+        }
+
+        /**
+         * @return Returns the time left until a trial request is let through in milliseconds
+         */
+        public long getRetryAfterMillis()
+        {
+            return mRetryAfterMillis;
+        }
+    }
+}
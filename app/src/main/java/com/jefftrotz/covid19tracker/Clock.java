@@ -0,0 +1,56 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of time for the classes that wait or keep track of how long something has been going
+ * on (RetryPolicy's backoff, CircuitBreaker's cool down). SYSTEM is used in the app; a fake clock
+ * can be passed in instead so those classes can be exercised without actually waiting.
+ * @author Jeffrey Trotz
+ * @date 5/5/2020
+ * @version 1.0
+ */
+public interface Clock
+{
+    /**
+     * Clock backed by System.nanoTime() and Thread.sleep()
+     */
+    Clock SYSTEM = new Clock()
+    {
+        @Override
+        public long elapsedMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        }
+
+        @Override
+        public void sleep(long millis) throws InterruptedIOException
+        {
+            try
+            {
+                Thread.sleep(millis);
+            }
+
+            // Give up if the request was cancelled while waiting
+            catch (InterruptedException interruptedException)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to retry");
+            }
+        }
+    };
+
+    /**
+     * @return Returns the time in milliseconds since some fixed point (only differences between
+     * two calls mean anything)
+     */
+    long elapsedMillis();
+
+    /**
+     * Waits for a while
+     * @param millis Time to wait in milliseconds
+     * @throws InterruptedIOException Thrown if the thread is interrupted while waiting
+     */
+    void sleep(long millis) throws InterruptedIOException;
+}
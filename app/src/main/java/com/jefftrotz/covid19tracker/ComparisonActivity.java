@@ -0,0 +1,161 @@
+package com.jefftrotz.covid19tracker;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Spinner;
+import android.widget.TextView;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.DividerItemDecoration;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Lists every state that's been downloaded, sorted by a metric picked from a drop down list, so
+ * states can be compared at a glance. The list comes straight from the RankingIndex, so changing
+ * the metric doesn't download or parse anything, and the list is re-sorted whenever a state's
+ * data is updated while it's open. Tapping a state returns it to the main screen, which shows it.
+ * @author Jeffrey Trotz
+ * @date 5/1/2020
+ * @version 1.0
+ */
+public class ComparisonActivity extends AppCompatActivity implements RankingAdapter.Listener, RankingIndex.Listener
+{
+    public static final String EXTRA_ABBREVIATION = "abbreviation"; // Key the tapped state's abbreviation is returned under
+    private static final String LOAD_THREAD_NAME = "RankingLoader"; // Name of the thread the index is filled from the database on
+    private static final String STATE_COUNT_TEXT = "%d states, updated as new data arrives"; // Message shown above the list
+    private static final String NO_STATES_TEXT = "No states have been downloaded yet. Use Download All States on the main screen first."; // Message shown when the list is empty
+
+    private Spinner mRankingSpinner; // Drop down list where the user picks the metric to sort by
+    private TextView mStatusTV; // Text view to display the number of states in the list
+    private RankingAdapter mAdapter; // Shows the states in the list
+    private RankingIndex.Ranking mRanking = RankingIndex.Ranking.values()[0]; // Metric the states are sorted by
+    private final RankingIndex mRankingIndex = RankingIndex.getInstance(); // Source of the sorted states
+
+    /**
+     * Called when the activity is created
+     * @param savedInstanceState Saved state of the activity
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState)
+    {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_comparison);
+
+        mRankingSpinner = findViewById(R.id.rankingSpinner);
+        mStatusTV = findViewById(R.id.comparisonStatusTextView);
+        RecyclerView rankingList = findViewById(R.id.rankingRecyclerView);
+
+        // Recycle the rows as the list scrolls
+        mAdapter = new RankingAdapter(this);
+        rankingList.setHasFixedSize(true);
+        rankingList.setLayoutManager(new LinearLayoutManager(this));
+        rankingList.addItemDecoration(new DividerItemDecoration(this, DividerItemDecoration.VERTICAL));
+        rankingList.setAdapter(mAdapter);
+
+        // Fill the drop down list with the metrics the states can be sorted by
+        RankingIndex.Ranking[] rankings = RankingIndex.Ranking.values();
+        String[] labels = new String[rankings.length];
+
+        for (int i = 0; i < rankings.length; i++)
+        {
+            labels[i] = rankings[i].getLabel();
+        }
+
+        ArrayAdapter<String> rankingAdapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, labels);
+        rankingAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        mRankingSpinner.setAdapter(rankingAdapter);
+
+        mRankingSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener()
+        {
+            // Called when a metric is selected. The index is already sorted by every metric.
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id)
+            {
+                mRanking = RankingIndex.Ranking.values()[position];
+                showRanking();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent)
+            {
+                // Not used
+            }
+        });
+    }
+
+    /**
+     * Starts listening for changes to the index, and adds any states stored in the database that
+     * aren't in the index yet (e.g. ones downloaded before the app started)
+     */
+    @Override
+    protected void onStart()
+    {
+        super.onStart();
+        mRankingIndex.addListener(this);
+        this.showRanking();
+
+        final SeriesDatabase database = SeriesDatabase.getInstance(this);
+
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                mRankingIndex.load(database);
+            }
+        }, LOAD_THREAD_NAME).start();
+    }
+
+    /**
+     * Stops listening for changes to the index while the activity isn't visible
+     */
+    @Override
+    protected void onStop()
+    {
+        mRankingIndex.removeListener(this);
+        super.onStop();
+    }
+
+    /**
+     * Called on the thread that updated the index when a state moves, so the list is re-sorted on
+     * the main thread
+     */
+    @Override
+    public void onRankingChanged()
+    {
+        runOnUiThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                showRanking();
+            }
+        });
+    }
+
+    /**
+     * Returns the tapped state to the main screen
+     * @param abbreviation 2 letter abbreviation of the state
+     */
+    @Override
+    public void onStateClicked(String abbreviation)
+    {
+        setResult(RESULT_OK, new Intent().putExtra(EXTRA_ABBREVIATION, abbreviation));
+        finish();
+    }
+
+    /**
+     * Shows every state in the index, sorted by the selected metric
+     */
+    private void showRanking()
+    {
+        List<RankingIndex.Entry> entries = mRankingIndex.getSorted(mRanking, false);
+        mAdapter.setEntries(entries, mRanking);
+        mStatusTV.setText(entries.isEmpty() ? NO_STATES_TEXT : String.format(Locale.US, STATE_COUNT_TEXT, entries.size()));
+    }
+}
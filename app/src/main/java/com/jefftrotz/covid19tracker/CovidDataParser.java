@@ -0,0 +1,155 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Single pass, streaming parser for the CSV time series returned by the API. Each line of the
+ * response holds 4 numbers in this order: time the stats were updated (seconds since epoch),
+ * number of people tested, number of positive tests and number of deaths. Digits are read
+ * straight from the input stream into the columns of a StateTimeSeries, so no Strings, String
+ * arrays or regular expressions are created while parsing. Lines that are not made up of 4 whole
+ * numbers (such as the header line sent by the API) are skipped.
+ * @author Jeffrey Trotz
+ * @date 4/12/2020
+ * @version 1.0
+ */
+public class CovidDataParser implements SeriesParser
+{
+    private static final int BUFFER_SIZE = 8192; // Number of bytes read from the input stream at a time
+    private static final int FIELDS_PER_ROW = 4; // Number of values on each line of the CSV data
+
+    /**
+     * Reads the CSV data from the stream until the end of the stream is reached. The stream is
+     * not closed by this method.
+     * @param inputStream Stream containing CSV data from the API
+     * @return Returns the rows read from the stream
+     * @throws IOException Thrown if the stream can't be read
+     */
+    public StateTimeSeries parse(InputStream inputStream) throws IOException
+    {
+        return this.parse(inputStream, Long.MIN_VALUE);
+    }
+
+    /**
+     * Reads the CSV data from the stream until the end of the stream is reached, keeping only
+     * the rows that are newer than the given time. The API sends one state per request, so the
+     * region isn't needed to filter the rows.
+     * @param inputStream Stream containing CSV data from the API
+     * @param regionId 2 letter abbreviation of the state the data was requested for
+     * @param afterEpochSeconds Rows updated at or before this time (seconds since epoch) are skipped
+     * @return Returns the rows read from the stream
+     * @throws IOException Thrown if the stream can't be read
+     */
+    @Override
+    public StateTimeSeries parse(InputStream inputStream, String regionId, long afterEpochSeconds) throws IOException
+    {
+        return this.parse(inputStream, afterEpochSeconds);
+    }
+
+    /**
+     * Reads the CSV data from the stream until the end of the stream is reached, keeping only
+     * the rows that are newer than the given time. The stream is not closed by this method.
+     * @param inputStream Stream containing CSV data from the API
+     * @param afterEpochSeconds Rows updated at or before this time (seconds since epoch) are skipped
+     * @return Returns the rows read from the stream
+     * @throws IOException Thrown if the stream can't be read
+     */
+    public StateTimeSeries parse(InputStream inputStream, long afterEpochSeconds) throws IOException
+    {
+        StateTimeSeries series = new StateTimeSeries(); // Rows parsed from the stream
+        byte[] buffer = new byte[BUFFER_SIZE]; // Chunk of bytes read from the stream
+        long[] row = new long[FIELDS_PER_ROW]; // Values parsed from the current line
+        int field = 0; // Index of the field currently being parsed
+        long value = 0; // Value of the field currently being parsed
+        boolean hasDigits = false; // Whether or not the current field contains any digits
+        boolean negative = false; // Whether or not the current field started with a minus sign
+        boolean validLine = true; // Set to false once something other than a number is found on the line
+        int bytesRead;
+
+        // Read the stream in chunks and walk through each byte once
+        while ((bytesRead = inputStream.read(buffer)) != -1)
+        {
+            for (int i = 0; i < bytesRead; i++)
+            {
+                byte character = buffer[i];
+
+                // Add digits to the value of the current field
+                if (character >= '0' && character <= '9')
+                {
+                    value = (value * 10) + (character - '0');
+                    hasDigits = true;
+                }
+
+                // Finish the current field and move on to the next one
+                else if (character == ',')
+                {
+                    if (validLine && hasDigits && field < FIELDS_PER_ROW)
+                    {
+                        row[field] = negative ? -value : value;
+                    }
+
+                    else
+                    {
+                        validLine = false;
+                    }
+
+                    field++;
+                    value = 0;
+                    hasDigits = false;
+                    negative = false;
+                }
+
+                // Finish the current line and store it if it was made up of 4 numbers
+                else if (character == '\n')
+                {
+                    this.endLine(series, row, field, negative ? -value : value, validLine && hasDigits, afterEpochSeconds);
+                    field = 0;
+                    value = 0;
+                    hasDigits = false;
+                    negative = false;
+                    validLine = true;
+                }
+
+                // Remember minus signs at the start of a field
+                else if (character == '-' && !hasDigits && !negative)
+                {
+                    negative = true;
+                }
+
+                // Anything else (other than whitespace) means the line isn't data
+                else if (character != '\r' && character != ' ')
+                {
+                    validLine = false;
+                }
+            }
+        }
+
+        // The last line might not end with a line break
+        if (field > 0 || hasDigits)
+        {
+            this.endLine(series, row, field, negative ? -value : value, validLine && hasDigits, afterEpochSeconds);
+        }
+
+        series.trimToSize();
+        return series;
+    }
+
+    /**
+     * Stores the line that was just parsed if it contains exactly 4 numbers
+     * @param series Series the line is added to
+     * @param row Values parsed from the first 3 fields of the line
+     * @param field Index of the last field on the line
+     * @param lastValue Value of the last field on the line
+     * @param valid Whether or not every field on the line was a number
+     * @param afterEpochSeconds Lines updated at or before this time (seconds since epoch) are skipped
+     */
+    private void endLine(StateTimeSeries series, long[] row, int field, long lastValue, boolean valid,
+                         long afterEpochSeconds)
+    {
+        if (valid && field == FIELDS_PER_ROW - 1 && row[0] > afterEpochSeconds)
+        {
+            series.append(row[0], row[1], row[2], lastValue);
+        }
+    }
+}
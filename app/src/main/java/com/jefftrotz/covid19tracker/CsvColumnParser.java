@@ -0,0 +1,266 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser for CSV files with a header line, such as county level or national data sets, where the
+ * columns are found by name instead of position. Times can be seconds since epoch or dates
+ * (yyyy-MM-dd or yyyyMMdd, taken as midnight UTC). Columns a source doesn't have (for example
+ * county data sets usually don't count tests) are left out by passing null, and read as 0.
+ * <p>
+ * Files holding several regions can be filtered by a region column, so only the rows whose
+ * value in that column matches the requested region ID are kept. Rows must be in time order for
+ * each region; a row that isn't newer than the previous one kept is skipped. Fields may be quoted
+ * (with "" standing for a quote inside a quoted field), so names and numbers containing commas
+ * such as "Cook County, IL" or "1,234" are read whole. Lines without quotes are simply split on
+ * commas.
+ * @author Jeffrey Trotz
+ * @date 4/28/2020
+ * @version 1.0
+ */
+public class CsvColumnParser implements SeriesParser
+{
+    private static final int NO_COLUMN = -1; // Index of a column that isn't in the file (or wasn't asked for)
+    private static final long SECONDS_PER_DAY = 86400; // Number of seconds in a day
+    private static final char QUOTE = '"'; // Surrounds fields containing commas
+
+    private final String mTimeColumn; // Name of the column holding the time or date of each row
+    private final String mTestedColumn; // Name of the column holding the number of people tested (may be null)
+    private final String mPositiveColumn; // Name of the column holding the number of positive tests
+    private final String mDeathsColumn; // Name of the column holding the number of deaths (may be null)
+    private final String mRegionColumn; // Name of the column holding each row's region ID (null if the file only has one region)
+
+    /**
+     * Constructor
+     * @param timeColumn Name of the column holding the time or date of each row
+     * @param testedColumn Name of the column holding the number of people tested (null if there isn't one)
+     * @param positiveColumn Name of the column holding the number of positive tests
+     * @param deathsColumn Name of the column holding the number of deaths (null if there isn't one)
+     * @param regionColumn Name of the column holding each row's region ID (null if the file only
+     * has one region)
+     */
+    public CsvColumnParser(String timeColumn, String testedColumn, String positiveColumn, String deathsColumn,
+        String regionColumn)
+    {
+        mTimeColumn = timeColumn;
+        mTestedColumn = testedColumn;
+        mPositiveColumn = positiveColumn;
+        mDeathsColumn = deathsColumn;
+        mRegionColumn = regionColumn;
+    }
+
+    @Override
+    public StateTimeSeries parse(InputStream inputStream, String regionId, long afterEpochSeconds) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8")));
+        StateTimeSeries series = new StateTimeSeries();
+        String header = reader.readLine();
+
+        if (header == null)
+        {
+            return series;
+        }
+
+        // Find the columns by name
+        String[] names = split(header);
+        int timeIndex = find(names, mTimeColumn);
+        int testedIndex = find(names, mTestedColumn);
+        int positiveIndex = find(names, mPositiveColumn);
+        int deathsIndex = find(names, mDeathsColumn);
+        int regionIndex = find(names, mRegionColumn);
+
+        if (timeIndex == NO_COLUMN || positiveIndex == NO_COLUMN || (mRegionColumn != null && regionIndex == NO_COLUMN))
+        {
+            throw new IOException("Missing columns in CSV header: " + header);
+        }
+
+        long lastEpochSeconds = afterEpochSeconds;
+        String line;
+
+        while ((line = reader.readLine()) != null)
+        {
+            String[] fields = split(line);
+
+            // Skip blank or short lines, and rows for other regions
+            if (fields.length < names.length || (regionIndex != NO_COLUMN && !fields[regionIndex].trim().equals(regionId)))
+            {
+                continue;
+            }
+
+            try
+            {
+                long epochSeconds = parseTime(fields[timeIndex].trim());
+
+                if (epochSeconds > lastEpochSeconds)
+                {
+                    series.append(epochSeconds, parseCount(fields, testedIndex), parseCount(fields, positiveIndex),
+                        parseCount(fields, deathsIndex));
+                    lastEpochSeconds = epochSeconds;
+                }
+            }
+
+            // Skip lines that aren't made up of numbers (such as notes at the end of the file)
+            catch (NumberFormatException numberFormatException)
+            {
+                continue;
+            }
+        }
+
+        return series;
+    }
+
+    /**
+     * Splits a line into its fields, removing the quotes around quoted fields
+     * @param line Line of the file
+     * @return Returns the fields of the line
+     */
+    static String[] split(String line)
+    {
+        // Most lines have no quotes, so they don't need to be read one character at a time
+        if (line.indexOf(QUOTE) < 0)
+        {
+            return line.split(",", -1);
+        }
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++)
+        {
+            char next = line.charAt(i);
+
+            if (quoted)
+            {
+                // A doubled quote inside a quoted field stands for a single quote
+                if (next == QUOTE && i + 1 < line.length() && line.charAt(i + 1) == QUOTE)
+                {
+                    field.append(QUOTE);
+                    i++;
+                }
+
+                else if (next == QUOTE)
+                {
+                    quoted = false;
+                }
+
+                else
+                {
+                    field.append(next);
+                }
+            }
+
+            else if (next == QUOTE)
+            {
+                quoted = true;
+            }
+
+            else if (next == ',')
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+
+            else
+            {
+                field.append(next);
+            }
+        }
+
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * @param names Column names from the header line
+     * @param name Name of the column to find (may be null)
+     * @return Returns the index of the column, or NO_COLUMN if it isn't there or name is null
+     */
+    private static int find(String[] names, String name)
+    {
+        if (name != null)
+        {
+            for (int i = 0; i < names.length; i++)
+            {
+                if (names[i].trim().equalsIgnoreCase(name))
+                {
+                    return i;
+                }
+            }
+        }
+
+        return NO_COLUMN;
+    }
+
+    /**
+     * @param fields Fields of a line
+     * @param index Index of the column to read (NO_COLUMN if the file doesn't have it)
+     * @return Returns the column's value, or 0 if the file doesn't have the column or it's blank
+     * @throws NumberFormatException Thrown if the value isn't a number
+     */
+    private static long parseCount(String[] fields, int index)
+    {
+        if (index == NO_COLUMN || fields[index].trim().isEmpty())
+        {
+            return 0;
+        }
+
+        // Some sources write counts as decimals (e.g. 12.0) or with thousands separators (e.g. "1,234")
+        String value = fields[index].trim();
+        return (long) Double.parseDouble(value.indexOf(',') < 0 ? value : value.replace(",", ""));
+    }
+
+    /**
+     * @param value Seconds since epoch, or a date formatted as yyyy-MM-dd or yyyyMMdd
+     * @return Returns the time in seconds since epoch
+     * @throws NumberFormatException Thrown if the value isn't a time or date
+     */
+    static long parseTime(String value)
+    {
+        if (value.length() == 10 && value.charAt(4) == '-' && value.charAt(7) == '-')
+        {
+            return toEpochSeconds(Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(5, 7)),
+                Integer.parseInt(value.substring(8, 10)));
+        }
+
+        if (value.length() == 8)
+        {
+            return toEpochSeconds(Integer.parseInt(value.substring(0, 4)), Integer.parseInt(value.substring(4, 6)),
+                Integer.parseInt(value.substring(6, 8)));
+        }
+
+        return Long.parseLong(value);
+    }
+
+    /**
+     * Converts a date to seconds since epoch without allocating a Calendar
+     * @param year Year
+     * @param month Month (1 to 12)
+     * @param day Day of the month (1 to 31)
+     * @return Returns the time of midnight UTC on the date in seconds since epoch
+     * @throws NumberFormatException Thrown if the month or day is out of range
+     */
+    private static long toEpochSeconds(int year, int month, int day)
+    {
+        if (month < 1 || month > 12 || day < 1 || day > 31)
+        {
+            throw new NumberFormatException("Invalid date: " + year + "-" + month + "-" + day);
+        }
+
+        // Count the days since 1970-01-01, treating March as the first month of the year so the
+        // leap day comes last
+        int shiftedYear = month <= 2 ? year - 1 : year;
+        int era = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+        int yearOfEra = shiftedYear - (era * 400);
+        int dayOfYear = (((153 * (month > 2 ? month - 3 : month + 9)) + 2) / 5) + day - 1;
+        int dayOfEra = (yearOfEra * 365) + (yearOfEra / 4) - (yearOfEra / 100) + dayOfYear;
+        long days = (era * 146097L) + dayOfEra - 719468;
+        return days * SECONDS_PER_DAY;
+    }
+}
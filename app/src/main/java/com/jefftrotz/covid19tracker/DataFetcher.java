@@ -0,0 +1,287 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Provider that downloads a region's time series over HTTP. The URL is built from a template
+ * with REGION_PLACEHOLDER standing in for the region ID (a template without it always gets the
+ * same URL, e.g. for national data), and the response is read by the provider's parser.
+ * <p>
+ * Requests wait for the provider's rate limit, then ask the server to gzip the response and send
+ * the ETag/Last-Modified validators saved from the previous response, so the server can answer
+ * with a 304 (not modified) and no body when nothing has changed. The number of
+ * bytes read from the network is reported with each result.
+ * <p>
+ * Each stage of a request (DNS lookup, connecting, waiting for the first byte, downloading and
+ * parsing) is timed and recorded in the PerfMonitor, along with the request's outcome. Connecting
+ * and reading time out, so a server that stops answering fails the request instead of hanging it.
+ * @author Jeffrey Trotz
+ * @date 4/15/2020
+ * @version 1.2
+ */
+public class DataFetcher implements DataProvider
+{
+    public static final String REGION_PLACEHOLDER = "{region}"; // Replaced by the region ID in URL templates
+    private static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding"; // Header used to ask for a compressed response
+    private static final String IF_NONE_MATCH_HEADER = "If-None-Match"; // Header used to send the stored ETag
+    private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since"; // Header used to send the stored Last-Modified date
+    private static final String ETAG_HEADER = "ETag"; // Header containing the ETag of the response
+    private static final String LAST_MODIFIED_HEADER = "Last-Modified"; // Header containing the Last-Modified date of the response
+    private static final String GZIP_ENCODING = "gzip"; // Content encoding used for compressed responses
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000; // Default longest wait for the connection to be made
+    private static final int READ_TIMEOUT_MILLIS = 15000; // Default longest wait for each read of the response
+
+    private final String mId; // Name of the provider
+    private final String mUrlTemplate; // URL with REGION_PLACEHOLDER where the region ID goes
+    private final SeriesParser mParser; // Parses the response body
+    private final RateLimiter mRateLimiter; // Limits how often the server is contacted
+    private final int mConnectTimeoutMillis; // Longest wait for the connection to be made
+    private final int mReadTimeoutMillis; // Longest wait for each read of the response
+    private final PerfMonitor mPerfMonitor = PerfMonitor.getInstance(); // Records the time each stage of a request takes
+
+    /**
+     * Constructor
+     * @param id Name of the provider (used to keep its cached data apart)
+     * @param urlTemplate URL with REGION_PLACEHOLDER where the region ID goes
+     * @param parser Parses the response body
+     * @param rateLimiter Limits how often the server is contacted (share one between every
+     * provider using the same server)
+     */
+    public DataFetcher(String id, String urlTemplate, SeriesParser parser, RateLimiter rateLimiter)
+    {
+        this(id, urlTemplate, parser, rateLimiter, CONNECT_TIMEOUT_MILLIS, READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Constructor
+     * @param id Name of the provider (used to keep its cached data apart)
+     * @param urlTemplate URL with REGION_PLACEHOLDER where the region ID goes
+     * @param parser Parses the response body
+     * @param rateLimiter Limits how often the server is contacted (share one between every
+     * provider using the same server)
+     * @param connectTimeoutMillis Longest wait for the connection to be made
+     * @param readTimeoutMillis Longest wait for each read of the response
+     */
+    public DataFetcher(String id, String urlTemplate, SeriesParser parser, RateLimiter rateLimiter,
+        int connectTimeoutMillis, int readTimeoutMillis)
+    {
+        // A timeout of 0 would wait forever
+        if (connectTimeoutMillis < 1 || readTimeoutMillis < 1)
+        {
+            throw new IllegalArgumentException("Invalid timeouts: " + connectTimeoutMillis + " ms to connect, "
+                + readTimeoutMillis + " ms to read");
+        }
+
+        mId = id;
+        mUrlTemplate = urlTemplate;
+        mParser = parser;
+        mRateLimiter = rateLimiter;
+        mConnectTimeoutMillis = connectTimeoutMillis;
+        mReadTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public String getId()
+    {
+        return mId;
+    }
+
+    /**
+     * Downloads and parses the rows of a region's time series that are newer than the cached data
+     * @param regionId ID of the region (e.g. a state's 2 letter abbreviation)
+     * @param eTag ETag saved from the last response (null if there isn't one)
+     * @param lastModified Last-Modified date saved from the last response (null if there isn't one)
+     * @param afterEpochSeconds Time of the last cached row. Rows at or before this time are skipped.
+     * @return Returns the result of the request. Rows are only included if the response code is 200.
+     * @throws IOException Thrown if the request fails or the response can't be read
+     */
+    @Override
+    public FetchResult fetch(String regionId, String eTag, String lastModified, long afterEpochSeconds)
+        throws IOException
+    {
+        HttpURLConnection connection = null;
+        CountingInputStream countingStream = null;
+        boolean succeeded = false;
+        mRateLimiter.acquire();
+        mPerfMonitor.count(regionId, PerfMonitor.Counter.REQUESTS, 1);
+
+        try
+        {
+            // Look up the API's address first so the lookup can be timed on its own. The result
+            // is cached by the system, so the connection doesn't look it up again.
+            URL url = new URL(mUrlTemplate.replace(REGION_PLACEHOLDER, regionId));
+            long startTime = System.nanoTime();
+            InetAddress.getAllByName(url.getHost());
+            mPerfMonitor.record(regionId, PerfMonitor.Stage.DNS, System.nanoTime() - startTime);
+
+            // Initialize HTTP Connection object. Setting Accept-Encoding turns off transparent
+            // decompression, so the compressed bytes can be counted.
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestProperty(ACCEPT_ENCODING_HEADER, GZIP_ENCODING);
+
+            // Give up on a server that stops answering instead of waiting forever, so the
+            // request can be retried or the cached data shown
+            connection.setConnectTimeout(mConnectTimeoutMillis);
+            connection.setReadTimeout(mReadTimeoutMillis);
+
+            // Send the validators saved from the last response (if any)
+            if (eTag != null)
+            {
+                connection.setRequestProperty(IF_NONE_MATCH_HEADER, eTag);
+            }
+
+            if (lastModified != null)
+            {
+                connection.setRequestProperty(IF_MODIFIED_SINCE_HEADER, lastModified);
+            }
+
+            startTime = System.nanoTime();
+            connection.connect();
+            mPerfMonitor.record(regionId, PerfMonitor.Stage.CONNECT, System.nanoTime() - startTime);
+
+            startTime = System.nanoTime();
+            int responseCode = connection.getResponseCode();
+            mPerfMonitor.record(regionId, PerfMonitor.Stage.TTFB, System.nanoTime() - startTime);
+
+            // Nothing to read if the data hasn't changed or the request failed. The server may
+            // send updated validators with a 304, otherwise the old ones are kept.
+            if (responseCode != HTTP_OK)
+            {
+                String newETag = connection.getHeaderField(ETAG_HEADER);
+                String newLastModified = connection.getHeaderField(LAST_MODIFIED_HEADER);
+
+                if (responseCode == HTTP_NOT_MODIFIED)
+                {
+                    mPerfMonitor.count(regionId, PerfMonitor.Counter.NOT_MODIFIED, 1);
+                    succeeded = true;
+                }
+
+                return new FetchResult(responseCode, new StateTimeSeries(0),
+                    newETag != null ? newETag : eTag,
+                    newLastModified != null ? newLastModified : lastModified, 0);
+            }
+
+            // Count the bytes read from the network, then decompress them if needed
+            countingStream = new CountingInputStream(connection.getInputStream());
+            InputStream inputStream = new BufferedInputStream(countingStream);
+
+            if (GZIP_ENCODING.equalsIgnoreCase(connection.getContentEncoding()))
+            {
+                inputStream = new GZIPInputStream(inputStream);
+            }
+
+            // The body is parsed as it's downloaded, so the time spent waiting on the network is
+            // taken out of the parse time
+            startTime = System.nanoTime();
+            StateTimeSeries newRows = mParser.parse(inputStream, regionId, afterEpochSeconds);
+            inputStream.close();
+            long totalTime = System.nanoTime() - startTime;
+            mPerfMonitor.record(regionId, PerfMonitor.Stage.DOWNLOAD, countingStream.getReadNanos());
+            mPerfMonitor.record(regionId, PerfMonitor.Stage.PARSE, totalTime - countingStream.getReadNanos());
+            mPerfMonitor.count(regionId, PerfMonitor.Counter.BYTES, countingStream.getCount());
+            succeeded = true;
+
+            return new FetchResult(responseCode, newRows, connection.getHeaderField(ETAG_HEADER),
+                connection.getHeaderField(LAST_MODIFIED_HEADER), countingStream.getCount());
+        }
+
+        // Close the connection after the request is finished or after an exception is thrown
+        finally
+        {
+            if (!succeeded)
+            {
+                mPerfMonitor.count(regionId, PerfMonitor.Counter.FAILURES, 1);
+            }
+
+            if (countingStream != null)
+            {
+                countingStream.close();
+            }
+
+            if (connection != null)
+            {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Input stream that counts the number of bytes read through it, and how long reading them
+     * took
+     */
+    private static class CountingInputStream extends FilterInputStream
+    {
+        private long mCount; // Number of bytes read so far
+        private long mReadNanos; // Time spent waiting for reads to return so far
+
+        /**
+         * Constructor
+         * @param inputStream Stream to count the bytes of
+         */
+        CountingInputStream(InputStream inputStream)
+        {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            long startTime = System.nanoTime();
+            int result = super.read();
+            mReadNanos += System.nanoTime() - startTime;
+
+            if (result != -1)
+            {
+                mCount++;
+            }
+
+            return result;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            long startTime = System.nanoTime();
+            int result = super.read(buffer, offset, length);
+            mReadNanos += System.nanoTime() - startTime;
+
+            if (result != -1)
+            {
+                mCount += result;
+            }
+
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = super.skip(n);
+            mCount += skipped;
+            return skipped;
+        }
+
+        /**
+         * @return Returns the number of bytes read so far
+         */
+        long getCount()
+        {
+            return mCount;
+        }
+
+        /**
+         * @return Returns the time spent waiting for reads to return so far in nanoseconds
+         */
+        long getReadNanos()
+        {
+            return mReadNanos;
+        }
+    }
+}
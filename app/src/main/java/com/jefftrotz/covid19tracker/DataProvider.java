@@ -0,0 +1,37 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.IOException;
+
+/**
+ * Source of per-region time series. Each provider knows where its data lives and how to parse
+ * it, so the rest of the pipeline (SeriesRepository, FetchScheduler, BulkPrefetcher and the
+ * background sync) works the same no matter where a region's data comes from. Region IDs are
+ * whatever the provider uses to tell its regions apart, e.g. a 2 letter state abbreviation or a
+ * county's FIPS code.
+ * @author Jeffrey Trotz
+ * @date 4/28/2020
+ * @version 1.0
+ */
+public interface DataProvider
+{
+    int HTTP_OK = 200; // Response code returned when data is sent
+    int HTTP_NOT_MODIFIED = 304; // Response code returned when the data hasn't changed
+
+    /**
+     * @return Returns a short, unique name for the provider. It's used to keep each provider's
+     * cached data apart, so it must not change between releases.
+     */
+    String getId();
+
+    /**
+     * Gets the rows of a region's time series that are newer than the cached data
+     * @param regionId ID of the region
+     * @param eTag ETag saved from the last result (null if there isn't one)
+     * @param lastModified Last-Modified value saved from the last result (null if there isn't one)
+     * @param afterEpochSeconds Time of the last cached row. Rows at or before this time are skipped.
+     * @return Returns the result. Rows are only included if the response code is HTTP_OK, and
+     * HTTP_NOT_MODIFIED means nothing has changed since the validators were saved.
+     * @throws IOException Thrown if the data can't be read
+     */
+    FetchResult fetch(String regionId, String eTag, String lastModified, long afterEpochSeconds) throws IOException;
+}
@@ -0,0 +1,71 @@
+package com.jefftrotz.covid19tracker;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared registry of the app's data providers, by ID. Providers are shared so every component
+ * (the activity, background sync, etc.) goes through the same rate limit and circuit breaker for
+ * each source. coronavirusapi.com's per-state time series is registered as the default provider,
+ * wrapped in a ResilientProvider so failed requests are retried and a failing API isn't hammered;
+ * other sources (county level CSVs, national aggregates, local files) are added with register().
+ * @author Jeffrey Trotz
+ * @date 4/28/2020
+ * @version 1.0
+ */
+public final class DataProviders
+{
+    public static final String CORONAVIRUS_API_ID = "coronavirusapi"; // ID of the default provider
+    static final String CORONAVIRUS_API_URL = "https://coronavirusapi.com/getTimeSeries/" + DataFetcher.REGION_PLACEHOLDER; // URL for the API used to get per-state COVID-19 data
+    private static final double CORONAVIRUS_API_PERMITS_PER_SECOND = 10; // Most requests per second sent to the API on average
+    private static final int CORONAVIRUS_API_BURST = 10; // Most requests sent to the API at once
+    private static final int CORONAVIRUS_API_MAX_ATTEMPTS = 3; // Most times a request to the API is sent, counting the first time
+    private static final long CORONAVIRUS_API_BASE_DELAY_MILLIS = 500; // Longest wait before the first retry
+    private static final long CORONAVIRUS_API_MAX_DELAY_MILLIS = 4000; // Longest wait before any retry
+    private static final int CORONAVIRUS_API_FAILURE_THRESHOLD = 5; // Failures in a row that stop requests to the API
+    private static final long CORONAVIRUS_API_OPEN_MILLIS = 60000; // Time requests to the API are stopped for
+
+    private static final Map<String, DataProvider> sProviders = new HashMap<>(); // Every registered provider, by ID
+
+    static
+    {
+        register(new ResilientProvider(new DataFetcher(CORONAVIRUS_API_ID, CORONAVIRUS_API_URL, new CovidDataParser(),
+                new RateLimiter(CORONAVIRUS_API_PERMITS_PER_SECOND, CORONAVIRUS_API_BURST)),
+            new RetryPolicy(CORONAVIRUS_API_MAX_ATTEMPTS, CORONAVIRUS_API_BASE_DELAY_MILLIS, CORONAVIRUS_API_MAX_DELAY_MILLIS),
+            new CircuitBreaker(CORONAVIRUS_API_FAILURE_THRESHOLD, CORONAVIRUS_API_OPEN_MILLIS, Clock.SYSTEM),
+            Clock.SYSTEM));
+    }
+
+    /**
+     * Private so the class can't be created
+     */
+    private DataProviders()
+    {
+    }
+
+    /**
+     * @return Returns the provider of per-state data from coronavirusapi.com
+     */
+    public static DataProvider getDefault()
+    {
+        return get(CORONAVIRUS_API_ID);
+    }
+
+    /**
+     * @param id ID of the provider
+     * @return Returns the provider, or null if no provider is registered with the ID
+     */
+    public static synchronized DataProvider get(String id)
+    {
+        return sProviders.get(id);
+    }
+
+    /**
+     * Adds a provider, replacing any provider already registered with the same ID
+     * @param provider Provider to add
+     */
+    public static synchronized void register(DataProvider provider)
+    {
+        sProviders.put(provider.getId(), provider);
+    }
+}
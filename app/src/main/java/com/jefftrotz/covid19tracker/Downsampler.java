@@ -0,0 +1,101 @@
+package com.jefftrotz.covid19tracker;
+
+/**
+ * Reduces a series of points to a smaller number of points that looks the same when plotted,
+ * using the Largest-Triangle-Three-Buckets (LTTB) algorithm. The first and last points are always
+ * kept. The points in between are split into equal sized buckets, and from each bucket the point
+ * that forms the largest triangle with the point kept from the previous bucket and the average of
+ * the next bucket is kept, which keeps the peaks and dips that stand out on a graph. The points
+ * are read and the result written into arrays owned by the caller, so nothing is allocated.
+ * @author Jeffrey Trotz
+ * @date 4/21/2020
+ * @version 1.0
+ */
+public final class Downsampler
+{
+    private static final int MIN_THRESHOLD = 3; // Smallest useful number of points (first, last and one in between)
+
+    /**
+     * Private constructor since the class only has static methods
+     */
+    private Downsampler()
+    {
+    }
+
+    /**
+     * Picks which points to keep
+     * @param x X values of the points, in increasing order
+     * @param y Y values of the points
+     * @param length Number of points to read from the arrays
+     * @param threshold Maximum number of points to keep (every point is kept if it's less than 3)
+     * @param selected Receives the indexes of the points kept, in increasing order. Must have room
+     * for at least length indexes.
+     * @return Returns the number of indexes written to selected
+     */
+    public static int downsample(double[] x, double[] y, int length, int threshold, int[] selected)
+    {
+        // Keep every point if there aren't more than the threshold (or the threshold is too small
+        // to leave any buckets)
+        if (threshold >= length || threshold < MIN_THRESHOLD)
+        {
+            for (int i = 0; i < length; i++)
+            {
+                selected[i] = i;
+            }
+
+            return length;
+        }
+
+        // Size of each bucket, leaving out the first and last points
+        double bucketSize = (double) (length - 2) / (threshold - 2);
+        int kept = 0;
+        int previous = 0;
+        selected[kept++] = previous;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++)
+        {
+            // Range of points in this bucket
+            int start = (int) (bucket * bucketSize) + 1;
+            int end = (int) ((bucket + 1) * bucketSize) + 1;
+
+            // Average of the points in the next bucket (just the last point for the last bucket)
+            int nextStart = end;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, length);
+            double averageX = 0;
+            double averageY = 0;
+
+            for (int i = nextStart; i < nextEnd; i++)
+            {
+                averageX += x[i];
+                averageY += y[i];
+            }
+
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            // Keep the point that forms the largest triangle with the previous point and the average
+            double previousX = x[previous];
+            double previousY = y[previous];
+            double largestArea = -1;
+            int largest = start;
+
+            for (int i = start; i < end; i++)
+            {
+                double area = Math.abs((previousX - averageX) * (y[i] - previousY)
+                    - (previousX - x[i]) * (averageY - previousY));
+
+                if (area > largestArea)
+                {
+                    largestArea = area;
+                    largest = i;
+                }
+            }
+
+            selected[kept++] = largest;
+            previous = largest;
+        }
+
+        selected[kept++] = length - 1;
+        return kept;
+    }
+}
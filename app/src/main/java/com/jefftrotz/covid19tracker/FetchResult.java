@@ -0,0 +1,84 @@
+package com.jefftrotz.covid19tracker;
+
+/**
+ * Result of a single request made by a DataProvider
+ * @author Jeffrey Trotz
+ * @date 4/15/2020
+ * @version 1.0
+ */
+public class FetchResult
+{
+    private final int mResponseCode; // HTTP response code returned by the server
+    private final StateTimeSeries mNewRows; // Rows newer than the cached data (empty if nothing changed)
+    private final String mETag; // ETag validator returned by the server (may be null)
+    private final String mLastModified; // Last-Modified validator returned by the server (may be null)
+    private final long mBytesTransferred; // Number of response body bytes read from the network
+
+    /**
+     * Constructor
+     * @param responseCode HTTP response code returned by the server
+     * @param newRows Rows newer than the cached data
+     * @param eTag ETag validator returned by the server (may be null)
+     * @param lastModified Last-Modified validator returned by the server (may be null)
+     * @param bytesTransferred Number of response body bytes read from the network
+     */
+    public FetchResult(int responseCode, StateTimeSeries newRows, String eTag, String lastModified,
+                       long bytesTransferred)
+    {
+        mResponseCode = responseCode;
+        mNewRows = newRows;
+        mETag = eTag;
+        mLastModified = lastModified;
+        mBytesTransferred = bytesTransferred;
+    }
+
+    /**
+     * @return Returns the HTTP response code returned by the server
+     */
+    public int getResponseCode()
+    {
+        return mResponseCode;
+    }
+
+    /**
+     * @return Returns true if the server reported that the data hasn't changed since the
+     * validators sent with the request were stored (HTTP 304)
+     */
+    public boolean isNotModified()
+    {
+        return mResponseCode == DataProvider.HTTP_NOT_MODIFIED;
+    }
+
+    /**
+     * @return Returns the rows newer than the cached data (empty if nothing changed)
+     */
+    public StateTimeSeries getNewRows()
+    {
+        return mNewRows;
+    }
+
+    /**
+     * @return Returns the ETag validator returned by the server (may be null)
+     */
+    public String getETag()
+    {
+        return mETag;
+    }
+
+    /**
+     * @return Returns the Last-Modified validator returned by the server (may be null)
+     */
+    public String getLastModified()
+    {
+        return mLastModified;
+    }
+
+    /**
+     * @return Returns the number of response body bytes read from the network (compressed
+     * size if the server used gzip)
+     */
+    public long getBytesTransferred()
+    {
+        return mBytesTransferred;
+    }
+}
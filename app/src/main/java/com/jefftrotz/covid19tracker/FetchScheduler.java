@@ -0,0 +1,369 @@
+package com.jefftrotz.covid19tracker;
+
+import android.database.SQLException;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Schedules requests for state data on a small, bounded thread pool. Only the most recently
+ * requested state matters to the UI, so requesting a state cancels the requests for any other
+ * state that are still queued or running, and requesting a state that is already being fetched
+ * reuses the request in flight instead of starting a new one. Results are published to a
+ * SeriesStore from the background thread, then the resulting snapshot is delivered on the main
+ * thread, and only for the most recently requested state.
+ * @author Jeffrey Trotz
+ * @date 4/16/2020
+ * @version 1.0
+ */
+public class FetchScheduler
+{
+    private static final int POOL_SIZE = 2; // Number of threads used to fetch data
+    private static final int QUEUE_CAPACITY = 8; // Number of requests that can wait for a thread
+    private static final long KEEP_ALIVE_SECONDS = 30; // Time idle threads are kept around for
+    private static final String TAG = "FetchScheduler"; // Tag used when logging
+    private static final String IO_EXCEPTION_TEXT = "IO Exception: "; // Text fed into the Log.e() method when an IO exception is logged
+    private static final String REJECTED_TEXT = "Request rejected, queue full: "; // Text fed into the Log.e() method when a request can't be queued
+    private static final String SQL_EXCEPTION_TEXT = "SQL Exception: "; // Text fed into the Log.e() method when a SQL exception is logged
+    private static final String RUNTIME_EXCEPTION_TEXT = "Runtime Exception: "; // Text fed into the Log.e() method when an unexpected exception is logged
+
+    /**
+     * Receives the results of requests on the main thread
+     */
+    public interface Callback
+    {
+        /**
+         * Called when cached data for the requested state has been read from disk
+         * @param snapshot State's snapshot after publishing the cached data (the one already
+         * published if it was newer than the cache)
+         */
+        void onCachedData(SeriesSnapshot snapshot);
+
+        /**
+         * Called when the requested state's data has been refreshed from the API
+         * @param snapshot State's snapshot after publishing the refreshed data
+         */
+        void onFetchComplete(SeriesSnapshot snapshot);
+
+        /**
+         * Called when the requested state's data couldn't be refreshed from the API. Any cached
+         * data delivered to onCachedData() is the latest data there is for the state until the
+         * next refresh works.
+         * @param abbreviation 2 letter abbreviation of the state
+         * @param exception Reason the refresh failed (a CircuitBreaker.CircuitOpenException if the
+         * API wasn't contacted because it's been failing)
+         */
+        void onFetchFailed(String abbreviation, IOException exception);
+    }
+
+    private final SeriesRepository mRepository; // Source of cached and downloaded data
+    private final SeriesStore mSeriesStore; // Where the data for each state is published
+    private final SeriesDatabase mDatabase; // Where the history of each refreshed state is stored
+    private final Callback mCallback; // Receives the results of requests
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper()); // Used to deliver results on the main thread
+    private final ThreadPoolExecutor mExecutor; // Runs the requests
+    private final Map<String, Future<?>> mInFlight = new HashMap<>(); // Requests that haven't finished yet, by state
+    private final AtomicInteger mSubmittedCount = new AtomicInteger(); // Number of requests started
+    private final AtomicInteger mCoalescedCount = new AtomicInteger(); // Number of requests that reused a request in flight
+    private final AtomicInteger mCancelledCount = new AtomicInteger(); // Number of requests cancelled because another state was requested
+    private final AtomicInteger mRejectedCount = new AtomicInteger(); // Number of requests rejected because the queue was full
+    private volatile String mLatestRequest; // Abbreviation of the most recently requested state
+
+    /**
+     * Constructor
+     * @param repository Source of cached and downloaded data
+     * @param seriesStore Where the data for each state is published
+     * @param database Where the history of each refreshed state is stored
+     * @param callback Receives the results of requests on the main thread
+     */
+    public FetchScheduler(SeriesRepository repository, SeriesStore seriesStore, SeriesDatabase database,
+        Callback callback)
+    {
+        mRepository = repository;
+        mSeriesStore = seriesStore;
+        mDatabase = database;
+        mCallback = callback;
+        mExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY));
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Requests the data for a state, cancelling the requests for any other state
+     * @param abbreviation 2 letter abbreviation of the state
+     */
+    public synchronized void request(String abbreviation)
+    {
+        mLatestRequest = abbreviation;
+
+        // Cancel the requests for every other state and forget the ones that have finished
+        Iterator<Map.Entry<String, Future<?>>> iterator = mInFlight.entrySet().iterator();
+
+        while (iterator.hasNext())
+        {
+            Map.Entry<String, Future<?>> entry = iterator.next();
+
+            if (entry.getValue().isDone())
+            {
+                iterator.remove();
+            }
+
+            else if (!entry.getKey().equals(abbreviation))
+            {
+                entry.getValue().cancel(true);
+                mCancelledCount.incrementAndGet();
+                iterator.remove();
+            }
+        }
+
+        // Remove the cancelled requests from the queue so they don't take up space
+        mExecutor.purge();
+
+        // Reuse the request in flight for this state (if there is one)
+        if (mInFlight.containsKey(abbreviation))
+        {
+            mCoalescedCount.incrementAndGet();
+            return;
+        }
+
+        try
+        {
+            mInFlight.put(abbreviation, mExecutor.submit(new FetchJob(abbreviation)));
+            mSubmittedCount.incrementAndGet();
+        }
+
+        // Let the callback know if the request couldn't be queued
+        catch (RejectedExecutionException rejectedException)
+        {
+            Log.e(TAG, REJECTED_TEXT + abbreviation);
+            mRejectedCount.incrementAndGet();
+            this.deliverFailure(abbreviation, new IOException(REJECTED_TEXT + abbreviation, rejectedException));
+        }
+    }
+
+    /**
+     * Cancels every request still in progress, for example when the selected state's data is
+     * already available in memory. Results of cancelled requests are not delivered.
+     */
+    public synchronized void cancelAll()
+    {
+        mLatestRequest = null;
+
+        for (Future<?> future : mInFlight.values())
+        {
+            if (!future.isDone())
+            {
+                future.cancel(true);
+                mCancelledCount.incrementAndGet();
+            }
+        }
+
+        mInFlight.clear();
+        mExecutor.purge();
+    }
+
+    /**
+     * Cancels every request and stops the threads used to fetch data
+     */
+    public synchronized void shutdown()
+    {
+        mLatestRequest = null;
+        mInFlight.clear();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return Returns the number of requests waiting for a thread
+     */
+    public int getQueueDepth()
+    {
+        return mExecutor.getQueue().size();
+    }
+
+    /**
+     * @return Returns the number of requests currently being fetched
+     */
+    public int getActiveCount()
+    {
+        return mExecutor.getActiveCount();
+    }
+
+    /**
+     * @return Returns the number of requests started
+     */
+    public int getSubmittedCount()
+    {
+        return mSubmittedCount.get();
+    }
+
+    /**
+     * @return Returns the number of requests that reused a request in flight for the same state
+     */
+    public int getCoalescedCount()
+    {
+        return mCoalescedCount.get();
+    }
+
+    /**
+     * @return Returns the number of requests cancelled because another state was requested
+     */
+    public int getCancelledCount()
+    {
+        return mCancelledCount.get();
+    }
+
+    /**
+     * @return Returns the number of requests rejected because the queue was full
+     */
+    public int getRejectedCount()
+    {
+        return mRejectedCount.get();
+    }
+
+    /**
+     * @param abbreviation 2 letter abbreviation of a state
+     * @return Returns true if the state is still the most recently requested state
+     */
+    private boolean isLatest(String abbreviation)
+    {
+        return abbreviation.equals(mLatestRequest);
+    }
+
+    /**
+     * Passes the snapshot published from cached data to the callback on the main thread if the
+     * state is still wanted
+     * @param snapshot State's snapshot after publishing the cached data
+     */
+    private void deliverCachedData(final SeriesSnapshot snapshot)
+    {
+        mMainHandler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (isLatest(snapshot.getAbbreviation()))
+                {
+                    mCallback.onCachedData(snapshot);
+                }
+            }
+        });
+    }
+
+    /**
+     * Passes the snapshot published from refreshed data to the callback on the main thread if
+     * the state is still wanted
+     * @param snapshot State's snapshot after publishing the refreshed data
+     */
+    private void deliverResult(final SeriesSnapshot snapshot)
+    {
+        mMainHandler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (isLatest(snapshot.getAbbreviation()))
+                {
+                    mCallback.onFetchComplete(snapshot);
+                }
+            }
+        });
+    }
+
+    /**
+     * Lets the callback know on the main thread that a request failed if the state is still wanted
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param exception Reason the request failed
+     */
+    private void deliverFailure(final String abbreviation, final IOException exception)
+    {
+        mMainHandler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (isLatest(abbreviation))
+                {
+                    mCallback.onFetchFailed(abbreviation, exception);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the cached data for a state, then refreshes it from the API
+     */
+    private class FetchJob implements Runnable
+    {
+        private final String mAbbreviation; // 2 letter abbreviation of the state
+
+        /**
+         * Constructor
+         * @param abbreviation 2 letter abbreviation of the state
+         */
+        FetchJob(String abbreviation)
+        {
+            mAbbreviation = abbreviation;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                // Show the cached data (if there is any) while the API is contacted
+                StateTimeSeries cachedData = mRepository.readCached(mAbbreviation);
+
+                if (cachedData != null)
+                {
+                    deliverCachedData(mSeriesStore.publish(mAbbreviation, cachedData, false));
+                }
+
+                // Don't bother contacting the API if another state was requested in the meantime
+                if (Thread.currentThread().isInterrupted() || !isLatest(mAbbreviation))
+                {
+                    return;
+                }
+
+                StateTimeSeries data = mRepository.refresh(mAbbreviation, cachedData).getData();
+                deliverResult(mSeriesStore.publish(mAbbreviation, data, true));
+
+                // Store the new rows after the result is on its way to the screen
+                mDatabase.write(Collections.singletonMap(mAbbreviation, data));
+            }
+
+            // Catch and log IO Exceptions
+            catch (IOException ioException)
+            {
+                Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+                ioException.printStackTrace();
+                deliverFailure(mAbbreviation, ioException);
+            }
+
+            // The data is already showing, so the history just misses these rows until the next refresh
+            catch (SQLException sqlException)
+            {
+                Log.e(TAG, SQL_EXCEPTION_TEXT + sqlException.getMessage());
+            }
+
+            // Anything else that goes wrong (e.g. while adding to the cache) fails the request,
+            // otherwise the executor's Future would swallow it and the callback would never hear
+            // back. Caught after SQLException, which is also a RuntimeException.
+            catch (RuntimeException runtimeException)
+            {
+                Log.e(TAG, RUNTIME_EXCEPTION_TEXT + runtimeException.getMessage(), runtimeException);
+                deliverFailure(mAbbreviation, new IOException(runtimeException.toString(), runtimeException));
+            }
+        }
+    }
+}
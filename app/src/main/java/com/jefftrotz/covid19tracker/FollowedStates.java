@@ -0,0 +1,74 @@
+package com.jefftrotz.covid19tracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The set of states the user follows, which are kept up to date in the background by
+ * SyncJobService. Stored in shared preferences as a set of 2 letter abbreviations.
+ * @author Jeffrey Trotz
+ * @date 4/24/2020
+ * @version 1.0
+ */
+public class FollowedStates
+{
+    private static final String PREFERENCES_NAME = "followed_states"; // Name of the shared preferences file
+    private static final String ABBREVIATIONS_KEY = "abbreviations"; // Key the set of abbreviations is stored under
+
+    private final SharedPreferences mPreferences; // Where the set is stored
+
+    /**
+     * Constructor
+     * @param context Context used to open the shared preferences
+     */
+    public FollowedStates(Context context)
+    {
+        mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return Returns the 2 letter abbreviations of the followed states, in alphabetical order
+     */
+    public Set<String> getAll()
+    {
+        Set<String> abbreviations = mPreferences.getStringSet(ABBREVIATIONS_KEY, Collections.<String>emptySet());
+        return Collections.unmodifiableSet(new TreeSet<>(abbreviations));
+    }
+
+    /**
+     * @param abbreviation 2 letter abbreviation of a state
+     * @return Returns true if the user follows the state
+     */
+    public boolean isFollowed(String abbreviation)
+    {
+        return this.getAll().contains(abbreviation);
+    }
+
+    /**
+     * Follows or stops following a state
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param followed Whether the state should be followed
+     * @return Returns the number of states followed after the change
+     */
+    public int setFollowed(String abbreviation, boolean followed)
+    {
+        // The set returned by getStringSet() must not be changed, so change a copy
+        Set<String> abbreviations = new TreeSet<>(this.getAll());
+
+        if (followed)
+        {
+            abbreviations.add(abbreviation);
+        }
+
+        else
+        {
+            abbreviations.remove(abbreviation);
+        }
+
+        mPreferences.edit().putStringSet(ABBREVIATIONS_KEY, abbreviations).apply();
+        return abbreviations.size();
+    }
+}
@@ -0,0 +1,86 @@
+package com.jefftrotz.covid19tracker;
+
+import android.view.Choreographer;
+
+/**
+ * Measures the time between frames for a short while after something changes on screen (data
+ * being shown, the screen scrolling), using Choreographer frame callbacks. Each interval is
+ * recorded in the PerfMonitor as the FRAME stage, and frames that missed at least one vsync are
+ * counted as JANK_FRAMES, so the cost of work done on the main thread shows up as frame times.
+ * Frames are only watched for FRAMES_PER_WATCH frames at a time, so an idle screen doesn't keep
+ * waking up for every vsync.
+ * @author Jeffrey Trotz
+ * @date 5/4/2020
+ * @version 1.0
+ */
+public class FrameMonitor implements Choreographer.FrameCallback
+{
+    private static final int FRAMES_PER_WATCH = 60; // Number of frames watched after each call to watch() (about a second at 60 Hz)
+    private static final long JANK_NANOS = 25000000L; // Frames longer than 1.5 vsyncs at 60 Hz missed at least one vsync
+
+    private final PerfMonitor mPerfMonitor = PerfMonitor.getInstance(); // Records the frame times
+    private String mAbbreviation; // State the frames are recorded for
+    private int mFramesLeft; // Number of frames left to watch
+    private long mLastFrameNanos; // Time of the previous frame (0 before the first frame of a watch)
+    private boolean mPosted; // Whether a frame callback is waiting to run
+
+    /**
+     * Starts (or extends) watching frames. Must be called on the main thread.
+     * @param abbreviation 2 letter abbreviation of the state the frames are recorded for
+     */
+    public void watch(String abbreviation)
+    {
+        mAbbreviation = abbreviation;
+        mFramesLeft = FRAMES_PER_WATCH;
+
+        if (!mPosted)
+        {
+            mLastFrameNanos = 0;
+            mPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    /**
+     * Stops watching frames (e.g. when the activity is paused). Must be called on the main thread.
+     */
+    public void stop()
+    {
+        mFramesLeft = 0;
+
+        if (mPosted)
+        {
+            mPosted = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+    }
+
+    /**
+     * Called by the Choreographer at the start of each frame
+     * @param frameTimeNanos Time the frame started in nanoseconds (System.nanoTime() time base)
+     */
+    @Override
+    public void doFrame(long frameTimeNanos)
+    {
+        mPosted = false;
+
+        if (mLastFrameNanos > 0)
+        {
+            long intervalNanos = frameTimeNanos - mLastFrameNanos;
+            mPerfMonitor.record(mAbbreviation, PerfMonitor.Stage.FRAME, intervalNanos);
+
+            if (intervalNanos > JANK_NANOS)
+            {
+                mPerfMonitor.count(mAbbreviation, PerfMonitor.Counter.JANK_FRAMES, 1);
+            }
+        }
+
+        mLastFrameNanos = frameTimeNanos;
+
+        if (--mFramesLeft > 0)
+        {
+            mPosted = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.jefftrotz.covid19tracker;
+
+/**
+ * Builds the data points for one graph from a window of a StateTimeSeries. The window's values
+ * are read in a single pass into reusable arrays, then downsampled (see Downsampler) so a long
+ * history isn't plotted with more points than the graph has pixels. The points kept are read back
+ * with getX() and getY() (usually by a GraphSeriesManager), so building points doesn't create any
+ * objects once the arrays are big enough.
+ * @author Jeffrey Trotz
+ * @date 4/20/2020
+ * @version 1.2
+ */
+public class GraphPointBuilder
+{
+    private final SeriesColumn mXColumn; // Column plotted on the X axis
+    private final SeriesColumn mYColumn; // Column plotted on the Y axis
+    private int mMaxPoints = Integer.MAX_VALUE; // Most points handed to the graph
+    private double[] mX = new double[0]; // X values of every row in the window
+    private double[] mY = new double[0]; // Y values of every row in the window
+    private int[] mSelected = new int[0]; // Rows (relative to the window) kept after downsampling
+    private int mWindowSize; // Number of rows in the window at the last build
+    private int mPointCount; // Number of points kept by the last build
+
+    /**
+     * Constructor
+     * @param xColumn Column plotted on the X axis
+     * @param yColumn Column plotted on the Y axis
+     */
+    public GraphPointBuilder(SeriesColumn xColumn, SeriesColumn yColumn)
+    {
+        mXColumn = xColumn;
+        mYColumn = yColumn;
+    }
+
+    /**
+     * Limits the number of points handed to the graph, usually to the graph's width in pixels
+     * since plotting more points than that doesn't show anything more
+     * @param maxPoints Most points handed to the graph (Integer.MAX_VALUE to plot every row)
+     */
+    public void setMaxPoints(int maxPoints)
+    {
+        mMaxPoints = maxPoints;
+    }
+
+    /**
+     * @return Returns the number of rows in the window at the last build (before downsampling)
+     */
+    public int getWindowSize()
+    {
+        return mWindowSize;
+    }
+
+    /**
+     * @return Returns the number of points kept by the last build
+     */
+    public int getPointCount()
+    {
+        return mPointCount;
+    }
+
+    /**
+     * @param point Index of a point kept by the last build (0 is the oldest)
+     * @return Returns the point's X value
+     */
+    public double getX(int point)
+    {
+        return mX[mSelected[point]];
+    }
+
+    /**
+     * @param point Index of a point kept by the last build (0 is the oldest)
+     * @return Returns the point's Y value
+     */
+    public double getY(int point)
+    {
+        return mY[mSelected[point]];
+    }
+
+    /**
+     * Builds the data points for the rows of a series inside a window
+     * @param series Series to plot
+     * @param window Range of rows to plot
+     * @return Returns the number of points kept, read back with getX() and getY()
+     */
+    public int build(StateTimeSeries series, SeriesWindow window)
+    {
+        int startRow = window.getStartRow(series);
+        int count = series.size() - startRow;
+        this.prepare(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            mX[i] = mXColumn.get(series, startRow + i);
+            mY[i] = mYColumn.get(series, startRow + i);
+        }
+
+        return this.select(count);
+    }
+
+    /**
+     * Builds the data points for a rolling mean of a metric, for the rows inside a window. Only
+     * the X column given to the constructor is used; the Y values come from the metrics.
+     * @param metrics Metrics derived from the series to plot
+     * @param metric Metric to plot the rolling mean of
+     * @param rollingWindow Number of rows in the rolling mean
+     * @param window Range of rows to plot
+     * @return Returns the number of points kept, read back with getX() and getY()
+     */
+    public int build(MetricsEngine metrics, MetricsEngine.Metric metric, int rollingWindow, SeriesWindow window)
+    {
+        StateTimeSeries series = metrics.getSeries();
+        int startRow = window.getStartRow(series);
+        int count = series.size() - startRow;
+        this.prepare(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            mX[i] = mXColumn.get(series, startRow + i);
+            mY[i] = metrics.getRollingMean(metric, rollingWindow, startRow + i);
+        }
+
+        return this.select(count);
+    }
+
+    /**
+     * Makes sure the buffers can hold a window
+     * @param count Number of rows in the window
+     */
+    private void prepare(int count)
+    {
+        mWindowSize = count;
+
+        if (mX.length < count)
+        {
+            mX = new double[count];
+            mY = new double[count];
+            mSelected = new int[count];
+        }
+    }
+
+    /**
+     * Downsamples the values read into the buffers, keeping the rows selected for the points
+     * @param count Number of rows read into the buffers
+     * @return Returns the number of points kept
+     */
+    private int select(int count)
+    {
+        mPointCount = Downsampler.downsample(mX, mY, count, mMaxPoints, mSelected);
+        return mPointCount;
+    }
+}
@@ -0,0 +1,266 @@
+package com.jefftrotz.covid19tracker;
+
+import android.util.Log;
+import com.jjoe64.graphview.GraphView;
+import com.jjoe64.graphview.series.DataPointInterface;
+import com.jjoe64.graphview.series.LineGraphSeries;
+
+/**
+ * Keeps one series on a graph for the life of the graph and updates it in place, instead of
+ * removing every series and creating a new one (with new data points) each time data is shown.
+ * <p>
+ * The points handed to the series are mutable and pooled, so a point object is only created when
+ * a graph shows more points than it ever has before. Each update compares the new points with the
+ * ones showing and does the least work that brings the graph up to date:
+ * <ul>
+ * <li>Nothing changed (e.g. a refresh that returned the same data): the graph isn't touched.</li>
+ * <li>Points were added to the end, or only the newest point's value changed (e.g. a refresh
+ * with one new day, or a revision of today's numbers): the newest point is updated in place and
+ * the new points are appended, so the graph keeps its labels and doesn't lay everything out again.</li>
+ * <li>Anything else (another state, another range, a window that slid forward): the pooled points
+ * are overwritten and the series' data is reset.</li>
+ * </ul>
+ * Objects created by each update are counted (see getLastAllocationCount()) so refreshes can be
+ * checked for garbage.
+ * @author Jeffrey Trotz
+ * @date 5/3/2020
+ * @version 1.0
+ */
+public class GraphSeriesManager
+{
+    /**
+     * How an update changed the graph
+     */
+    public enum Change
+    {
+        NONE, // The points were the same as the ones showing
+        APPENDED, // The newest point was updated and/or points were added to the end
+        RESET // The series' data was replaced
+    }
+
+    private static final String TAG = "GraphSeriesManager"; // Tag used when logging
+    private static final String ILLEGAL_ARG_EXCEPTION_TEXT = "Illegal Argument Exception: "; // Text fed into the Log.e() method when logging an illegal argument exception
+    private static final Point[] NO_POINTS = new Point[0]; // Data of an empty series
+
+    private final GraphView mGraph; // Graph the series is shown on
+    private final LineGraphSeries<Point> mSeries = new LineGraphSeries<>(); // Series shown on the graph
+    private Point[] mPool = NO_POINTS; // Reusable points. The first mShownCount are in the series.
+    private Point[] mResetData = NO_POINTS; // Array handed to resetData(), reused while the number of points stays the same
+    private int mShownCount; // Number of points in the series
+    private int mLastAllocationCount; // Objects created by the last update
+    private long mAllocationCount; // Objects created by every update
+
+    /**
+     * Constructor. Adds the series to the graph.
+     * @param graph Graph to show the series on
+     */
+    public GraphSeriesManager(GraphView graph)
+    {
+        mGraph = graph;
+        mGraph.addSeries(mSeries);
+    }
+
+    /**
+     * Brings the graph up to date with the points last built by a GraphPointBuilder, and fits the
+     * graph's bounds to them
+     * @param points Builder holding the points to show, oldest first
+     * @return Returns how the graph was changed
+     */
+    public Change update(GraphPointBuilder points)
+    {
+        int count = points.getPointCount();
+        int shown = mShownCount;
+        mLastAllocationCount = 0;
+
+        // Find how many of the points showing are unchanged
+        int same = 0;
+
+        while (same < Math.min(count, shown) && mPool[same].equals(points.getX(same), points.getY(same)))
+        {
+            same++;
+        }
+
+        if (count == shown && same == shown)
+        {
+            return Change.NONE;
+        }
+
+        this.ensureCapacity(count);
+        Change change;
+
+        try
+        {
+            // Only the newest point changed and/or points were added after it
+            if (shown > 0 && count >= shown && same >= shown - 1 && mPool[shown - 1].mX == points.getX(shown - 1))
+            {
+                mPool[shown - 1].mY = points.getY(shown - 1);
+
+                for (int i = shown; i < count; i++)
+                {
+                    mPool[i].set(points.getX(i), points.getY(i));
+                    mSeries.appendData(mPool[i], false, Integer.MAX_VALUE);
+                }
+
+                // Appending redraws the graph, but changing a point in place doesn't
+                if (count == shown)
+                {
+                    mGraph.onDataChanged(true, false);
+                }
+
+                change = Change.APPENDED;
+            }
+
+            else
+            {
+                if (mResetData.length != count)
+                {
+                    mResetData = count == 0 ? NO_POINTS : new Point[count];
+                    mLastAllocationCount++;
+                }
+
+                for (int i = 0; i < count; i++)
+                {
+                    mPool[i].set(points.getX(i), points.getY(i));
+                    mResetData[i] = mPool[i];
+                }
+
+                mSeries.resetData(mResetData);
+                change = Change.RESET;
+            }
+
+            mShownCount = count;
+            this.fitBounds();
+        }
+
+        // Catch and log any illegal argument exceptions thrown above (points out of order)
+        catch (IllegalArgumentException illegalArgException)
+        {
+            Log.e(TAG, ILLEGAL_ARG_EXCEPTION_TEXT + illegalArgException.getMessage());
+            illegalArgException.printStackTrace();
+
+            // Start over with an empty series, since it's not known what the series holds
+            mSeries.resetData(NO_POINTS);
+            mShownCount = 0;
+            change = Change.RESET;
+        }
+
+        mAllocationCount += mLastAllocationCount;
+        return change;
+    }
+
+    /**
+     * @return Returns the number of points showing
+     */
+    public int getShownCount()
+    {
+        return mShownCount;
+    }
+
+    /**
+     * @return Returns the number of objects (points and arrays) created by the last update. Once
+     * a graph has shown as many points as it's going to, refreshes create none.
+     */
+    public int getLastAllocationCount()
+    {
+        return mLastAllocationCount;
+    }
+
+    /**
+     * @return Returns the number of objects created by every update
+     */
+    public long getAllocationCount()
+    {
+        return mAllocationCount;
+    }
+
+    /**
+     * Makes sure the pool holds at least a number of points
+     * @param count Number of points needed
+     */
+    private void ensureCapacity(int count)
+    {
+        if (mPool.length >= count)
+        {
+            return;
+        }
+
+        // Grow by at least half so a history growing a day at a time doesn't copy the pool each time
+        Point[] pool = new Point[Math.max(count, mPool.length + (mPool.length >> 1))];
+        System.arraycopy(mPool, 0, pool, 0, mPool.length);
+
+        for (int i = mPool.length; i < pool.length; i++)
+        {
+            pool[i] = new Point();
+        }
+
+        mLastAllocationCount += 1 + (pool.length - mPool.length);
+        mPool = pool;
+    }
+
+    /**
+     * Sets the graph's bounds to the first and last X values and the lowest and highest Y values
+     * of the points showing
+     */
+    private void fitBounds()
+    {
+        if (mShownCount == 0)
+        {
+            return;
+        }
+
+        double minY = mPool[0].mY;
+        double maxY = mPool[0].mY;
+
+        for (int i = 1; i < mShownCount; i++)
+        {
+            minY = Math.min(minY, mPool[i].mY);
+            maxY = Math.max(maxY, mPool[i].mY);
+        }
+
+        mGraph.getViewport().setMinX(mPool[0].mX);
+        mGraph.getViewport().setMaxX(mPool[mShownCount - 1].mX);
+        mGraph.getViewport().setMinY(minY);
+        mGraph.getViewport().setMaxY(maxY);
+    }
+
+    /**
+     * Data point whose values can be changed, so the points in the series can be reused
+     */
+    static final class Point implements DataPointInterface
+    {
+        double mX; // X value
+        double mY; // Y value
+
+        /**
+         * @param x New X value
+         * @param y New Y value
+         */
+        void set(double x, double y)
+        {
+            mX = x;
+            mY = y;
+        }
+
+        /**
+         * @param x An X value
+         * @param y A Y value
+         * @return Returns true if the point has these values
+         */
+        boolean equals(double x, double y)
+        {
+            return mX == x && mY == y;
+        }
+
+        @Override
+        public double getX()
+        {
+            return mX;
+        }
+
+        @Override
+        public double getY()
+        {
+            return mY;
+        }
+    }
+}
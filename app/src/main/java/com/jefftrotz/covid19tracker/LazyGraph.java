@@ -0,0 +1,145 @@
+package com.jefftrotz.covid19tracker;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+import com.jjoe64.graphview.GraphView;
+
+/**
+ * Fills one graph with data only when it's on screen. When data is shown, each graph is told what
+ * it should be showing (setData()), but only graphs that are at least partly visible build their
+ * points and update their series straight away. The rest are marked stale and filled the next time
+ * they're checked while visible (e.g. when the screen scrolls), so a refresh only costs the work of
+ * the graphs the user can see. What a graph shows is remembered by state, snapshot version and
+ * range, so a graph that scrolls back into view isn't rebuilt unless its data has changed since.
+ * <p>
+ * Subclasses say how the graph's points are built from a state's data and metrics.
+ * @author Jeffrey Trotz
+ * @date 5/4/2020
+ * @version 1.0
+ */
+public abstract class LazyGraph
+{
+    private final GraphView mGraph; // Graph filled by this object
+    private final GraphPointBuilder mPoints; // Builds the graph's points
+    private final GraphSeriesManager mSeries; // Keeps the graph's series up to date
+    private final Rect mVisibleRect = new Rect(); // Reused when checking whether the graph is on screen
+    private MetricsEngine mMetrics; // Data and metrics the graph should show (null until data is set)
+    private String mAbbreviation; // State or group the graph should show
+    private long mVersion; // Version of the snapshot the graph should show
+    private SeriesWindow mWindow; // Range of data the graph should show
+    private String mShownAbbreviation; // State or group the graph is showing (null if it hasn't been filled)
+    private long mShownVersion; // Version of the snapshot the graph is showing
+    private SeriesWindow mShownWindow; // Range of data the graph is showing
+    private long mLastBuildNanos; // Time the last fill spent building points
+
+    /**
+     * Constructor. Adds the graph's series to it.
+     * @param graph Graph to fill
+     * @param points Builds the graph's points
+     */
+    public LazyGraph(GraphView graph, GraphPointBuilder points)
+    {
+        mGraph = graph;
+        mPoints = points;
+        mSeries = new GraphSeriesManager(graph);
+    }
+
+    /**
+     * Builds the graph's points from a state's data
+     * @param points Builder to build the points with
+     * @param metrics Data and metrics of the state
+     * @param window Range of data to graph
+     */
+    protected abstract void buildPoints(GraphPointBuilder points, MetricsEngine metrics, SeriesWindow window);
+
+    /**
+     * Sets the data the graph should show. Nothing is built until fill() or fillIfVisible() is called.
+     * @param snapshot Snapshot of the data being shown
+     * @param metrics Data and metrics derived from the snapshot
+     * @param window Range of data to graph
+     */
+    public void setData(SeriesSnapshot snapshot, MetricsEngine metrics, SeriesWindow window)
+    {
+        mMetrics = metrics;
+        mAbbreviation = snapshot.getAbbreviation();
+        mVersion = snapshot.getVersion();
+        mWindow = window;
+    }
+
+    /**
+     * @return Returns true if the graph isn't showing the data last set
+     */
+    public boolean isStale()
+    {
+        return mMetrics != null && (mShownAbbreviation == null || !mShownAbbreviation.equals(mAbbreviation)
+            || mShownVersion != mVersion || mShownWindow != mWindow);
+    }
+
+    /**
+     * @return Returns true if any part of the graph is on screen
+     */
+    public boolean isVisible()
+    {
+        return mGraph.getWidth() > 0 && mGraph.getLocalVisibleRect(mVisibleRect);
+    }
+
+    /**
+     * Fills the graph if it's stale and on screen
+     * @param maxPoints Most points to show (usually the graph's width in pixels)
+     * @return Returns true if the graph was filled
+     */
+    public boolean fillIfVisible(int maxPoints)
+    {
+        if (!this.isStale() || !this.isVisible())
+        {
+            return false;
+        }
+
+        this.fill(maxPoints);
+        return true;
+    }
+
+    /**
+     * Builds the graph's points from the data last set and updates its series, whether it's on
+     * screen or not
+     * @param maxPoints Most points to show (usually the graph's width in pixels)
+     * @return Returns how the graph's series was changed
+     */
+    public GraphSeriesManager.Change fill(int maxPoints)
+    {
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        mPoints.setMaxPoints(maxPoints);
+        this.buildPoints(mPoints, mMetrics, mWindow);
+        mLastBuildNanos = SystemClock.elapsedRealtimeNanos() - startTime;
+        GraphSeriesManager.Change change = mSeries.update(mPoints);
+        mShownAbbreviation = mAbbreviation;
+        mShownVersion = mVersion;
+        mShownWindow = mWindow;
+        return change;
+    }
+
+    /**
+     * @return Returns the graph filled by this object
+     */
+    public GraphView getGraph()
+    {
+        return mGraph;
+    }
+
+    /**
+     * @return Returns the time the last fill spent building points in nanoseconds (the rest was
+     * spent updating the series)
+     */
+    public long getLastBuildNanos()
+    {
+        return mLastBuildNanos;
+    }
+
+    /**
+     * @return Returns the number of objects created by the last fill
+     */
+    public int getLastAllocationCount()
+    {
+        return mSeries.getLastAllocationCount();
+    }
+}
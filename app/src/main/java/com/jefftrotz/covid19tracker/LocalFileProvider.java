@@ -0,0 +1,71 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Provider that reads each region's data from a file in a directory (named after the region ID,
+ * plus FILE_EXTENSION), so the pipeline can be run and tested without a network connection. The
+ * file's modification time and size stand in for the Last-Modified validator, so an unchanged
+ * file is reported as not modified the same way a server would.
+ * @author Jeffrey Trotz
+ * @date 4/28/2020
+ * @version 1.0
+ */
+public class LocalFileProvider implements DataProvider
+{
+    public static final String FILE_EXTENSION = ".csv"; // Extension added to the region ID to get the file name
+
+    private final String mId; // Name of the provider
+    private final File mDirectory; // Directory holding the files
+    private final SeriesParser mParser; // Parses each file
+
+    /**
+     * Constructor
+     * @param id Name of the provider (used to keep its cached data apart)
+     * @param directory Directory holding a file for each region
+     * @param parser Parses each file
+     */
+    public LocalFileProvider(String id, File directory, SeriesParser parser)
+    {
+        mId = id;
+        mDirectory = directory;
+        mParser = parser;
+    }
+
+    @Override
+    public String getId()
+    {
+        return mId;
+    }
+
+    @Override
+    public FetchResult fetch(String regionId, String eTag, String lastModified, long afterEpochSeconds)
+        throws IOException
+    {
+        File file = new File(mDirectory, regionId + FILE_EXTENSION);
+
+        if (!file.isFile())
+        {
+            throw new FileNotFoundException("No data file for " + regionId + ": " + file);
+        }
+
+        // Nothing to read if the file hasn't changed since it was last read
+        String version = file.lastModified() + ":" + file.length();
+
+        if (version.equals(lastModified))
+        {
+            return new FetchResult(HTTP_NOT_MODIFIED, new StateTimeSeries(0), eTag, lastModified, 0);
+        }
+
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file)))
+        {
+            // Nothing is read from the network, so no bytes are reported as transferred
+            return new FetchResult(HTTP_OK, mParser.parse(inputStream, regionId, afterEpochSeconds), null, version, 0);
+        }
+    }
+}
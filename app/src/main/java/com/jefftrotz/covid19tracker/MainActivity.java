@@ -8,15 +8,21 @@ import android.content.pm.PackageManager;
 import android.location.Address;
 import android.location.Geocoder;
 import android.location.Location;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
+import android.widget.EditText;
+import android.widget.ScrollView;
 import android.widget.Spinner;
 import android.widget.TextView;
+import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
@@ -25,21 +31,19 @@ import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.jjoe64.graphview.GraphView;
-import com.jjoe64.graphview.series.DataPoint;
-import com.jjoe64.graphview.series.LineGraphSeries;
 import com.jjoe64.graphview.helper.DateAsXAxisLabelFormatter;
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import javax.net.ssl.HttpsURLConnection;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Main activity for COVID-19 Tracker
@@ -47,31 +51,97 @@ import javax.net.ssl.HttpsURLConnection;
  * @date 3/30/2020
  * @version 0.0.1
  */
-public class MainActivity extends AppCompatActivity
+public class MainActivity extends AppCompatActivity implements FetchScheduler.Callback
 {
     private Spinner mStateSpinner; // Drop down list where the user can manually pick a US state
+    private Spinner mRangeSpinner; // Drop down list where the user picks how much history is graphed
     private TextView mNumTestedTV; // Text view to display the number of people tested in that state
     private TextView mNumPositiveTestsTV; // Text view to display the number of positive tests in that state
     private TextView mNumDeathsTV; // Text view to display the number of deaths in that state
     private TextView mLastUpdatedTV; // Text view to display the last time the data was updated
+    private TextView mNewPositiveTV; // Text view to display the number of positive tests since the previous update
+    private TextView mAverageNewPositiveTV; // Text view to display the rolling average of new positive tests
+    private TextView mPositivityRateTV; // Text view to display the percentage of tests that were positive
+    private TextView mGrowthRateTV; // Text view to display the growth rate of positive tests since the previous update
+    private TextView mPerfOverlayTV; // Text view laid over the screen to display timings of each stage and the fetch scheduler's counts (debug builds only)
     private GraphView mTestsGraph; // Graph to display the number of tests vs number of positive tests
     private GraphView mTimeGraph; // Graph to display the number of positive tests over time
     private GraphView mDeathsGraph; // Graph to display the number of deaths over time
-    private ProgressDialog progressDialog; // Progress dialog shown when updating data
-    private static final Character SPLIT_CHARACTER = ','; // Character used to "split" the CSV string returned by the API
-    private static final String SPLIT_REGEX = ","; // Used by a loop to count the number of commas in the CSV string
+    private GraphView mNewPositiveGraph; // Graph to display the rolling average of new positive tests over time
+    private ScrollView mScrollView; // Scrolls the stats and graphs
+    private LazyGraph[] mLazyGraphs; // Fills each graph when it's on screen (tests, time, deaths, new positive tests)
+    private ProgressDialog progressDialog; // Progress dialog shown when updating data (only touched on the main thread)
+    private String mPendingAbbreviation; // State the progress dialog is waiting for (null if it isn't showing)
+    private String mSelectedId; // 2 letter abbreviation of the selected state, or ID of the selected group (only its data is shown)
+    private ProgressDialog mPrefetchDialog; // Progress dialog shown while downloading every state's data
+    private FetchScheduler mFetchScheduler; // Fetches data for the selected state in the background
+    private SeriesStore mSeriesStore; // Data already loaded for each state, kept in memory
+    private BulkPrefetcher mBulkPrefetcher; // Downloads every state's data in parallel
+    private FollowedStates mFollowedStates; // States kept up to date in the background
+    private RegionGroups mRegionGroups; // Groups of states the user can see totals for
+    private AggregationEngine mAggregationEngine; // Adds the data of a group's states together
+    private StartupTrace mStartupTrace; // Measures the time until data is first on screen
+    private final PerfMonitor mPerfMonitor = PerfMonitor.getInstance(); // Records the time each stage of showing data takes
+    private StateBoundaryIndex mBoundaryIndex; // Finds the state a location is in without Geocoder (loaded the first time it's needed)
+    private SeriesSnapshot mShownSnapshot; // Snapshot currently shown (null until data is loaded)
+    private MetricsEngine mShownMetrics; // Data and metrics currently shown for the selected state (null until data is loaded)
+    private final Map<String, MetricsEngine> mMetrics = new HashMap<>(); // Metrics derived from each state's data, kept so refreshes only process new rows
+    private SeriesWindow mGraphWindow = GRAPH_WINDOWS[0]; // Range of data currently graphed
+    private final FrameMonitor mFrameMonitor = new FrameMonitor(); // Records frame times after data is shown and while scrolling
     private static final String DATE_TIME_FORMAT = "MM/dd/yyyy hh:mm:ss aa"; // Date/time format used by SimpleDateFormat
     private static final String PROGRESS_DIALOG_TITLE = "Please Wait"; // Title for the progress dialog
     private static final String PROGRESS_DIALOG_TEXT = "Getting Data..."; // Message body for the progress dialog
-    private static final String MALFORMED_URL_EXCEPTION_TEXT = "Malformed URL Exception: "; // Text fed into the Log.e() method when logging a Malformed URL exception
-    private static final String RESPONSE_CODE_ERROR_TEXT = "Error: response code "; // Text fed into the Log.e() method when logging a response code error
-    private static final String ILLEGAL_ARG_EXCEPTION_TEXT = "Illegal Argument Exception: "; // Text fed into the Log.e() method when logging an illegal argument exception
-    private static final String API_URL = "https://coronavirusapi.com/getTimeSeries/"; // URL for the API used to get per-state COVID-19 data
     private static final String TAG = "COVID-19 Tracker";   // Tag used when logging errors
     private static final String IO_EXCEPTION_TEXT = "IO Exception: ";   // Text fed into the Log.e() method when an IO exception is logged
+    private static final String STALE_DATA_TEXT = "%s (saved, couldn't refresh)"; // Marks the last updated time while the data showing couldn't be refreshed
+    private static final String STALE_DATA_TOAST_TEXT = "Showing saved data for %s: %s"; // Message shown when a state's saved data couldn't be refreshed
+    private static final String NO_DATA_TEXT = "Couldn't get data for %s: %s"; // Message shown when a state has no saved data and couldn't be downloaded
     private static final String TESTS_GRAPH_TITLE = "Total Tests vs. Positive Tests";  // Title for the tests graph
     private static final String TIME_GRAPH_TITLE = "Time vs. Positive Tests";    // Title for the time graph
     private static final String DEATHS_GRAPH_TITLE = "Time vs. Deaths";  // Title for the deaths graph
+    private static final String NEW_POSITIVE_GRAPH_TITLE = "Time vs. New Positive Tests (7-Day Average)"; // Title for the new positive tests graph
+    private static final int ROLLING_AVERAGE_DAYS = 7; // Number of days in the rolling averages
+    private static final String PERCENT_FORMAT = "%.1f%%"; // Format used for the positivity and growth rates
+    // Ranges of data that can be graphed, in the same order as the range spinner's choices (ranges_array in strings.xml)
+    private static final SeriesWindow[] GRAPH_WINDOWS =
+    {
+        SeriesWindow.lastDays(10), SeriesWindow.lastDays(30), SeriesWindow.lastDays(90), SeriesWindow.fullHistory()
+    };
+    private static final boolean DOWNSAMPLE_GRAPHS = true; // Whether long histories are reduced to about one point per pixel before graphing (turn off to compare render times)
+    private static final String GRAPH_TIME_TEXT = "Filled %d of %d graphs in %.2f ms (%d objects created)"; // Text fed into the Log.d() method when logging how long filling the visible graphs took
+    private static final int PREFETCH_CONCURRENCY = 4; // Number of states downloaded at the same time when downloading every state
+    private static final int COMPARE_STATES_REQUEST_CODE = 2; // Identifies the result of the comparison screen (1 is used by the location permission request)
+    private static final String PREFETCH_DIALOG_TITLE = "Downloading All States"; // Title for the prefetch progress dialog
+    private static final String PREFETCH_PROGRESS_TEXT = "%d of %d states (%.1f states/s, %.1f KB/s)"; // Message body for the prefetch progress dialog
+    private static final String PREFETCH_COMPLETE_TEXT = "Downloaded %d states in %.1f s (%.1f states/s, %.1f KB/s), %d failed"; // Message shown when every state has been downloaded
+    private static final String SCHEDULER_STATS_TEXT = "queued=%d active=%d submitted=%d coalesced=%d cancelled=%d rejected=%d"; // Format of the fetch scheduler's line in the performance overlay
+    private static final String STALE_SNAPSHOT_TEXT = "Dropped stale snapshot for %s: version %d, showing %d"; // Text fed into the Log.d() method when an out of date snapshot isn't drawn
+    private static final String FOLLOWED_TEXT = "%s will be kept up to date in the background"; // Message shown when a state is followed
+    private static final String UNFOLLOWED_TEXT = "%s will no longer be kept up to date"; // Message shown when a state is no longer followed
+    private static final String NO_SYNC_REPORT_TEXT = "No background updates have run yet"; // Message shown when the sync hasn't run
+    private static final String SYNC_REPORT_TEXT = "Last background update %s: %s"; // Message showing the last sync report
+    private static final String PREFERENCES_NAME = "main_activity"; // Name of the shared preferences file used by the activity
+    private static final String LAST_STATE_KEY = "last_state"; // Key the last selected state's abbreviation is stored under
+    private static final String GEOCODER_THREAD_NAME = "Geocoder"; // Name of the thread the location is converted to a state on
+    private static final String PERF_DUMP_FAILED_TEXT = "Couldn't write performance metrics: "; // Text fed into the Log.e() method when the metrics dump can't be written
+    private static final String OFFLINE_LOOKUP_TEXT = "Found %s offline in %d us"; // Text fed into the Log.d() method when the state was found without Geocoder
+    private static final String GEOCODER_LOOKUP_TEXT = "Found %s with Geocoder in %d ms"; // Text fed into the Log.d() method when Geocoder was needed to find the state
+    private static final String PREFETCH_FAILED_TEXT = "Prefetch failed for "; // Text fed into the Log.e() method when a state couldn't be downloaded
+    private static final String GROUP_PICKER_TITLE = "Show Totals For"; // Title for the list of groups
+    private static final String NEW_GROUP_ITEM = "New Group..."; // Last item in the list of groups, used to define a new group
+    private static final String NEW_GROUP_TITLE = "Pick States for the New Group"; // Title for the dialog used to define a new group
+    private static final String GROUP_NAME_HINT = "Group name"; // Hint for the new group's name
+    private static final String SAVE_GROUP_TEXT = "Save"; // Text for the button that saves a new group
+    private static final String INVALID_GROUP_TEXT = "Give the group a name and pick at least one state"; // Message shown when a new group can't be saved
+    private static final String DELETE_GROUP_ITEM = "Delete Group..."; // Button in the list of groups, used to delete a user-defined group
+    private static final String DELETE_GROUP_TITLE = "Delete Which Group?"; // Title for the list of user-defined groups that can be deleted
+    private static final String CONFIRM_DELETE_GROUP_TEXT = "Delete %s?"; // Message asking the user to confirm deleting a group
+    private static final String DELETE_GROUP_TEXT = "Delete"; // Text for the button that deletes a group
+    private static final String GROUP_DELETED_TEXT = "Deleted %s"; // Message shown when a group has been deleted
+    private static final String GROUP_TOTALS_TEXT = "Showing totals for %s (%d of %d states)"; // Message shown when a group's totals are shown
+    private static final String NO_GROUP_DATA_TEXT = "None of the states in %s could be loaded"; // Message shown when a group has no data to add together
+    private static final String AGGREGATION_TEXT = "Added up %s in %.2f ms (%d full, %d incremental)"; // Text fed into the Log.d() method when logging how long adding up a group took
+    private static final String AGGREGATION_THREAD_NAME = "Aggregation"; // Name of the thread a group's totals are computed on
 
     /**
      * Called when the activity is launched
@@ -80,12 +150,16 @@ public class MainActivity extends AppCompatActivity
     @Override
     protected void onCreate(Bundle savedInstanceState)
     {
+        // Start measuring the time until data is on screen
+        mStartupTrace = new StartupTrace();
+
         // Call super class and set the layout view for the activity
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
         // Initialize view elements
         mStateSpinner = findViewById(R.id.stateSpinner);
+        mRangeSpinner = findViewById(R.id.rangeSpinner);
         mNumTestedTV = findViewById(R.id.numTestedTextView);
         mNumPositiveTestsTV = findViewById(R.id.numPositiveTestsTextView);
         mNumDeathsTV = findViewById(R.id.numDeathsTextView);
@@ -93,14 +167,112 @@ public class MainActivity extends AppCompatActivity
         mTestsGraph = findViewById(R.id.testsGraph);
         mTimeGraph = findViewById(R.id.timeGraph);
         mDeathsGraph = findViewById(R.id.deathsGraph);
+        mNewPositiveGraph = findViewById(R.id.newPositiveGraph);
+        mScrollView = findViewById(R.id.mainScrollView);
+        mNewPositiveTV = findViewById(R.id.newPositiveTextView);
+        mAverageNewPositiveTV = findViewById(R.id.averageNewPositiveTextView);
+        mPositivityRateTV = findViewById(R.id.positivityRateTextView);
+        mGrowthRateTV = findViewById(R.id.growthRateTextView);
+        mPerfOverlayTV = findViewById(R.id.perfOverlayTextView);
+        SeriesRepository repository = new SeriesRepository(SeriesCache.getInstance(this), DataProviders.getDefault());
+        SeriesDatabase database = SeriesDatabase.getInstance(this);
+        mSeriesStore = new SeriesStore();
+        mFetchScheduler = new FetchScheduler(repository, mSeriesStore, database, this);
+        mBulkPrefetcher = new BulkPrefetcher(repository, mSeriesStore, database, PREFETCH_CONCURRENCY);
+        mFollowedStates = new FollowedStates(this);
+        mRegionGroups = new RegionGroups(this);
+        mAggregationEngine = new AggregationEngine(Runtime.getRuntime().availableProcessors());
+
+        // Make sure the background sync is scheduled if any states are followed (schedules are
+        // lost when the app's data is cleared or it's reinstalled)
+        SyncJobService.updateSchedule(this);
 
         // Make graphs visible
         mTestsGraph.setVisibility(View.VISIBLE);
         mTimeGraph.setVisibility(View.VISIBLE);
         mDeathsGraph.setVisibility(View.VISIBLE);
+        mNewPositiveGraph.setVisibility(View.VISIBLE);
         mTestsGraph.setTitle(TESTS_GRAPH_TITLE);
         mTimeGraph.setTitle(TIME_GRAPH_TITLE);
         mDeathsGraph.setTitle(DEATHS_GRAPH_TITLE);
+        mNewPositiveGraph.setTitle(NEW_POSITIVE_GRAPH_TITLE);
+
+        // Set date label formatters and the number of X/Y axis labels (only 4 due to space)
+        for (GraphView graph : new GraphView[] {mTestsGraph, mTimeGraph, mDeathsGraph, mNewPositiveGraph})
+        {
+            graph.getGridLabelRenderer().setNumVerticalLabels(4);
+            graph.getGridLabelRenderer().setNumHorizontalLabels(4);
+
+            if (graph != mTestsGraph)
+            {
+                graph.getGridLabelRenderer().setLabelFormatter(new DateAsXAxisLabelFormatter(MainActivity.this));
+            }
+        }
+
+        // Give each graph the one series it keeps for as long as the activity lives. Graphs are
+        // only filled while they're on screen.
+        mLazyGraphs = new LazyGraph[]
+        {
+            new LazyGraph(mTestsGraph, new GraphPointBuilder(SeriesColumn.TESTED, SeriesColumn.POSITIVE))
+            {
+                @Override
+                protected void buildPoints(GraphPointBuilder points, MetricsEngine metrics, SeriesWindow window)
+                {
+                    points.build(metrics.getSeries(), window);
+                }
+            },
+            new LazyGraph(mTimeGraph, new GraphPointBuilder(SeriesColumn.TIME, SeriesColumn.POSITIVE))
+            {
+                @Override
+                protected void buildPoints(GraphPointBuilder points, MetricsEngine metrics, SeriesWindow window)
+                {
+                    points.build(metrics.getSeries(), window);
+                }
+            },
+            new LazyGraph(mDeathsGraph, new GraphPointBuilder(SeriesColumn.TIME, SeriesColumn.DEATHS))
+            {
+                @Override
+                protected void buildPoints(GraphPointBuilder points, MetricsEngine metrics, SeriesWindow window)
+                {
+                    points.build(metrics.getSeries(), window);
+                }
+            },
+
+            // Y values come from the metrics
+            new LazyGraph(mNewPositiveGraph, new GraphPointBuilder(SeriesColumn.TIME, SeriesColumn.POSITIVE))
+            {
+                @Override
+                protected void buildPoints(GraphPointBuilder points, MetricsEngine metrics, SeriesWindow window)
+                {
+                    points.build(metrics, MetricsEngine.Metric.NEW_POSITIVE, ROLLING_AVERAGE_DAYS, window);
+                }
+            }
+        };
+
+        // Fill graphs as they scroll into view, and once the screen has been laid out (graphs
+        // aren't on screen until then)
+        mScrollView.getViewTreeObserver().addOnScrollChangedListener(new ViewTreeObserver.OnScrollChangedListener()
+        {
+            @Override
+            public void onScrollChanged()
+            {
+                if (mShownSnapshot != null)
+                {
+                    mFrameMonitor.watch(mShownSnapshot.getAbbreviation());
+                }
+
+                fillVisibleGraphs();
+            }
+        });
+
+        mScrollView.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener()
+        {
+            @Override
+            public void onGlobalLayout()
+            {
+                fillVisibleGraphs();
+            }
+        });
 
         // Create an ArrayAdapter using the string array in strings.xml and a default spinner layout
         ArrayAdapter<CharSequence> adapter = ArrayAdapter.createFromResource(this,
@@ -110,6 +282,11 @@ public class MainActivity extends AppCompatActivity
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         mStateSpinner.setAdapter(adapter);
 
+        // Show the last selected state's cached data right away, without waiting for the location
+        // or the network. Selecting it before the listener is added means the listener's first
+        // call (made after the first layout) refreshes it in the background.
+        this.showLastSelectedState(repository);
+
         // Add a listener to the spinner
         mStateSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener()
         {
@@ -118,10 +295,37 @@ public class MainActivity extends AppCompatActivity
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id)
             {
-                // Remove old data from the graphs and execute a background thread to get data
-                // for the selected state
-                new FetchDataTask().execute(new StateNameConverter()
-                    .getStateAbbreviation(mStateSpinner.getSelectedItem().toString()));
+                // Get data for the selected state in the background, cancelling any request
+                // still in progress for a previously selected state
+                requestData(StateLookup.getInstance().getAbbreviation(position));
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent)
+            {
+                // Not used
+            }
+        });
+
+        // Set up the range spinner the same way
+        ArrayAdapter<CharSequence> rangeAdapter = ArrayAdapter.createFromResource(this,
+                R.array.ranges_array, android.R.layout.simple_spinner_item);
+        rangeAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        mRangeSpinner.setAdapter(rangeAdapter);
+
+        mRangeSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener()
+        {
+            // Called when a range is selected. The data already loaded is graphed again, so
+            // nothing needs to be downloaded.
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id)
+            {
+                mGraphWindow = GRAPH_WINDOWS[position];
+
+                if (mShownMetrics != null)
+                {
+                    loadGraphs(mShownSnapshot, mShownMetrics);
+                }
             }
 
             @Override
@@ -135,6 +339,566 @@ public class MainActivity extends AppCompatActivity
         checkLocationPermission();
     }
 
+    /**
+     * Selects the state that was selected when the app was last used and shows its cached data
+     * (if there is any). The cache is a small memory-mapped file, so it's read on the main thread
+     * to get data on screen in the first frame.
+     * @param repository Source of cached data
+     */
+    private void showLastSelectedState(SeriesRepository repository)
+    {
+        String abbreviation = getSharedPreferences(PREFERENCES_NAME, MODE_PRIVATE).getString(LAST_STATE_KEY, null);
+        int index = StateLookup.getInstance().getIndexForAbbreviation(abbreviation);
+
+        if (index == StateLookup.NOT_FOUND)
+        {
+            return;
+        }
+
+        mStateSpinner.setSelection(index, false);
+        mSelectedId = abbreviation;
+        StateTimeSeries cachedData = repository.readCached(abbreviation);
+
+        if (cachedData != null)
+        {
+            this.showData(mSeriesStore.publish(abbreviation, cachedData, false));
+        }
+    }
+
+    /**
+     * Called when the activity is no longer visible
+     */
+    @Override
+    protected void onStop()
+    {
+        super.onStop();
+
+        // Dump the performance metrics in debug builds so they can be pulled off the device
+        // (adb shell run-as <package> cat files/perf_metrics.json)
+        if (BuildConfig.DEBUG)
+        {
+            final File dumpFile = new File(getFilesDir(), PerfMonitor.DUMP_FILE_NAME);
+
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        mPerfMonitor.writeJson(dumpFile);
+                    }
+
+                    // Catch and log any IO exceptions
+                    catch (IOException ioException)
+                    {
+                        Log.e(TAG, PERF_DUMP_FAILED_TEXT + ioException.getMessage());
+                    }
+                }
+            }).start();
+        }
+    }
+
+    /**
+     * Stops recording frame times while the activity isn't in the foreground
+     */
+    @Override
+    protected void onPause()
+    {
+        mFrameMonitor.stop();
+        super.onPause();
+    }
+
+    /**
+     * Called when the activity is destroyed
+     */
+    @Override
+    protected void onDestroy()
+    {
+        // Stop any requests still in progress
+        mFetchScheduler.shutdown();
+        mBulkPrefetcher.cancel();
+        mAggregationEngine.shutdown();
+        super.onDestroy();
+    }
+
+    /**
+     * Adds the app's items to the options menu
+     * @param menu Options menu
+     * @return Returns true so the menu is shown
+     */
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu)
+    {
+        getMenuInflater().inflate(R.menu.main_menu, menu);
+        return true;
+    }
+
+    /**
+     * Updates the options menu before it's shown
+     * @param menu Options menu
+     * @return Returns true so the menu is shown
+     */
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu)
+    {
+        // Tick the follow item if the selected state is followed
+        menu.findItem(R.id.followStateMenuItem).setChecked(mFollowedStates.isFollowed(this.getSelectedAbbreviation()));
+
+        // The performance overlay is only offered in debug builds
+        MenuItem perfOverlayItem = menu.findItem(R.id.perfOverlayMenuItem);
+        perfOverlayItem.setVisible(BuildConfig.DEBUG);
+        perfOverlayItem.setChecked(mPerfOverlayTV.getVisibility() == View.VISIBLE);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    /**
+     * Called when an item in the options menu is selected
+     * @param item Menu item that was selected
+     * @return Returns true if the selection was handled
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item)
+    {
+        if (item.getItemId() == R.id.prefetchAllMenuItem)
+        {
+            prefetchAllStates();
+            return true;
+        }
+
+        if (item.getItemId() == R.id.compareStatesMenuItem)
+        {
+            startActivityForResult(new Intent(this, ComparisonActivity.class), COMPARE_STATES_REQUEST_CODE);
+            return true;
+        }
+
+        if (item.getItemId() == R.id.groupTotalsMenuItem)
+        {
+            showGroupPicker();
+            return true;
+        }
+
+        if (item.getItemId() == R.id.followStateMenuItem)
+        {
+            toggleFollowSelectedState();
+            return true;
+        }
+
+        if (item.getItemId() == R.id.syncReportMenuItem)
+        {
+            showSyncReport();
+            return true;
+        }
+
+        if (item.getItemId() == R.id.perfOverlayMenuItem)
+        {
+            mPerfOverlayTV.setVisibility(mPerfOverlayTV.getVisibility() == View.VISIBLE ? View.GONE : View.VISIBLE);
+            updatePerfOverlay();
+            return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
+    /**
+     * @return Returns the 2 letter abbreviation of the state selected in the spinner
+     */
+    private String getSelectedAbbreviation()
+    {
+        return StateLookup.getInstance().getAbbreviation(mStateSpinner.getSelectedItemPosition());
+    }
+
+    /**
+     * Follows the selected state if it isn't followed yet, or stops following it if it is, then
+     * schedules or cancels the background sync to match
+     */
+    private void toggleFollowSelectedState()
+    {
+        String abbreviation = this.getSelectedAbbreviation();
+        boolean followed = !mFollowedStates.isFollowed(abbreviation);
+        mFollowedStates.setFollowed(abbreviation, followed);
+        SyncJobService.updateSchedule(this);
+
+        Toast.makeText(this, String.format(Locale.US, followed ? FOLLOWED_TEXT : UNFOLLOWED_TEXT,
+            StateLookup.getInstance().getName(mStateSpinner.getSelectedItemPosition())), Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * Shows a summary of the last background sync run
+     */
+    private void showSyncReport()
+    {
+        SyncReport report = SyncReport.readLast(this);
+
+        if (report == null)
+        {
+            Toast.makeText(this, NO_SYNC_REPORT_TEXT, Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_TIME_FORMAT);
+        Toast.makeText(this, String.format(Locale.US, SYNC_REPORT_TEXT,
+            dateFormat.format(new Date(report.getFinishedAt())), report), Toast.LENGTH_LONG).show();
+    }
+
+    /**
+     * Downloads every state's data in parallel so switching between states doesn't have to
+     * wait for the network
+     */
+    private void prefetchAllStates()
+    {
+        // Build the list of states in the same order as the spinner's choices
+        StateLookup stateLookup = StateLookup.getInstance();
+        List<String> abbreviations = new ArrayList<>();
+
+        for (int i = 0; i < stateLookup.getCount(); i++)
+        {
+            abbreviations.add(stateLookup.getAbbreviation(i));
+        }
+
+        this.prefetchStates(abbreviations, null);
+    }
+
+    /**
+     * Downloads a list of states' data in parallel, showing progress in a dialog
+     * @param abbreviations 2 letter abbreviations of the states to download
+     * @param group Group whose totals are shown once the downloads finish (null to only download)
+     */
+    private void prefetchStates(List<String> abbreviations, final RegionGroup group)
+    {
+        boolean started = mBulkPrefetcher.start(abbreviations, new BulkPrefetcher.Listener()
+        {
+            // Called each time a state has finished downloading
+            @Override
+            public void onPrefetchProgress(BulkPrefetcher.Progress progress)
+            {
+                if (mPrefetchDialog != null && mPrefetchDialog.isShowing())
+                {
+                    mPrefetchDialog.setMessage(String.format(Locale.US, PREFETCH_PROGRESS_TEXT,
+                        progress.getCompleted(), progress.getTotal(), progress.getStatesPerSecond(),
+                        progress.getBytesPerSecond() / 1024));
+                }
+            }
+
+            // Called once every state has finished downloading
+            @Override
+            public void onPrefetchComplete(BulkPrefetcher.Progress progress)
+            {
+                if (mPrefetchDialog != null && mPrefetchDialog.isShowing())
+                {
+                    mPrefetchDialog.dismiss();
+                }
+
+                // Log each state that failed and show a summary to the user
+                for (Map.Entry<String, String> failure : progress.getFailures().entrySet())
+                {
+                    Log.e(TAG, PREFETCH_FAILED_TEXT + failure.getKey() + ": " + failure.getValue());
+                }
+
+                if (group != null)
+                {
+                    showGroupTotals(group);
+                    return;
+                }
+
+                Toast.makeText(MainActivity.this, String.format(Locale.US, PREFETCH_COMPLETE_TEXT,
+                    progress.getCompleted() - progress.getFailures().size(), progress.getElapsedMillis() / 1000.0,
+                    progress.getStatesPerSecond(), progress.getBytesPerSecond() / 1024,
+                    progress.getFailures().size()), Toast.LENGTH_LONG).show();
+            }
+        });
+
+        // Show a progress dialog if the prefetch wasn't already running. If it was, the group's
+        // totals are shown with the states that have already been loaded.
+        if (started)
+        {
+            mPrefetchDialog = ProgressDialog.show(MainActivity.this, group == null ? PREFETCH_DIALOG_TITLE : group.getName(),
+                String.format(Locale.US, PREFETCH_PROGRESS_TEXT, 0, abbreviations.size(), 0.0, 0.0));
+        }
+
+        else if (group != null)
+        {
+            this.showGroupTotals(group);
+        }
+    }
+
+    /**
+     * Shows the list of groups the user can see totals for, followed by an item for defining a
+     * new group
+     */
+    private void showGroupPicker()
+    {
+        final List<RegionGroup> groups = mRegionGroups.getAll();
+        CharSequence[] items = new CharSequence[groups.size() + 1];
+
+        for (int i = 0; i < groups.size(); i++)
+        {
+            items[i] = groups.get(i).getName();
+        }
+
+        items[groups.size()] = NEW_GROUP_ITEM;
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(MainActivity.this)
+            .setTitle(GROUP_PICKER_TITLE)
+            .setItems(items, new DialogInterface.OnClickListener()
+            {
+                @Override
+                public void onClick(DialogInterface dialog, int which)
+                {
+                    if (which == groups.size())
+                    {
+                        showNewGroupDialog();
+                    }
+
+                    else
+                    {
+                        loadGroup(groups.get(which));
+                    }
+                }
+            });
+
+        // Only the user's own groups can be deleted
+        final List<RegionGroup> customGroups = new ArrayList<>();
+
+        for (RegionGroup group : groups)
+        {
+            if (group.isCustom())
+            {
+                customGroups.add(group);
+            }
+        }
+
+        if (!customGroups.isEmpty())
+        {
+            builder.setNeutralButton(DELETE_GROUP_ITEM, new DialogInterface.OnClickListener()
+            {
+                @Override
+                public void onClick(DialogInterface dialog, int id)
+                {
+                    showDeleteGroupDialog(customGroups);
+                }
+            });
+        }
+
+        builder.show();
+    }
+
+    /**
+     * Shows the user-defined groups, and deletes the one the user picks once they confirm it
+     * @param customGroups User-defined groups
+     */
+    private void showDeleteGroupDialog(final List<RegionGroup> customGroups)
+    {
+        CharSequence[] items = new CharSequence[customGroups.size()];
+
+        for (int i = 0; i < customGroups.size(); i++)
+        {
+            items[i] = customGroups.get(i).getName();
+        }
+
+        new AlertDialog.Builder(MainActivity.this)
+            .setTitle(DELETE_GROUP_TITLE)
+            .setItems(items, new DialogInterface.OnClickListener()
+            {
+                @Override
+                public void onClick(DialogInterface dialog, int which)
+                {
+                    final RegionGroup group = customGroups.get(which);
+
+                    new AlertDialog.Builder(MainActivity.this)
+                        .setMessage(String.format(Locale.US, CONFIRM_DELETE_GROUP_TEXT, group.getName()))
+                        .setPositiveButton(DELETE_GROUP_TEXT, new DialogInterface.OnClickListener()
+                        {
+                            @Override
+                            public void onClick(DialogInterface dialog, int id)
+                            {
+                                mRegionGroups.remove(group.getName());
+                                Toast.makeText(MainActivity.this, String.format(Locale.US, GROUP_DELETED_TEXT,
+                                    group.getName()), Toast.LENGTH_SHORT).show();
+                            }
+                        })
+                        .setNegativeButton(android.R.string.cancel, null)
+                        .show();
+                }
+            })
+            .setNegativeButton(android.R.string.cancel, null)
+            .show();
+    }
+
+    /**
+     * Shows a dialog where the user names a new group and picks its states, then shows the new
+     * group's totals
+     */
+    private void showNewGroupDialog()
+    {
+        final StateLookup stateLookup = StateLookup.getInstance();
+        final CharSequence[] names = new CharSequence[stateLookup.getCount()];
+        final boolean[] checked = new boolean[names.length];
+
+        for (int i = 0; i < names.length; i++)
+        {
+            names[i] = stateLookup.getName(i);
+        }
+
+        final EditText nameEditText = new EditText(MainActivity.this);
+        nameEditText.setHint(GROUP_NAME_HINT);
+        nameEditText.setSingleLine(true);
+
+        new AlertDialog.Builder(MainActivity.this)
+            .setTitle(NEW_GROUP_TITLE)
+            .setView(nameEditText)
+            .setMultiChoiceItems(names, checked, new DialogInterface.OnMultiChoiceClickListener()
+            {
+                @Override
+                public void onClick(DialogInterface dialog, int which, boolean isChecked)
+                {
+                    checked[which] = isChecked;
+                }
+            })
+            .setPositiveButton(SAVE_GROUP_TEXT, new DialogInterface.OnClickListener()
+            {
+                @Override
+                public void onClick(DialogInterface dialog, int id)
+                {
+                    String name = nameEditText.getText().toString().trim();
+                    Set<String> members = new HashSet<>();
+
+                    for (int i = 0; i < checked.length; i++)
+                    {
+                        if (checked[i])
+                        {
+                            members.add(stateLookup.getAbbreviation(i));
+                        }
+                    }
+
+                    if (name.isEmpty() || members.isEmpty())
+                    {
+                        Toast.makeText(MainActivity.this, INVALID_GROUP_TEXT, Toast.LENGTH_LONG).show();
+                        return;
+                    }
+
+                    loadGroup(mRegionGroups.save(name, members));
+                }
+            })
+            .setNegativeButton(android.R.string.cancel, null)
+            .show();
+    }
+
+    /**
+     * Downloads the data of any states in a group that haven't been loaded yet, then shows the
+     * group's totals
+     * @param group Group of states to add together
+     */
+    private void loadGroup(RegionGroup group)
+    {
+        // Stop fetching the state that was selected, so its data doesn't replace the totals
+        mSelectedId = group.getId();
+        mFetchScheduler.cancelAll();
+        this.dismissProgressDialog(mPendingAbbreviation);
+
+        List<String> missing = new ArrayList<>();
+
+        for (String abbreviation : group.getMembers())
+        {
+            if (mSeriesStore.get(abbreviation) == null)
+            {
+                missing.add(abbreviation);
+            }
+        }
+
+        if (missing.isEmpty())
+        {
+            this.showGroupTotals(group);
+        }
+
+        else
+        {
+            this.prefetchStates(missing, group);
+        }
+    }
+
+    /**
+     * Adds the data of a group's states together on a background thread, then shows the totals
+     * the same way a state's data is shown. The totals are cached by the engine, so showing a
+     * group again only recomputes the days affected by states that have been updated since.
+     * @param group Group of states to add together
+     */
+    private void showGroupTotals(final RegionGroup group)
+    {
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                long startTime = SystemClock.elapsedRealtimeNanos();
+                final AggregationEngine.Aggregate aggregate = mAggregationEngine.aggregate(group, mSeriesStore);
+                Log.d(TAG, String.format(Locale.US, AGGREGATION_TEXT, group.getName(),
+                    (SystemClock.elapsedRealtimeNanos() - startTime) / 1000000.0,
+                    mAggregationEngine.getFullCount(), mAggregationEngine.getIncrementalCount()));
+
+                runOnUiThread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        // Drop the totals if another state or group was selected while they were added up
+                        if (isFinishing() || !group.getId().equals(mSelectedId))
+                        {
+                            return;
+                        }
+
+                        if (aggregate == null)
+                        {
+                            Toast.makeText(MainActivity.this, String.format(Locale.US, NO_GROUP_DATA_TEXT,
+                                group.getName()), Toast.LENGTH_LONG).show();
+                            return;
+                        }
+
+                        // The metrics are rebuilt since updated totals can change rows that
+                        // were already processed (a state's latest day is summed again)
+                        mMetrics.remove(group.getId());
+                        showData(aggregate.getSnapshot());
+                        Toast.makeText(MainActivity.this, String.format(Locale.US, GROUP_TOTALS_TEXT,
+                            group.getName(), aggregate.getMembersLoaded(), group.getMembers().size()),
+                            Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        }, AGGREGATION_THREAD_NAME).start();
+    }
+
+    /**
+     * Called when the comparison screen closes. If a state was tapped, it's selected and shown.
+     * @param requestCode Identifier for the request
+     * @param resultCode RESULT_OK if a state was tapped
+     * @param data Holds the tapped state's abbreviation
+     */
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data)
+    {
+        super.onActivityResult(requestCode, resultCode, data);
+
+        if (requestCode != COMPARE_STATES_REQUEST_CODE || resultCode != RESULT_OK || data == null)
+        {
+            return;
+        }
+
+        String abbreviation = data.getStringExtra(ComparisonActivity.EXTRA_ABBREVIATION);
+        int index = StateLookup.getInstance().getIndexForAbbreviation(abbreviation);
+
+        // Selecting the state that's already selected doesn't call onItemSelected(), so request
+        // it directly (a group's totals may be showing instead)
+        if (index == mStateSpinner.getSelectedItemPosition())
+        {
+            this.requestData(abbreviation);
+        }
+
+        else
+        {
+            this.selectState(index);
+        }
+    }
+
     /**
      * Called after location permissions have been granted/denied
      *
@@ -209,34 +973,109 @@ public class MainActivity extends AppCompatActivity
     }
 
     /**
-     * Method to extract the state name from the location data returned by Google Play services
+     * Method to extract the state name from the location data returned by Google Play services.
+     * The state is looked up in the offline boundary index first, which only takes microseconds.
+     * If the location isn't inside any of the (simplified) boundaries, or is too close to a border
+     * or the coast to trust them, Geocoder is used instead. Both run on a background thread while the
+     * last selected state's data is already on screen and being refreshed.
      * @param location Location object provided by Google Play Services
      */
-    private void extractState(Location location)
+    private void extractState(final Location location)
     {
         // Geocoder object for converting latitude/longitude data into a state name
-        Geocoder geocoder = new Geocoder(getBaseContext(), Locale.getDefault());
+        final Geocoder geocoder = new Geocoder(getBaseContext(), Locale.getDefault());
 
-        try
+        new Thread(new Runnable()
         {
-            // Try to convert lat/long numbers into a state name
-            List<Address> address = geocoder.getFromLocation(location.getLatitude(), location.getLongitude(), 1);
+            @Override
+            public void run()
+            {
+                // Try the offline boundaries first since they don't need a network connection
+                long startTime = System.nanoTime();
+                StateBoundaryIndex boundaryIndex = getBoundaryIndex();
+                String abbreviation = boundaryIndex == null ? null
+                    : boundaryIndex.findAbbreviation(location.getLatitude(), location.getLongitude());
+
+                if (abbreviation != null)
+                {
+                    Log.d(TAG, String.format(Locale.US, OFFLINE_LOOKUP_TEXT, abbreviation, (System.nanoTime() - startTime) / 1000));
+                    selectState(StateLookup.getInstance().getIndexForAbbreviation(abbreviation));
+                    return;
+                }
+
+                try
+                {
+                    // Try to convert lat/long numbers into a state name
+                    startTime = SystemClock.elapsedRealtime();
+                    List<Address> address = geocoder.getFromLocation(location.getLatitude(), location.getLongitude(), 1);
+
+                    // If the address is not blank, select the state on the main thread
+                    if (address.size() > 0)
+                    {
+                        String stateName = address.get(0).getAdminArea();
+                        Log.d(TAG, String.format(Locale.US, GEOCODER_LOOKUP_TEXT, stateName, SystemClock.elapsedRealtime() - startTime));
+                        selectState(StateLookup.getInstance().getIndexForName(stateName));
+                    }
+                }
+
+                // Catch and log any IO exceptions
+                catch (IOException ioException)
+                {
+                    Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+                    ioException.printStackTrace();
+                }
+            }
+        }, GEOCODER_THREAD_NAME).start();
+    }
+
+    /**
+     * Loads the offline boundary index from the app's assets the first time it's needed. Called
+     * on a background thread since reading the boundaries and building the grid takes a while.
+     * @return Returns the index, or null if it couldn't be loaded
+     */
+    private synchronized StateBoundaryIndex getBoundaryIndex()
+    {
+        if (mBoundaryIndex == null)
+        {
+            try
+            {
+                mBoundaryIndex = StateBoundaryIndex.load(getAssets().open(StateBoundaryIndex.ASSET_NAME));
+            }
 
-            // If the address is not blank, set the value selected in the spinner so the
-            // onItemSelected() will be called and run a background thread
-            if (address.size() > 0)
+            // Catch and log any IO exceptions (Geocoder will be used instead)
+            catch (IOException ioException)
             {
-                mStateSpinner.setSelection(new StateNameConverter()
-                    .getStateSpinnerIndex(address.get(0).getAdminArea()), true);
+                Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+                ioException.printStackTrace();
             }
         }
 
-        // Catch and log any IO exceptions
-        catch (IOException ioException)
+        return mBoundaryIndex;
+    }
+
+    /**
+     * Sets the value selected in the spinner on the main thread so onItemSelected() will be
+     * called and request the state's data
+     * @param index Position of the state in the spinner, or StateLookup.NOT_FOUND to do nothing
+     */
+    private void selectState(final int index)
+    {
+        if (index == StateLookup.NOT_FOUND)
         {
-            Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
-            ioException.printStackTrace();
+            return;
         }
+
+        runOnUiThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (!isFinishing() && mStateSpinner.getSelectedItemPosition() != index)
+                {
+                    mStateSpinner.setSelection(index, true);
+                }
+            }
+        });
     }
 
     /**
@@ -298,333 +1137,309 @@ public class MainActivity extends AppCompatActivity
     }
 
     /**
-     * Nested class to run a background thread to fetch the latest COVID-19 data for the selected state
+     * Called on the main thread when cached data for the selected state has been read from disk
+     * @param snapshot State's snapshot after publishing the cached data
      */
-    private class FetchDataTask extends AsyncTask<String, String, String>
+    @Override
+    public void onCachedData(SeriesSnapshot snapshot)
     {
-        /**
-         * Called before the thread has executed
-         */
-        @Override
-        protected void onPreExecute()
+        // The cached data is enough to stop waiting; the refresh updates it in the background
+        this.showSelectedData(snapshot);
+        this.dismissProgressDialog(snapshot.getAbbreviation());
+    }
+
+    /**
+     * Called on the main thread after the selected state's data has been refreshed from the API
+     * @param snapshot State's snapshot after publishing the refreshed data. Each row of the series
+     * contains 4 pieces of data: time the stats were updated, number of people tested, number of
+     * positive tests, and # number of deaths. The most recent numbers are always in the last row.
+     */
+    @Override
+    public void onFetchComplete(SeriesSnapshot snapshot)
+    {
+        this.showSelectedData(snapshot);
+        this.dismissProgressDialog(snapshot.getAbbreviation());
+    }
+
+    /**
+     * Shows a state's data if the state is still selected. A fetch that was already running when
+     * a group was selected can finish after its totals are showing, and shouldn't replace them.
+     * @param snapshot State's snapshot
+     */
+    private void showSelectedData(SeriesSnapshot snapshot)
+    {
+        if (snapshot.getAbbreviation().equals(mSelectedId))
         {
-            // Show a progress dialog and remove any previously graphed data
-            progressDialog = ProgressDialog.show(MainActivity.this, PROGRESS_DIALOG_TITLE, PROGRESS_DIALOG_TEXT);
-            mTestsGraph.removeAllSeries();
-            mTimeGraph.removeAllSeries();
-            mDeathsGraph.removeAllSeries();
+            this.showData(snapshot);
         }
+    }
 
-        /**
-         * Background task to contact the API and download the latest COVID-19 data
-         * @param params URL for the API
-         * @return Returns the data received from the API as a String
-         */
-        @Override
-        protected String doInBackground(String... params)
-        {
-            // Declare HTTPS Connection and Buffered Reader objects
-            HttpsURLConnection connection = null;
-            BufferedReader reader = null;
+    /**
+     * Called on the main thread if the selected state's data couldn't be refreshed from the API.
+     * Any cached data that's already showing is left as it is, but its last updated time is marked
+     * so it's clear the numbers may be out of date. The mark is cleared when newer data is shown.
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param exception Reason the refresh failed
+     */
+    @Override
+    public void onFetchFailed(String abbreviation, IOException exception)
+    {
+        Log.e(TAG, IO_EXCEPTION_TEXT + exception.getMessage());
+        this.dismissProgressDialog(abbreviation);
 
-            try
-            {
-                // Create URL object and initialize HTTPS Connection object
-                URL url = new URL(API_URL + params[0]);
-                connection = (HttpsURLConnection) url.openConnection();
+        if (mShownSnapshot != null && abbreviation.equals(mShownSnapshot.getAbbreviation()))
+        {
+            mLastUpdatedTV.setText(String.format(Locale.US, STALE_DATA_TEXT, new SimpleDateFormat(DATE_TIME_FORMAT)
+                .format(new Date(mShownSnapshot.getData().getLatestEpochSeconds() * 1000))));
+            Toast.makeText(this, String.format(Locale.US, STALE_DATA_TOAST_TEXT, abbreviation,
+                exception.getMessage()), Toast.LENGTH_LONG).show();
+        }
 
-                // Log the error if the HTTPS response code is not 200
-                if (connection.getResponseCode() != 200)
-                {
-                    Log.e(TAG, RESPONSE_CODE_ERROR_TEXT + connection.getResponseCode());
-                }
+        else
+        {
+            Toast.makeText(this, String.format(Locale.US, NO_DATA_TEXT, abbreviation, exception.getMessage()),
+                Toast.LENGTH_LONG).show();
+        }
 
-                // Attempt to read data if the HTTPS response code is 200
-                else
-                {
-                    // Create InputStream and StringBuffer objects. Initialize BufferedReader object
-                    InputStream inputStream = connection.getInputStream();
-                    reader = new BufferedReader(new InputStreamReader(inputStream));
-                    StringBuilder builder = new StringBuilder();
-                    String line;
-
-                    // Read data from the API into the "line" String initialized above
-                    while ((line = reader.readLine()) != null)
-                    {
-                        builder.append(line).append(SPLIT_CHARACTER);
-                    }
+        this.updatePerfOverlay();
+    }
 
-                    // Return the data read from the API
-                    return builder.toString();
-                }
-            }
+    /**
+     * Requests the data for a state. Any request still in progress for a different state is
+     * cancelled. If the state's data is already in memory it's shown right away, and if it's been
+     * refreshed from the API since the app started nothing else needs to be done. Otherwise a
+     * progress dialog is shown (if one isn't showing already) until the data has been refreshed.
+     * @param abbreviation 2 letter abbreviation of the state
+     */
+    private void requestData(String abbreviation)
+    {
+        // Remember the state so it's shown first the next time the app starts
+        getSharedPreferences(PREFERENCES_NAME, MODE_PRIVATE).edit().putString(LAST_STATE_KEY, abbreviation).apply();
+        mSelectedId = abbreviation;
 
-            // Catch and log Malformed URL Exceptions
-            catch (MalformedURLException malUrlException)
-            {
-                Log.e(TAG, MALFORMED_URL_EXCEPTION_TEXT + malUrlException.getMessage());
-                malUrlException.printStackTrace();
-            }
+        SeriesSnapshot storedSnapshot = mSeriesStore.get(abbreviation);
 
-            // Catch and log IO Exceptions
-            catch (IOException ioException)
-            {
-                Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
-                ioException.printStackTrace();
-            }
+        if (storedSnapshot != null)
+        {
+            this.showData(storedSnapshot);
 
-            // Clean up after the try block executes or after an exception is caught
-            finally
+            if (storedSnapshot.isRefreshed())
             {
-                // Close the connection (if it exists)
-                if (connection != null)
-                {
-                    connection.disconnect();
-                }
-
-                // Try to close the BufferedReader (if it exists)
-                try
-                {
-                    if (reader != null)
-                    {
-                        reader.close();
-                    }
-                }
-
-                // Catch and log IO Exceptions
-                catch (IOException ioException)
-                {
-                    Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
-                    ioException.printStackTrace();
-                }
+                mFetchScheduler.cancelAll();
+                this.dismissProgressDialog(mPendingAbbreviation);
+                this.updatePerfOverlay();
+                return;
             }
-
-            // Default return value (if the string builder object was not returned above)
-            return null;
         }
 
-        /**
-         * Called after the thread has finished
-         * @param apiResult Result of doInBackground(). The result string contains 4 pieces of data
-         * in this order: time the stats were updated, number of people tested, number of positive
-         * tests, and # number of deaths. The most recent numbers are always at the end of the
-         * string.
-         */
-        @Override
-        protected void onPostExecute(String apiResult)
+        else if (progressDialog == null || !progressDialog.isShowing())
         {
-            super.onPostExecute(apiResult);
-
-            int numOfCommas = 0; // Stores the number of commas in the CSV string
-
-            // Loop through the result string and count the number of commas for use in the array declared below
-            for (int i = 0; i < apiResult.length(); i ++)
-            {
-                if (apiResult.charAt(i) == SPLIT_CHARACTER)
-                {
-                    numOfCommas++;
-                }
-            }
-
-            // Array to store the data nested between the commas in the result string
-            String[] covidData = new String[numOfCommas + 1];
+            progressDialog = ProgressDialog.show(MainActivity.this, PROGRESS_DIALOG_TITLE, PROGRESS_DIALOG_TEXT);
+        }
 
-            // Loop through the result string and put each piece of data into the array declared above
-            for (int i = 0; i <= apiResult.length(); i++)
-            {
-                covidData = apiResult.split(SPLIT_REGEX);
-            }
+        mPendingAbbreviation = abbreviation;
+        mFetchScheduler.request(abbreviation);
+        this.updatePerfOverlay();
+    }
 
-            int arrayIndex = 0; // Used in the loop below to load data into an array
-            Date[] dateOfStats = new Date[10]; // Used in the loop below to store 10 dates for graphing
+    /**
+     * Closes the progress dialog if it's still showing and waiting for the given state
+     * @param abbreviation 2 letter abbreviation of the state that finished loading
+     */
+    private void dismissProgressDialog(String abbreviation)
+    {
+        if (abbreviation == null || !abbreviation.equals(mPendingAbbreviation))
+        {
+            return;
+        }
 
-            // Loop through the data string and extract the last 5 dates
-            for (int i = (numOfCommas - 4); i > (numOfCommas - 41) ; i -= 4)
-            {
-                dateOfStats[arrayIndex] =  new Date(Long.parseLong(covidData[i]) * 1000);
-                arrayIndex++;
-            }
+        mPendingAbbreviation = null;
 
-            System.out.println("Time: " + covidData[numOfCommas - 4]);
-            System.out.println("Tests: " + covidData[numOfCommas - 3]);
-            System.out.println("Positive: " + covidData[numOfCommas - 2]);
-            System.out.println("Deaths: " + covidData[numOfCommas - 1]);
+        if (progressDialog != null && progressDialog.isShowing())
+        {
+            progressDialog.dismiss();
+        }
+    }
 
-            // Call methods to load data into the graphs and update the app's UI
-            // (created separate methods to save space in this method)
-            this.loadTestsGraph(numOfCommas, covidData);
-            this.loadTimeGraph(numOfCommas, covidData, dateOfStats);
-            this.loadDeathsGraph(numOfCommas, covidData, dateOfStats);
-            this.updateUI(numOfCommas, covidData, dateOfStats);
+    /**
+     * Replaces any previously graphed data with the data in a snapshot. A snapshot that's older
+     * than one already shown for the same state is dropped, and if a newer snapshot has been
+     * published since this one was delivered, the newer one is shown instead.
+     * @param snapshot Snapshot of the selected state's data
+     */
+    private void showData(SeriesSnapshot snapshot)
+    {
+        String abbreviation = snapshot.getAbbreviation();
+        SeriesSnapshot latest = mSeriesStore.get(abbreviation);
 
+        if (latest != null && latest.isNewerThan(snapshot))
+        {
+            snapshot = latest;
+        }
 
-            // Close the progress dialog if it's still showing
-            if (progressDialog.isShowing())
+        // Don't draw a snapshot older than the one showing, or one with no rows to draw
+        if (mShownSnapshot != null && abbreviation.equals(mShownSnapshot.getAbbreviation())
+            && !snapshot.isNewerThan(mShownSnapshot))
+        {
+            if (snapshot != mShownSnapshot)
             {
-                progressDialog.dismiss();
+                Log.d(TAG, String.format(Locale.US, STALE_SNAPSHOT_TEXT, abbreviation,
+                    snapshot.getVersion(), mShownSnapshot.getVersion()));
             }
+
+            return;
         }
 
-        /**
-         * Feeds data points into the graph to show the number of positive tests vs total number of tests
-         * @param data Array of strings containing COVID-19 data for the selected state
-         * @param commas Number of commas in the CSV String returned by the API
-         */
-        private void loadTestsGraph(int commas, String[] data)
+        if (snapshot.getData().isEmpty())
         {
-            try
-            {
-                // Create a series of data points to be plotted
-                LineGraphSeries<DataPoint> testedSeries = new LineGraphSeries<>(new DataPoint[]
-                {
-                    new DataPoint(Long.parseLong(data[commas - 39]), Long.parseLong(data[commas - 38])),
-                    new DataPoint(Long.parseLong(data[commas - 35]), Long.parseLong(data[commas - 34])),
-                    new DataPoint(Long.parseLong(data[commas - 31]), Long.parseLong(data[commas - 30])),
-                    new DataPoint(Long.parseLong(data[commas - 27]), Long.parseLong(data[commas - 26])),
-                    new DataPoint(Long.parseLong(data[commas - 23]), Long.parseLong(data[commas - 22])),
-                    new DataPoint(Long.parseLong(data[commas - 19]), Long.parseLong(data[commas - 18])),
-                    new DataPoint(Long.parseLong(data[commas - 15]), Long.parseLong(data[commas - 14])),
-                    new DataPoint(Long.parseLong(data[commas - 11]), Long.parseLong(data[commas - 10])),
-                    new DataPoint(Long.parseLong(data[commas - 7]), Long.parseLong(data[commas - 6])),
-                    new DataPoint(Long.parseLong(data[commas - 3]), Long.parseLong(data[commas - 2]))
-                });
-
-                // Set the number of labels for the X/Y axis (only 4 due to space)
-                mTestsGraph.getGridLabelRenderer().setNumVerticalLabels(4);
-                mTestsGraph.getGridLabelRenderer().setNumHorizontalLabels(4);
+            return;
+        }
 
-                // Set manual X & Y bounds to have nice steps
-                mTestsGraph.getViewport().setMinX(Long.parseLong(data[commas - 39]));
-                mTestsGraph.getViewport().setMaxX(Long.parseLong(data[commas - 3]));
-                mTestsGraph.getViewport().setMinY(Long.parseLong(data[commas - 38]));
-                mTimeGraph.getViewport().setMaxY(Long.parseLong(data[commas - 2]));
+        // Bring the state's metrics up to date (only rows that haven't been seen before are processed)
+        MetricsEngine metrics = mMetrics.get(abbreviation);
 
-                // Add the series of data points to the graph
-                mTestsGraph.addSeries(testedSeries);
-            }
+        if (metrics == null)
+        {
+            metrics = new MetricsEngine(ROLLING_AVERAGE_DAYS);
+            mMetrics.put(abbreviation, metrics);
+        }
 
-            // Catch and log any illegal argument exceptions thrown above
-            catch (IllegalArgumentException illegalArgException)
-            {
-                Log.e(TAG, ILLEGAL_ARG_EXCEPTION_TEXT + illegalArgException.getMessage());
-                illegalArgException.printStackTrace();
-            }
+        metrics.update(snapshot.getData());
+        mShownSnapshot = snapshot;
+        mShownMetrics = metrics;
+
+        // Call methods to load data into the graphs and update the app's UI
+        // (created separate methods to save space in this method)
+        mFrameMonitor.watch(abbreviation);
+        this.loadGraphs(snapshot, metrics);
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        this.updateUI(metrics);
+        mPerfMonitor.record(abbreviation, PerfMonitor.Stage.UI_UPDATE, SystemClock.elapsedRealtimeNanos() - startTime);
+        this.updatePerfOverlay();
+
+        // Let the system know the app is usable the first time data is on screen
+        if (mStartupTrace.markPaint(snapshot.isRefreshed()))
+        {
+            reportFullyDrawn();
         }
+    }
 
-        /**
-         * Feeds data points into the graph showing the number of positive tests over time
-         * @param commas Number of commas in the CSV String returned by the API
-         * @param data Array of strings containing COVID-19 data for the selected state
-         * @param dates Array of dates extracted from the data array
-         */
-        private void loadTimeGraph(int commas, String[] data, Date[] dates)
+    /**
+     * Graphs the rows of the data inside the selected range, replacing anything graphed before.
+     * Only the graphs on screen are filled now; the others are filled when they scroll into view.
+     * @param snapshot Snapshot of the data being shown
+     * @param metrics COVID-19 data for the selected state and the metrics derived from it
+     */
+    private void loadGraphs(SeriesSnapshot snapshot, MetricsEngine metrics)
+    {
+        for (LazyGraph lazyGraph : mLazyGraphs)
         {
-            try
-            {
-                // Create a series of data points to be plotted
-                LineGraphSeries <DataPoint> timeSeries = new LineGraphSeries<>(new DataPoint[]
-                {
-                    new DataPoint(dates[9], Long.parseLong(data[commas - 38])),
-                    new DataPoint(dates[8], Long.parseLong(data[commas - 34])),
-                    new DataPoint(dates[7], Long.parseLong(data[commas - 30])),
-                    new DataPoint(dates[5], Long.parseLong(data[commas - 26])),
-                    new DataPoint(dates[5], Long.parseLong(data[commas - 22])),
-                    new DataPoint(dates[4], Long.parseLong(data[commas - 18])),
-                    new DataPoint(dates[3], Long.parseLong(data[commas - 14])),
-                    new DataPoint(dates[2], Long.parseLong(data[commas - 10])),
-                    new DataPoint(dates[1], Long.parseLong(data[commas - 6])),
-                    new DataPoint(dates[0], Long.parseLong(data[commas - 2]))
-                });
+            lazyGraph.setData(snapshot, metrics, mGraphWindow);
+        }
 
-                // Set date label formatter and number of X/Y axis labels (only 4 due to space)
-                mTimeGraph.getGridLabelRenderer().setLabelFormatter(new DateAsXAxisLabelFormatter(MainActivity.this));
-                mTimeGraph.getGridLabelRenderer().setNumVerticalLabels(4);
-                mTimeGraph.getGridLabelRenderer().setNumHorizontalLabels(4);
+        this.fillVisibleGraphs();
+    }
 
-                // Set manual X & Y bounds to have nice steps
-                mTimeGraph.getViewport().setMinX(dates[9].getTime());
-                mTimeGraph.getViewport().setMaxX(dates[0].getTime());
-                mTimeGraph.getViewport().setMinY(Long.parseLong(data[commas - 38]));
-                mTimeGraph.getViewport().setMaxY(Long.parseLong(data[commas - 2]));
+    /**
+     * Fills the graphs that are on screen and aren't showing the latest data, recording the time
+     * spent building points (SERIES_BUILD) and updating series (GRAPH) on the main thread
+     */
+    private void fillVisibleGraphs()
+    {
+        if (mShownSnapshot == null)
+        {
+            return;
+        }
 
-                // Add the series of data points to the graph
-                mTimeGraph.addSeries(timeSeries);
-            }
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        long buildNanos = 0;
+        int filled = 0;
+        int allocations = 0;
 
-            // Catch and log any illegal argument exceptions thrown above
-            catch (IllegalArgumentException illegalArgException)
+        for (LazyGraph lazyGraph : mLazyGraphs)
+        {
+            // Don't give a graph more points than it has pixels across
+            if (lazyGraph.fillIfVisible(this.getMaxPoints(lazyGraph.getGraph())))
             {
-                Log.e(TAG, ILLEGAL_ARG_EXCEPTION_TEXT + illegalArgException.getMessage());
-                illegalArgException.printStackTrace();
+                filled++;
+                buildNanos += lazyGraph.getLastBuildNanos();
+                allocations += lazyGraph.getLastAllocationCount();
             }
         }
 
-        /**
-         * Feeds data points into the graph showing the number of deaths tests over time
-         * @param commas Number of commas in the CSV String returned by the API
-         * @param data Array of Strings containing COVID-19 data for the selected state
-         * @param dates Array of dates extracted from the data array
-         */
-        private void loadDeathsGraph(int commas, String[] data, Date[] dates)
+        if (filled == 0)
         {
-            try
-            {
-                // Create a series of data points to be plotted
-                LineGraphSeries <DataPoint> deathsSeries = new LineGraphSeries<>(new DataPoint[]
-                {
-                    new DataPoint(dates[9], Long.parseLong(data[commas - 37])),
-                    new DataPoint(dates[8], Long.parseLong(data[commas - 33])),
-                    new DataPoint(dates[7], Long.parseLong(data[commas - 29])),
-                    new DataPoint(dates[6], Long.parseLong(data[commas - 25])),
-                    new DataPoint(dates[5], Long.parseLong(data[commas - 21])),
-                    new DataPoint(dates[4], Long.parseLong(data[commas - 17])),
-                    new DataPoint(dates[3], Long.parseLong(data[commas - 13])),
-                    new DataPoint(dates[2], Long.parseLong(data[commas - 9])),
-                    new DataPoint(dates[1], Long.parseLong(data[commas - 5])),
-                    new DataPoint(dates[0], Long.parseLong(data[commas - 1]))
-                });
-
-                // Set date label formatter and number of X/Y axis labels (only 4 due to space)
-                mDeathsGraph.getGridLabelRenderer().setLabelFormatter(new DateAsXAxisLabelFormatter(MainActivity.this));
-                mDeathsGraph.getGridLabelRenderer().setNumVerticalLabels(4);
-                mDeathsGraph.getGridLabelRenderer().setNumHorizontalLabels(4);
-
-                // Set manual X & Y bounds to have nice steps
-                mDeathsGraph.getViewport().setMinX(dates[9].getTime());
-                mDeathsGraph.getViewport().setMaxX(dates[0].getTime());
-                mDeathsGraph.getViewport().setMinY(Long.parseLong(data[commas - 37]));
-                mDeathsGraph.getViewport().setMaxY(Long.parseLong(data[commas - 1]));
+            return;
+        }
 
-                // Add the series of data points to the graph
-                mDeathsGraph.addSeries(deathsSeries);
-            }
+        long endTime = SystemClock.elapsedRealtimeNanos();
+        String abbreviation = mShownSnapshot.getAbbreviation();
+        mPerfMonitor.record(abbreviation, PerfMonitor.Stage.SERIES_BUILD, buildNanos);
+        mPerfMonitor.record(abbreviation, PerfMonitor.Stage.GRAPH, endTime - startTime - buildNanos);
+        mPerfMonitor.count(abbreviation, PerfMonitor.Counter.GRAPH_ALLOCATIONS, allocations);
+        Log.d(TAG, String.format(Locale.US, GRAPH_TIME_TEXT, filled, mLazyGraphs.length,
+            (endTime - startTime) / 1000000.0, allocations));
+    }
 
-            // Catch and log any illegal argument exceptions thrown above
-            catch (IllegalArgumentException illegalArgException)
-            {
-                Log.e(TAG, ILLEGAL_ARG_EXCEPTION_TEXT + illegalArgException.getMessage());
-                illegalArgException.printStackTrace();
-            }
+    /**
+     * Shows the selected state's timings and the fetch scheduler's queue depth and counts in the
+     * performance overlay, if it's showing
+     */
+    private void updatePerfOverlay()
+    {
+        if (mPerfOverlayTV.getVisibility() == View.VISIBLE)
+        {
+            mPerfOverlayTV.setText(mPerfMonitor.formatSummary(this.getSelectedAbbreviation()) + "\n\n"
+                + mPerfMonitor.formatSummary(PerfMonitor.ALL_STATES) + "\n\n"
+                + String.format(Locale.US, SCHEDULER_STATS_TEXT, mFetchScheduler.getQueueDepth(),
+                mFetchScheduler.getActiveCount(), mFetchScheduler.getSubmittedCount(),
+                mFetchScheduler.getCoalescedCount(), mFetchScheduler.getCancelledCount(),
+                mFetchScheduler.getRejectedCount()));
         }
+    }
 
-        /**
-         * Updates the UI for the app with the data obtained from the API
-         * @param commas Number of commas in the CSV String returned by the API
-         * @param data Array of Strings containing COVID-19 data for the selected state
-         * @param dates Array of dates extracted from the data array
-         */
-        private void updateUI(int commas, String[] data, Date[] dates)
+    /**
+     * @param graph Graph the points will be plotted on
+     * @return Returns the most points worth plotting on the graph: its width in pixels (or the
+     * screen's width if it hasn't been laid out yet), or every point if downsampling is turned off
+     */
+    private int getMaxPoints(GraphView graph)
+    {
+        if (!DOWNSAMPLE_GRAPHS)
         {
-            // Used below to format the latest date from the CSV string from epoch time to
-            // something a little more "eye friendly"
-            SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_TIME_FORMAT);
-
-            // Get the latest stats from the data string and format the numbers so they're nicer
-            // to look at, then display them in the UI
-            mNumTestedTV.setText(NumberFormat.getNumberInstance(Locale.US).format(Long.parseLong(data[commas - 3])));
-            mNumPositiveTestsTV.setText(NumberFormat.getNumberInstance(Locale.US).format(Long.parseLong(data[commas - 2])));
-            mNumDeathsTV.setText(NumberFormat.getNumberInstance(Locale.US).format(Long.parseLong(data[commas - 1])));
-            mLastUpdatedTV.setText(dateFormat.format(dates[0]));
+            return Integer.MAX_VALUE;
         }
+
+        return graph.getWidth() > 0 ? graph.getWidth() : getResources().getDisplayMetrics().widthPixels;
+    }
+
+    /**
+     * Updates the UI for the app with the data obtained from the API
+     * @param metrics COVID-19 data for the selected state and the metrics derived from it
+     */
+    private void updateUI(MetricsEngine metrics)
+    {
+        StateTimeSeries data = metrics.getSeries();
+
+        // Used below to format the latest date from the data from epoch time to
+        // something a little more "eye friendly"
+        SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_TIME_FORMAT);
+
+        // Get the latest stats from the data and format the numbers so they're nicer
+        // to look at, then display them in the UI
+        mNumTestedTV.setText(NumberFormat.getNumberInstance(Locale.US).format(data.getLatestTested()));
+        mNumPositiveTestsTV.setText(NumberFormat.getNumberInstance(Locale.US).format(data.getLatestPositive()));
+        mNumDeathsTV.setText(NumberFormat.getNumberInstance(Locale.US).format(data.getLatestDeaths()));
+        mLastUpdatedTV.setText(dateFormat.format(new Date(data.getLatestEpochSeconds() * 1000)));
+
+        // Show the latest derived metrics
+        mNewPositiveTV.setText(NumberFormat.getNumberInstance(Locale.US)
+            .format((long) metrics.getLatest(MetricsEngine.Metric.NEW_POSITIVE)));
+        mAverageNewPositiveTV.setText(NumberFormat.getNumberInstance(Locale.US)
+            .format(Math.round(metrics.getLatestRollingMean(MetricsEngine.Metric.NEW_POSITIVE, ROLLING_AVERAGE_DAYS))));
+        mPositivityRateTV.setText(String.format(Locale.US, PERCENT_FORMAT,
+            metrics.getLatest(MetricsEngine.Metric.POSITIVITY_RATE) * 100));
+        mGrowthRateTV.setText(String.format(Locale.US, PERCENT_FORMAT,
+            metrics.getLatest(MetricsEngine.Metric.GROWTH_RATE) * 100));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,284 @@
+package com.jefftrotz.covid19tracker;
+
+import java.util.Arrays;
+
+/**
+ * Derives metrics from a state's cumulative totals: the change since the previous row (new tests,
+ * new positive tests and new deaths), rolling means of those changes over configurable numbers of
+ * rows, the positivity rate (positive tests / tests) and the growth rate of positive tests. The
+ * API reports each state about once a day, so the change since the previous row is treated as the
+ * daily change.
+ * <p>
+ * The metrics are kept in columns alongside the series they're derived from. When rows are added
+ * to the series (or the series is replaced by a copy with more rows, as SeriesRepository does),
+ * update() only works through the new rows, and each row costs the same no matter how long the
+ * history is: the rolling means are kept as running sums that add the newest change and subtract
+ * the one that drops out of the window.
+ * @author Jeffrey Trotz
+ * @date 4/22/2020
+ * @version 1.0
+ */
+public class MetricsEngine
+{
+    /**
+     * Metrics kept for each row
+     */
+    public enum Metric
+    {
+        NEW_TESTED, // Number of people tested since the previous row
+        NEW_POSITIVE, // Number of positive tests since the previous row
+        NEW_DEATHS, // Number of deaths since the previous row
+        POSITIVITY_RATE, // Positive tests / tests, as of the row
+        GROWTH_RATE // Positive tests since the previous row / positive tests as of the previous row
+    }
+
+    private static final int CHANGE_METRICS = 3; // Number of metrics (from the start of Metric) that are changes between rows and have rolling means
+    private static final int DEFAULT_CAPACITY = 64; // Number of rows the columns can hold before they have to grow
+
+    private final int[] mRollingWindows; // Number of rows in each rolling mean
+    private StateTimeSeries mSeries; // Series the metrics are derived from
+    private int mSize; // Number of rows of the series processed so far
+    private final long[][] mChanges = new long[CHANGE_METRICS][DEFAULT_CAPACITY]; // Change since the previous row, by metric then row
+    private double[] mPositivityRates = new double[DEFAULT_CAPACITY]; // Positivity rate of each row
+    private double[] mGrowthRates = new double[DEFAULT_CAPACITY]; // Growth rate of each row
+    private final double[][][] mRollingMeans; // Rolling means, by window then metric then row
+    private final long[][] mRollingSums; // Running sum of the changes inside each window, by window then metric
+
+    /**
+     * Constructor
+     * @param rollingWindows Number of rows (days) in each rolling mean, e.g. 7 and 14
+     */
+    public MetricsEngine(int... rollingWindows)
+    {
+        for (int window : rollingWindows)
+        {
+            if (window < 1)
+            {
+                throw new IllegalArgumentException("Rolling windows must be at least 1 row: " + window);
+            }
+        }
+
+        mRollingWindows = rollingWindows.clone();
+        mRollingMeans = new double[rollingWindows.length][CHANGE_METRICS][DEFAULT_CAPACITY];
+        mRollingSums = new long[rollingWindows.length][CHANGE_METRICS];
+    }
+
+    /**
+     * Brings the metrics up to date with a series. If the series holds the same rows processed
+     * before plus some new ones (either the same object with rows appended, or a copy with more
+     * rows), only the new rows are processed. Otherwise the metrics are rebuilt from the start.
+     * @param series Series to derive the metrics from. Rows must not be changed once processed.
+     * @return Returns the number of rows processed
+     */
+    public int update(StateTimeSeries series)
+    {
+        // Start over if the series doesn't continue from the last row processed
+        if (!this.continues(series))
+        {
+            this.reset();
+        }
+
+        mSeries = series;
+        int processed = 0;
+
+        while (mSize < series.size())
+        {
+            this.processRow(mSize);
+            processed++;
+        }
+
+        return processed;
+    }
+
+    /**
+     * @return Returns the series the metrics are derived from (null until update() is called)
+     */
+    public StateTimeSeries getSeries()
+    {
+        return mSeries;
+    }
+
+    /**
+     * @return Returns the number of rows the metrics have been derived for
+     */
+    public int size()
+    {
+        return mSize;
+    }
+
+    /**
+     * @param metric Metric to read
+     * @param row Index of the row
+     * @return Returns the value of the metric for the row. Changes are 0 for the first row, and
+     * rates are 0 where they'd need a division by 0.
+     */
+    public double get(Metric metric, int row)
+    {
+        this.checkRow(row);
+
+        switch (metric)
+        {
+            case POSITIVITY_RATE:
+                return mPositivityRates[row];
+            case GROWTH_RATE:
+                return mGrowthRates[row];
+            default:
+                return mChanges[metric.ordinal()][row];
+        }
+    }
+
+    /**
+     * @param metric Metric to average (NEW_TESTED, NEW_POSITIVE or NEW_DEATHS)
+     * @param window Number of rows in the mean (must be one of the windows the engine was created with)
+     * @param row Index of the row
+     * @return Returns the mean of the metric over the window ending at the row. Rows near the
+     * start of the series are averaged over the rows available.
+     */
+    public double getRollingMean(Metric metric, int window, int row)
+    {
+        this.checkRow(row);
+
+        if (metric.ordinal() >= CHANGE_METRICS)
+        {
+            throw new IllegalArgumentException("No rolling mean for " + metric);
+        }
+
+        return mRollingMeans[this.windowIndex(window)][metric.ordinal()][row];
+    }
+
+    /**
+     * @param metric Metric to read
+     * @return Returns the value of the metric for the most recent row
+     */
+    public double getLatest(Metric metric)
+    {
+        return this.get(metric, mSize - 1);
+    }
+
+    /**
+     * @param metric Metric to average (NEW_TESTED, NEW_POSITIVE or NEW_DEATHS)
+     * @param window Number of rows in the mean
+     * @return Returns the rolling mean of the metric for the most recent row
+     */
+    public double getLatestRollingMean(Metric metric, int window)
+    {
+        return this.getRollingMean(metric, window, mSize - 1);
+    }
+
+    /**
+     * @param series Series about to be processed
+     * @return Returns true if the series holds every row processed so far. Only the last
+     * processed row's time is compared since rows are never changed once they're stored.
+     */
+    private boolean continues(StateTimeSeries series)
+    {
+        return mSize == 0 || (series.size() >= mSize
+            && series.getEpochSeconds(mSize - 1) == mSeries.getEpochSeconds(mSize - 1));
+    }
+
+    /**
+     * Forgets every row processed so far, keeping the columns for reuse
+     */
+    private void reset()
+    {
+        mSize = 0;
+
+        for (long[] sums : mRollingSums)
+        {
+            Arrays.fill(sums, 0);
+        }
+    }
+
+    /**
+     * Derives the metrics for one row from the row before it
+     * @param row Index of the row (always the next row after the ones already processed)
+     */
+    private void processRow(int row)
+    {
+        if (row == mPositivityRates.length)
+        {
+            this.resize(row * 2);
+        }
+
+        long tested = mSeries.getTested(row);
+        long positive = mSeries.getPositive(row);
+        long previousPositive = row == 0 ? 0 : mSeries.getPositive(row - 1);
+
+        // Changes since the previous row (0 for the first row since there's nothing to compare to)
+        mChanges[Metric.NEW_TESTED.ordinal()][row] = row == 0 ? 0 : tested - mSeries.getTested(row - 1);
+        mChanges[Metric.NEW_POSITIVE.ordinal()][row] = row == 0 ? 0 : positive - previousPositive;
+        mChanges[Metric.NEW_DEATHS.ordinal()][row] = row == 0 ? 0 : mSeries.getDeaths(row) - mSeries.getDeaths(row - 1);
+
+        mPositivityRates[row] = tested == 0 ? 0 : (double) positive / tested;
+        mGrowthRates[row] = previousPositive == 0 ? 0 : (double) (positive - previousPositive) / previousPositive;
+
+        // Slide each window along by one row
+        for (int w = 0; w < mRollingWindows.length; w++)
+        {
+            int window = mRollingWindows[w];
+
+            for (int m = 0; m < CHANGE_METRICS; m++)
+            {
+                mRollingSums[w][m] += mChanges[m][row];
+
+                if (row >= window)
+                {
+                    mRollingSums[w][m] -= mChanges[m][row - window];
+                }
+
+                mRollingMeans[w][m][row] = (double) mRollingSums[w][m] / Math.min(row + 1, window);
+            }
+        }
+
+        mSize++;
+    }
+
+    /**
+     * Copies the columns into new arrays of the given length
+     * @param capacity New length of the arrays
+     */
+    private void resize(int capacity)
+    {
+        for (int m = 0; m < CHANGE_METRICS; m++)
+        {
+            mChanges[m] = Arrays.copyOf(mChanges[m], capacity);
+
+            for (int w = 0; w < mRollingWindows.length; w++)
+            {
+                mRollingMeans[w][m] = Arrays.copyOf(mRollingMeans[w][m], capacity);
+            }
+        }
+
+        mPositivityRates = Arrays.copyOf(mPositivityRates, capacity);
+        mGrowthRates = Arrays.copyOf(mGrowthRates, capacity);
+    }
+
+    /**
+     * @param window Number of rows in a rolling mean
+     * @return Returns the position of the window in mRollingWindows
+     */
+    private int windowIndex(int window)
+    {
+        for (int w = 0; w < mRollingWindows.length; w++)
+        {
+            if (mRollingWindows[w] == window)
+            {
+                return w;
+            }
+        }
+
+        throw new IllegalArgumentException("No rolling mean over " + window + " rows");
+    }
+
+    /**
+     * Makes sure the row index refers to a row that has been processed
+     * @param row Index of the row
+     */
+    private void checkRow(int row)
+    {
+        if (row < 0 || row >= mSize)
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + mSize);
+        }
+    }
+}
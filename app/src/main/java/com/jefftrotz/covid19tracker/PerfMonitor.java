@@ -0,0 +1,483 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects timings and counters for each stage of getting a state's data on screen, from the
+ * network request to the UI update. Every timing goes into a histogram for the state it belongs
+ * to and into an ALL_STATES histogram, so slow states stand out from the overall numbers.
+ * <p>
+ * Recording is cheap enough for the hot paths it's used in (a map lookup and a few atomic
+ * adds), and can be called from any thread. The results can be shown in the debug overlay
+ * (formatSummary()) or dumped as JSON (toJson()/writeJson()) to be pulled off a device or
+ * checked in tests.
+ * @author Jeffrey Trotz
+ * @date 4/27/2020
+ * @version 1.0
+ */
+public final class PerfMonitor
+{
+    public static final String ALL_STATES = "ALL"; // Key of the statistics combined across every state
+    public static final String DUMP_FILE_NAME = "perf_metrics.json"; // Name of the JSON dump in the app's files directory
+    private static final String SUMMARY_LINE_TEXT = "%-12s n=%-4d p50=%-8s p90=%-8s max=%s\n"; // Format of each stage's line in the summary
+    private static final String SUMMARY_COUNTERS_TEXT = "requests=%d 304s=%d failures=%d bytes=%d graph_allocs=%d janky=%d retries=%d rejected=%d"; // Format of the counters' line in the summary
+    private static final String TEMP_EXTENSION = ".tmp"; // Added to the dump's name while it's written
+
+    private static final PerfMonitor INSTANCE = new PerfMonitor(); // Shared instance
+
+    /**
+     * Stages that are timed, in the order they happen
+     */
+    public enum Stage
+    {
+        DNS, // Looking up the API's address
+        CONNECT, // Opening the connection (including the TLS handshake)
+        TTFB, // Sending the request and waiting for the first byte of the response
+        DOWNLOAD, // Waiting on the network while the response body is read
+        PARSE, // Decompressing and parsing the response body (not counting DOWNLOAD)
+        SERIES_BUILD, // Building the data points of the graphs on screen from a state's data
+        GRAPH, // Updating the series of the graphs on screen with the new points
+        UI_UPDATE, // Showing the latest numbers in the text views
+        FRAME // Time between frames after data is shown and while scrolling (see FrameMonitor)
+    }
+
+    /**
+     * Events that are counted
+     */
+    public enum Counter
+    {
+        REQUESTS, // Requests sent to the API
+        NOT_MODIFIED, // Requests answered with a 304 because nothing changed
+        FAILURES, // Requests that failed or returned an error code
+        BYTES, // Response body bytes read from the network
+        GRAPH_ALLOCATIONS, // Objects created while updating the graphs' series
+        JANK_FRAMES, // Frames that missed at least one vsync
+        RETRIES, // Requests sent again after a failure
+        REJECTED // Requests turned away because the source's circuit was open
+    }
+
+    private final ConcurrentHashMap<String, StateStats> mStates = new ConcurrentHashMap<>(); // Statistics of each state, plus ALL_STATES
+
+    /**
+     * Private so only the shared instance is ever created
+     */
+    private PerfMonitor()
+    {
+    }
+
+    /**
+     * @return Returns the shared instance
+     */
+    public static PerfMonitor getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Records how long a stage took
+     * @param abbreviation 2 letter abbreviation of the state the stage was for
+     * @param stage Stage that was timed
+     * @param nanos Time the stage took in nanoseconds
+     */
+    public void record(String abbreviation, Stage stage, long nanos)
+    {
+        long micros = Math.max(0, nanos / 1000);
+        this.getStats(abbreviation).mHistograms[stage.ordinal()].record(micros);
+        this.getStats(ALL_STATES).mHistograms[stage.ordinal()].record(micros);
+    }
+
+    /**
+     * Adds to a counter
+     * @param abbreviation 2 letter abbreviation of the state the event was for
+     * @param counter Counter to add to
+     * @param amount Amount to add
+     */
+    public void count(String abbreviation, Counter counter, long amount)
+    {
+        this.getStats(abbreviation).mCounters.addAndGet(counter.ordinal(), amount);
+        this.getStats(ALL_STATES).mCounters.addAndGet(counter.ordinal(), amount);
+    }
+
+    /**
+     * @param abbreviation 2 letter abbreviation of a state, or ALL_STATES
+     * @param stage Stage that was timed
+     * @return Returns the stage's histogram, or null if nothing has been recorded for the state
+     */
+    public Histogram getHistogram(String abbreviation, Stage stage)
+    {
+        StateStats stats = mStates.get(abbreviation);
+        return stats == null ? null : stats.mHistograms[stage.ordinal()];
+    }
+
+    /**
+     * @param abbreviation 2 letter abbreviation of a state, or ALL_STATES
+     * @param counter Counter to read
+     * @return Returns the counter's value (0 if nothing has been recorded for the state)
+     */
+    public long getCount(String abbreviation, Counter counter)
+    {
+        StateStats stats = mStates.get(abbreviation);
+        return stats == null ? 0 : stats.mCounters.get(counter.ordinal());
+    }
+
+    /**
+     * Clears every timing and counter
+     */
+    public void reset()
+    {
+        mStates.clear();
+    }
+
+    /**
+     * Formats a state's statistics for the debug overlay, one line per stage that has been timed
+     * @param abbreviation 2 letter abbreviation of a state, or ALL_STATES
+     * @return Returns the summary (empty if nothing has been recorded for the state)
+     */
+    public String formatSummary(String abbreviation)
+    {
+        StateStats stats = mStates.get(abbreviation);
+
+        if (stats == null)
+        {
+            return "";
+        }
+
+        StringBuilder builder = new StringBuilder(abbreviation).append('\n');
+
+        for (Stage stage : Stage.values())
+        {
+            Histogram histogram = stats.mHistograms[stage.ordinal()];
+
+            if (histogram.getCount() > 0)
+            {
+                builder.append(String.format(Locale.US, SUMMARY_LINE_TEXT, stage.name(), histogram.getCount(),
+                    formatMicros(histogram.getPercentile(50)), formatMicros(histogram.getPercentile(90)),
+                    formatMicros(histogram.getMax())));
+            }
+        }
+
+        builder.append(String.format(Locale.US, SUMMARY_COUNTERS_TEXT, stats.mCounters.get(Counter.REQUESTS.ordinal()),
+            stats.mCounters.get(Counter.NOT_MODIFIED.ordinal()), stats.mCounters.get(Counter.FAILURES.ordinal()),
+            stats.mCounters.get(Counter.BYTES.ordinal()), stats.mCounters.get(Counter.GRAPH_ALLOCATIONS.ordinal()),
+            stats.mCounters.get(Counter.JANK_FRAMES.ordinal()), stats.mCounters.get(Counter.RETRIES.ordinal()),
+            stats.mCounters.get(Counter.REJECTED.ordinal())));
+        return builder.toString();
+    }
+
+    /**
+     * Dumps every state's statistics as JSON. Times are in microseconds, and each histogram lists
+     * the number of samples in each bucket (bucket 0 holds 0 us, bucket i holds 2^(i-1) us up to
+     * but not including 2^i us).
+     * @return Returns the JSON text
+     */
+    public String toJson()
+    {
+        // Sort the states so dumps are easy to compare
+        Map<String, StateStats> states = new TreeMap<>(mStates);
+        StringBuilder builder = new StringBuilder("{\"states\":{");
+        boolean firstState = true;
+
+        for (Map.Entry<String, StateStats> entry : states.entrySet())
+        {
+            StateStats stats = entry.getValue();
+            builder.append(firstState ? "" : ",");
+            appendJsonString(builder, entry.getKey()); // Custom group names are typed by the user
+            builder.append(":{\"stages\":{");
+            firstState = false;
+            boolean firstStage = true;
+
+            for (Stage stage : Stage.values())
+            {
+                Histogram histogram = stats.mHistograms[stage.ordinal()];
+
+                if (histogram.getCount() > 0)
+                {
+                    builder.append(firstStage ? "" : ",").append('"').append(stage.name().toLowerCase(Locale.US)).append("\":");
+                    histogram.appendJson(builder);
+                    firstStage = false;
+                }
+            }
+
+            builder.append("},\"counters\":{");
+
+            for (Counter counter : Counter.values())
+            {
+                builder.append(counter.ordinal() == 0 ? "" : ",").append('"').append(counter.name().toLowerCase(Locale.US))
+                    .append("\":").append(stats.mCounters.get(counter.ordinal()));
+            }
+
+            builder.append("}}");
+        }
+
+        return builder.append("}}").toString();
+    }
+
+    /**
+     * Writes the JSON dump to a file. It's written to a temporary file first and then renamed, so
+     * the file is never left half written.
+     * @param file File the dump is written to
+     * @throws IOException Thrown if the file can't be written
+     */
+    public void writeJson(File file) throws IOException
+    {
+        File tempFile = new File(file.getPath() + TEMP_EXTENSION);
+
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), Charset.forName("UTF-8")))
+        {
+            writer.write(this.toJson());
+        }
+
+        if (!tempFile.renameTo(file))
+        {
+            throw new IOException("Couldn't rename " + tempFile + " to " + file);
+        }
+    }
+
+    /**
+     * @param abbreviation 2 letter abbreviation of a state, or ALL_STATES
+     * @return Returns the state's statistics, creating them if needed
+     */
+    private StateStats getStats(String abbreviation)
+    {
+        StateStats stats = mStates.get(abbreviation);
+
+        if (stats == null)
+        {
+            StateStats created = new StateStats();
+            stats = mStates.putIfAbsent(abbreviation, created);
+
+            if (stats == null)
+            {
+                stats = created;
+            }
+        }
+
+        return stats;
+    }
+
+    /**
+     * Adds a JSON string to the text, escaping quotes, backslashes and control characters
+     * @param builder Text the string is added to
+     * @param value The string
+     */
+    private static void appendJsonString(StringBuilder builder, String value)
+    {
+        builder.append('"');
+
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\')
+            {
+                builder.append('\\').append(c);
+            }
+
+            else if (c < 0x20)
+            {
+                builder.append(String.format(Locale.US, "\\u%04x", (int) c));
+            }
+
+            else
+            {
+                builder.append(c);
+            }
+        }
+
+        builder.append('"');
+    }
+
+    /**
+     * @param micros Time in microseconds
+     * @return Returns the time in the most readable unit (us, ms or s)
+     */
+    private static String formatMicros(long micros)
+    {
+        if (micros < 1000)
+        {
+            return micros + "us";
+        }
+
+        if (micros < 1000000)
+        {
+            return String.format(Locale.US, "%.1fms", micros / 1000.0);
+        }
+
+        return String.format(Locale.US, "%.2fs", micros / 1000000.0);
+    }
+
+    /**
+     * Timings and counters of a single state
+     */
+    private static class StateStats
+    {
+        private final Histogram[] mHistograms = new Histogram[Stage.values().length]; // Histogram of each stage
+        private final AtomicLongArray mCounters = new AtomicLongArray(Counter.values().length); // Value of each counter
+
+        /**
+         * Constructor
+         */
+        StateStats()
+        {
+            for (int i = 0; i < mHistograms.length; i++)
+            {
+                mHistograms[i] = new Histogram();
+            }
+        }
+    }
+
+    /**
+     * Lock free histogram of times in microseconds, using power of 2 buckets so recording a
+     * sample is a few atomic adds no matter how many samples there are. Percentiles are
+     * approximate: they're reported as the upper edge of the bucket they fall in.
+     */
+    public static class Histogram
+    {
+        private static final int BUCKETS = 40; // Enough power of 2 buckets for about 6 days in microseconds
+        private static final int COUNT = BUCKETS; // Index of the sample count in mValues
+        private static final int SUM = BUCKETS + 1; // Index of the sum of every sample
+        private static final int MIN = BUCKETS + 2; // Index of the smallest sample
+        private static final int MAX = BUCKETS + 3; // Index of the largest sample
+
+        private final AtomicLongArray mValues = new AtomicLongArray(BUCKETS + 4); // Bucket counts followed by the count, sum, min and max
+
+        /**
+         * Constructor
+         */
+        Histogram()
+        {
+            mValues.set(MIN, Long.MAX_VALUE);
+        }
+
+        /**
+         * Adds a sample
+         * @param micros Time in microseconds
+         */
+        void record(long micros)
+        {
+            int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+            mValues.incrementAndGet(bucket);
+            mValues.incrementAndGet(COUNT);
+            mValues.addAndGet(SUM, micros);
+
+            // Retry if another thread changes the min/max in the meantime
+            long min = mValues.get(MIN);
+
+            while (micros < min && !mValues.compareAndSet(MIN, min, micros))
+            {
+                min = mValues.get(MIN);
+            }
+
+            long max = mValues.get(MAX);
+
+            while (micros > max && !mValues.compareAndSet(MAX, max, micros))
+            {
+                max = mValues.get(MAX);
+            }
+        }
+
+        /**
+         * @return Returns the number of samples
+         */
+        public long getCount()
+        {
+            return mValues.get(COUNT);
+        }
+
+        /**
+         * @return Returns the average sample in microseconds (0 if there are none)
+         */
+        public long getMean()
+        {
+            long count = this.getCount();
+            return count == 0 ? 0 : mValues.get(SUM) / count;
+        }
+
+        /**
+         * @return Returns the smallest sample in microseconds (0 if there are none)
+         */
+        public long getMin()
+        {
+            return this.getCount() == 0 ? 0 : mValues.get(MIN);
+        }
+
+        /**
+         * @return Returns the largest sample in microseconds
+         */
+        public long getMax()
+        {
+            return mValues.get(MAX);
+        }
+
+        /**
+         * @param percent Percentile to find, from 0 to 100
+         * @return Returns the upper edge (in microseconds) of the bucket the percentile falls in,
+         * capped to the largest sample (0 if there are none)
+         */
+        public long getPercentile(double percent)
+        {
+            long count = this.getCount();
+
+            if (count == 0)
+            {
+                return 0;
+            }
+
+            long target = Math.max(1, (long) Math.ceil(count * percent / 100));
+            long seen = 0;
+
+            for (int bucket = 0; bucket < BUCKETS; bucket++)
+            {
+                seen += mValues.get(bucket);
+
+                if (seen >= target)
+                {
+                    return Math.min(this.getMax(), bucket == 0 ? 0 : (1L << bucket) - 1);
+                }
+            }
+
+            return this.getMax();
+        }
+
+        /**
+         * Adds the histogram to a JSON dump
+         * @param builder Builder holding the dump
+         */
+        void appendJson(StringBuilder builder)
+        {
+            builder.append("{\"count\":").append(this.getCount())
+                .append(",\"mean\":").append(this.getMean())
+                .append(",\"min\":").append(this.getMin())
+                .append(",\"max\":").append(this.getMax())
+                .append(",\"p50\":").append(this.getPercentile(50))
+                .append(",\"p90\":").append(this.getPercentile(90))
+                .append(",\"p99\":").append(this.getPercentile(99))
+                .append(",\"buckets\":[");
+
+            // Leave off the empty buckets at the end
+            int last = BUCKETS - 1;
+
+            while (last > 0 && mValues.get(last) == 0)
+            {
+                last--;
+            }
+
+            for (int bucket = 0; bucket <= last; bucket++)
+            {
+                builder.append(bucket == 0 ? "" : ",").append(mValues.get(bucket));
+            }
+
+            builder.append("]}");
+        }
+    }
+}
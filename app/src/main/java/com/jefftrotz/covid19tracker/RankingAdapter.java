@@ -0,0 +1,142 @@
+package com.jefftrotz.covid19tracker;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.recyclerview.widget.RecyclerView;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Shows states from the RankingIndex in a RecyclerView, one row per state with its place in the
+ * ranking, its name and its value of the ranked metric. Rows are recycled as the list scrolls, so
+ * only enough views to fill the screen are ever created.
+ * @author Jeffrey Trotz
+ * @date 5/1/2020
+ * @version 1.0
+ */
+public class RankingAdapter extends RecyclerView.Adapter<RankingAdapter.RowViewHolder>
+{
+    private static final String RANK_FORMAT = "%d."; // Format used for each state's place in the ranking
+    private static final String PERCENT_FORMAT = "%.1f%%"; // Format used for rates
+    private static final String NO_VALUE_TEXT = "\u2014"; // Shown instead of a rate with nothing to divide by (NaN)
+
+    /**
+     * Notified when a state in the list is tapped
+     */
+    public interface Listener
+    {
+        /**
+         * Called on the main thread when a state is tapped
+         * @param abbreviation 2 letter abbreviation of the state
+         */
+        void onStateClicked(String abbreviation);
+    }
+
+    private final Listener mListener; // Notified when a state is tapped
+    private final NumberFormat mNumberFormat = NumberFormat.getNumberInstance(Locale.US); // Formats counts with thousands separators
+    private List<RankingIndex.Entry> mEntries = new ArrayList<>(); // States shown, in order
+    private RankingIndex.Ranking mRanking = RankingIndex.Ranking.POSITIVE; // Metric the states are ranked by
+
+    /**
+     * Constructor
+     * @param listener Notified when a state in the list is tapped
+     */
+    public RankingAdapter(Listener listener)
+    {
+        mListener = listener;
+        setHasStableIds(true);
+    }
+
+    /**
+     * Replaces the states shown
+     * @param entries States to show, in order
+     * @param ranking Metric the states are ranked by
+     */
+    public void setEntries(List<RankingIndex.Entry> entries, RankingIndex.Ranking ranking)
+    {
+        mEntries = entries;
+        mRanking = ranking;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public RowViewHolder onCreateViewHolder(ViewGroup parent, int viewType)
+    {
+        return new RowViewHolder(LayoutInflater.from(parent.getContext()).inflate(R.layout.item_ranking, parent, false));
+    }
+
+    @Override
+    public void onBindViewHolder(RowViewHolder holder, int position)
+    {
+        RankingIndex.Entry entry = mEntries.get(position);
+        StateLookup stateLookup = StateLookup.getInstance();
+        double value = entry.getValue(mRanking);
+
+        holder.mRankTV.setText(String.format(Locale.US, RANK_FORMAT, position + 1));
+        holder.mNameTV.setText(stateLookup.getName(stateLookup.getIndexForAbbreviation(entry.getAbbreviation())));
+        if (Double.isNaN(value))
+        {
+            holder.mValueTV.setText(NO_VALUE_TEXT);
+        }
+
+        else
+        {
+            holder.mValueTV.setText(mRanking.isRate() ? String.format(Locale.US, PERCENT_FORMAT, value * 100)
+                : mNumberFormat.format(Math.round(value)));
+        }
+    }
+
+    @Override
+    public int getItemCount()
+    {
+        return mEntries.size();
+    }
+
+    /**
+     * @param position Position of a row
+     * @return Returns an ID for the state in the row that stays the same when the list is re-sorted
+     */
+    @Override
+    public long getItemId(int position)
+    {
+        return mEntries.get(position).getAbbreviation().hashCode();
+    }
+
+    /**
+     * Holds the views of a row so they don't have to be looked up each time it's reused
+     */
+    class RowViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener
+    {
+        final TextView mRankTV; // Text view to display the state's place in the ranking
+        final TextView mNameTV; // Text view to display the state's name
+        final TextView mValueTV; // Text view to display the state's value of the ranked metric
+
+        /**
+         * Constructor
+         * @param itemView Root view of the row
+         */
+        RowViewHolder(View itemView)
+        {
+            super(itemView);
+            mRankTV = itemView.findViewById(R.id.rankTextView);
+            mNameTV = itemView.findViewById(R.id.stateNameTextView);
+            mValueTV = itemView.findViewById(R.id.rankingValueTextView);
+            itemView.setOnClickListener(this);
+        }
+
+        @Override
+        public void onClick(View view)
+        {
+            int position = getAdapterPosition();
+
+            if (position != RecyclerView.NO_POSITION)
+            {
+                mListener.onStateClicked(mEntries.get(position).getAbbreviation());
+            }
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.jefftrotz.covid19tracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shared index ranking every state by its latest metrics, so questions like "which states have
+ * the highest positivity rate right now" are answered without downloading or parsing anything.
+ * <p>
+ * For each ranking the index keeps the states in sorted order. When a state's data changes, only
+ * that state is moved: its metrics are brought up to date by its own MetricsEngine (which only
+ * processes the new rows), then it's taken out of each ordering and put back in with a binary
+ * search. Queries copy the ordering they need, and getTop() copies only the states it returns.
+ * <p>
+ * The index is kept up to date by SeriesDatabase as rows are written, and filled from the
+ * database with load() for states that were stored before the app started. load() moves every
+ * state it reads in one batch, so listeners are only notified once.
+ * @author Jeffrey Trotz
+ * @date 5/1/2020
+ * @version 1.0
+ */
+public final class RankingIndex
+{
+    /**
+     * Metrics the states can be ranked by
+     */
+    public enum Ranking
+    {
+        POSITIVE("Positive Tests"), // Total number of positive tests
+        NEW_POSITIVE_AVERAGE("New Positive Tests (7-Day Average)"), // Rolling mean of new positive tests
+        GROWTH_RATE("Daily Growth Rate"), // Growth rate of positive tests since the previous update
+        POSITIVITY_RATE("Positivity Rate"), // Positive tests / tests
+        DEATHS("Deaths"), // Total number of deaths
+        TESTED("Tests"); // Total number of people tested
+
+        private final String mLabel; // Name shown to the user
+
+        /**
+         * Constructor
+         * @param label Name shown to the user
+         */
+        Ranking(String label)
+        {
+            mLabel = label;
+        }
+
+        /**
+         * @return Returns the name shown to the user
+         */
+        public String getLabel()
+        {
+            return mLabel;
+        }
+
+        /**
+         * @return Returns true if the metric is a rate (shown as a percentage)
+         */
+        public boolean isRate()
+        {
+            return this == GROWTH_RATE || this == POSITIVITY_RATE;
+        }
+    }
+
+    /**
+     * Notified whenever a state moves in the index
+     */
+    public interface Listener
+    {
+        /**
+         * Called on the thread that updated the index
+         */
+        void onRankingChanged();
+    }
+
+    public static final int ROLLING_AVERAGE_DAYS = 7; // Number of days in the rolling average of new positive tests
+    private static final long SECONDS_PER_DAY = 86400; // Number of seconds in a day
+    private static final long LOAD_SECONDS = ((2 * ROLLING_AVERAGE_DAYS) + 1) * SECONDS_PER_DAY; // History read for each state by load(), enough for the rolling average and growth rate
+
+    private static final RankingIndex INSTANCE = new RankingIndex(); // Shared instance
+
+    private final Map<String, Entry> mEntries = new HashMap<>(); // Latest metrics of each state, by abbreviation
+    private final Map<String, MetricsEngine> mMetrics = new HashMap<>(); // Metrics of each state, kept so updates only process new rows
+    private final List<List<Entry>> mOrders = new ArrayList<>(); // States sorted by each ranking (highest first), in the order of Ranking
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>(); // Notified when a state moves
+
+    /**
+     * Package-private so tests can use an index of their own; the app only uses the shared instance
+     */
+    RankingIndex()
+    {
+        for (int i = 0; i < Ranking.values().length; i++)
+        {
+            mOrders.add(new ArrayList<Entry>());
+        }
+    }
+
+    /**
+     * @return Returns the shared instance
+     */
+    public static RankingIndex getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * Brings a state's metrics up to date and moves it to its new place in each ranking
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param series State's data, oldest row first
+     */
+    public void update(String abbreviation, StateTimeSeries series)
+    {
+        boolean moved;
+
+        synchronized (this)
+        {
+            moved = this.apply(abbreviation, series);
+        }
+
+        if (moved)
+        {
+            this.notifyListeners();
+        }
+    }
+
+    /**
+     * Adds every state in the database that isn't in the index yet. Each state's history is read
+     * first, then the whole batch is moved under one lock and the listeners are notified once.
+     * @param database Database holding each state's history
+     * @return Returns the number of states added
+     */
+    public int load(SeriesDatabase database)
+    {
+        Map<String, StateTimeSeries> latest = database.readLatest();
+
+        synchronized (this)
+        {
+            latest.keySet().removeAll(mEntries.keySet());
+        }
+
+        Map<String, StateTimeSeries> batch = new LinkedHashMap<>();
+
+        for (Map.Entry<String, StateTimeSeries> state : latest.entrySet())
+        {
+            long latestEpochSeconds = state.getValue().getLatestEpochSeconds();
+            batch.put(state.getKey(), database.readRange(state.getKey(), latestEpochSeconds - LOAD_SECONDS, latestEpochSeconds));
+        }
+
+        int loaded = 0;
+        boolean moved = false;
+
+        synchronized (this)
+        {
+            for (Map.Entry<String, StateTimeSeries> state : batch.entrySet())
+            {
+                // Skip states a refresh added while the history was being read
+                if (mEntries.containsKey(state.getKey()))
+                {
+                    continue;
+                }
+
+                moved |= this.apply(state.getKey(), state.getValue());
+                loaded++;
+            }
+        }
+
+        if (moved)
+        {
+            this.notifyListeners();
+        }
+
+        return loaded;
+    }
+
+    /**
+     * @param ranking Metric to rank the states by
+     * @param ascending True to put the lowest value first, false to put the highest value first
+     * @return Returns every state in the index, sorted by the metric
+     */
+    public synchronized List<Entry> getSorted(Ranking ranking, boolean ascending)
+    {
+        List<Entry> sorted = new ArrayList<>(mOrders.get(ranking.ordinal()));
+
+        if (ascending)
+        {
+            Collections.reverse(sorted);
+        }
+
+        return sorted;
+    }
+
+    /**
+     * @param ranking Metric to rank the states by
+     * @param count Most states to return
+     * @param ascending True to put the lowest value first, false to put the highest value first
+     * @return Returns the first states of getSorted(), copying only the ones returned
+     */
+    public synchronized List<Entry> getTop(Ranking ranking, int count, boolean ascending)
+    {
+        List<Entry> order = mOrders.get(ranking.ordinal());
+        int size = Math.min(Math.max(count, 0), order.size());
+        List<Entry> top = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++)
+        {
+            top.add(order.get(ascending ? order.size() - 1 - i : i));
+        }
+
+        return top;
+    }
+
+    /**
+     * @return Returns the number of states in the index
+     */
+    public synchronized int size()
+    {
+        return mEntries.size();
+    }
+
+    /**
+     * @param listener Notified whenever a state moves in the index
+     */
+    public void addListener(Listener listener)
+    {
+        mListeners.add(listener);
+    }
+
+    /**
+     * @param listener Listener to stop notifying
+     */
+    public void removeListener(Listener listener)
+    {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Brings a state's metrics up to date and moves it to its new place in each ranking. Must be
+     * called while holding the index's lock.
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param series State's data, oldest row first
+     * @return Returns true if the state moved
+     */
+    private boolean apply(String abbreviation, StateTimeSeries series)
+    {
+        if (series.isEmpty())
+        {
+            return false;
+        }
+
+        // Ignore data older than what's in the index (e.g. history read by load() while a
+        // refresh was being written)
+        Entry current = mEntries.get(abbreviation);
+
+        if (current != null && series.getLatestEpochSeconds() < current.getEpochSeconds())
+        {
+            return false;
+        }
+
+        MetricsEngine metrics = mMetrics.get(abbreviation);
+
+        if (metrics == null)
+        {
+            metrics = new MetricsEngine(ROLLING_AVERAGE_DAYS);
+            mMetrics.put(abbreviation, metrics);
+        }
+
+        metrics.update(series);
+        Entry entry = new Entry(abbreviation, metrics);
+        Entry previous = mEntries.put(abbreviation, entry);
+
+        // Nothing moves if the latest values are the same
+        if (entry.sameAs(previous))
+        {
+            mEntries.put(abbreviation, previous);
+            return false;
+        }
+
+        for (Ranking ranking : Ranking.values())
+        {
+            List<Entry> order = mOrders.get(ranking.ordinal());
+
+            if (previous != null)
+            {
+                order.remove(find(order, previous, ranking));
+            }
+
+            order.add(-find(order, entry, ranking) - 1, entry);
+        }
+
+        return true;
+    }
+
+    /**
+     * Tells every listener that states moved. Called without holding the index's lock so a
+     * listener can query the index.
+     */
+    private void notifyListeners()
+    {
+        for (Listener listener : mListeners)
+        {
+            listener.onRankingChanged();
+        }
+    }
+
+    /**
+     * Binary search for an entry in an ordering
+     * @param order States sorted by the ranking, highest first
+     * @param entry Entry to find
+     * @param ranking Metric the states are sorted by
+     * @return Returns the index of the entry, or (-(insertion point) - 1) if it isn't in the
+     * ordering
+     */
+    private static int find(List<Entry> order, Entry entry, Ranking ranking)
+    {
+        int low = 0;
+        int high = order.size() - 1;
+
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(order.get(middle), entry, ranking);
+
+            if (comparison < 0)
+            {
+                low = middle + 1;
+            }
+
+            else if (comparison > 0)
+            {
+                high = middle - 1;
+            }
+
+            else
+            {
+                return middle;
+            }
+        }
+
+        return -(low + 1);
+    }
+
+    /**
+     * @param first An entry
+     * @param second Another entry
+     * @param ranking Metric the entries are compared by
+     * @return Returns a negative number if the first entry ranks higher, a positive number if the
+     * second ranks higher, or 0 if they're the same state. Ties are broken by abbreviation.
+     */
+    static int compare(Entry first, Entry second, Ranking ranking)
+    {
+        // Double.compare() puts NaN (e.g. a rate with nothing to divide by) above every number,
+        // so compare the second to the first to get the highest values first with NaN last
+        int comparison = -Double.compare(clean(first.getValue(ranking)), clean(second.getValue(ranking)));
+        return comparison != 0 ? comparison : first.getAbbreviation().compareTo(second.getAbbreviation());
+    }
+
+    /**
+     * @param value A metric's value
+     * @return Returns the value, or negative infinity if it's NaN so it ranks last
+     */
+    private static double clean(double value)
+    {
+        return Double.isNaN(value) ? Double.NEGATIVE_INFINITY : value;
+    }
+
+    /**
+     * Immutable copy of a state's latest metrics at the time it was added to the index
+     */
+    public static final class Entry
+    {
+        private final String mAbbreviation; // 2 letter abbreviation of the state
+        private final long mEpochSeconds; // Time of the state's latest row in seconds since epoch
+        private final double[] mValues; // Value of each metric, in the order of Ranking
+
+        /**
+         * Constructor
+         * @param abbreviation 2 letter abbreviation of the state
+         * @param metrics State's data and metrics, brought up to date
+         */
+        Entry(String abbreviation, MetricsEngine metrics)
+        {
+            this(abbreviation, metrics.getSeries().getLatestEpochSeconds(), valuesOf(metrics));
+        }
+
+        /**
+         * Constructor
+         * @param abbreviation 2 letter abbreviation of the state
+         * @param epochSeconds Time of the state's latest row in seconds since epoch
+         * @param values Value of each metric, in the order of Ranking
+         */
+        Entry(String abbreviation, long epochSeconds, double[] values)
+        {
+            mAbbreviation = abbreviation;
+            mEpochSeconds = epochSeconds;
+            mValues = values;
+        }
+
+        /**
+         * @param metrics State's data and metrics, brought up to date
+         * @return Returns the latest value of each metric, in the order of Ranking
+         */
+        private static double[] valuesOf(MetricsEngine metrics)
+        {
+            StateTimeSeries series = metrics.getSeries();
+            double[] values = new double[Ranking.values().length];
+            values[Ranking.POSITIVE.ordinal()] = series.getLatestPositive();
+            values[Ranking.NEW_POSITIVE_AVERAGE.ordinal()] = metrics.getLatestRollingMean(MetricsEngine.Metric.NEW_POSITIVE,
+                ROLLING_AVERAGE_DAYS);
+            values[Ranking.GROWTH_RATE.ordinal()] = metrics.getLatest(MetricsEngine.Metric.GROWTH_RATE);
+            values[Ranking.POSITIVITY_RATE.ordinal()] = metrics.getLatest(MetricsEngine.Metric.POSITIVITY_RATE);
+            values[Ranking.DEATHS.ordinal()] = series.getLatestDeaths();
+            values[Ranking.TESTED.ordinal()] = series.getLatestTested();
+            return values;
+        }
+
+        /**
+         * @return Returns the 2 letter abbreviation of the state
+         */
+        public String getAbbreviation()
+        {
+            return mAbbreviation;
+        }
+
+        /**
+         * @return Returns the time of the state's latest row in seconds since epoch
+         */
+        public long getEpochSeconds()
+        {
+            return mEpochSeconds;
+        }
+
+        /**
+         * @param ranking Metric to read
+         * @return Returns the state's latest value of the metric
+         */
+        public double getValue(Ranking ranking)
+        {
+            return mValues[ranking.ordinal()];
+        }
+
+        /**
+         * @param other Another entry for the same state (may be null)
+         * @return Returns true if both entries hold the same values
+         */
+        boolean sameAs(Entry other)
+        {
+            return other != null && mEpochSeconds == other.mEpochSeconds
+                && Arrays.equals(mValues, other.mValues);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Token bucket that limits how often a provider's source is contacted. Up to the burst size of
+ * requests can go out right away, after which requests are spaced out to the permitted rate.
+ * Each caller reserves its slot before waiting, so callers are let through in the order they
+ * arrive, and a caller that's interrupted while waiting gives up with an exception.
+ * @author Jeffrey Trotz
+ * @date 4/28/2020
+ * @version 1.0
+ */
+public class RateLimiter
+{
+    private final double mPermitsPerNano; // Number of permits added to the bucket each nanosecond
+    private final double mBurst; // Most permits the bucket can hold
+    private final AtomicInteger mThrottledCount = new AtomicInteger(); // Number of callers that had to wait
+    private double mPermits; // Permits in the bucket (negative when callers are waiting for permits)
+    private long mLastRefillTime; // Time permits were last added (System.nanoTime())
+
+    /**
+     * Constructor
+     * @param permitsPerSecond Number of requests allowed per second on average
+     * @param burst Number of requests that can go out at once after a quiet period
+     */
+    public RateLimiter(double permitsPerSecond, int burst)
+    {
+        if (permitsPerSecond <= 0 || burst < 1)
+        {
+            throw new IllegalArgumentException("Invalid rate limit: " + permitsPerSecond + "/s, burst " + burst);
+        }
+
+        mPermitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        mBurst = burst;
+        mPermits = burst;
+        mLastRefillTime = System.nanoTime();
+    }
+
+    /**
+     * Takes a permit, waiting until one is available
+     * @throws InterruptedIOException Thrown if the thread is interrupted while waiting
+     */
+    public void acquire() throws InterruptedIOException
+    {
+        long waitNanos;
+
+        synchronized (this)
+        {
+            // Add the permits earned since the last refill, up to the burst size
+            long now = System.nanoTime();
+            mPermits = Math.min(mBurst, mPermits + ((now - mLastRefillTime) * mPermitsPerNano));
+            mLastRefillTime = now;
+
+            // Reserve a permit, and work out how long it takes to be earned if there isn't one
+            mPermits -= 1;
+            waitNanos = mPermits >= 0 ? 0 : (long) Math.ceil(-mPermits / mPermitsPerNano);
+        }
+
+        if (waitNanos == 0)
+        {
+            return;
+        }
+
+        mThrottledCount.incrementAndGet();
+
+        try
+        {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+
+        // Give up if the request was cancelled while waiting
+        catch (InterruptedException interruptedException)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the rate limit");
+        }
+    }
+
+    /**
+     * @return Returns the number of callers that had to wait for a permit
+     */
+    public int getThrottledCount()
+    {
+        return mThrottledCount.get();
+    }
+}
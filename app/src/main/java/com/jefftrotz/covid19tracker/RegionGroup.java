@@ -0,0 +1,118 @@
+package com.jefftrotz.covid19tracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable, named group of states whose data is added together by the AggregationEngine. The
+ * whole country and the four US Census Bureau regions are built in; the user can define their own
+ * groups, which are stored by RegionGroups.
+ * @author Jeffrey Trotz
+ * @date 4/29/2020
+ * @version 1.0
+ */
+public final class RegionGroup
+{
+    public static final String CUSTOM_ID_PREFIX = "custom:"; // Start of the ID of each user-defined group
+
+    // Built in groups: the whole country, then the census regions
+    private static final List<RegionGroup> BUILT_IN = Collections.unmodifiableList(Arrays.asList(
+        new RegionGroup("US", "United States", allStates()),
+        new RegionGroup("US-NE", "Northeast", Arrays.asList("CT", "ME", "MA", "NH", "RI", "VT", "NJ", "NY", "PA")),
+        new RegionGroup("US-MW", "Midwest", Arrays.asList("IL", "IN", "MI", "OH", "WI", "IA", "KS", "MN", "MO",
+            "NE", "ND", "SD")),
+        new RegionGroup("US-S", "South", Arrays.asList("DE", "FL", "GA", "MD", "NC", "SC", "VA", "DC", "WV", "AL",
+            "KY", "MS", "TN", "AR", "LA", "OK", "TX")),
+        new RegionGroup("US-W", "West", Arrays.asList("AZ", "CO", "ID", "MT", "NV", "NM", "UT", "WY", "AK", "CA",
+            "HI", "OR", "WA"))));
+
+    private final String mId; // Key the group's totals are published and cached under
+    private final String mName; // Name shown to the user
+    private final Set<String> mMembers; // 2 letter abbreviations of the states in the group, in alphabetical order
+
+    /**
+     * Constructor
+     * @param id Key the group's totals are published and cached under (must not be a state's
+     * abbreviation)
+     * @param name Name shown to the user
+     * @param members 2 letter abbreviations of the states in the group
+     */
+    public RegionGroup(String id, String name, Collection<String> members)
+    {
+        if (members.isEmpty())
+        {
+            throw new IllegalArgumentException("Group has no states: " + name);
+        }
+
+        mId = id;
+        mName = name;
+        mMembers = Collections.unmodifiableSet(new TreeSet<>(members));
+    }
+
+    /**
+     * @return Returns the built in groups: the whole country, then the census regions
+     */
+    public static List<RegionGroup> getBuiltIn()
+    {
+        return BUILT_IN;
+    }
+
+    /**
+     * @return Returns the key the group's totals are published and cached under
+     */
+    public String getId()
+    {
+        return mId;
+    }
+
+    /**
+     * @return Returns the name shown to the user
+     */
+    public String getName()
+    {
+        return mName;
+    }
+
+    /**
+     * @return Returns the 2 letter abbreviations of the states in the group, in alphabetical order
+     */
+    public Set<String> getMembers()
+    {
+        return mMembers;
+    }
+
+    /**
+     * @return Returns true if the group was defined by the user
+     */
+    public boolean isCustom()
+    {
+        return mId.startsWith(CUSTOM_ID_PREFIX);
+    }
+
+    @Override
+    public String toString()
+    {
+        return mName;
+    }
+
+    /**
+     * @return Returns the 2 letter abbreviation of every state in the spinner
+     */
+    private static List<String> allStates()
+    {
+        StateLookup stateLookup = StateLookup.getInstance();
+        List<String> abbreviations = new ArrayList<>(stateLookup.getCount());
+
+        for (int i = 0; i < stateLookup.getCount(); i++)
+        {
+            abbreviations.add(stateLookup.getAbbreviation(i));
+        }
+
+        return abbreviations;
+    }
+}
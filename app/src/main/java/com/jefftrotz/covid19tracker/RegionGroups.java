@@ -0,0 +1,76 @@
+package com.jefftrotz.covid19tracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The groups of states the user can see totals for: the built in groups followed by the groups
+ * the user has defined. User-defined groups are stored in shared preferences, with each group's
+ * name as the key and the 2 letter abbreviations of its states as the value.
+ * @author Jeffrey Trotz
+ * @date 4/29/2020
+ * @version 1.0
+ */
+public class RegionGroups
+{
+    private static final String PREFERENCES_NAME = "region_groups"; // Name of the shared preferences file
+
+    private final SharedPreferences mPreferences; // Where the user-defined groups are stored
+
+    /**
+     * Constructor
+     * @param context Context used to open the shared preferences
+     */
+    public RegionGroups(Context context)
+    {
+        mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return Returns the built in groups, followed by the user-defined groups in alphabetical order
+     */
+    public List<RegionGroup> getAll()
+    {
+        List<RegionGroup> groups = new ArrayList<>(RegionGroup.getBuiltIn());
+
+        for (Map.Entry<String, ?> entry : new TreeMap<>(mPreferences.getAll()).entrySet())
+        {
+            if (entry.getValue() instanceof Set && !((Set<?>) entry.getValue()).isEmpty())
+            {
+                @SuppressWarnings("unchecked")
+                Set<String> members = (Set<String>) entry.getValue();
+                groups.add(new RegionGroup(RegionGroup.CUSTOM_ID_PREFIX + entry.getKey(), entry.getKey(), members));
+            }
+        }
+
+        return groups;
+    }
+
+    /**
+     * Adds a user-defined group, replacing any group with the same name
+     * @param name Name of the group
+     * @param members 2 letter abbreviations of the states in the group
+     * @return Returns the group
+     */
+    public RegionGroup save(String name, Collection<String> members)
+    {
+        RegionGroup group = new RegionGroup(RegionGroup.CUSTOM_ID_PREFIX + name, name, members);
+        mPreferences.edit().putStringSet(name, group.getMembers()).apply();
+        return group;
+    }
+
+    /**
+     * Deletes a user-defined group
+     * @param name Name of the group
+     */
+    public void remove(String name)
+    {
+        mPreferences.edit().remove(name).apply();
+    }
+}
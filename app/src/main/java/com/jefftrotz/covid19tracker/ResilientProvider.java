@@ -0,0 +1,138 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.IOException;
+
+/**
+ * Wraps another provider so a flaky source doesn't turn into failed refreshes or a hammered
+ * server. Requests that fail in a way that may not happen again (network errors, timeouts, 5xx
+ * responses) are retried a bounded number of times, waiting a random, growing amount of time
+ * before each retry (see RetryPolicy). Every attempt is reported to a CircuitBreaker, and while
+ * the circuit is open requests fail straight away with a CircuitOpenException, so callers fall
+ * back to the cached data without waiting on a source that's down.
+ * <p>
+ * The wrapper uses the ID of the provider it wraps, so wrapping a provider doesn't change where
+ * its data is cached.
+ * @author Jeffrey Trotz
+ * @date 5/5/2020
+ * @version 1.0
+ */
+public class ResilientProvider implements DataProvider
+{
+    private final DataProvider mProvider; // Provider the requests are sent to
+    private final RetryPolicy mRetryPolicy; // Decides which requests are retried and how long to wait
+    private final CircuitBreaker mCircuitBreaker; // Stops requests while the source keeps failing
+    private final Clock mClock; // Used to wait between retries
+    private final PerfMonitor mPerfMonitor = PerfMonitor.getInstance(); // Counts retries and requests turned away
+
+    /**
+     * Constructor
+     * @param provider Provider the requests are sent to
+     * @param retryPolicy Decides which requests are retried and how long to wait
+     * @param circuitBreaker Stops requests while the source keeps failing (share one between
+     * every provider using the same server)
+     * @param clock Used to wait between retries (Clock.SYSTEM in the app)
+     */
+    public ResilientProvider(DataProvider provider, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker, Clock clock)
+    {
+        mProvider = provider;
+        mRetryPolicy = retryPolicy;
+        mCircuitBreaker = circuitBreaker;
+        mClock = clock;
+    }
+
+    @Override
+    public String getId()
+    {
+        return mProvider.getId();
+    }
+
+    /**
+     * Gets the rows of a region's time series from the wrapped provider, retrying failed requests
+     * @param regionId ID of the region
+     * @param eTag ETag saved from the last result (null if there isn't one)
+     * @param lastModified Last-Modified value saved from the last result (null if there isn't one)
+     * @param afterEpochSeconds Time of the last cached row. Rows at or before this time are skipped.
+     * @return Returns the first result that isn't worth retrying, or the last result if every
+     * attempt got an error code worth retrying (or the circuit opened before they ran out)
+     * @throws IOException Thrown if the last attempt fails, the request is cancelled, or the
+     * circuit was already open (CircuitBreaker.CircuitOpenException)
+     */
+    @Override
+    public FetchResult fetch(String regionId, String eTag, String lastModified, long afterEpochSeconds)
+        throws IOException
+    {
+        int maxAttempts = mRetryPolicy.getMaxAttempts();
+
+        for (int attempt = 1; ; attempt++)
+        {
+            try
+            {
+                mCircuitBreaker.acquire();
+            }
+
+            // Count requests turned away, and let the caller fall back to its cached data
+            catch (CircuitBreaker.CircuitOpenException circuitOpenException)
+            {
+                mPerfMonitor.count(regionId, PerfMonitor.Counter.REJECTED, 1);
+                throw circuitOpenException;
+            }
+
+            try
+            {
+                FetchResult result = mProvider.fetch(regionId, eTag, lastModified, afterEpochSeconds);
+
+                // Anything other than a server error is an answer from a working server, even
+                // if it's an error code the caller has to deal with
+                if (!mRetryPolicy.isRetryable(result.getResponseCode()))
+                {
+                    mCircuitBreaker.recordSuccess();
+                    return result;
+                }
+
+                if (!this.recordFailure(attempt, maxAttempts))
+                {
+                    return result;
+                }
+            }
+
+            // Retry errors that may not happen again, and give up straight away on the rest
+            catch (IOException ioException)
+            {
+                if (!mRetryPolicy.isRetryable(ioException))
+                {
+                    mCircuitBreaker.recordCancelled();
+                    throw ioException;
+                }
+
+                if (!this.recordFailure(attempt, maxAttempts))
+                {
+                    throw ioException;
+                }
+            }
+
+            // Don't leave a trial request outstanding if the provider fails in an unexpected way
+            catch (RuntimeException runtimeException)
+            {
+                mCircuitBreaker.recordFailure();
+                throw runtimeException;
+            }
+
+            // Retries are counted rather than logged, since a flaky source can retry on every refresh
+            mPerfMonitor.count(regionId, PerfMonitor.Counter.RETRIES, 1);
+            mClock.sleep(mRetryPolicy.getDelayMillis(attempt - 1));
+        }
+    }
+
+    /**
+     * Reports a failed attempt to the circuit breaker
+     * @param attempt Number of the attempt that failed (1 for the first)
+     * @param maxAttempts Most attempts allowed
+     * @return Returns true if the request should be retried, or false if it's out of attempts or
+     * the failure opened the circuit
+     */
+    private boolean recordFailure(int attempt, int maxAttempts)
+    {
+        mCircuitBreaker.recordFailure();
+        return attempt < maxAttempts && mCircuitBreaker.getState() != CircuitBreaker.State.OPEN;
+    }
+}
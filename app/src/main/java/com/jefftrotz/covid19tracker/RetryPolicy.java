@@ -0,0 +1,108 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+/**
+ * Decides which failed requests are worth trying again and how long to wait before each retry.
+ * Requests are retried a bounded number of times, after network errors and responses that say the
+ * server is having trouble (5xx, 429 and 408), but not after other error codes since sending the
+ * same request again would get the same answer. The wait doubles with each retry up to a cap, and
+ * a random amount of it is used ("full jitter"), so clients that failed at the same moment don't
+ * all come back at the same moment too.
+ * @author Jeffrey Trotz
+ * @date 5/5/2020
+ * @version 1.0
+ */
+public class RetryPolicy
+{
+    private static final int HTTP_REQUEST_TIMEOUT = 408; // Response code returned when the server gave up waiting for the request
+    private static final int HTTP_TOO_MANY_REQUESTS = 429; // Response code returned when the client is sending too many requests
+    private static final int HTTP_SERVER_ERROR = 500; // Lowest response code that means the server had a problem
+    private static final int MAX_SHIFT = 30; // Largest power of 2 the base delay is multiplied by (keeps the multiplication from overflowing)
+
+    private final int mMaxAttempts; // Most times a request is sent, counting the first time
+    private final long mBaseDelayMillis; // Longest wait before the first retry
+    private final long mMaxDelayMillis; // Longest wait before any retry
+    private final Random mRandom; // Picks how much of each wait is used
+
+    /**
+     * Constructor
+     * @param maxAttempts Most times a request is sent, counting the first time (1 turns retries off)
+     * @param baseDelayMillis Longest wait before the first retry in milliseconds
+     * @param maxDelayMillis Longest wait before any retry in milliseconds
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis)
+    {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, new Random());
+    }
+
+    /**
+     * Constructor
+     * @param maxAttempts Most times a request is sent, counting the first time (1 turns retries off)
+     * @param baseDelayMillis Longest wait before the first retry in milliseconds
+     * @param maxDelayMillis Longest wait before any retry in milliseconds
+     * @param random Picks how much of each wait is used (seed it to get the same waits every time)
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, Random random)
+    {
+        if (maxAttempts < 1 || baseDelayMillis < 0 || maxDelayMillis < baseDelayMillis)
+        {
+            throw new IllegalArgumentException("Invalid retry policy: " + maxAttempts + " attempts, "
+                + baseDelayMillis + "-" + maxDelayMillis + " ms");
+        }
+
+        mMaxAttempts = maxAttempts;
+        mBaseDelayMillis = baseDelayMillis;
+        mMaxDelayMillis = maxDelayMillis;
+        mRandom = random;
+    }
+
+    /**
+     * @return Returns the most times a request is sent, counting the first time
+     */
+    public int getMaxAttempts()
+    {
+        return mMaxAttempts;
+    }
+
+    /**
+     * @param responseCode HTTP response code of a request
+     * @return Returns true if the response code means the server is having trouble, so the same
+     * request may work if it's sent again later
+     */
+    public boolean isRetryable(int responseCode)
+    {
+        return responseCode >= HTTP_SERVER_ERROR || responseCode == HTTP_TOO_MANY_REQUESTS
+            || responseCode == HTTP_REQUEST_TIMEOUT;
+    }
+
+    /**
+     * @param exception Exception thrown by a request
+     * @return Returns true if the request may work if it's sent again. Timeouts are retried, but
+     * not requests that were cancelled (interrupted) or turned away by an open circuit.
+     */
+    public boolean isRetryable(IOException exception)
+    {
+        if (exception instanceof CircuitBreaker.CircuitOpenException)
+        {
+            return false;
+        }
+
+        return !(exception instanceof InterruptedIOException) || exception instanceof SocketTimeoutException;
+    }
+
+    /**
+     * Works out how long to wait before a retry
+     * @param retry Number of retries already made (0 before the first retry)
+     * @return Returns the time to wait in milliseconds, somewhere between 0 and the base delay
+     * times 2 to the power of retry (or the max delay, if that's shorter)
+     */
+    public long getDelayMillis(int retry)
+    {
+        long ceiling = Math.min(mMaxDelayMillis, mBaseDelayMillis << Math.min(retry, MAX_SHIFT));
+        return (long) (mRandom.nextDouble() * (ceiling + 1));
+    }
+}
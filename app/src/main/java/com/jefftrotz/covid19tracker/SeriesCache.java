@@ -0,0 +1,442 @@
+package com.jefftrotz.covid19tracker;
+
+import android.content.Context;
+import android.util.Log;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Properties;
+
+/**
+ * Persistent on-disk cache of parsed state time series. Each state is stored in its own binary
+ * file named after its 2 letter abbreviation. The file starts with a small header followed by
+ * one fixed size record per row (4 longs: time, tested, positive and deaths), so new rows can be
+ * appended to the end of the file and the whole file can be read back through a memory map
+ * without any parsing. The HTTP validators (ETag and Last-Modified) of the response the cached
+ * rows came from are kept in a small properties file next to each state's cache file.
+ * @author Jeffrey Trotz
+ * @date 4/14/2020
+ * @version 1.0
+ */
+public class SeriesCache
+{
+    private static final String CACHE_DIRECTORY = "series"; // Name of the directory the cache files are stored in
+    private static final String FILE_EXTENSION = ".bin"; // Extension added to the name of each cache file
+    private static final String VALIDATORS_EXTENSION = ".properties"; // Extension added to the name of each validators file
+    private static final String ETAG_KEY = "etag"; // Key the ETag is stored under in a validators file
+    private static final String LAST_MODIFIED_KEY = "last_modified"; // Key the Last-Modified date is stored under in a validators file
+    private static final int MAGIC_NUMBER = 0x43313954; // Marks the start of a valid cache file
+    private static final int FILE_VERSION = 1; // Version of the cache file layout
+    private static final int HEADER_SIZE = 8; // Size of the header (magic number + version) in bytes
+    private static final int FIELDS_PER_ROW = 4; // Number of longs stored for each row
+    private static final int ROW_SIZE = FIELDS_PER_ROW * 8; // Size of each row in bytes
+    private static final String TAG = "SeriesCache"; // Tag used when logging errors
+    private static final String IO_EXCEPTION_TEXT = "IO Exception: "; // Text fed into the Log.e() method when an IO exception is logged
+    private static final String INVALID_FILE_TEXT = "Discarding invalid cache file: "; // Text fed into the Log.e() method when a cache file can't be used
+    private static final String DELETE_FAILED_TEXT = "Unable to delete cache file: "; // Text fed into the Log.e() method when a cache file can't be deleted
+
+    private static SeriesCache sInstance; // Cache shared by every component of the app
+
+    private final File mDirectory; // Directory the cache files are stored in
+
+    /**
+     * Returns the cache stored in the app's private files directory. The methods of a cache are
+     * synchronized, so every component that touches the files (the activity, background sync,
+     * etc.) must share this instance rather than creating its own.
+     * @param context Context used to find the app's files directory
+     * @return Returns the shared cache
+     */
+    public static synchronized SeriesCache getInstance(Context context)
+    {
+        if (sInstance == null)
+        {
+            sInstance = new SeriesCache(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Creates a cache stored in the app's private files directory
+     * @param context Context used to find the app's files directory
+     */
+    private SeriesCache(Context context)
+    {
+        this(new File(context.getFilesDir(), CACHE_DIRECTORY));
+    }
+
+    /**
+     * Creates a cache stored in the given directory
+     * @param directory Directory the cache files are stored in
+     */
+    public SeriesCache(File directory)
+    {
+        mDirectory = directory;
+    }
+
+    /**
+     * Reads a state's cached series from disk through a memory map
+     * @param abbreviation 2 letter abbreviation of the state
+     * @return Returns the cached series, or null if nothing has been cached for the state yet
+     */
+    public synchronized StateTimeSeries read(String abbreviation)
+    {
+        File file = this.getFile(abbreviation);
+
+        // Nothing to read if the state hasn't been cached
+        if (!file.exists())
+        {
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = null;
+
+        try
+        {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            FileChannel channel = randomAccessFile.getChannel();
+            long length = channel.size();
+
+            // Throw away files with a missing or unexpected header
+            if (length < HEADER_SIZE || (length - HEADER_SIZE) % ROW_SIZE != 0)
+            {
+                Log.e(TAG, INVALID_FILE_TEXT + file.getName());
+                this.delete(file);
+                return null;
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+            if (buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != FILE_VERSION)
+            {
+                Log.e(TAG, INVALID_FILE_TEXT + file.getName());
+                this.delete(file);
+                return null;
+            }
+
+            // Copy each row from the memory map into the columns of a new series
+            int rows = (int) ((length - HEADER_SIZE) / ROW_SIZE);
+            LongBuffer values = buffer.asLongBuffer();
+            StateTimeSeries series = new StateTimeSeries(rows);
+
+            for (int i = 0; i < rows; i++)
+            {
+                int offset = i * FIELDS_PER_ROW;
+                series.append(values.get(offset), values.get(offset + 1),
+                    values.get(offset + 2), values.get(offset + 3));
+            }
+
+            return series;
+        }
+
+        // Catch and log IO Exceptions
+        catch (IOException ioException)
+        {
+            Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+            ioException.printStackTrace();
+            return null;
+        }
+
+        // Close the file after it's been read or after an exception is caught
+        finally
+        {
+            this.close(randomAccessFile);
+        }
+    }
+
+    /**
+     * Appends the rows of a series that are newer than the last cached row to the end of a
+     * state's cache file, creating the file if it doesn't exist yet
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param series Series containing the rows to add, oldest row first
+     * @return Returns the number of rows written to the file
+     */
+    public synchronized int append(String abbreviation, StateTimeSeries series)
+    {
+        File file = this.getFile(abbreviation);
+        RandomAccessFile randomAccessFile = null;
+
+        try
+        {
+            // Make sure the cache directory exists before creating a file in it
+            if (!mDirectory.exists() && !mDirectory.mkdirs())
+            {
+                throw new IOException("Unable to create " + mDirectory);
+            }
+
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            FileChannel channel = randomAccessFile.getChannel();
+            long length = channel.size();
+            long lastCachedTime = Long.MIN_VALUE;
+
+            // Start a new file (or replace an invalid one) with the header
+            if (length < HEADER_SIZE || (length - HEADER_SIZE) % ROW_SIZE != 0)
+            {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC_NUMBER).putInt(FILE_VERSION).flip();
+                channel.truncate(0);
+                channel.write(header, 0);
+                length = HEADER_SIZE;
+            }
+
+            // Otherwise find the time of the last cached row
+            else if (length > HEADER_SIZE)
+            {
+                ByteBuffer lastTime = ByteBuffer.allocate(8);
+                channel.read(lastTime, length - ROW_SIZE);
+                lastTime.flip();
+                lastCachedTime = lastTime.getLong();
+            }
+
+            // Only rows newer than the last cached row are written
+            int fromRow = series.indexAtOrAfter(lastCachedTime == Long.MIN_VALUE ? lastCachedTime : lastCachedTime + 1);
+            int newRows = series.size() - fromRow;
+
+            if (newRows > 0)
+            {
+                ByteBuffer rows = ByteBuffer.allocate(newRows * ROW_SIZE);
+
+                for (int i = fromRow; i < series.size(); i++)
+                {
+                    rows.putLong(series.getEpochSeconds(i))
+                        .putLong(series.getTested(i))
+                        .putLong(series.getPositive(i))
+                        .putLong(series.getDeaths(i));
+                }
+
+                rows.flip();
+                channel.write(rows, length);
+            }
+
+            return newRows;
+        }
+
+        // Catch and log IO Exceptions
+        catch (IOException ioException)
+        {
+            Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+            ioException.printStackTrace();
+            return 0;
+        }
+
+        // Close the file after it's been written or after an exception is caught
+        finally
+        {
+            this.close(randomAccessFile);
+        }
+    }
+
+    /**
+     * Reads the HTTP validators stored for a state. Validators are only returned if at least one
+     * of the state's rows can be read from the cache too, otherwise a 304 response would leave the
+     * app with no data to show.
+     * @param abbreviation 2 letter abbreviation of the state
+     * @return Returns the stored validators (both values are null if none are stored)
+     */
+    public synchronized Validators readValidators(String abbreviation)
+    {
+        File file = new File(mDirectory, abbreviation + VALIDATORS_EXTENSION);
+
+        // Nothing to read if the validators or the rows they belong to haven't been cached
+        if (!file.exists() || !this.hasRows(this.getFile(abbreviation)))
+        {
+            return new Validators(null, null);
+        }
+
+        FileInputStream inputStream = null;
+
+        try
+        {
+            Properties properties = new Properties();
+            inputStream = new FileInputStream(file);
+            properties.load(inputStream);
+            return new Validators(properties.getProperty(ETAG_KEY), properties.getProperty(LAST_MODIFIED_KEY));
+        }
+
+        // Catch and log IO Exceptions
+        catch (IOException ioException)
+        {
+            Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+            ioException.printStackTrace();
+            return new Validators(null, null);
+        }
+
+        // Close the file after it's been read or after an exception is caught
+        finally
+        {
+            this.close(inputStream);
+        }
+    }
+
+    /**
+     * Stores the HTTP validators of the latest response for a state
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param eTag ETag of the response (may be null)
+     * @param lastModified Last-Modified date of the response (may be null)
+     */
+    public synchronized void writeValidators(String abbreviation, String eTag, String lastModified)
+    {
+        File file = new File(mDirectory, abbreviation + VALIDATORS_EXTENSION);
+        FileOutputStream outputStream = null;
+
+        try
+        {
+            // Make sure the cache directory exists before creating a file in it
+            if (!mDirectory.exists() && !mDirectory.mkdirs())
+            {
+                throw new IOException("Unable to create " + mDirectory);
+            }
+
+            Properties properties = new Properties();
+
+            if (eTag != null)
+            {
+                properties.setProperty(ETAG_KEY, eTag);
+            }
+
+            if (lastModified != null)
+            {
+                properties.setProperty(LAST_MODIFIED_KEY, lastModified);
+            }
+
+            outputStream = new FileOutputStream(file);
+            properties.store(outputStream, null);
+        }
+
+        // Catch and log IO Exceptions
+        catch (IOException ioException)
+        {
+            Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+            ioException.printStackTrace();
+        }
+
+        // Close the file after it's been written or after an exception is caught
+        finally
+        {
+            this.close(outputStream);
+        }
+    }
+
+    /**
+     * @param abbreviation 2 letter abbreviation of the state
+     * @return Returns the cache file used for the state
+     */
+    private File getFile(String abbreviation)
+    {
+        return new File(mDirectory, abbreviation + FILE_EXTENSION);
+    }
+
+    /**
+     * Checks that a cache file has a valid header and at least one whole row, without reading
+     * the rows
+     * @param file Cache file of a state
+     * @return Returns true if the file's rows can be read
+     */
+    private boolean hasRows(File file)
+    {
+        long length = file.length();
+
+        if (!file.canRead() || length < HEADER_SIZE + ROW_SIZE || (length - HEADER_SIZE) % ROW_SIZE != 0)
+        {
+            return false;
+        }
+
+        RandomAccessFile randomAccessFile = null;
+
+        try
+        {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            return randomAccessFile.readInt() == MAGIC_NUMBER && randomAccessFile.readInt() == FILE_VERSION;
+        }
+
+        // Catch and log IO Exceptions, and treat the file as unreadable
+        catch (IOException ioException)
+        {
+            Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+            return false;
+        }
+
+        // Close the file after it's been checked or after an exception is caught
+        finally
+        {
+            this.close(randomAccessFile);
+        }
+    }
+
+    /**
+     * Deletes a cache file that can't be used
+     * @param file File to delete
+     */
+    private void delete(File file)
+    {
+        if (!file.delete())
+        {
+            Log.e(TAG, DELETE_FAILED_TEXT + file.getName());
+        }
+    }
+
+    /**
+     * Closes a file, logging any errors
+     * @param file File to close (may be null)
+     */
+    private void close(Closeable file)
+    {
+        try
+        {
+            if (file != null)
+            {
+                file.close();
+            }
+        }
+
+        // Catch and log IO Exceptions
+        catch (IOException ioException)
+        {
+            Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+            ioException.printStackTrace();
+        }
+    }
+
+    /**
+     * HTTP validators stored for a state
+     */
+    public static class Validators
+    {
+        private final String mETag; // ETag of the last response (may be null)
+        private final String mLastModified; // Last-Modified date of the last response (may be null)
+
+        /**
+         * Constructor
+         * @param eTag ETag of the last response (may be null)
+         * @param lastModified Last-Modified date of the last response (may be null)
+         */
+        Validators(String eTag, String lastModified)
+        {
+            mETag = eTag;
+            mLastModified = lastModified;
+        }
+
+        /**
+         * @return Returns the ETag of the last response (may be null)
+         */
+        public String getETag()
+        {
+            return mETag;
+        }
+
+        /**
+         * @return Returns the Last-Modified date of the last response (may be null)
+         */
+        public String getLastModified()
+        {
+            return mLastModified;
+        }
+    }
+}
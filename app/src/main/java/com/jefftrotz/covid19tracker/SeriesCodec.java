@@ -0,0 +1,569 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+/**
+ * Compact binary format for a region's time series, used to store and export histories in a
+ * fraction of the space of the API's CSV. Cumulative totals change little from one row to the
+ * next, so each row is stored as the differences from the row before it, written as variable
+ * length integers (7 bits per byte, high bit set on every byte but the last). The time between
+ * rows is nearly always the same, so times are stored as the change in that gap, which is usually
+ * a single zero byte. Differences can be negative (e.g. when a source revises a total down), so
+ * they're zigzag encoded first to keep small negative numbers small.
+ * <p>
+ * Layout: MAGIC_NUMBER (4 bytes), FORMAT_VERSION (1 byte), the length and UTF-8 bytes of the
+ * region ID, then the rows until the end of the data. There's no row count, so rows can be
+ * appended to the end of a file by a Writer that picks up from the last row, and a row cut off by
+ * a crash during an append is dropped when the data is decoded. Data that's malformed anywhere
+ * else (e.g. a variable length integer that never ends) is rejected rather than cut short.
+ * <p>
+ * Nothing in the app stores or exports data in this format yet; the cache and database keep
+ * their own formats.
+ * @author Jeffrey Trotz
+ * @date 5/2/2020
+ * @version 1.0
+ */
+public final class SeriesCodec
+{
+    public static final int MAGIC_NUMBER = 0x43313944; // Marks the start of encoded data ("C19D")
+    public static final int FORMAT_VERSION = 1; // Version of the layout
+    private static final Charset UTF_8 = Charset.forName("UTF-8"); // Encoding of the region ID
+    private static final int MAX_REGION_ID_LENGTH = 255; // Most bytes a region ID can take up
+
+    /**
+     * Not used, only static methods
+     */
+    private SeriesCodec()
+    {
+    }
+
+    /**
+     * Encodes a series
+     * @param regionId ID of the region the series is for
+     * @param series Series to encode, oldest row first
+     * @return Returns the encoded data
+     */
+    public static byte[] encode(String regionId, StateTimeSeries series)
+    {
+        // Most rows take 5 to 8 bytes
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(16 + (series.size() * 8));
+
+        try
+        {
+            Writer writer = new Writer(outputStream, regionId);
+            writer.appendAll(series);
+            writer.flush();
+        }
+
+        // Writing to memory can't fail
+        catch (IOException ioException)
+        {
+            throw new IllegalStateException(ioException);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Decodes data made by encode() or a Writer
+     * @param data Encoded data
+     * @return Returns the region ID and series
+     * @throws IOException Thrown if the data isn't in this format
+     */
+    public static Decoded decode(byte[] data) throws IOException
+    {
+        return decode(data, data.length);
+    }
+
+    /**
+     * Reads and decodes data made by encode() or a Writer
+     * @param inputStream Stream to read the data from (read to the end, but not closed)
+     * @return Returns the region ID and series
+     * @throws IOException Thrown if the data can't be read or isn't in this format
+     */
+    public static Decoded read(InputStream inputStream) throws IOException
+    {
+        return decode(readAll(inputStream));
+    }
+
+    /**
+     * Adds rows to the end of a file, creating the file if it doesn't exist. A row cut off by an
+     * earlier append that didn't finish is removed first.
+     * <p>
+     * Each row is stored relative to the one before it and there's no index, so the file is read
+     * through once to pick up the running totals of its last row. Only those totals are kept (no
+     * series is built), but the time still grows with the file: about 6 bytes a row, or a few KB
+     * for a year of daily rows.
+     * @param file File to add the rows to
+     * @param regionId ID of the region the series is for (must match the file's if it exists)
+     * @param rows Rows to add, oldest first. They should be newer than the file's last row.
+     * @throws IOException Thrown if the file can't be read or written, or belongs to another region
+     */
+    public static void append(File file, String regionId, StateTimeSeries rows) throws IOException
+    {
+        if (!file.exists() || file.length() == 0)
+        {
+            try (OutputStream outputStream = new FileOutputStream(file))
+            {
+                Writer writer = new Writer(outputStream, regionId);
+                writer.appendAll(rows);
+                writer.flush();
+            }
+
+            return;
+        }
+
+        byte[] data;
+
+        try (InputStream inputStream = new FileInputStream(file))
+        {
+            data = readAll(inputStream);
+        }
+
+        // Malformed data throws here, before the file is changed
+        Scan existing = scan(data, data.length, null);
+
+        if (!existing.mRegionId.equals(regionId))
+        {
+            throw new IOException("File is for " + existing.mRegionId + ", not " + regionId + ": " + file);
+        }
+
+        // Drop any partly written row, then continue from the last complete one
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+        {
+            randomAccessFile.setLength(existing.mLength);
+        }
+
+        try (OutputStream outputStream = new FileOutputStream(file, true))
+        {
+            Writer writer = new Writer(outputStream, existing);
+            writer.appendAll(rows);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Decodes the first bytes of an array
+     * @param data Encoded data
+     * @param length Number of bytes to decode
+     * @return Returns the region ID and series
+     * @throws IOException Thrown if the data isn't in this format
+     */
+    private static Decoded decode(byte[] data, int length) throws IOException
+    {
+        // Each row is about 6 bytes, so this rarely has to grow
+        StateTimeSeries series = new StateTimeSeries(Math.max(1, length / 6));
+        Scan scan = scan(data, length, series);
+        series.trimToSize();
+        return new Decoded(scan.mRegionId, series, scan.mLength);
+    }
+
+    /**
+     * Reads through the header and rows of encoded data
+     * @param data Encoded data
+     * @param length Number of bytes to read
+     * @param series Series to add each row to, or null to only keep the last row's totals
+     * @return Returns the region ID, the length of the complete rows and the last row's totals
+     * @throws IOException Thrown if the data isn't in this format or is malformed before its
+     * last row
+     */
+    private static Scan scan(byte[] data, int length, StateTimeSeries series) throws IOException
+    {
+        Cursor cursor = new Cursor(data, length);
+
+        if (length < 6 || cursor.readInt() != MAGIC_NUMBER)
+        {
+            throw new IOException("Not an encoded series");
+        }
+
+        int version = cursor.readByte();
+
+        if (version != FORMAT_VERSION)
+        {
+            throw new IOException("Unsupported series format version: " + version);
+        }
+
+        int regionIdLength = cursor.readByte();
+
+        if (cursor.mPosition + regionIdLength > length)
+        {
+            throw new EOFException("Series header cut off");
+        }
+
+        String regionId = new String(data, cursor.mPosition, regionIdLength, UTF_8);
+        cursor.mPosition += regionIdLength;
+
+        Scan scan = new Scan(regionId);
+        int rowStart = cursor.mPosition;
+
+        try
+        {
+            while (cursor.mPosition < length)
+            {
+                rowStart = cursor.mPosition;
+                long gap = scan.mGap + zigzagDecode(cursor.readVarLong());
+                long tested = scan.mTested + zigzagDecode(cursor.readVarLong());
+                long positive = scan.mPositive + zigzagDecode(cursor.readVarLong());
+                long deaths = scan.mDeaths + zigzagDecode(cursor.readVarLong());
+                scan.mGap = gap;
+                scan.mTime += gap;
+                scan.mTested = tested;
+                scan.mPositive = positive;
+                scan.mDeaths = deaths;
+
+                if (series != null)
+                {
+                    series.append(scan.mTime, tested, positive, deaths);
+                }
+
+                rowStart = cursor.mPosition;
+            }
+        }
+
+        // The data ran out part way through the last row (an append didn't finish), so keep the
+        // rows before it. Malformed data throws a plain IOException, which isn't caught here.
+        catch (EOFException eofException)
+        {
+            cursor.mPosition = rowStart;
+        }
+
+        scan.mLength = cursor.mPosition;
+        return scan;
+    }
+
+    /**
+     * Reads a stream to the end in blocks, so decoding doesn't go through it a byte at a time
+     * @param inputStream Stream to read (not closed)
+     * @return Returns every byte read
+     * @throws IOException Thrown if the stream can't be read
+     */
+    private static byte[] readAll(InputStream inputStream) throws IOException
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+
+        while ((count = inputStream.read(buffer)) != -1)
+        {
+            outputStream.write(buffer, 0, count);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * @param value Signed value
+     * @return Returns the value with its sign moved to the lowest bit, so small negative numbers
+     * become small positive ones (0, -1, 1, -2 become 0, 1, 2, 3)
+     */
+    static long zigzagEncode(long value)
+    {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * @param value Value made by zigzagEncode()
+     * @return Returns the signed value
+     */
+    static long zigzagDecode(long value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes rows one at a time to a stream, encoding each as the differences from the row before
+     */
+    public static class Writer
+    {
+        private final OutputStream mOutputStream; // Stream the rows are written to
+        private final byte[] mBuffer = new byte[4 * 10]; // Room for one row (a long takes at most 10 bytes)
+        private long mTime; // Time of the last row written
+        private long mGap; // Time between the last two rows written
+        private long mTested; // Number tested in the last row written
+        private long mPositive; // Number of positive tests in the last row written
+        private long mDeaths; // Number of deaths in the last row written
+
+        /**
+         * Starts new encoded data by writing the header
+         * @param outputStream Stream to write to (buffer it if it's a file)
+         * @param regionId ID of the region the series is for
+         * @throws IOException Thrown if the header can't be written
+         */
+        public Writer(OutputStream outputStream, String regionId) throws IOException
+        {
+            byte[] regionIdBytes = regionId.getBytes(UTF_8);
+
+            if (regionIdBytes.length > MAX_REGION_ID_LENGTH)
+            {
+                throw new IllegalArgumentException("Region ID too long: " + regionId);
+            }
+
+            mOutputStream = outputStream;
+            mOutputStream.write(new byte[]
+            {
+                (byte) (MAGIC_NUMBER >>> 24), (byte) (MAGIC_NUMBER >>> 16), (byte) (MAGIC_NUMBER >>> 8),
+                (byte) MAGIC_NUMBER, (byte) FORMAT_VERSION, (byte) regionIdBytes.length
+            });
+            mOutputStream.write(regionIdBytes);
+        }
+
+        /**
+         * Continues encoded data that's already been written, without writing a header
+         * @param outputStream Stream positioned at the end of the existing data
+         * @param existing Rows already written (decoded from the existing data)
+         */
+        public Writer(OutputStream outputStream, StateTimeSeries existing)
+        {
+            mOutputStream = outputStream;
+            int size = existing.size();
+
+            if (size > 0)
+            {
+                mTime = existing.getEpochSeconds(size - 1);
+                mGap = size > 1 ? mTime - existing.getEpochSeconds(size - 2) : mTime;
+                mTested = existing.getTested(size - 1);
+                mPositive = existing.getPositive(size - 1);
+                mDeaths = existing.getDeaths(size - 1);
+            }
+        }
+
+        /**
+         * Continues encoded data that's already been written, without writing a header
+         * @param outputStream Stream positioned at the end of the existing data
+         * @param existing Totals of the last row already written (read from the existing data)
+         */
+        private Writer(OutputStream outputStream, Scan existing)
+        {
+            mOutputStream = outputStream;
+            mTime = existing.mTime;
+            mGap = existing.mGap;
+            mTested = existing.mTested;
+            mPositive = existing.mPositive;
+            mDeaths = existing.mDeaths;
+        }
+
+        /**
+         * Writes a row
+         * @param epochSeconds Time the stats were updated in seconds since epoch
+         * @param tested Number of people tested
+         * @param positive Number of positive tests
+         * @param deaths Number of deaths
+         * @throws IOException Thrown if the row can't be written
+         */
+        public void append(long epochSeconds, long tested, long positive, long deaths) throws IOException
+        {
+            long gap = epochSeconds - mTime;
+            int length = putVarLong(mBuffer, 0, zigzagEncode(gap - mGap));
+            length = putVarLong(mBuffer, length, zigzagEncode(tested - mTested));
+            length = putVarLong(mBuffer, length, zigzagEncode(positive - mPositive));
+            length = putVarLong(mBuffer, length, zigzagEncode(deaths - mDeaths));
+
+            // Each row goes out in a single write, so a crash can only cut off the last row
+            mOutputStream.write(mBuffer, 0, length);
+            mTime = epochSeconds;
+            mGap = gap;
+            mTested = tested;
+            mPositive = positive;
+            mDeaths = deaths;
+        }
+
+        /**
+         * Writes every row of a series
+         * @param series Rows to write, oldest first
+         * @throws IOException Thrown if a row can't be written
+         */
+        public void appendAll(StateTimeSeries series) throws IOException
+        {
+            for (int i = 0; i < series.size(); i++)
+            {
+                this.append(series.getEpochSeconds(i), series.getTested(i), series.getPositive(i), series.getDeaths(i));
+            }
+        }
+
+        /**
+         * Flushes the stream
+         * @throws IOException Thrown if the stream can't be flushed
+         */
+        public void flush() throws IOException
+        {
+            mOutputStream.flush();
+        }
+
+        /**
+         * Writes a value as a variable length integer
+         * @param buffer Buffer to write to
+         * @param offset Index to start writing at
+         * @param value Value to write (treated as unsigned)
+         * @return Returns the index after the last byte written
+         */
+        private static int putVarLong(byte[] buffer, int offset, long value)
+        {
+            while ((value & ~0x7FL) != 0)
+            {
+                buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            buffer[offset++] = (byte) value;
+            return offset;
+        }
+    }
+
+    /**
+     * Region ID and series decoded from encoded data
+     */
+    public static final class Decoded
+    {
+        private final String mRegionId; // ID of the region the series is for
+        private final StateTimeSeries mSeries; // Decoded rows, oldest first
+        private final int mLength; // Number of bytes holding the header and complete rows
+
+        /**
+         * Constructor
+         * @param regionId ID of the region the series is for
+         * @param series Decoded rows, oldest first
+         * @param length Number of bytes holding the header and complete rows
+         */
+        Decoded(String regionId, StateTimeSeries series, int length)
+        {
+            mRegionId = regionId;
+            mSeries = series;
+            mLength = length;
+        }
+
+        /**
+         * @return Returns the ID of the region the series is for
+         */
+        public String getRegionId()
+        {
+            return mRegionId;
+        }
+
+        /**
+         * @return Returns the decoded rows, oldest first
+         */
+        public StateTimeSeries getSeries()
+        {
+            return mSeries;
+        }
+
+        /**
+         * @return Returns the number of bytes holding the header and complete rows (anything
+         * after that was a row cut off part way through)
+         */
+        public int getLength()
+        {
+            return mLength;
+        }
+    }
+
+    /**
+     * Region ID, length and last row's totals found by scan()
+     */
+    private static final class Scan
+    {
+        private final String mRegionId; // ID of the region the series is for
+        private int mLength; // Number of bytes holding the header and complete rows
+        private long mTime; // Time of the last complete row
+        private long mGap; // Time between the last two complete rows
+        private long mTested; // Number tested in the last complete row
+        private long mPositive; // Number of positive tests in the last complete row
+        private long mDeaths; // Number of deaths in the last complete row
+
+        /**
+         * Constructor
+         * @param regionId ID of the region the series is for
+         */
+        Scan(String regionId)
+        {
+            mRegionId = regionId;
+        }
+    }
+
+    /**
+     * Reads values from a byte array
+     */
+    private static class Cursor
+    {
+        private final byte[] mData; // Encoded data
+        private final int mLength; // Number of bytes that can be read
+        int mPosition; // Index of the next byte to read
+
+        /**
+         * Constructor
+         * @param data Encoded data
+         * @param length Number of bytes that can be read
+         */
+        Cursor(byte[] data, int length)
+        {
+            mData = data;
+            mLength = length;
+        }
+
+        /**
+         * @return Returns the next byte (0 to 255)
+         * @throws EOFException Thrown if there are no more bytes
+         */
+        int readByte() throws EOFException
+        {
+            if (mPosition >= mLength)
+            {
+                throw new EOFException();
+            }
+
+            return mData[mPosition++] & 0xFF;
+        }
+
+        /**
+         * @return Returns the next 4 bytes as a big endian int
+         * @throws EOFException Thrown if there aren't 4 more bytes
+         */
+        int readInt() throws EOFException
+        {
+            return (this.readByte() << 24) | (this.readByte() << 16) | (this.readByte() << 8) | this.readByte();
+        }
+
+        /**
+         * @return Returns the next variable length integer
+         * @throws EOFException Thrown if the data ends part way through the integer
+         * @throws IOException Thrown if the integer doesn't end within 10 bytes (malformed data)
+         */
+        long readVarLong() throws IOException
+        {
+            long value = 0;
+            int shift = 0;
+
+            while (true)
+            {
+                if (mPosition >= mLength)
+                {
+                    throw new EOFException();
+                }
+
+                byte b = mData[mPosition++];
+                value |= (long) (b & 0x7F) << shift;
+
+                if (b >= 0)
+                {
+                    return value;
+                }
+
+                shift += 7;
+
+                if (shift > 63)
+                {
+                    throw new IOException("Malformed variable length integer");
+                }
+            }
+        }
+    }
+}
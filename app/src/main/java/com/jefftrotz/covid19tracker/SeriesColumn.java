@@ -0,0 +1,36 @@
+package com.jefftrotz.covid19tracker;
+
+/**
+ * Columns of a StateTimeSeries that can be plotted on a graph axis
+ * @author Jeffrey Trotz
+ * @date 4/20/2020
+ * @version 1.0
+ */
+public enum SeriesColumn
+{
+    TIME, // Time the row was updated, in milliseconds since epoch (the unit used by Date)
+    TESTED, // Number of people tested
+    POSITIVE, // Number of positive tests
+    DEATHS; // Number of deaths
+
+    /**
+     * Reads this column's value from a row of a series
+     * @param series Series to read from
+     * @param row Index of the row
+     * @return Returns the value as a double, ready to be plotted
+     */
+    public double get(StateTimeSeries series, int row)
+    {
+        switch (this)
+        {
+            case TIME:
+                return series.getEpochSeconds(row) * 1000.0;
+            case TESTED:
+                return series.getTested(row);
+            case POSITIVE:
+                return series.getPositive(row);
+            default:
+                return series.getDeaths(row);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.jefftrotz.covid19tracker;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * SQLite database holding the history of every state that's been downloaded, one row per state
+ * per update (state, time, tested, positive, deaths). Unlike the SeriesCache, which holds one file
+ * per state for reading a whole series back quickly, the database can answer questions across
+ * states without reading every file: a state's rows in a range of dates and the latest row of
+ * each state. Ranking the states is left to the RankingIndex, which is loaded from those rows.
+ * <p>
+ * The primary key (state, time) is also the index for finding a state's rows, and a second index
+ * on time covers date ranges across every state. The table is created WITHOUT ROWID so the rows
+ * are stored in the primary key's order and reading a state's history is a single range scan.
+ * <p>
+ * Rows are written in batches, one transaction per batch, through a single compiled statement.
+ * Only rows newer than the latest one already stored for each state are inserted, so whole series
+ * can be handed to write() without rewriting history. Once a batch is committed, the states in it
+ * are moved to their new places in the RankingIndex.
+ * @author Jeffrey Trotz
+ * @date 4/30/2020
+ * @version 1.0
+ */
+public class SeriesDatabase extends SQLiteOpenHelper
+{
+    private static final String DATABASE_NAME = "history.db"; // Name of the database file
+    private static final int DATABASE_VERSION = 1; // Version of the schema
+    private static final String TAG = "SeriesDatabase"; // Tag used when logging
+    private static final String WRITE_TEXT = "Wrote %d rows for %d states in %.2f ms"; // Text fed into the Log.d() method when logging how long a batch took
+
+    private static final String CREATE_TABLE = "CREATE TABLE history ("
+        + "state TEXT NOT NULL, "
+        + "time INTEGER NOT NULL, "
+        + "tested INTEGER NOT NULL, "
+        + "positive INTEGER NOT NULL, "
+        + "deaths INTEGER NOT NULL, "
+        + "PRIMARY KEY (state, time)) WITHOUT ROWID"; // Creates the table (the primary key doubles as the index on state)
+    private static final String CREATE_TIME_INDEX = "CREATE INDEX history_time ON history (time)"; // Creates the index on time
+    private static final String INSERT_ROW = "INSERT OR REPLACE INTO history (state, time, tested, positive, deaths) "
+        + "VALUES (?, ?, ?, ?, ?)"; // Inserts a row
+    private static final String SELECT_LATEST_TIME = "SELECT IFNULL(MAX(time), " + Long.MIN_VALUE + ") "
+        + "FROM history WHERE state = ?"; // Finds the time of a state's latest row
+    private static final String SELECT_RANGE = "SELECT time, tested, positive, deaths FROM history "
+        + "WHERE state = ? AND time BETWEEN ? AND ? ORDER BY time"; // Reads a state's rows in a range of times
+
+    // Reads the latest row of each state. SQLite takes the bare columns from the row MAX() picked.
+    private static final String SELECT_LATEST = "SELECT state, MAX(time) AS latest_time, tested, positive, deaths "
+        + "FROM history GROUP BY state";
+
+    private static SeriesDatabase sInstance; // Database shared by every component of the app
+
+    /**
+     * Returns the database stored in the app's databases directory. Every component must share
+     * this instance so writes are serialized through one connection.
+     * @param context Context used to find the app's databases directory
+     * @return Returns the shared database
+     */
+    public static synchronized SeriesDatabase getInstance(Context context)
+    {
+        if (sInstance == null)
+        {
+            sInstance = new SeriesDatabase(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Constructor. Only getInstance() creates one in the app; tests subclass it to stub writes.
+     * @param context Context used to find the app's databases directory
+     */
+    SeriesDatabase(Context context)
+    {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+
+        // Let queries run while a sync is writing
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * Creates the table and its indexes the first time the database is opened
+     * @param db Database being created
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db)
+    {
+        db.execSQL(CREATE_TABLE);
+        db.execSQL(CREATE_TIME_INDEX);
+    }
+
+    /**
+     * Called when the schema version changes. There's only been one version so far.
+     * @param db Database being upgraded
+     * @param oldVersion Version of the schema in the file
+     * @param newVersion Version of the schema the app uses
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion)
+    {
+        // Not used
+    }
+
+    /**
+     * Stores the rows of several states in a single transaction. For each state, only the rows
+     * newer than the latest one already stored are inserted.
+     * @param seriesByState Data of each state (oldest row first), by 2 letter abbreviation
+     * @return Returns the number of rows inserted
+     */
+    public int write(Map<String, StateTimeSeries> seriesByState)
+    {
+        long startTime = SystemClock.elapsedRealtimeNanos();
+        SQLiteDatabase db = getWritableDatabase();
+        SQLiteStatement latestTime = db.compileStatement(SELECT_LATEST_TIME);
+        SQLiteStatement insert = db.compileStatement(INSERT_ROW);
+        int inserted = 0;
+        db.beginTransactionNonExclusive();
+
+        try
+        {
+            for (Map.Entry<String, StateTimeSeries> entry : seriesByState.entrySet())
+            {
+                String abbreviation = entry.getKey();
+                StateTimeSeries series = entry.getValue();
+                latestTime.bindString(1, abbreviation);
+                long latest = latestTime.simpleQueryForLong();
+                int firstRow = latest == Long.MIN_VALUE ? 0 : series.indexAtOrAfter(latest + 1);
+
+                for (int row = firstRow; row < series.size(); row++)
+                {
+                    insert.bindString(1, abbreviation);
+                    insert.bindLong(2, series.getEpochSeconds(row));
+                    insert.bindLong(3, series.getTested(row));
+                    insert.bindLong(4, series.getPositive(row));
+                    insert.bindLong(5, series.getDeaths(row));
+                    insert.executeInsert();
+                    inserted++;
+                }
+            }
+
+            db.setTransactionSuccessful();
+        }
+
+        // Commit the batch, or roll it back if anything went wrong
+        finally
+        {
+            db.endTransaction();
+            latestTime.close();
+            insert.close();
+        }
+
+        Log.d(TAG, String.format(Locale.US, WRITE_TEXT, inserted, seriesByState.size(),
+            (SystemClock.elapsedRealtimeNanos() - startTime) / 1000000.0));
+
+        // Keep the rankings in step with the latest stored rows
+        for (Map.Entry<String, StateTimeSeries> entry : seriesByState.entrySet())
+        {
+            RankingIndex.getInstance().update(entry.getKey(), entry.getValue());
+        }
+
+        return inserted;
+    }
+
+    /**
+     * Reads a state's rows updated between two times (inclusive)
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param fromEpochSeconds Start of the range in seconds since epoch
+     * @param toEpochSeconds End of the range in seconds since epoch
+     * @return Returns the rows in the range, oldest first
+     */
+    public StateTimeSeries readRange(String abbreviation, long fromEpochSeconds, long toEpochSeconds)
+    {
+        Cursor cursor = getReadableDatabase().rawQuery(SELECT_RANGE,
+            new String[] {abbreviation, Long.toString(fromEpochSeconds), Long.toString(toEpochSeconds)});
+
+        try
+        {
+            StateTimeSeries series = new StateTimeSeries(cursor.getCount());
+
+            while (cursor.moveToNext())
+            {
+                series.append(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2), cursor.getLong(3));
+            }
+
+            return series;
+        }
+
+        finally
+        {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return Returns the latest row of each state as a single row series, by 2 letter
+     * abbreviation in alphabetical order
+     */
+    public Map<String, StateTimeSeries> readLatest()
+    {
+        Cursor cursor = getReadableDatabase().rawQuery(SELECT_LATEST + " ORDER BY state", null);
+
+        try
+        {
+            Map<String, StateTimeSeries> latest = new LinkedHashMap<>();
+
+            while (cursor.moveToNext())
+            {
+                StateTimeSeries row = new StateTimeSeries(1);
+                row.append(cursor.getLong(1), cursor.getLong(2), cursor.getLong(3), cursor.getLong(4));
+                latest.put(cursor.getString(0), row);
+            }
+
+            return latest;
+        }
+
+        finally
+        {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns the data sent by a DataProvider's source into a time series
+ * @author Jeffrey Trotz
+ * @date 4/28/2020
+ * @version 1.0
+ */
+public interface SeriesParser
+{
+    /**
+     * Reads the data from the stream until the end of the stream is reached, keeping only the
+     * region's rows that are newer than the given time. The stream is not closed by this method.
+     * @param inputStream Stream containing the data
+     * @param regionId ID of the region the data was requested for (sources holding several
+     * regions are filtered by it)
+     * @param afterEpochSeconds Rows updated at or before this time (seconds since epoch) are skipped
+     * @return Returns the rows read from the stream, oldest first
+     * @throws IOException Thrown if the stream can't be read
+     */
+    StateTimeSeries parse(InputStream inputStream, String regionId, long afterEpochSeconds) throws IOException;
+}
@@ -0,0 +1,164 @@
+package com.jefftrotz.covid19tracker;
+
+import android.util.Log;
+import java.io.IOException;
+
+/**
+ * Combines the on-disk cache with a data provider. Cached data can be read on its own so it can
+ * be shown right away, then refreshed with any newer rows from the provider, which are also added
+ * to the cache. Cache entries are keyed by the provider's ID as well as the region, so providers
+ * that use the same region IDs don't overwrite each other's data.
+ * @author Jeffrey Trotz
+ * @date 4/16/2020
+ * @version 1.1
+ */
+public class SeriesRepository
+{
+    private static final String TAG = "SeriesRepository"; // Tag used when logging
+    private static final String RESPONSE_CODE_ERROR_TEXT = "Error: response code "; // Text used when a request fails with a response code error
+    private static final String BYTES_TRANSFERRED_TEXT = "Bytes transferred: "; // Text fed into the Log.d() method when logging the size of a response
+    private static final String NOT_MODIFIED_WITHOUT_DATA_TEXT = "Not modified but nothing cached, fetching again: "; // Text fed into the Log.d() method when a 304 arrives without cached data
+    private static final String CACHE_KEY_SEPARATOR = "_"; // Separates the provider's ID from the region in cache keys
+
+    private final SeriesCache mSeriesCache; // On-disk cache of previously downloaded data
+    private final DataProvider mDataProvider; // Source of new data
+
+    /**
+     * Constructor
+     * @param seriesCache On-disk cache of previously downloaded data
+     * @param dataProvider Source of new data
+     */
+    public SeriesRepository(SeriesCache seriesCache, DataProvider dataProvider)
+    {
+        mSeriesCache = seriesCache;
+        mDataProvider = dataProvider;
+    }
+
+    /**
+     * Reads a state's data from the cache
+     * @param abbreviation 2 letter abbreviation of the state
+     * @return Returns the cached data, or null if nothing has been cached for the state
+     */
+    public StateTimeSeries readCached(String abbreviation)
+    {
+        StateTimeSeries cachedData = mSeriesCache.read(this.getCacheKey(abbreviation));
+        return cachedData == null || cachedData.isEmpty() ? null : cachedData;
+    }
+
+    /**
+     * Asks the provider for any data newer than the cached data and adds it to the cache
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param cachedData Data previously returned by readCached() (may be null). It's not changed
+     * by this method since it may still be in use on the UI thread.
+     * @return Returns the cached data plus any newer rows from the API, along with the number of
+     * bytes downloaded
+     * @throws IOException Thrown if the request fails or the server returns an error
+     */
+    public Refresh refresh(String abbreviation, StateTimeSeries cachedData) throws IOException
+    {
+        long lastCachedTime = cachedData == null ? Long.MIN_VALUE : cachedData.getLatestEpochSeconds();
+
+        // Ask the API for any data newer than the cached data, sending the validators stored with
+        // the cache so the server can skip sending unchanged data
+        String cacheKey = this.getCacheKey(abbreviation);
+        SeriesCache.Validators validators = mSeriesCache.readValidators(cacheKey);
+        FetchResult result = mDataProvider.fetch(abbreviation, validators.getETag(),
+            validators.getLastModified(), lastCachedTime);
+        Log.d(TAG, BYTES_TRANSFERRED_TEXT + result.getBytesTransferred());
+
+        // Nothing new to add if the data hasn't changed since it was cached
+        if (result.isNotModified() && cachedData != null)
+        {
+            return new Refresh(cachedData, false, result.getBytesTransferred());
+        }
+
+        // The validators don't match anything that can be shown (e.g. the cached rows were
+        // discarded), so ask again for the whole series
+        if (result.isNotModified())
+        {
+            Log.d(TAG, NOT_MODIFIED_WITHOUT_DATA_TEXT + abbreviation);
+            long bytesTransferred = result.getBytesTransferred();
+            result = mDataProvider.fetch(abbreviation, null, null, lastCachedTime);
+            result = new FetchResult(result.getResponseCode(), result.getNewRows(), result.getETag(),
+                result.getLastModified(), bytesTransferred + result.getBytesTransferred());
+        }
+
+        // Treat any other response code as an error
+        if (result.getResponseCode() != DataProvider.HTTP_OK)
+        {
+            throw new IOException(RESPONSE_CODE_ERROR_TEXT + result.getResponseCode());
+        }
+
+        // Add the new rows to the cache
+        StateTimeSeries newData = result.getNewRows();
+        mSeriesCache.append(cacheKey, newData);
+        mSeriesCache.writeValidators(cacheKey, result.getETag(), result.getLastModified());
+
+        // Return the data read from the API if nothing was cached
+        if (cachedData == null)
+        {
+            return new Refresh(newData, true, result.getBytesTransferred());
+        }
+
+        // Otherwise add the new rows to a copy of the cached data
+        StateTimeSeries data = cachedData.sliceRows(0, cachedData.size());
+        data.appendAll(newData);
+        return new Refresh(data, !newData.isEmpty(), result.getBytesTransferred());
+    }
+
+    /**
+     * @param abbreviation ID of the region (e.g. a state's 2 letter abbreviation)
+     * @return Returns the key the region's data is cached under
+     */
+    private String getCacheKey(String abbreviation)
+    {
+        return mDataProvider.getId() + CACHE_KEY_SEPARATOR + abbreviation;
+    }
+
+    /**
+     * Result of refreshing a state's data
+     */
+    public static class Refresh
+    {
+        private final StateTimeSeries mData; // Cached data plus any newer rows from the API
+        private final boolean mChanged; // Whether or not any new rows were received
+        private final long mBytesTransferred; // Number of response body bytes downloaded
+
+        /**
+         * Constructor
+         * @param data Cached data plus any newer rows from the API
+         * @param changed Whether or not any new rows were received
+         * @param bytesTransferred Number of response body bytes downloaded
+         */
+        Refresh(StateTimeSeries data, boolean changed, long bytesTransferred)
+        {
+            mData = data;
+            mChanged = changed;
+            mBytesTransferred = bytesTransferred;
+        }
+
+        /**
+         * @return Returns the cached data plus any newer rows from the API
+         */
+        public StateTimeSeries getData()
+        {
+            return mData;
+        }
+
+        /**
+         * @return Returns true if any rows newer than the cached data were received
+         */
+        public boolean isChanged()
+        {
+            return mChanged;
+        }
+
+        /**
+         * @return Returns the number of response body bytes downloaded
+         */
+        public long getBytesTransferred()
+        {
+            return mBytesTransferred;
+        }
+    }
+}
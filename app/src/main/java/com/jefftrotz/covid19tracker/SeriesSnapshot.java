@@ -0,0 +1,75 @@
+package com.jefftrotz.covid19tracker;
+
+/**
+ * Immutable, versioned view of a state's data at the moment it was published to a SeriesStore.
+ * Versions come from a single counter shared by every state, so a higher version always means a
+ * later publish. The data must not be changed once it's been published; SeriesRepository always
+ * returns a new series when it adds rows, which keeps that promise.
+ * @author Jeffrey Trotz
+ * @date 4/23/2020
+ * @version 1.0
+ */
+public final class SeriesSnapshot
+{
+    private final String mAbbreviation; // 2 letter abbreviation of the state
+    private final long mVersion; // Version assigned when the snapshot was published
+    private final StateTimeSeries mData; // Data for the state, oldest row first
+    private final boolean mRefreshed; // Whether the data has been refreshed from the API (rather than only read from the cache)
+
+    /**
+     * Constructor
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param version Version assigned when the snapshot was published
+     * @param data Data for the state, oldest row first
+     * @param refreshed Whether the data has been refreshed from the API
+     */
+    SeriesSnapshot(String abbreviation, long version, StateTimeSeries data, boolean refreshed)
+    {
+        mAbbreviation = abbreviation;
+        mVersion = version;
+        mData = data;
+        mRefreshed = refreshed;
+    }
+
+    /**
+     * @return Returns the 2 letter abbreviation of the state
+     */
+    public String getAbbreviation()
+    {
+        return mAbbreviation;
+    }
+
+    /**
+     * @return Returns the version assigned when the snapshot was published
+     */
+    public long getVersion()
+    {
+        return mVersion;
+    }
+
+    /**
+     * @return Returns the data for the state, oldest row first. It must not be changed.
+     */
+    public StateTimeSeries getData()
+    {
+        return mData;
+    }
+
+    /**
+     * @return Returns true if the data has been refreshed from the API since the app started,
+     * false if it was only read from the cache
+     */
+    public boolean isRefreshed()
+    {
+        return mRefreshed;
+    }
+
+    /**
+     * @param other Another snapshot (may be null)
+     * @return Returns true if this snapshot was published after the other one
+     */
+    public boolean isNewerThan(SeriesSnapshot other)
+    {
+        return other == null || mVersion > other.mVersion;
+    }
+}
@@ -0,0 +1,141 @@
+package com.jefftrotz.covid19tracker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread safe, in-memory store of the latest data for each state, keyed by the state's 2 letter
+ * abbreviation. Filled by bulk prefetches and regular requests so switching to a state that's
+ * already been loaded doesn't need a network round trip.
+ * <p>
+ * Each state's data is held as an immutable SeriesSnapshot in an AtomicReference, so background
+ * threads can publish new data without locks and the UI thread always reads a complete snapshot.
+ * Data that's older than the snapshot already published (for example cached data read from disk
+ * after a refresh has finished) is dropped instead of replacing it.
+ * @author Jeffrey Trotz
+ * @date 4/17/2020
+ * @version 1.1
+ */
+public class SeriesStore
+{
+    private final ConcurrentHashMap<String, AtomicReference<SeriesSnapshot>> mSnapshots = new ConcurrentHashMap<>(); // Latest snapshot of each state
+    private final AtomicLong mVersions = new AtomicLong(); // Source of snapshot versions
+    private final AtomicInteger mStaleCount = new AtomicInteger(); // Number of publishes dropped because the data was out of date
+
+    /**
+     * Publishes new data for a state, unless the snapshot already published is at least as
+     * recent: it has a row newer than the data's latest row, or a row just as new and it's been
+     * refreshed from the API (or the data hasn't)
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param data Latest data for the state. It must not be changed after it's published.
+     * @param refreshed Whether the data has been refreshed from the API (false if it was only
+     * read from the cache)
+     * @return Returns the state's current snapshot: the new one if the data was published, or the
+     * one already published if the data was out of date
+     */
+    public SeriesSnapshot publish(String abbreviation, StateTimeSeries data, boolean refreshed)
+    {
+        AtomicReference<SeriesSnapshot> reference = this.getReference(abbreviation);
+
+        // Retry if another thread publishes between reading the current snapshot and replacing it
+        while (true)
+        {
+            SeriesSnapshot current = reference.get();
+
+            if (current != null && !isNewer(data, refreshed, current))
+            {
+                if (current.getData() != data)
+                {
+                    mStaleCount.incrementAndGet();
+                }
+
+                return current;
+            }
+
+            SeriesSnapshot snapshot = new SeriesSnapshot(abbreviation, mVersions.incrementAndGet(), data, refreshed);
+
+            if (reference.compareAndSet(current, snapshot))
+            {
+                return snapshot;
+            }
+        }
+    }
+
+    /**
+     * @param abbreviation 2 letter abbreviation of the state
+     * @return Returns the state's latest snapshot, or null if nothing has been published
+     */
+    public SeriesSnapshot get(String abbreviation)
+    {
+        AtomicReference<SeriesSnapshot> reference = mSnapshots.get(abbreviation);
+        return reference == null ? null : reference.get();
+    }
+
+    /**
+     * @return Returns the number of states with data in the store
+     */
+    public int size()
+    {
+        return mSnapshots.size();
+    }
+
+    /**
+     * @return Returns the number of publishes dropped because the data was out of date
+     */
+    public int getStaleCount()
+    {
+        return mStaleCount.get();
+    }
+
+    /**
+     * Removes the data for every state
+     */
+    public void clear()
+    {
+        mSnapshots.clear();
+    }
+
+    /**
+     * @param abbreviation 2 letter abbreviation of the state
+     * @return Returns the reference holding the state's snapshot, creating it if needed
+     */
+    private AtomicReference<SeriesSnapshot> getReference(String abbreviation)
+    {
+        AtomicReference<SeriesSnapshot> reference = mSnapshots.get(abbreviation);
+
+        if (reference == null)
+        {
+            AtomicReference<SeriesSnapshot> created = new AtomicReference<>();
+            reference = mSnapshots.putIfAbsent(abbreviation, created);
+
+            if (reference == null)
+            {
+                reference = created;
+            }
+        }
+
+        return reference;
+    }
+
+    /**
+     * @param data Data about to be published
+     * @param refreshed Whether the data has been refreshed from the API
+     * @param current Snapshot already published
+     * @return Returns true if the data is more recent than the snapshot already published
+     */
+    private static boolean isNewer(StateTimeSeries data, boolean refreshed, SeriesSnapshot current)
+    {
+        long latest = data.isEmpty() ? Long.MIN_VALUE : data.getLatestEpochSeconds();
+        long currentLatest = current.getData().isEmpty() ? Long.MIN_VALUE : current.getData().getLatestEpochSeconds();
+
+        if (latest != currentLatest)
+        {
+            return latest > currentLatest;
+        }
+
+        // Same rows, so only replace cached data with data confirmed by the API
+        return refreshed && !current.isRefreshed();
+    }
+}
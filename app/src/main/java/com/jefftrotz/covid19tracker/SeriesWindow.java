@@ -0,0 +1,104 @@
+package com.jefftrotz.covid19tracker;
+
+/**
+ * Range of rows of a StateTimeSeries to plot. A window can cover the last N days of data (counted
+ * back from the most recent row, since the data may not be up to date), every row since a given
+ * date, or the full history. Finding where a window starts is a binary search over the time
+ * column, so the cost of building a graph from it only depends on the number of rows in it.
+ * @author Jeffrey Trotz
+ * @date 4/20/2020
+ * @version 1.0
+ */
+public final class SeriesWindow
+{
+    private static final long SECONDS_PER_DAY = 86400L; // Number of seconds in a day
+
+    /**
+     * Ways a window can be defined
+     */
+    public enum Mode
+    {
+        LAST_DAYS, // Last N days counted back from the most recent row
+        SINCE, // Every row updated at or after a given time
+        FULL_HISTORY // Every row
+    }
+
+    private static final SeriesWindow FULL_HISTORY = new SeriesWindow(Mode.FULL_HISTORY, 0); // Shared full history window
+
+    private final Mode mMode; // How the window is defined
+    private final long mValue; // Number of days (LAST_DAYS) or start time in seconds since epoch (SINCE)
+
+    /**
+     * Constructor
+     * @param mode How the window is defined
+     * @param value Number of days (LAST_DAYS) or start time in seconds since epoch (SINCE)
+     */
+    private SeriesWindow(Mode mode, long value)
+    {
+        mMode = mode;
+        mValue = value;
+    }
+
+    /**
+     * @param days Number of days to include, counted back from the most recent row
+     * @return Returns a window covering the last N days of data
+     */
+    public static SeriesWindow lastDays(int days)
+    {
+        if (days < 0)
+        {
+            throw new IllegalArgumentException("Days must not be negative: " + days);
+        }
+
+        return new SeriesWindow(Mode.LAST_DAYS, days);
+    }
+
+    /**
+     * @param epochSeconds Start of the window in seconds since epoch
+     * @return Returns a window covering every row updated at or after the given time
+     */
+    public static SeriesWindow since(long epochSeconds)
+    {
+        return new SeriesWindow(Mode.SINCE, epochSeconds);
+    }
+
+    /**
+     * @return Returns a window covering every row
+     */
+    public static SeriesWindow fullHistory()
+    {
+        return FULL_HISTORY;
+    }
+
+    /**
+     * @return Returns how the window is defined
+     */
+    public Mode getMode()
+    {
+        return mMode;
+    }
+
+    /**
+     * Finds the first row of a series that falls inside the window. The window always ends at
+     * the series' most recent row.
+     * @param series Series the window is applied to
+     * @return Returns the index of the first row in the window (size() if the window is empty)
+     */
+    public int getStartRow(StateTimeSeries series)
+    {
+        if (series.isEmpty())
+        {
+            return 0;
+        }
+
+        switch (mMode)
+        {
+            case LAST_DAYS:
+                return series.indexAtOrAfter(series.getLatestEpochSeconds() - (mValue * SECONDS_PER_DAY));
+            case SINCE:
+                return series.indexAtOrAfter(mValue);
+            default:
+                return 0;
+        }
+    }
+}
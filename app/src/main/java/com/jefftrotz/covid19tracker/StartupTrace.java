@@ -0,0 +1,78 @@
+package com.jefftrotz.covid19tracker;
+
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.Locale;
+
+/**
+ * Measures how long the app takes to start, from the main activity being created to the first
+ * time a state's data is on screen (first meaningful paint), and to the first time data
+ * refreshed from the API is on screen. Times are logged with the app's version so they can be
+ * compared across releases (e.g. adb logcat -s StartupTrace).
+ * @author Jeffrey Trotz
+ * @date 4/25/2020
+ * @version 1.0
+ */
+public class StartupTrace
+{
+    private static final String TAG = "StartupTrace"; // Tag used when logging
+    private static final String FIRST_PAINT_TEXT = "v%s first meaningful paint: %d ms (%s)"; // Text fed into the Log.i() method when the first data is shown
+    private static final String FRESH_PAINT_TEXT = "v%s first refreshed paint: %d ms"; // Text fed into the Log.i() method when the first refreshed data is shown
+    private static final String CACHE_SOURCE = "cache"; // Source of the first data when it was read from the cache
+    private static final String NETWORK_SOURCE = "network"; // Source of the first data when it was downloaded
+
+    private final long mStartTime; // Time the trace started (milliseconds since boot, not counting deep sleep)
+    private long mFirstPaintMillis = -1; // Time from the start to the first data shown (-1 until it's shown)
+    private long mFreshPaintMillis = -1; // Time from the start to the first refreshed data shown (-1 until it's shown)
+
+    /**
+     * Starts the trace. Create it as early as possible in onCreate().
+     */
+    public StartupTrace()
+    {
+        mStartTime = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * Records that a state's data has been put on screen. Only the first call (and the first call
+     * with refreshed data) are recorded.
+     * @param refreshed Whether the data shown has been refreshed from the API
+     * @return Returns true if this was the first meaningful paint
+     */
+    public boolean markPaint(boolean refreshed)
+    {
+        long elapsed = SystemClock.uptimeMillis() - mStartTime;
+        boolean first = mFirstPaintMillis < 0;
+
+        if (first)
+        {
+            mFirstPaintMillis = elapsed;
+            Log.i(TAG, String.format(Locale.US, FIRST_PAINT_TEXT, BuildConfig.VERSION_NAME, elapsed,
+                refreshed ? NETWORK_SOURCE : CACHE_SOURCE));
+        }
+
+        if (refreshed && mFreshPaintMillis < 0)
+        {
+            mFreshPaintMillis = elapsed;
+            Log.i(TAG, String.format(Locale.US, FRESH_PAINT_TEXT, BuildConfig.VERSION_NAME, elapsed));
+        }
+
+        return first;
+    }
+
+    /**
+     * @return Returns the time to first meaningful paint in milliseconds (-1 if it hasn't happened)
+     */
+    public long getFirstPaintMillis()
+    {
+        return mFirstPaintMillis;
+    }
+
+    /**
+     * @return Returns the time until refreshed data was first shown in milliseconds (-1 if it hasn't happened)
+     */
+    public long getFreshPaintMillis()
+    {
+        return mFreshPaintMillis;
+    }
+}
@@ -0,0 +1,717 @@
+package com.jefftrotz.covid19tracker;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Offline point-in-polygon index for finding the US state a latitude/longitude is in, without
+ * Geocoder or a network connection. Built from simplified state boundaries (see
+ * assets/state_boundaries.txt) laid over a uniform grid of CELL_SIZE degree cells:
+ * <ul>
+ *     <li>cells entirely inside one state remember that state, so most lookups are just an
+ *     array read</li>
+ *     <li>cells crossed by a border list the states that touch them, and only those polygons
+ *     are tested (smallest first, so an enclave is found before the state around it)</li>
+ * </ul>
+ * The boundaries are coarse, so a point within a few km of a border could be given the
+ * neighboring state. Points closer than BORDER_TOLERANCE to a border shared with another state
+ * (or closer than the border's own tolerance, for the ones drawn more carefully) aren't given a
+ * state at all, so callers fall back to Geocoder near borders instead of showing the wrong state
+ * (e.g. for Arlington VA next to DC, or Omaha NE across the river from Iowa). Coastlines and
+ * lakeshores have no state on the other side to mix up, so they don't count.
+ * @author Jeffrey Trotz
+ * @date 4/26/2020
+ * @version 1.0
+ */
+public final class StateBoundaryIndex
+{
+    public static final String ASSET_NAME = "state_boundaries.txt"; // Name of the boundary file in the app's assets
+    private static final double CELL_SIZE = 0.5; // Width and height of each grid cell in degrees
+    private static final double BORDER_TOLERANCE = 0.2; // Points closer than this to a border (in degrees of latitude, about 22 km) aren't given a state
+    private static final double SHARED_EPSILON = 1e-6; // Points closer than this (in degrees) to another polygon's edge are on its boundary
+    private static final int NONE = -1; // Marks a cell that isn't entirely inside one state
+    private static final String COMMENT = "#"; // Lines starting with this are ignored
+    private static final String BORDER = "border"; // Lines starting with this give the tolerance of a border drawn more carefully
+    private static final String MALFORMED_TEXT = "Malformed boundary on line %d: %s"; // Message of the exception thrown when the file can't be read
+
+    private final String[] mAbbreviations; // State of each polygon, smallest polygon first
+    private final double[][] mVertices; // Vertices of each polygon as longitude, latitude pairs
+    private final double[][] mTolerances; // Tolerance of each polygon's edges (0 for edges no other state shares)
+    private final double mMinLongitude; // Longitude of the grid's west edge
+    private final double mMinLatitude; // Latitude of the grid's south edge
+    private final int mColumns; // Number of cells from west to east
+    private final int mRows; // Number of cells from south to north
+    private final int[] mInterior; // Polygon each cell is entirely inside (NONE if it isn't)
+    private final int[] mCellStart; // Candidates of cell i are mCandidates[mCellStart[i]] to mCandidates[mCellStart[i + 1] - 1]
+    private final int[] mCandidates; // Polygons that have to be tested for each border cell
+
+    /**
+     * Constructor
+     * @param abbreviations State of each polygon
+     * @param vertices Vertices of each polygon as longitude, latitude pairs
+     * @param borderTolerances Tolerance of the borders drawn more carefully than BORDER_TOLERANCE,
+     * by borderKey()
+     */
+    StateBoundaryIndex(String[] abbreviations, double[][] vertices, Map<String, Double> borderTolerances)
+    {
+        // Sort the polygons by area so enclaves are tested before the polygons around them
+        Integer[] order = new Integer[vertices.length];
+        final double[] areas = new double[vertices.length];
+
+        for (int i = 0; i < vertices.length; i++)
+        {
+            order[i] = i;
+            areas[i] = area(vertices[i]);
+        }
+
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer first, Integer second)
+            {
+                return Double.compare(areas[first], areas[second]);
+            }
+        });
+
+        mAbbreviations = new String[vertices.length];
+        mVertices = new double[vertices.length][];
+
+        for (int i = 0; i < order.length; i++)
+        {
+            mAbbreviations[i] = abbreviations[order[i]];
+            mVertices[i] = vertices[order[i]];
+        }
+
+        // Only borders with another state can put a point in the wrong state
+        mTolerances = this.findBorders(borderTolerances);
+
+        // Size the grid to cover every polygon
+        double[] bounds = bounds(mVertices);
+        mMinLongitude = Math.floor(bounds[0] / CELL_SIZE) * CELL_SIZE;
+        mMinLatitude = Math.floor(bounds[1] / CELL_SIZE) * CELL_SIZE;
+        mColumns = (int) Math.ceil((bounds[2] - mMinLongitude) / CELL_SIZE) + 1;
+        mRows = (int) Math.ceil((bounds[3] - mMinLatitude) / CELL_SIZE) + 1;
+
+        // Find the polygons crossing each cell and the ones covering it entirely
+        int cellCount = mColumns * mRows;
+        int[][] crossing = new int[cellCount][];
+        int[] crossingCounts = new int[cellCount];
+        int[][] covering = new int[cellCount][];
+        int[] coveringCounts = new int[cellCount];
+
+        for (int polygon = 0; polygon < mVertices.length; polygon++)
+        {
+            this.addPolygon(polygon, crossing, crossingCounts, covering, coveringCounts);
+        }
+
+        // Cells only covered by a single polygon don't need any tests, the rest keep a list
+        mInterior = new int[cellCount];
+        mCellStart = new int[cellCount + 1];
+        int total = 0;
+
+        for (int cell = 0; cell < cellCount; cell++)
+        {
+            mInterior[cell] = crossingCounts[cell] == 0 && coveringCounts[cell] == 1 ? covering[cell][0] : NONE;
+            mCellStart[cell] = total;
+
+            if (mInterior[cell] == NONE)
+            {
+                total += crossingCounts[cell] + coveringCounts[cell];
+            }
+        }
+
+        mCellStart[cellCount] = total;
+        mCandidates = new int[total];
+
+        for (int cell = 0; cell < cellCount; cell++)
+        {
+            int start = mCellStart[cell];
+            int count = mCellStart[cell + 1] - start;
+
+            if (count > 0)
+            {
+                if (crossingCounts[cell] > 0)
+                {
+                    System.arraycopy(crossing[cell], 0, mCandidates, start, crossingCounts[cell]);
+                }
+
+                if (coveringCounts[cell] > 0)
+                {
+                    System.arraycopy(covering[cell], 0, mCandidates, start + crossingCounts[cell], coveringCounts[cell]);
+                }
+
+                Arrays.sort(mCandidates, start, start + count);
+            }
+        }
+    }
+
+    /**
+     * Reads the boundaries and builds the index
+     * @param inputStream Boundary file, one polygon per line: a 2 letter abbreviation followed by
+     * longitude,latitude vertices separated by spaces. Lines starting with BORDER give the
+     * tolerance of a border drawn more carefully. Closed when the method returns.
+     * @return Returns the index
+     * @throws IOException Thrown if the file can't be read or a line is malformed
+     */
+    public static StateBoundaryIndex load(InputStream inputStream) throws IOException
+    {
+        List<String> abbreviations = new ArrayList<>();
+        List<double[]> polygons = new ArrayList<>();
+        Map<String, Double> borderTolerances = new HashMap<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, Charset.forName("UTF-8"))))
+        {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null)
+            {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith(COMMENT))
+                {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+
+                if (fields[0].equals(BORDER))
+                {
+                    readBorder(fields, borderTolerances, lineNumber, line);
+                    continue;
+                }
+
+                // Need an abbreviation and at least 3 vertices to make a polygon
+                if (fields.length < 4 || StateLookup.getInstance().getIndexForAbbreviation(fields[0]) == StateLookup.NOT_FOUND)
+                {
+                    throw new IOException(String.format(Locale.US, MALFORMED_TEXT, lineNumber, line));
+                }
+
+                double[] vertices = new double[(fields.length - 1) * 2];
+
+                for (int i = 1; i < fields.length; i++)
+                {
+                    int comma = fields[i].indexOf(',');
+
+                    try
+                    {
+                        vertices[(i - 1) * 2] = Double.parseDouble(fields[i].substring(0, comma));
+                        vertices[(i - 1) * 2 + 1] = Double.parseDouble(fields[i].substring(comma + 1));
+                    }
+
+                    catch (NumberFormatException | StringIndexOutOfBoundsException exception)
+                    {
+                        throw new IOException(String.format(Locale.US, MALFORMED_TEXT, lineNumber, line));
+                    }
+                }
+
+                abbreviations.add(fields[0]);
+                polygons.add(vertices);
+            }
+        }
+
+        if (polygons.isEmpty())
+        {
+            throw new IOException("No boundaries found");
+        }
+
+        return new StateBoundaryIndex(abbreviations.toArray(new String[0]), polygons.toArray(new double[0][]), borderTolerances);
+    }
+
+    /**
+     * Reads a border line: the keyword, the 2 states and the border's tolerance in degrees (no
+     * more than BORDER_TOLERANCE)
+     * @param fields Fields of the line
+     * @param borderTolerances Tolerance of each border read so far, by borderKey()
+     * @param lineNumber Line number, for the error message
+     * @param line The line, for the error message
+     * @throws IOException Thrown if the line is malformed
+     */
+    private static void readBorder(String[] fields, Map<String, Double> borderTolerances, int lineNumber, String line)
+        throws IOException
+    {
+        StateLookup stateLookup = StateLookup.getInstance();
+
+        if (fields.length != 4 || stateLookup.getIndexForAbbreviation(fields[1]) == StateLookup.NOT_FOUND
+            || stateLookup.getIndexForAbbreviation(fields[2]) == StateLookup.NOT_FOUND)
+        {
+            throw new IOException(String.format(Locale.US, MALFORMED_TEXT, lineNumber, line));
+        }
+
+        double tolerance;
+
+        try
+        {
+            tolerance = Double.parseDouble(fields[3]);
+        }
+
+        catch (NumberFormatException numberFormatException)
+        {
+            throw new IOException(String.format(Locale.US, MALFORMED_TEXT, lineNumber, line));
+        }
+
+        // Borders are only looked for in the cells around a point, which BORDER_TOLERANCE fits in
+        if (!(tolerance > 0 && tolerance <= BORDER_TOLERANCE))
+        {
+            throw new IOException(String.format(Locale.US, MALFORMED_TEXT, lineNumber, line));
+        }
+
+        borderTolerances.put(borderKey(fields[1], fields[2]), tolerance);
+    }
+
+    /**
+     * Finds the state a location is in
+     * @param latitude Latitude of the location in degrees
+     * @param longitude Longitude of the location in degrees
+     * @return Returns the state's 2 letter abbreviation, or null if the location isn't inside any
+     * of the (simplified) boundaries or is too close to another state to be sure
+     */
+    public String findAbbreviation(double latitude, double longitude)
+    {
+        int polygon = this.findPolygon(latitude, longitude);
+        return polygon == NONE || this.isNearBorder(polygon, latitude, longitude) ? null : mAbbreviations[polygon];
+    }
+
+    /**
+     * Finds the state a location is in by testing every polygon, without the grid or the check
+     * for nearby boundaries. Used to measure how much the grid saves.
+     * @param latitude Latitude of the location in degrees
+     * @param longitude Longitude of the location in degrees
+     * @return Returns the state's 2 letter abbreviation, or null if the location isn't inside any
+     * of the (simplified) boundaries
+     */
+    public String findAbbreviationByScan(double latitude, double longitude)
+    {
+        for (int polygon = 0; polygon < mVertices.length; polygon++)
+        {
+            if (contains(mVertices[polygon], longitude, latitude))
+            {
+                return mAbbreviations[polygon];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return Returns the number of polygons in the index
+     */
+    public int getPolygonCount()
+    {
+        return mVertices.length;
+    }
+
+    /**
+     * @return Returns the number of grid cells in the index
+     */
+    public int getCellCount()
+    {
+        return mInterior.length;
+    }
+
+    /**
+     * @param latitude Latitude of the location in degrees
+     * @param longitude Longitude of the location in degrees
+     * @return Returns the polygon the location is in, or NONE
+     */
+    private int findPolygon(double latitude, double longitude)
+    {
+        int column = (int) Math.floor((longitude - mMinLongitude) / CELL_SIZE);
+        int row = (int) Math.floor((latitude - mMinLatitude) / CELL_SIZE);
+
+        if (column < 0 || column >= mColumns || row < 0 || row >= mRows)
+        {
+            return NONE;
+        }
+
+        int cell = (row * mColumns) + column;
+
+        if (mInterior[cell] != NONE)
+        {
+            return mInterior[cell];
+        }
+
+        for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++)
+        {
+            if (contains(mVertices[mCandidates[i]], longitude, latitude))
+            {
+                return mCandidates[i];
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Checks whether a location is closer than their tolerance to any of the borders its polygon
+     * shares with another state. In a grid cell that the polygon's edges don't cross, or any cell
+     * around it, the nearest border is at least a cell away (further than any tolerance), so
+     * most lookups don't check any edges.
+     * @param polygon Polygon the location is in
+     * @param latitude Latitude of the location in degrees
+     * @param longitude Longitude of the location in degrees
+     * @return Returns true if the location is near a border
+     */
+    private boolean isNearBorder(int polygon, double latitude, double longitude)
+    {
+        if (!this.isCrossedNearby(polygon, latitude, longitude))
+        {
+            return false;
+        }
+
+        // Degrees of longitude get shorter away from the equator
+        double longitudeScale = Math.cos(Math.toRadians(latitude));
+        double[] vertices = mVertices[polygon];
+        double[] tolerances = mTolerances[polygon];
+
+        for (int i = 0, j = vertices.length - 2; i < vertices.length; j = i, i += 2)
+        {
+            double tolerance = tolerances[i / 2];
+
+            if (tolerance > 0 && distanceSquared(vertices, j, i, longitude, latitude, longitudeScale) < tolerance * tolerance)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param polygon Index of the polygon
+     * @param latitude Latitude of the location in degrees
+     * @param longitude Longitude of the location in degrees
+     * @return Returns true if the polygon's edges cross the location's cell or one of the cells
+     * around it
+     */
+    private boolean isCrossedNearby(int polygon, double latitude, double longitude)
+    {
+        int centerColumn = this.column(longitude);
+        int centerRow = this.row(latitude);
+
+        for (int row = Math.max(0, centerRow - 1); row <= Math.min(mRows - 1, centerRow + 1); row++)
+        {
+            for (int column = Math.max(0, centerColumn - 1); column <= Math.min(mColumns - 1, centerColumn + 1); column++)
+            {
+                int cell = (row * mColumns) + column;
+
+                // Cells entirely inside one state have no candidates
+                for (int i = mCellStart[cell]; i < mCellStart[cell + 1]; i++)
+                {
+                    if (mCandidates[i] == polygon)
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds the edges each polygon shares with another state. The boundary file gives neighboring
+     * states the same border vertices, so an edge is shared if its ends and middle all lie on the
+     * other state's boundary (the other state may have extra vertices along it).
+     * @param borderTolerances Tolerance of the borders drawn more carefully than BORDER_TOLERANCE,
+     * by borderKey()
+     * @return Returns the tolerance of each polygon's edges, 0 for edges no other state shares
+     */
+    private double[][] findBorders(Map<String, Double> borderTolerances)
+    {
+        double[][] bounds = new double[mVertices.length][];
+        double[][] tolerances = new double[mVertices.length][];
+
+        for (int polygon = 0; polygon < mVertices.length; polygon++)
+        {
+            bounds[polygon] = bounds(new double[][] {mVertices[polygon]});
+        }
+
+        for (int polygon = 0; polygon < mVertices.length; polygon++)
+        {
+            double[] vertices = mVertices[polygon];
+            tolerances[polygon] = new double[vertices.length / 2];
+
+            for (int i = 0, j = vertices.length - 2; i < vertices.length; j = i, i += 2)
+            {
+                double middleX = (vertices[i] + vertices[j]) / 2;
+                double middleY = (vertices[i + 1] + vertices[j + 1]) / 2;
+
+                for (int other = 0; other < mVertices.length; other++)
+                {
+                    // Skip the state's own pieces, and polygons too far away to share the edge
+                    if (mAbbreviations[other].equals(mAbbreviations[polygon]) || middleX < bounds[other][0] - SHARED_EPSILON
+                        || middleY < bounds[other][1] - SHARED_EPSILON || middleX > bounds[other][2] + SHARED_EPSILON
+                        || middleY > bounds[other][3] + SHARED_EPSILON)
+                    {
+                        continue;
+                    }
+
+                    double[] otherVertices = mVertices[other];
+
+                    if (isOnBoundary(otherVertices, vertices[j], vertices[j + 1]) && isOnBoundary(otherVertices, middleX, middleY)
+                        && isOnBoundary(otherVertices, vertices[i], vertices[i + 1]))
+                    {
+                        Double tolerance = borderTolerances.get(borderKey(mAbbreviations[polygon], mAbbreviations[other]));
+                        tolerances[polygon][i / 2] = tolerance != null ? tolerance : BORDER_TOLERANCE;
+                        break;
+                    }
+                }
+            }
+        }
+
+        return tolerances;
+    }
+
+    /**
+     * Records which cells a polygon's edges cross, and which cells it covers entirely
+     * @param polygon Index of the polygon
+     * @param crossing Polygons crossing each cell
+     * @param crossingCounts Number of polygons crossing each cell
+     * @param covering Polygons covering each cell entirely
+     * @param coveringCounts Number of polygons covering each cell entirely
+     */
+    private void addPolygon(int polygon, int[][] crossing, int[] crossingCounts, int[][] covering, int[] coveringCounts)
+    {
+        double[] vertices = mVertices[polygon];
+        double[] bounds = bounds(new double[][] {vertices});
+        int minColumn = this.column(bounds[0]);
+        int minRow = this.row(bounds[1]);
+        int maxColumn = this.column(bounds[2]);
+        int maxRow = this.row(bounds[3]);
+        int width = maxColumn - minColumn + 1;
+        boolean[] crossed = new boolean[width * (maxRow - minRow + 1)];
+
+        // Walk each edge through the grid, marking every cell it passes through
+        for (int i = 0, j = vertices.length - 2; i < vertices.length; j = i, i += 2)
+        {
+            double x0 = (vertices[j] - mMinLongitude) / CELL_SIZE;
+            double y0 = (vertices[j + 1] - mMinLatitude) / CELL_SIZE;
+            double x1 = (vertices[i] - mMinLongitude) / CELL_SIZE;
+            double y1 = (vertices[i + 1] - mMinLatitude) / CELL_SIZE;
+            int column = (int) Math.floor(x0);
+            int row = (int) Math.floor(y0);
+            int endColumn = (int) Math.floor(x1);
+            int endRow = (int) Math.floor(y1);
+            int stepColumn = x1 > x0 ? 1 : -1;
+            int stepRow = y1 > y0 ? 1 : -1;
+            double deltaX = x1 == x0 ? Double.POSITIVE_INFINITY : Math.abs(1 / (x1 - x0));
+            double deltaY = y1 == y0 ? Double.POSITIVE_INFINITY : Math.abs(1 / (y1 - y0));
+            double nextX = x1 == x0 ? Double.POSITIVE_INFINITY : (stepColumn > 0 ? column + 1 - x0 : x0 - column) * deltaX;
+            double nextY = y1 == y0 ? Double.POSITIVE_INFINITY : (stepRow > 0 ? row + 1 - y0 : y0 - row) * deltaY;
+            int steps = Math.abs(endColumn - column) + Math.abs(endRow - row);
+
+            crossed[((row - minRow) * width) + (column - minColumn)] = true;
+
+            for (int step = 0; step < steps; step++)
+            {
+                if (nextX < nextY)
+                {
+                    column += stepColumn;
+                    nextX += deltaX;
+                }
+
+                else
+                {
+                    row += stepRow;
+                    nextY += deltaY;
+                }
+
+                crossed[((row - minRow) * width) + (column - minColumn)] = true;
+            }
+        }
+
+        // Cells the edges don't reach are either entirely inside or entirely outside the polygon,
+        // so testing their centers is enough
+        for (int row = minRow; row <= maxRow; row++)
+        {
+            for (int column = minColumn; column <= maxColumn; column++)
+            {
+                int cell = (row * mColumns) + column;
+
+                if (crossed[((row - minRow) * width) + (column - minColumn)])
+                {
+                    append(crossing, crossingCounts, cell, polygon);
+                }
+
+                else if (contains(vertices, mMinLongitude + ((column + 0.5) * CELL_SIZE), mMinLatitude + ((row + 0.5) * CELL_SIZE)))
+                {
+                    append(covering, coveringCounts, cell, polygon);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param longitude Longitude in degrees
+     * @return Returns the grid column the longitude is in
+     */
+    private int column(double longitude)
+    {
+        return (int) Math.floor((longitude - mMinLongitude) / CELL_SIZE);
+    }
+
+    /**
+     * @param latitude Latitude in degrees
+     * @return Returns the grid row the latitude is in
+     */
+    private int row(double latitude)
+    {
+        return (int) Math.floor((latitude - mMinLatitude) / CELL_SIZE);
+    }
+
+    /**
+     * Adds a polygon to a cell's list, growing the list if it's full
+     * @param lists List of polygons for each cell
+     * @param counts Number of polygons in each cell's list
+     * @param cell Index of the cell
+     * @param polygon Index of the polygon
+     */
+    private static void append(int[][] lists, int[] counts, int cell, int polygon)
+    {
+        if (lists[cell] == null)
+        {
+            lists[cell] = new int[2];
+        }
+
+        else if (counts[cell] == lists[cell].length)
+        {
+            lists[cell] = Arrays.copyOf(lists[cell], counts[cell] * 2);
+        }
+
+        lists[cell][counts[cell]++] = polygon;
+    }
+
+    /**
+     * Tests whether a point is inside a polygon by counting how many edges a ray from the point
+     * crosses (even-odd rule)
+     * @param vertices Vertices of the polygon as longitude, latitude pairs
+     * @param x Longitude of the point
+     * @param y Latitude of the point
+     * @return Returns true if the point is inside the polygon
+     */
+    private static boolean contains(double[] vertices, double x, double y)
+    {
+        boolean inside = false;
+
+        for (int i = 0, j = vertices.length - 2; i < vertices.length; j = i, i += 2)
+        {
+            double xi = vertices[i];
+            double yi = vertices[i + 1];
+            double xj = vertices[j];
+            double yj = vertices[j + 1];
+
+            if ((yi > y) != (yj > y) && x < ((xj - xi) * (y - yi) / (yj - yi)) + xi)
+            {
+                inside = !inside;
+            }
+        }
+
+        return inside;
+    }
+
+    /**
+     * @param vertices Vertices of the polygon as longitude, latitude pairs
+     * @param x Longitude of the point
+     * @param y Latitude of the point
+     * @return Returns true if the point is on one of the polygon's edges
+     */
+    private static boolean isOnBoundary(double[] vertices, double x, double y)
+    {
+        for (int i = 0, j = vertices.length - 2; i < vertices.length; j = i, i += 2)
+        {
+            if (distanceSquared(vertices, j, i, x, y, 1) < SHARED_EPSILON * SHARED_EPSILON)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds how close a point is to an edge of a polygon
+     * @param vertices Vertices of the polygon as longitude, latitude pairs
+     * @param start Index of the edge's first vertex in the array
+     * @param end Index of the edge's last vertex in the array
+     * @param x Longitude of the point
+     * @param y Latitude of the point
+     * @param xScale Length of a degree of longitude in degrees of latitude at the point
+     * @return Returns the square of the distance in degrees of latitude
+     */
+    private static double distanceSquared(double[] vertices, int start, int end, double x, double y, double xScale)
+    {
+        // Work relative to the edge's start, with longitudes scaled to match latitudes
+        double edgeX = (vertices[end] - vertices[start]) * xScale;
+        double edgeY = vertices[end + 1] - vertices[start + 1];
+        double pointX = (x - vertices[start]) * xScale;
+        double pointY = y - vertices[start + 1];
+        double lengthSquared = (edgeX * edgeX) + (edgeY * edgeY);
+
+        // Find the closest point on the edge, clamped to its ends
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((pointX * edgeX) + (pointY * edgeY)) / lengthSquared));
+        double dx = pointX - (t * edgeX);
+        double dy = pointY - (t * edgeY);
+        return (dx * dx) + (dy * dy);
+    }
+
+    /**
+     * @param first 2 letter abbreviation of one state
+     * @param second 2 letter abbreviation of the other state
+     * @return Returns the key of the border between the states, the same whichever order they're in
+     */
+    private static String borderKey(String first, String second)
+    {
+        return first.compareTo(second) < 0 ? first + " " + second : second + " " + first;
+    }
+
+    /**
+     * @param vertices Vertices of the polygon as longitude, latitude pairs
+     * @return Returns the polygon's area in square degrees
+     */
+    private static double area(double[] vertices)
+    {
+        double sum = 0;
+
+        for (int i = 0, j = vertices.length - 2; i < vertices.length; j = i, i += 2)
+        {
+            sum += (vertices[j] * vertices[i + 1]) - (vertices[i] * vertices[j + 1]);
+        }
+
+        return Math.abs(sum) / 2;
+    }
+
+    /**
+     * @param polygons Vertices of each polygon as longitude, latitude pairs
+     * @return Returns the smallest longitude, smallest latitude, largest longitude and largest
+     * latitude of all the vertices
+     */
+    private static double[] bounds(double[][] polygons)
+    {
+        double[] bounds = {Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+
+        for (double[] vertices : polygons)
+        {
+            for (int i = 0; i < vertices.length; i += 2)
+            {
+                bounds[0] = Math.min(bounds[0], vertices[i]);
+                bounds[1] = Math.min(bounds[1], vertices[i + 1]);
+                bounds[2] = Math.max(bounds[2], vertices[i]);
+                bounds[3] = Math.max(bounds[3], vertices[i + 1]);
+            }
+        }
+
+        return bounds;
+    }
+}
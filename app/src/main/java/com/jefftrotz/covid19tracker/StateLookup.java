@@ -0,0 +1,181 @@
+package com.jefftrotz.covid19tracker;
+
+import java.util.Arrays;
+
+/**
+ * Shared, immutable lookup tables for converting between a US state's full name, its 2 letter
+ * abbreviation and its position (AKA index number) in the spinner/drop down list. The tables are
+ * built once when the class is loaded, and lookups don't allocate any objects:
+ * <ul>
+ *     <li>name to index uses an open addressing hash table keyed by String.hashCode(), which is
+ *     cached by each String after the first call</li>
+ *     <li>abbreviation to index uses an array indexed directly by the 2 letters</li>
+ *     <li>index to name/abbreviation uses plain arrays</li>
+ * </ul>
+ * @author Jeffrey Trotz
+ * @date 4/18/2020
+ * @version 1.0
+ */
+public final class StateLookup
+{
+    public static final int NOT_FOUND = -1; // Returned by the index lookups when a state isn't found
+    private static final int LETTERS = 26; // Number of letters an abbreviation character can be
+    private static final int NAME_TABLE_SIZE = 128; // Size of the name hash table (a power of 2 more than twice the number of states)
+
+    // Full state names in the same order as the spinner/drop down list (states_array in strings.xml)
+    private static final String[] NAMES =
+    {
+        "Alabama", "Alaska", "Arizona", "Arkansas", "California", "Colorado", "Connecticut",
+        "Delaware", "Florida", "Georgia", "Hawaii", "Idaho", "Illinois", "Indiana", "Iowa",
+        "Kansas", "Kentucky", "Louisiana", "Maine", "Maryland", "Massachusetts", "Michigan",
+        "Minnesota", "Mississippi", "Missouri", "Montana", "Nebraska", "Nevada", "New Hampshire",
+        "New Jersey", "New Mexico", "New York", "North Carolina", "North Dakota", "Ohio",
+        "Oklahoma", "Oregon", "Pennsylvania", "Rhode Island", "South Carolina", "South Dakota",
+        "Tennessee", "Texas", "Utah", "Vermont", "Virginia", "Washington", "Washington DC",
+        "West Virginia", "Wisconsin", "Wyoming"
+    };
+
+    // 2 letter abbreviations in the same order as NAMES
+    private static final String[] ABBREVIATIONS =
+    {
+        "AL", "AK", "AZ", "AR", "CA", "CO", "CT", "DE", "FL", "GA", "HI", "ID", "IL", "IN", "IA",
+        "KS", "KY", "LA", "ME", "MD", "MA", "MI", "MN", "MS", "MO", "MT", "NE", "NV", "NH", "NJ",
+        "NM", "NY", "NC", "ND", "OH", "OK", "OR", "PA", "RI", "SC", "SD", "TN", "TX", "UT", "VT",
+        "VA", "WA", "DC", "WV", "WI", "WY"
+    };
+
+    private static final StateLookup INSTANCE = new StateLookup(); // Shared instance
+
+    private final int[] mNameTable = new int[NAME_TABLE_SIZE]; // Index of each name, placed by hash code (NOT_FOUND marks empty slots)
+    private final int[] mAbbreviationTable = new int[LETTERS * LETTERS]; // Index of each abbreviation, placed by its 2 letters
+
+    /**
+     * Builds the lookup tables. Private so only the shared instance is ever created.
+     */
+    private StateLookup()
+    {
+        Arrays.fill(mNameTable, NOT_FOUND);
+        Arrays.fill(mAbbreviationTable, NOT_FOUND);
+
+        for (int i = 0; i < NAMES.length; i++)
+        {
+            // Place the name in the first free slot starting at its hash code
+            int slot = NAMES[i].hashCode() & (NAME_TABLE_SIZE - 1);
+
+            while (mNameTable[slot] != NOT_FOUND)
+            {
+                slot = (slot + 1) & (NAME_TABLE_SIZE - 1);
+            }
+
+            mNameTable[slot] = i;
+            mAbbreviationTable[abbreviationSlot(ABBREVIATIONS[i])] = i;
+        }
+    }
+
+    /**
+     * @return Returns the shared instance
+     */
+    public static StateLookup getInstance()
+    {
+        return INSTANCE;
+    }
+
+    /**
+     * @return Returns the number of states in the tables
+     */
+    public int getCount()
+    {
+        return NAMES.length;
+    }
+
+    /**
+     * Converts a full state name to its position in the spinner/drop down list
+     * @param stateName Full state name from location data or spinner
+     * @return Returns the index position, or NOT_FOUND if the name isn't a known state
+     */
+    public int getIndexForName(String stateName)
+    {
+        if (stateName == null)
+        {
+            return NOT_FOUND;
+        }
+
+        // Probe the table starting at the name's hash code until the name or an empty slot is found
+        int slot = stateName.hashCode() & (NAME_TABLE_SIZE - 1);
+
+        while (mNameTable[slot] != NOT_FOUND)
+        {
+            if (NAMES[mNameTable[slot]].equals(stateName))
+            {
+                return mNameTable[slot];
+            }
+
+            slot = (slot + 1) & (NAME_TABLE_SIZE - 1);
+        }
+
+        return NOT_FOUND;
+    }
+
+    /**
+     * Converts a 2 letter state abbreviation to its position in the spinner/drop down list
+     * @param abbreviation 2 letter abbreviation (upper case)
+     * @return Returns the index position, or NOT_FOUND if the abbreviation isn't a known state
+     */
+    public int getIndexForAbbreviation(String abbreviation)
+    {
+        int slot = abbreviation == null ? NOT_FOUND : abbreviationSlot(abbreviation);
+        return slot == NOT_FOUND ? NOT_FOUND : mAbbreviationTable[slot];
+    }
+
+    /**
+     * Converts a full state name to its 2 letter abbreviation as required by the API
+     * @param stateName Full state name from location data or spinner
+     * @return Returns the 2 letter abbreviation, or null if the name isn't a known state
+     */
+    public String getAbbreviation(String stateName)
+    {
+        int index = this.getIndexForName(stateName);
+        return index == NOT_FOUND ? null : ABBREVIATIONS[index];
+    }
+
+    /**
+     * @param index Position of the state in the spinner/drop down list
+     * @return Returns the state's 2 letter abbreviation
+     */
+    public String getAbbreviation(int index)
+    {
+        return ABBREVIATIONS[index];
+    }
+
+    /**
+     * @param index Position of the state in the spinner/drop down list
+     * @return Returns the state's full name
+     */
+    public String getName(int index)
+    {
+        return NAMES[index];
+    }
+
+    /**
+     * Finds the slot in the abbreviation table for a 2 letter abbreviation
+     * @param abbreviation 2 letter abbreviation (upper case)
+     * @return Returns the slot, or NOT_FOUND if the abbreviation isn't 2 upper case letters
+     */
+    private static int abbreviationSlot(String abbreviation)
+    {
+        if (abbreviation.length() != 2)
+        {
+            return NOT_FOUND;
+        }
+
+        int first = abbreviation.charAt(0) - 'A';
+        int second = abbreviation.charAt(1) - 'A';
+
+        if (first < 0 || first >= LETTERS || second < 0 || second >= LETTERS)
+        {
+            return NOT_FOUND;
+        }
+
+        return (first * LETTERS) + second;
+    }
+}
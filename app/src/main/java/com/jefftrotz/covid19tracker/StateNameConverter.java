@@ -2,7 +2,9 @@ package com.jefftrotz.covid19tracker;
 
 /**
  * Simple class to convert a full, spelled out US state name to its two letter abbreviation
- * or to its corresponding position (AKA index number) in the spinner/drop down list
+ * or to its corresponding position (AKA index number) in the spinner/drop down list.
+ * The app now uses the table based StateLookup instead; this class is kept as the baseline
+ * its lookups are benchmarked against.
  * @author Jeffrey Trotz
  * @date 4/1/2020
  * @version 1.0
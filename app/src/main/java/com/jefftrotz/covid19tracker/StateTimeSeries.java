@@ -0,0 +1,262 @@
+package com.jefftrotz.covid19tracker;
+
+import java.util.Arrays;
+
+/**
+ * Columnar store for the COVID-19 time series of a single state. Each field is kept in its own
+ * array of longs (time in seconds since epoch, number tested, number of positive tests and
+ * number of deaths), so reading a value never requires parsing a String. Rows are expected to
+ * be appended in order of time, oldest first, which is the order the API returns them in.
+ * @author Jeffrey Trotz
+ * @date 4/13/2020
+ * @version 1.0
+ */
+public class StateTimeSeries
+{
+    private static final int DEFAULT_CAPACITY = 64; // Number of rows a new series can hold before it has to grow
+
+    private long[] mEpochSeconds; // Time each row was updated (seconds since epoch)
+    private long[] mTested; // Number of people tested
+    private long[] mPositive; // Number of positive tests
+    private long[] mDeaths; // Number of deaths
+    private int mSize; // Number of rows stored in the series
+
+    /**
+     * Creates an empty series with room for a default number of rows
+     */
+    public StateTimeSeries()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty series
+     * @param capacity Number of rows the series can hold before it has to grow
+     */
+    public StateTimeSeries(int capacity)
+    {
+        mEpochSeconds = new long[capacity];
+        mTested = new long[capacity];
+        mPositive = new long[capacity];
+        mDeaths = new long[capacity];
+    }
+
+    /**
+     * Adds a row to the end of the series
+     * @param epochSeconds Time the stats were updated in seconds since epoch
+     * @param tested Number of people tested
+     * @param positive Number of positive tests
+     * @param deaths Number of deaths
+     */
+    public void append(long epochSeconds, long tested, long positive, long deaths)
+    {
+        // Make room for the new row if the arrays are full
+        if (mSize == mEpochSeconds.length)
+        {
+            this.resize(Math.max(DEFAULT_CAPACITY, mSize * 2));
+        }
+
+        mEpochSeconds[mSize] = epochSeconds;
+        mTested[mSize] = tested;
+        mPositive[mSize] = positive;
+        mDeaths[mSize] = deaths;
+        mSize++;
+    }
+
+    /**
+     * Adds every row of another series to the end of this series
+     * @param other Series containing the rows to add, oldest row first
+     */
+    public void appendAll(StateTimeSeries other)
+    {
+        for (int i = 0; i < other.mSize; i++)
+        {
+            this.append(other.mEpochSeconds[i], other.mTested[i], other.mPositive[i], other.mDeaths[i]);
+        }
+    }
+
+    /**
+     * Shrinks the arrays so they only take up as much memory as the rows stored in them
+     */
+    public void trimToSize()
+    {
+        if (mSize < mEpochSeconds.length)
+        {
+            this.resize(mSize);
+        }
+    }
+
+    /**
+     * Copies the columns into new arrays of the given length
+     * @param capacity New length of the arrays
+     */
+    private void resize(int capacity)
+    {
+        mEpochSeconds = Arrays.copyOf(mEpochSeconds, capacity);
+        mTested = Arrays.copyOf(mTested, capacity);
+        mPositive = Arrays.copyOf(mPositive, capacity);
+        mDeaths = Arrays.copyOf(mDeaths, capacity);
+    }
+
+    /**
+     * @return Returns the number of rows in the series
+     */
+    public int size()
+    {
+        return mSize;
+    }
+
+    /**
+     * @return Returns true if the series doesn't contain any rows
+     */
+    public boolean isEmpty()
+    {
+        return mSize == 0;
+    }
+
+    /**
+     * @param row Index of the row
+     * @return Returns the time the row was updated in seconds since epoch
+     */
+    public long getEpochSeconds(int row)
+    {
+        return mEpochSeconds[this.checkRow(row)];
+    }
+
+    /**
+     * @param row Index of the row
+     * @return Returns the number of people tested as of the row
+     */
+    public long getTested(int row)
+    {
+        return mTested[this.checkRow(row)];
+    }
+
+    /**
+     * @param row Index of the row
+     * @return Returns the number of positive tests as of the row
+     */
+    public long getPositive(int row)
+    {
+        return mPositive[this.checkRow(row)];
+    }
+
+    /**
+     * @param row Index of the row
+     * @return Returns the number of deaths as of the row
+     */
+    public long getDeaths(int row)
+    {
+        return mDeaths[this.checkRow(row)];
+    }
+
+    /**
+     * @return Returns the time of the most recent row in seconds since epoch
+     */
+    public long getLatestEpochSeconds()
+    {
+        return this.getEpochSeconds(mSize - 1);
+    }
+
+    /**
+     * @return Returns the most recent number of people tested
+     */
+    public long getLatestTested()
+    {
+        return this.getTested(mSize - 1);
+    }
+
+    /**
+     * @return Returns the most recent number of positive tests
+     */
+    public long getLatestPositive()
+    {
+        return this.getPositive(mSize - 1);
+    }
+
+    /**
+     * @return Returns the most recent number of deaths
+     */
+    public long getLatestDeaths()
+    {
+        return this.getDeaths(mSize - 1);
+    }
+
+    /**
+     * Finds the first row updated at or after the given time using a binary search
+     * @param epochSeconds Time in seconds since epoch
+     * @return Returns the index of the row, or size() if every row is older
+     */
+    public int indexAtOrAfter(long epochSeconds)
+    {
+        int low = 0;
+        int high = mSize;
+
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+
+            if (mEpochSeconds[middle] < epochSeconds)
+            {
+                low = middle + 1;
+            }
+
+            else
+            {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Copies the rows updated between the two times (inclusive) into a new series
+     * @param fromEpochSeconds Start of the range in seconds since epoch
+     * @param toEpochSeconds End of the range in seconds since epoch
+     * @return Returns a new series containing only the rows in the range
+     */
+    public StateTimeSeries slice(long fromEpochSeconds, long toEpochSeconds)
+    {
+        int fromRow = this.indexAtOrAfter(fromEpochSeconds);
+        int toRow = toEpochSeconds == Long.MAX_VALUE ? mSize : this.indexAtOrAfter(toEpochSeconds + 1);
+        return this.sliceRows(fromRow, Math.max(fromRow, toRow));
+    }
+
+    /**
+     * Copies a range of rows into a new series
+     * @param fromRow Index of the first row to copy (inclusive)
+     * @param toRow Index of the last row to copy (exclusive)
+     * @return Returns a new series containing only the rows in the range
+     */
+    public StateTimeSeries sliceRows(int fromRow, int toRow)
+    {
+        if (fromRow < 0 || toRow > mSize || fromRow > toRow)
+        {
+            throw new IndexOutOfBoundsException("Rows " + fromRow + " to " + toRow + " of " + mSize);
+        }
+
+        StateTimeSeries slice = new StateTimeSeries(0);
+        slice.mEpochSeconds = Arrays.copyOfRange(mEpochSeconds, fromRow, toRow);
+        slice.mTested = Arrays.copyOfRange(mTested, fromRow, toRow);
+        slice.mPositive = Arrays.copyOfRange(mPositive, fromRow, toRow);
+        slice.mDeaths = Arrays.copyOfRange(mDeaths, fromRow, toRow);
+        slice.mSize = toRow - fromRow;
+        return slice;
+    }
+
+    /**
+     * Makes sure the row index refers to a row that has been stored
+     * @param row Index of the row
+     * @return Returns the row index if it's valid
+     */
+    private int checkRow(int row)
+    {
+        if (row < 0 || row >= mSize)
+        {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + mSize);
+        }
+
+        return row;
+    }
+}
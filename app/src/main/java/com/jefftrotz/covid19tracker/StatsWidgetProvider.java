@@ -0,0 +1,115 @@
+package com.jefftrotz.covid19tracker;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+import android.widget.RemoteViews;
+import java.io.IOException;
+import java.text.NumberFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Home screen widget showing today's numbers for each followed state. Everything shown comes from
+ * the WidgetSnapshot written by the background sync, read through a memory map, so drawing the
+ * widget never parses data or touches the network and stays cheap however often it's redrawn.
+ * The sync redraws the widget (see updateAll()) each time it writes a new snapshot, so the widget
+ * doesn't ask the system for periodic updates of its own. Tapping the widget opens the app.
+ * @author Jeffrey Trotz
+ * @date 5/3/2020
+ * @version 1.0
+ */
+public class StatsWidgetProvider extends AppWidgetProvider
+{
+    private static final String TAG = "StatsWidgetProvider"; // Tag used when logging
+    private static final String IO_EXCEPTION_TEXT = "IO Exception: "; // Text fed into the Log.e() method when an IO exception is logged
+    private static final String ROW_TEXT = "%s  %s positive (%+,d)  %s deaths"; // Format of each state's line (the change is signed, since totals are sometimes revised down)
+    private static final String UPDATED_TEXT = "Updated %s"; // Format of the line showing when the snapshot was written
+    private static final String UPDATED_FORMAT = "MM/dd hh:mm aa"; // Date/time format of the updated line
+    private static final String NO_STATES_TEXT = "Keep a state updated in the app to see it here."; // Shown until the first snapshot with any states is written
+
+    /**
+     * Called by the system when the widgets need to be drawn (e.g. when one is added)
+     * @param context Context the provider is running in
+     * @param appWidgetManager Manager used to update the widgets
+     * @param appWidgetIds IDs of the widgets to draw
+     */
+    @Override
+    public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds)
+    {
+        appWidgetManager.updateAppWidget(appWidgetIds, buildViews(context));
+    }
+
+    /**
+     * Redraws every widget on the home screen from the latest snapshot. Called after the
+     * snapshot is written.
+     * @param context Context used to reach the widget manager
+     */
+    public static void updateAll(Context context)
+    {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(context, StatsWidgetProvider.class));
+
+        // Nothing to draw if no widgets have been added
+        if (appWidgetIds.length > 0)
+        {
+            appWidgetManager.updateAppWidget(appWidgetIds, buildViews(context));
+        }
+    }
+
+    /**
+     * Builds the widget's views from the snapshot file
+     * @param context Context used to find the snapshot file
+     * @return Returns the views to show in each widget
+     */
+    private static RemoteViews buildViews(Context context)
+    {
+        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_stats);
+        WidgetSnapshot snapshot = null;
+
+        try
+        {
+            snapshot = WidgetSnapshot.open(WidgetSnapshot.getFile(context));
+        }
+
+        // Catch and log IO Exceptions, and show the widget as if there was no snapshot
+        catch (IOException ioException)
+        {
+            Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+        }
+
+        if (snapshot == null || snapshot.getCount() == 0)
+        {
+            views.setTextViewText(R.id.widgetStatsTextView, NO_STATES_TEXT);
+            views.setTextViewText(R.id.widgetUpdatedTextView, "");
+        }
+
+        else
+        {
+            NumberFormat numberFormat = NumberFormat.getNumberInstance(Locale.US);
+            StringBuilder builder = new StringBuilder();
+
+            for (int i = 0; i < snapshot.getCount(); i++)
+            {
+                builder.append(i == 0 ? "" : "\n").append(String.format(Locale.US, ROW_TEXT, snapshot.getAbbreviation(i),
+                    numberFormat.format(snapshot.getPositive(i)), snapshot.getNewPositive(i),
+                    numberFormat.format(snapshot.getDeaths(i))));
+            }
+
+            views.setTextViewText(R.id.widgetStatsTextView, builder);
+            views.setTextViewText(R.id.widgetUpdatedTextView, String.format(Locale.US, UPDATED_TEXT,
+                new SimpleDateFormat(UPDATED_FORMAT, Locale.US).format(new Date(snapshot.getWrittenAtMillis()))));
+        }
+
+        // Open the app when the widget is tapped
+        PendingIntent openApp = PendingIntent.getActivity(context, 0, new Intent(context, MainActivity.class),
+            PendingIntent.FLAG_UPDATE_CURRENT);
+        views.setOnClickPendingIntent(R.id.widgetRoot, openApp);
+        return views;
+    }
+}
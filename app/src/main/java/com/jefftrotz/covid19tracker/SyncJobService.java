@@ -0,0 +1,226 @@
+package com.jefftrotz.covid19tracker;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.database.SQLException;
+import android.os.SystemClock;
+import android.util.Log;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Periodically refreshes the data of every followed state (see FollowedStates) in the background.
+ * All of the states are refreshed in a single job, one after the other, so the radio wakes up once
+ * per run and the connection to the API can be reused between requests. Each request sends the
+ * validators stored with the cache, so states whose data hasn't changed upstream cost a 304
+ * response and no parsing or disk writes. A SyncReport of each run is saved so the schedule can be
+ * tuned for battery and data use. Each run also rewrites the snapshot file the home screen widget
+ * is drawn from (see WidgetSnapshot).
+ * @author Jeffrey Trotz
+ * @date 4/24/2020
+ * @version 1.0
+ */
+public class SyncJobService extends JobService
+{
+    private static final int JOB_ID = 1; // Identifier of the sync job
+    private static final long SYNC_INTERVAL_MILLIS = 6 * 60 * 60 * 1000L; // Time between runs (the API updates a few times a day)
+    private static final String TAG = "SyncJobService"; // Tag used when logging
+    private static final String IO_EXCEPTION_TEXT = "IO Exception: "; // Text fed into the Log.e() method when an IO exception is logged
+    private static final String SQL_EXCEPTION_TEXT = "SQL Exception: "; // Text fed into the Log.e() method when a SQL exception is logged
+    private static final String RUNTIME_EXCEPTION_TEXT = "Runtime Exception: "; // Text fed into the Log.e() method when an unexpected exception is logged
+    private static final String SYNC_FINISHED_TEXT = "Sync finished: "; // Text fed into the Log.d() method when a run finishes
+    private static final String SYNC_STOPPED_TEXT = "Sync stopped by the system"; // Text fed into the Log.d() method when a run is stopped early
+
+    private volatile boolean mStopped; // Set when the system stops the current run early
+
+    /**
+     * Schedules the sync job if any states are followed, or cancels it if none are. Safe to call
+     * whenever the followed states change; an existing schedule is left alone.
+     * @param context Context used to reach the job scheduler
+     */
+    public static void updateSchedule(Context context)
+    {
+        JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+
+        if (new FollowedStates(context).getAll().isEmpty())
+        {
+            jobScheduler.cancel(JOB_ID);
+            return;
+        }
+
+        // Leave the existing schedule alone so the next run isn't pushed back
+        for (JobInfo pendingJob : jobScheduler.getAllPendingJobs())
+        {
+            if (pendingJob.getId() == JOB_ID)
+            {
+                return;
+            }
+        }
+
+        jobScheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, SyncJobService.class))
+            .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+            .setPeriodic(SYNC_INTERVAL_MILLIS)
+            .setPersisted(true)
+            .build());
+    }
+
+    /**
+     * Called by the system when the job should run. The states are refreshed on a background
+     * thread since this is called on the main thread.
+     * @param params Parameters of the job
+     * @return Returns true since the work continues on another thread
+     */
+    @Override
+    public boolean onStartJob(final JobParameters params)
+    {
+        mStopped = false;
+
+        new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    sync();
+                }
+
+                // Always let the system know the run is over, otherwise it holds the job (and a
+                // wake lock) until it times out
+                finally
+                {
+                    jobFinished(params, false);
+                }
+            }
+        }, TAG).start();
+
+        return true;
+    }
+
+    /**
+     * Called by the system if the job has to stop before it finishes (e.g. the network was lost)
+     * @param params Parameters of the job
+     * @return Returns true so the job is tried again later
+     */
+    @Override
+    public boolean onStopJob(JobParameters params)
+    {
+        Log.d(TAG, SYNC_STOPPED_TEXT);
+        mStopped = true;
+        return true;
+    }
+
+    /**
+     * Refreshes every followed state, updates the widget's snapshot, stores their history in the
+     * database in a single transaction and saves a report of the run
+     */
+    private void sync()
+    {
+        Set<String> abbreviations = new FollowedStates(this).getAll();
+        SeriesRepository repository = new SeriesRepository(SeriesCache.getInstance(this), DataProviders.getDefault());
+        long startTime = SystemClock.elapsedRealtime();
+        Map<String, StateTimeSeries> refreshed = new HashMap<>();
+        long bytesTransferred = 0;
+        int checked = 0;
+        int changed = 0;
+        int failed = 0;
+
+        for (String abbreviation : abbreviations)
+        {
+            if (mStopped)
+            {
+                break;
+            }
+
+            try
+            {
+                SeriesRepository.Refresh refresh = repository.refresh(abbreviation, repository.readCached(abbreviation));
+                refreshed.put(abbreviation, refresh.getData());
+                bytesTransferred += refresh.getBytesTransferred();
+                checked++;
+
+                if (refresh.isChanged())
+                {
+                    changed++;
+                }
+            }
+
+            // Catch and log IO Exceptions, and move on to the next state
+            catch (IOException ioException)
+            {
+                Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+                failed++;
+            }
+
+            // Anything else that goes wrong (e.g. while adding to the cache) only fails this state
+            catch (RuntimeException runtimeException)
+            {
+                Log.e(TAG, RUNTIME_EXCEPTION_TEXT + runtimeException.getMessage(), runtimeException);
+                failed++;
+            }
+        }
+
+        this.updateWidget(repository, abbreviations, refreshed);
+
+        // Store every state's new rows at once (states that haven't changed insert nothing)
+        try
+        {
+            SeriesDatabase.getInstance(this).write(refreshed);
+        }
+
+        // The cache is up to date, so the history just misses these rows until the next run
+        catch (SQLException sqlException)
+        {
+            Log.e(TAG, SQL_EXCEPTION_TEXT + sqlException.getMessage());
+        }
+
+        SyncReport report = new SyncReport(System.currentTimeMillis(), SystemClock.elapsedRealtime() - startTime,
+            bytesTransferred, checked, changed, failed);
+        report.saveAsLast(this);
+        Log.d(TAG, SYNC_FINISHED_TEXT + report);
+    }
+
+    /**
+     * Replaces the home screen widget's snapshot with the latest numbers of every followed state
+     * and redraws the widget
+     * @param repository Repository used to read the cached data of states that couldn't be refreshed
+     * @param abbreviations 2 letter abbreviations of the followed states
+     * @param refreshed Data of each state refreshed by this run, by 2 letter abbreviation
+     */
+    private void updateWidget(SeriesRepository repository, Set<String> abbreviations, Map<String, StateTimeSeries> refreshed)
+    {
+        Map<String, StateTimeSeries> latest = new HashMap<>(refreshed);
+
+        // Keep showing the last known numbers of states that failed or weren't reached
+        for (String abbreviation : abbreviations)
+        {
+            if (!latest.containsKey(abbreviation))
+            {
+                StateTimeSeries cached = repository.readCached(abbreviation);
+
+                if (cached != null)
+                {
+                    latest.put(abbreviation, cached);
+                }
+            }
+        }
+
+        try
+        {
+            WidgetSnapshot.write(WidgetSnapshot.getFile(this), latest);
+            StatsWidgetProvider.updateAll(this);
+        }
+
+        // Catch and log IO Exceptions. The widget keeps showing the previous snapshot.
+        catch (IOException ioException)
+        {
+            Log.e(TAG, IO_EXCEPTION_TEXT + ioException.getMessage());
+        }
+    }
+}
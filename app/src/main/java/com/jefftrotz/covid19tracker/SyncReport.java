@@ -0,0 +1,145 @@
+package com.jefftrotz.covid19tracker;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import java.util.Locale;
+
+/**
+ * Results of one background sync run: when it ran, how long it took, how many bytes were
+ * downloaded and how many states changed. The last report is stored in shared preferences so the
+ * sync schedule can be tuned for battery and data use.
+ * @author Jeffrey Trotz
+ * @date 4/24/2020
+ * @version 1.0
+ */
+public class SyncReport
+{
+    private static final String PREFERENCES_NAME = "sync_report"; // Name of the shared preferences file
+    private static final String FINISHED_AT_KEY = "finished_at"; // Key the time the run finished is stored under
+    private static final String ELAPSED_KEY = "elapsed_millis"; // Key the length of the run is stored under
+    private static final String BYTES_KEY = "bytes_transferred"; // Key the number of bytes downloaded is stored under
+    private static final String CHECKED_KEY = "states_checked"; // Key the number of states checked is stored under
+    private static final String CHANGED_KEY = "states_changed"; // Key the number of states with new data is stored under
+    private static final String FAILED_KEY = "states_failed"; // Key the number of states that failed is stored under
+    private static final String SUMMARY_FORMAT = "%d states checked, %d changed, %d failed, %d bytes in %d ms"; // Format used by toString()
+
+    private final long mFinishedAt; // Time the run finished (milliseconds since epoch)
+    private final long mElapsedMillis; // Length of the run
+    private final long mBytesTransferred; // Number of response body bytes downloaded
+    private final int mStatesChecked; // Number of states checked with the API
+    private final int mStatesChanged; // Number of states that had new data
+    private final int mStatesFailed; // Number of states that couldn't be checked
+
+    /**
+     * Constructor
+     * @param finishedAt Time the run finished (milliseconds since epoch)
+     * @param elapsedMillis Length of the run
+     * @param bytesTransferred Number of response body bytes downloaded
+     * @param statesChecked Number of states checked with the API
+     * @param statesChanged Number of states that had new data
+     * @param statesFailed Number of states that couldn't be checked
+     */
+    public SyncReport(long finishedAt, long elapsedMillis, long bytesTransferred, int statesChecked,
+                      int statesChanged, int statesFailed)
+    {
+        mFinishedAt = finishedAt;
+        mElapsedMillis = elapsedMillis;
+        mBytesTransferred = bytesTransferred;
+        mStatesChecked = statesChecked;
+        mStatesChanged = statesChanged;
+        mStatesFailed = statesFailed;
+    }
+
+    /**
+     * Reads the report of the last sync run
+     * @param context Context used to open the shared preferences
+     * @return Returns the last report, or null if the sync hasn't run yet
+     */
+    public static SyncReport readLast(Context context)
+    {
+        SharedPreferences preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+
+        if (!preferences.contains(FINISHED_AT_KEY))
+        {
+            return null;
+        }
+
+        return new SyncReport(preferences.getLong(FINISHED_AT_KEY, 0), preferences.getLong(ELAPSED_KEY, 0),
+            preferences.getLong(BYTES_KEY, 0), preferences.getInt(CHECKED_KEY, 0),
+            preferences.getInt(CHANGED_KEY, 0), preferences.getInt(FAILED_KEY, 0));
+    }
+
+    /**
+     * Stores this report as the report of the last sync run
+     * @param context Context used to open the shared preferences
+     */
+    public void saveAsLast(Context context)
+    {
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).edit()
+            .putLong(FINISHED_AT_KEY, mFinishedAt)
+            .putLong(ELAPSED_KEY, mElapsedMillis)
+            .putLong(BYTES_KEY, mBytesTransferred)
+            .putInt(CHECKED_KEY, mStatesChecked)
+            .putInt(CHANGED_KEY, mStatesChanged)
+            .putInt(FAILED_KEY, mStatesFailed)
+            .apply();
+    }
+
+    /**
+     * @return Returns the time the run finished in milliseconds since epoch
+     */
+    public long getFinishedAt()
+    {
+        return mFinishedAt;
+    }
+
+    /**
+     * @return Returns the length of the run in milliseconds
+     */
+    public long getElapsedMillis()
+    {
+        return mElapsedMillis;
+    }
+
+    /**
+     * @return Returns the number of response body bytes downloaded
+     */
+    public long getBytesTransferred()
+    {
+        return mBytesTransferred;
+    }
+
+    /**
+     * @return Returns the number of states checked with the API
+     */
+    public int getStatesChecked()
+    {
+        return mStatesChecked;
+    }
+
+    /**
+     * @return Returns the number of states that had new data
+     */
+    public int getStatesChanged()
+    {
+        return mStatesChanged;
+    }
+
+    /**
+     * @return Returns the number of states that couldn't be checked
+     */
+    public int getStatesFailed()
+    {
+        return mStatesFailed;
+    }
+
+    /**
+     * @return Returns a one line summary of the run
+     */
+    @Override
+    public String toString()
+    {
+        return String.format(Locale.US, SUMMARY_FORMAT, mStatesChecked, mStatesChanged, mStatesFailed,
+            mBytesTransferred, mElapsedMillis);
+    }
+}
@@ -0,0 +1,261 @@
+package com.jefftrotz.covid19tracker;
+
+import android.content.Context;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Small file holding the latest numbers of each followed state for the home screen widget, so
+ * the widget can be drawn without the database, the cache, parsing or the network. The file has a
+ * fixed layout: a header (MAGIC_NUMBER, FILE_VERSION, the number of states and the time the file
+ * was written) followed by one RECORD_SIZE record per state, in alphabetical order. Readers map
+ * the file and read each value straight from its offset.
+ * <p>
+ * The file is written by the background sync to a temporary file that's renamed over the old one,
+ * so the widget always sees either the old snapshot or the new one, never part of each. An open
+ * snapshot is shared between reads until the file is replaced.
+ * @author Jeffrey Trotz
+ * @date 5/3/2020
+ * @version 1.0
+ */
+public final class WidgetSnapshot
+{
+    public static final String FILE_NAME = "widget_snapshot.bin"; // Name of the file in the app's files directory
+    private static final String TEMP_EXTENSION = ".tmp"; // Added to the file's name while it's written
+    private static final int MAGIC_NUMBER = 0x43313957; // Marks the start of a valid snapshot file
+    private static final int FILE_VERSION = 1; // Version of the file layout
+    private static final int HEADER_SIZE = 24; // Magic number, version, state count, unused, time written
+    private static final int RECORD_SIZE = 48; // Abbreviation (padded to 8 bytes), time, tested, positive, deaths, new positive
+    private static final int COUNT_OFFSET = 8; // Offset of the number of states in the header
+    private static final int WRITTEN_AT_OFFSET = 16; // Offset of the time the file was written in the header
+    private static final int EPOCH_SECONDS_OFFSET = 8; // Offset of the latest row's time within a record
+    private static final int TESTED_OFFSET = 16; // Offset of the number tested within a record
+    private static final int POSITIVE_OFFSET = 24; // Offset of the number of positive tests within a record
+    private static final int DEATHS_OFFSET = 32; // Offset of the number of deaths within a record
+    private static final int NEW_POSITIVE_OFFSET = 40; // Offset of the number of new positive tests within a record
+
+    private static WidgetSnapshot sOpened; // Snapshot opened by the last read, reused until the file changes
+
+    private final MappedByteBuffer mBuffer; // Contents of the file
+    private final long mLastModified; // Time the mapped file was last modified
+    private final long mLength; // Length of the mapped file
+    private final int mCount; // Number of states in the snapshot
+
+    /**
+     * Constructor
+     * @param buffer Contents of the file (already checked)
+     * @param lastModified Time the file was last modified
+     * @param length Length of the file
+     */
+    private WidgetSnapshot(MappedByteBuffer buffer, long lastModified, long length)
+    {
+        mBuffer = buffer;
+        mLastModified = lastModified;
+        mLength = length;
+        mCount = buffer.getInt(COUNT_OFFSET);
+    }
+
+    /**
+     * @param context Context used to find the app's files directory
+     * @return Returns the snapshot file used by the app
+     */
+    public static File getFile(Context context)
+    {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Replaces the snapshot file with the latest row of each state
+     * @param file Snapshot file
+     * @param seriesByState Data of each state (oldest row first), by 2 letter abbreviation.
+     * States without any rows are left out.
+     * @throws IOException Thrown if the file can't be written
+     */
+    public static void write(File file, Map<String, StateTimeSeries> seriesByState) throws IOException
+    {
+        Map<String, StateTimeSeries> sorted = new TreeMap<>();
+
+        for (Map.Entry<String, StateTimeSeries> entry : seriesByState.entrySet())
+        {
+            if (!entry.getValue().isEmpty())
+            {
+                sorted.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + (sorted.size() * RECORD_SIZE));
+        buffer.putInt(MAGIC_NUMBER).putInt(FILE_VERSION).putInt(sorted.size()).putInt(0)
+            .putLong(System.currentTimeMillis());
+
+        for (Map.Entry<String, StateTimeSeries> entry : sorted.entrySet())
+        {
+            String abbreviation = entry.getKey();
+            StateTimeSeries series = entry.getValue();
+            int last = series.size() - 1;
+            long newPositive = last > 0 ? series.getPositive(last) - series.getPositive(last - 1) : 0;
+            buffer.put((byte) abbreviation.charAt(0)).put((byte) abbreviation.charAt(1)).put(new byte[6])
+                .putLong(series.getEpochSeconds(last))
+                .putLong(series.getTested(last))
+                .putLong(series.getPositive(last))
+                .putLong(series.getDeaths(last))
+                .putLong(newPositive);
+        }
+
+        buffer.flip();
+        File tempFile = new File(file.getPath() + TEMP_EXTENSION);
+
+        // Make sure the new file is on disk before it replaces the old one
+        try (FileOutputStream outputStream = new FileOutputStream(tempFile))
+        {
+            FileChannel channel = outputStream.getChannel();
+
+            while (buffer.hasRemaining())
+            {
+                channel.write(buffer);
+            }
+
+            channel.force(true);
+        }
+
+        if (!tempFile.renameTo(file))
+        {
+            throw new IOException("Couldn't rename " + tempFile + " to " + file);
+        }
+
+        synchronized (WidgetSnapshot.class)
+        {
+            sOpened = null;
+        }
+    }
+
+    /**
+     * Maps the snapshot file, or returns the snapshot already mapped if the file hasn't changed
+     * @param file Snapshot file
+     * @return Returns the snapshot, or null if the file doesn't exist or isn't valid
+     * @throws IOException Thrown if the file can't be read
+     */
+    public static synchronized WidgetSnapshot open(File file) throws IOException
+    {
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        if (sOpened != null && sOpened.mLastModified == lastModified && sOpened.mLength == length)
+        {
+            return sOpened;
+        }
+
+        sOpened = null;
+
+        if (!file.exists() || length < HEADER_SIZE)
+        {
+            return null;
+        }
+
+        // The mapping stays valid after the file is closed (and after it's replaced)
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"))
+        {
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+            if (buffer.getInt(0) != MAGIC_NUMBER || buffer.getInt(4) != FILE_VERSION
+                || length != HEADER_SIZE + ((long) buffer.getInt(COUNT_OFFSET) * RECORD_SIZE))
+            {
+                return null;
+            }
+
+            sOpened = new WidgetSnapshot(buffer, lastModified, length);
+            return sOpened;
+        }
+    }
+
+    /**
+     * @return Returns the number of states in the snapshot
+     */
+    public int getCount()
+    {
+        return mCount;
+    }
+
+    /**
+     * @return Returns the time the snapshot was written in milliseconds since epoch
+     */
+    public long getWrittenAtMillis()
+    {
+        return mBuffer.getLong(WRITTEN_AT_OFFSET);
+    }
+
+    /**
+     * @param index Index of a state in the snapshot (states are in alphabetical order)
+     * @return Returns the state's 2 letter abbreviation
+     */
+    public String getAbbreviation(int index)
+    {
+        int offset = recordOffset(index);
+        return new String(new char[] {(char) mBuffer.get(offset), (char) mBuffer.get(offset + 1)});
+    }
+
+    /**
+     * @param index Index of a state in the snapshot
+     * @return Returns the time of the state's latest row in seconds since epoch
+     */
+    public long getEpochSeconds(int index)
+    {
+        return mBuffer.getLong(recordOffset(index) + EPOCH_SECONDS_OFFSET);
+    }
+
+    /**
+     * @param index Index of a state in the snapshot
+     * @return Returns the number of people tested in the state's latest row
+     */
+    public long getTested(int index)
+    {
+        return mBuffer.getLong(recordOffset(index) + TESTED_OFFSET);
+    }
+
+    /**
+     * @param index Index of a state in the snapshot
+     * @return Returns the number of positive tests in the state's latest row
+     */
+    public long getPositive(int index)
+    {
+        return mBuffer.getLong(recordOffset(index) + POSITIVE_OFFSET);
+    }
+
+    /**
+     * @param index Index of a state in the snapshot
+     * @return Returns the number of deaths in the state's latest row
+     */
+    public long getDeaths(int index)
+    {
+        return mBuffer.getLong(recordOffset(index) + DEATHS_OFFSET);
+    }
+
+    /**
+     * @param index Index of a state in the snapshot
+     * @return Returns the change in positive tests between the state's last two rows
+     */
+    public long getNewPositive(int index)
+    {
+        return mBuffer.getLong(recordOffset(index) + NEW_POSITIVE_OFFSET);
+    }
+
+    /**
+     * @param index Index of a state in the snapshot
+     * @return Returns the offset of the state's record in the file
+     */
+    private int recordOffset(int index)
+    {
+        if (index < 0 || index >= mCount)
+        {
+            throw new IndexOutOfBoundsException("State " + index + " of " + mCount);
+        }
+
+        return HEADER_SIZE + (index * RECORD_SIZE);
+    }
+}
@@ -0,0 +1,253 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that AggregationEngine adds states up by UTC day, carries each state's totals through the
+ * days it has no row, and that updating cached totals gives the same rows as merging from the start
+ * @author Jeffrey Trotz
+ * @date 5/7/2020
+ * @version 1.0
+ */
+public class AggregationEngineTest
+{
+    private static final String GROUP_ID = "custom:test"; // ID every test group is cached under
+    private static final long START_EPOCH_SECONDS = 1586131200L; // Midnight UTC on the first day
+    private static final long SECONDS_PER_DAY = 86400; // Number of seconds in a day
+    private static final long SECONDS_PER_HOUR = 3600; // Number of seconds in an hour
+    private static final int PARALLELISM = 2; // Threads used for parallel merges
+
+    private AggregationEngine mEngine; // Engine being tested
+    private SeriesStore mStore; // Latest data of each state
+
+    @Before
+    public void setUp()
+    {
+        mEngine = new AggregationEngine(PARALLELISM);
+        mStore = new SeriesStore();
+    }
+
+    @After
+    public void tearDown()
+    {
+        mEngine.shutdown();
+    }
+
+    @Test
+    public void rowsAreAddedUpByUtcDay()
+    {
+        // One state reports late in the day, the other early and twice on the second day
+        StateTimeSeries late = new StateTimeSeries();
+        late.append(time(0, 23), 10, 1, 0);
+        late.append(time(1, 23) + 1800, 20, 2, 1);
+        StateTimeSeries early = new StateTimeSeries();
+        early.append(time(1, 0) + 1800, 100, 10, 5);
+        early.append(time(1, 12), 150, 15, 6);
+        early.append(time(2, 1), 200, 20, 7);
+        mStore.publish("AA", late, true);
+        mStore.publish("BB", early, true);
+
+        StateTimeSeries expected = new StateTimeSeries();
+        expected.append(time(0, 0), 10, 1, 0);
+        expected.append(time(1, 0), 170, 17, 7);
+        expected.append(time(2, 0), 220, 22, 8);
+
+        AggregationEngine.Aggregate aggregate = mEngine.aggregate(group("AA", "BB"), mStore);
+        assertEquals(GROUP_ID, aggregate.getSnapshot().getAbbreviation());
+        assertEquals(2, aggregate.getMembersLoaded());
+        assertSeriesEquals(expected, aggregate.getSnapshot().getData());
+    }
+
+    @Test
+    public void missingRowsAndStatesAreCarriedOrLeftOut()
+    {
+        // BB skips days 1, 2 and 4, and CC hasn't been loaded
+        StateTimeSeries everyDay = rows(0, 5, 6, 1000, -1);
+        StateTimeSeries someDays = new StateTimeSeries();
+        someDays.append(time(0, 18), 50, 5, 1);
+        someDays.append(time(3, 18), 80, 8, 2);
+        mStore.publish("AA", everyDay, true);
+        mStore.publish("BB", someDays, true);
+
+        StateTimeSeries expected = new StateTimeSeries();
+
+        for (int day = 0; day < 5; day++)
+        {
+            int row = day < 3 ? 0 : 1;
+            expected.append(time(day, 0), everyDay.getTested(day) + someDays.getTested(row),
+                everyDay.getPositive(day) + someDays.getPositive(row), everyDay.getDeaths(day) + someDays.getDeaths(row));
+        }
+
+        AggregationEngine.Aggregate aggregate = mEngine.aggregate(group("AA", "BB", "CC"), mStore);
+        assertEquals(2, aggregate.getMembersLoaded());
+        assertSeriesEquals(expected, aggregate.getSnapshot().getData());
+
+        // A group none of whose states have been loaded has no totals
+        assertNull(mEngine.aggregate(group("CC"), mStore));
+    }
+
+    @Test
+    public void incrementalUpdateMatchesAFullMerge()
+    {
+        // More states than are merged sequentially, each reporting at its own hour and skipping a day
+        List<String> members = new ArrayList<>();
+
+        for (int state = 0; state < 10; state++)
+        {
+            String abbreviation = "S" + state;
+            members.add(abbreviation);
+            mStore.publish(abbreviation, rows(0, 20, state * 2, 1000L * (state + 1), state), true);
+        }
+
+        members.add("NEW");
+        RegionGroup group = new RegionGroup(GROUP_ID, "Test", members);
+        mEngine.aggregate(group, mStore);
+        assertEquals(1, mEngine.getFullCount());
+        assertEquals(0, mEngine.getIncrementalCount());
+
+        // Nothing changed, so the same snapshot comes back
+        SeriesSnapshot unchanged = mEngine.aggregate(group, mStore).getSnapshot();
+        assertSame(unchanged, mEngine.aggregate(group, mStore).getSnapshot());
+
+        // S1 gets a later row on its last day, S2 and S3 get new days, and NEW is loaded
+        StateTimeSeries replaced = extend(mStore.get("S1").getData());
+        replaced.append(time(19, 20), 99999, 9999, 99);
+        mStore.publish("S1", replaced, true);
+        StateTimeSeries longer = extend(mStore.get("S2").getData());
+        longer.appendAll(rows(20, 3, 4, 3000 + 2000, -1));
+        mStore.publish("S2", longer, true);
+        StateTimeSeries skipped = extend(mStore.get("S3").getData());
+        skipped.append(time(25, 6), 99999, 9999, 99);
+        mStore.publish("S3", skipped, true);
+        mStore.publish("NEW", rows(15, 10, 9, 500, -1), true);
+
+        AggregationEngine.Aggregate updated = mEngine.aggregate(group, mStore);
+        assertEquals(1, mEngine.getFullCount());
+        assertEquals(1, mEngine.getIncrementalCount());
+        assertEquals(11, updated.getMembersLoaded());
+        assertSeriesEquals(this.aggregateFromScratch(group), updated.getSnapshot().getData());
+        assertEquals(26, updated.getSnapshot().getData().size());
+    }
+
+    @Test
+    public void removingOrRevisingAMemberRebuildsTheTotals()
+    {
+        mStore.publish("AA", rows(0, 10, 3, 1000, 4), true);
+        mStore.publish("BB", rows(0, 10, 15, 2000, -1), true);
+        mStore.publish("CC", rows(2, 10, 22, 3000, 7), true);
+        mEngine.aggregate(group("AA", "BB", "CC"), mStore);
+
+        // The group was edited to leave CC out
+        RegionGroup smaller = group("AA", "BB");
+        AggregationEngine.Aggregate aggregate = mEngine.aggregate(smaller, mStore);
+        assertEquals(2, mEngine.getFullCount());
+        assertEquals(0, mEngine.getIncrementalCount());
+        assertSeriesEquals(this.aggregateFromScratch(smaller), aggregate.getSnapshot().getData());
+
+        // AA's history was revised, so its old rows can't be subtracted
+        StateTimeSeries revised = rows(0, 11, 5, 1100, -1);
+        mStore.publish("AA", revised, true);
+        aggregate = mEngine.aggregate(smaller, mStore);
+        assertEquals(3, mEngine.getFullCount());
+        assertEquals(0, mEngine.getIncrementalCount());
+        assertSeriesEquals(this.aggregateFromScratch(smaller), aggregate.getSnapshot().getData());
+    }
+
+    /**
+     * @param group Group of states
+     * @return Returns the group's totals from an engine with nothing cached
+     */
+    private StateTimeSeries aggregateFromScratch(RegionGroup group)
+    {
+        AggregationEngine engine = new AggregationEngine(PARALLELISM);
+
+        try
+        {
+            return engine.aggregate(group, mStore).getSnapshot().getData();
+        }
+
+        finally
+        {
+            engine.shutdown();
+        }
+    }
+
+    /**
+     * @param members 2 letter abbreviations of the states in the group
+     * @return Returns a group cached under GROUP_ID
+     */
+    private static RegionGroup group(String... members)
+    {
+        return new RegionGroup(GROUP_ID, "Test", Arrays.asList(members));
+    }
+
+    /**
+     * @param day Days since the first day
+     * @param hour Hour of the day (UTC)
+     * @return Returns the time in seconds since epoch
+     */
+    private static long time(int day, int hour)
+    {
+        return START_EPOCH_SECONDS + (day * SECONDS_PER_DAY) + (hour * SECONDS_PER_HOUR);
+    }
+
+    /**
+     * @param firstDay Day of the first row
+     * @param days Number of days
+     * @param hour Hour of the day (UTC) each row is at
+     * @param base Number tested on the first day
+     * @param skippedDay Day with no row (-1 for none)
+     * @return Returns a row a day with growing totals
+     */
+    private static StateTimeSeries rows(int firstDay, int days, int hour, long base, int skippedDay)
+    {
+        StateTimeSeries series = new StateTimeSeries();
+
+        for (int day = firstDay; day < firstDay + days; day++)
+        {
+            if (day != skippedDay)
+            {
+                series.append(time(day, hour), base + (day * 100L), (base / 10) + (day * 10L), day);
+            }
+        }
+
+        return series;
+    }
+
+    /**
+     * @param series Published data
+     * @return Returns a copy that more rows can be added to (published data must not change)
+     */
+    private static StateTimeSeries extend(StateTimeSeries series)
+    {
+        StateTimeSeries copy = new StateTimeSeries(series.size() + 4);
+        copy.appendAll(series);
+        return copy;
+    }
+
+    /**
+     * @param expected Expected rows
+     * @param actual Rows computed by the engine
+     */
+    private static void assertSeriesEquals(StateTimeSeries expected, StateTimeSeries actual)
+    {
+        assertEquals(expected.size(), actual.size());
+
+        for (int row = 0; row < expected.size(); row++)
+        {
+            assertEquals(expected.getEpochSeconds(row), actual.getEpochSeconds(row));
+            assertEquals(expected.getTested(row), actual.getTested(row));
+            assertEquals(expected.getPositive(row), actual.getPositive(row));
+            assertEquals(expected.getDeaths(row), actual.getDeaths(row));
+        }
+    }
+}
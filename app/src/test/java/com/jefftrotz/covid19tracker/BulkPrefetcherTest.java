@@ -0,0 +1,262 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that BulkPrefetcher counts a state whose provider throws as failed without stopping the
+ * others, and that cancelling drops the queued downloads but still stores the states that
+ * finished or were already running. Progress reports run on the thread that makes them, and the
+ * database only records the batches it's given.
+ * @author Jeffrey Trotz
+ * @date 5/7/2020
+ * @version 1.0
+ */
+public class BulkPrefetcherTest
+{
+    private static final String IO_FAILURE = "IO"; // Region whose fetch throws an IOException
+    private static final String RUNTIME_FAILURE = "RT"; // Region whose fetch throws a RuntimeException
+    private static final long BYTES_PER_STATE = 100; // Bytes each successful fetch reports
+    private static final long TIMEOUT_SECONDS = 10; // Longest any test waits for the prefetch
+
+    private File mDirectory; // Directory the cache is stored in
+    private SeriesStore mStore; // Where the prefetcher publishes each state
+    private FakeProvider mProvider; // Answers each state's fetch
+    private FakeDatabase mDatabase; // Records each batch the prefetcher stores
+    private RecordingListener mListener; // Records each progress report
+
+    @Before
+    public void setUp() throws IOException
+    {
+        mDirectory = File.createTempFile("prefetch", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+        mStore = new SeriesStore();
+        mProvider = new FakeProvider();
+        mDatabase = new FakeDatabase();
+        mListener = new RecordingListener();
+    }
+
+    @After
+    public void tearDown()
+    {
+        // Let any fetch still waiting finish so its thread can exit
+        mProvider.mGate.countDown();
+
+        for (File file : mDirectory.listFiles())
+        {
+            file.delete();
+        }
+
+        mDirectory.delete();
+    }
+
+    @Test
+    public void statesThatThrowAreCountedAsFailed() throws InterruptedException
+    {
+        BulkPrefetcher prefetcher = this.createPrefetcher(3);
+        assertTrue(prefetcher.start(Arrays.asList("AA", IO_FAILURE, "BB", RUNTIME_FAILURE, "CC"), mListener));
+        assertTrue(mListener.mComplete.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        BulkPrefetcher.Progress progress = mListener.mLastProgress;
+        assertEquals(5, progress.getTotal());
+        assertEquals(5, progress.getCompleted());
+        assertEquals(3 * BYTES_PER_STATE, progress.getBytesTransferred());
+        assertEquals(new HashSet<>(Arrays.asList(IO_FAILURE, RUNTIME_FAILURE)), progress.getFailures().keySet());
+        assertEquals(4, mListener.mProgressCount.get());
+
+        // The states that succeeded are published and stored in one batch
+        assertNotNull(mStore.get("AA"));
+        assertEquals(1, mDatabase.mBatches.size());
+        assertEquals(new TreeSet<>(Arrays.asList("AA", "BB", "CC")), mDatabase.mBatches.get(0));
+
+        // Cancelling a finished prefetch stores nothing more, and another one can start
+        prefetcher.cancel();
+        assertFalse(prefetcher.isRunning());
+        assertEquals(1, mDatabase.mBatches.size());
+        assertTrue(prefetcher.start(Collections.singletonList("DD"), mListener));
+    }
+
+    @Test
+    public void cancelDropsQueuedStatesAndStoresTheRest() throws InterruptedException
+    {
+        // With 2 threads, AA finishes, then G1 and G2 are running and Q1 and Q2 are queued
+        mProvider.mGated.addAll(Arrays.asList("G1", "G2"));
+        BulkPrefetcher prefetcher = this.createPrefetcher(2);
+        assertTrue(prefetcher.start(Arrays.asList("AA", "G1", "G2", "Q1", "Q2"), mListener));
+        assertTrue(mProvider.mStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        prefetcher.cancel();
+        assertEquals(0, mDatabase.mBatches.size());
+        mProvider.mGate.countDown();
+        assertTrue(mDatabase.mWritten.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        // The running downloads were interrupted but still finished and were stored with AA
+        assertEquals(2, mProvider.mInterrupts.get());
+        assertEquals(new TreeSet<>(Arrays.asList("AA", "G1", "G2")), mDatabase.mBatches.get(0));
+        assertFalse(mProvider.fetched("Q1") || mProvider.fetched("Q2"));
+
+        // Nobody hears about the states that finished after the cancel
+        assertEquals(1, mListener.mProgressCount.get());
+        assertEquals(1, mListener.mComplete.getCount());
+    }
+
+    /**
+     * @param concurrency Maximum number of states downloaded at the same time
+     * @return Returns a prefetcher that reports progress on the thread that finished the state
+     */
+    private BulkPrefetcher createPrefetcher(int concurrency)
+    {
+        SeriesRepository repository = new SeriesRepository(new SeriesCache(mDirectory), mProvider);
+
+        return new BulkPrefetcher(repository, mStore, mDatabase, concurrency, new Executor()
+        {
+            @Override
+            public void execute(Runnable runnable)
+            {
+                runnable.run();
+            }
+        });
+    }
+
+    /**
+     * Provider that fails for IO_FAILURE and RUNTIME_FAILURE, holds gated regions until the gate
+     * opens, and sends a few rows for everything else
+     */
+    private static class FakeProvider implements DataProvider
+    {
+        private final Set<String> mGated = Collections.synchronizedSet(new HashSet<String>()); // Regions that wait for the gate
+        private final CountDownLatch mStarted = new CountDownLatch(2); // Counted down as each gated region starts
+        private final CountDownLatch mGate = new CountDownLatch(1); // Opened to let the gated regions finish
+        private final AtomicInteger mInterrupts = new AtomicInteger(); // Number of times a gated region was interrupted
+        private final List<String> mFetched = Collections.synchronizedList(new ArrayList<String>()); // Every region fetched
+
+        @Override
+        public String getId()
+        {
+            return "fake";
+        }
+
+        @Override
+        public FetchResult fetch(String regionId, String eTag, String lastModified, long afterEpochSeconds)
+            throws IOException
+        {
+            mFetched.add(regionId);
+
+            if (IO_FAILURE.equals(regionId))
+            {
+                throw new IOException("Server error");
+            }
+
+            if (RUNTIME_FAILURE.equals(regionId))
+            {
+                throw new IllegalStateException("Unexpected response");
+            }
+
+            if (mGated.contains(regionId))
+            {
+                mStarted.countDown();
+                this.waitForGate();
+            }
+
+            return new FetchResult(HTTP_OK, SeriesCacheTest.rows(3), null, null, BYTES_PER_STATE);
+        }
+
+        /**
+         * @param regionId ID of a region
+         * @return Returns true if the region was fetched
+         */
+        boolean fetched(String regionId)
+        {
+            return mFetched.contains(regionId);
+        }
+
+        /**
+         * Waits until the gate opens, counting interrupts instead of giving up, like a download
+         * that's past the point where it notices being interrupted
+         */
+        private void waitForGate()
+        {
+            while (true)
+            {
+                try
+                {
+                    mGate.await();
+                    return;
+                }
+
+                // Expected when the prefetch is cancelled
+                catch (InterruptedException interruptedException)
+                {
+                    mInterrupts.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Database that records the states in each batch instead of storing them
+     */
+    private static class FakeDatabase extends SeriesDatabase
+    {
+        private final List<Set<String>> mBatches = Collections.synchronizedList(new ArrayList<Set<String>>()); // States in each batch written
+        private final CountDownLatch mWritten = new CountDownLatch(1); // Counted down when the first batch is written
+
+        FakeDatabase()
+        {
+            super(null);
+        }
+
+        @Override
+        public int write(Map<String, StateTimeSeries> seriesByState)
+        {
+            mBatches.add(new TreeSet<>(seriesByState.keySet()));
+            mWritten.countDown();
+            return seriesByState.size();
+        }
+    }
+
+    /**
+     * Listener that keeps the last progress report and counts them
+     */
+    private static class RecordingListener implements BulkPrefetcher.Listener
+    {
+        private final AtomicInteger mProgressCount = new AtomicInteger(); // Number of onPrefetchProgress() calls
+        private final CountDownLatch mComplete = new CountDownLatch(1); // Counted down by onPrefetchComplete()
+        private volatile BulkPrefetcher.Progress mLastProgress; // Last progress reported
+
+        @Override
+        public void onPrefetchProgress(BulkPrefetcher.Progress progress)
+        {
+            mLastProgress = progress;
+            mProgressCount.incrementAndGet();
+        }
+
+        @Override
+        public void onPrefetchComplete(BulkPrefetcher.Progress progress)
+        {
+            mLastProgress = progress;
+            mComplete.countDown();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import org.junit.Test;
+
+/**
+ * Tests that CovidDataParser keeps every line made up of 4 whole numbers, wherever the stream's
+ * reads happen to split them, and skips everything else
+ * @author Jeffrey Trotz
+ * @date 5/7/2020
+ * @version 1.0
+ */
+public class CovidDataParserTest
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8"); // Encoding of the CSV data
+    private static final String HEADER = "date,tested,positive,death\n"; // Header line sent by the API
+
+    private final CovidDataParser mParser = new CovidDataParser(); // Parser being tested
+
+    @Test
+    public void headerAndBlankLinesAreSkipped() throws IOException
+    {
+        StateTimeSeries series = this.parse(HEADER + "\n1586131200,1000,100,10\r\n\r\n \n1586217600,1200,130,11\n\n",
+            Long.MIN_VALUE);
+
+        assertEquals(2, series.size());
+        assertRow(series, 0, 1586131200L, 1000, 100, 10);
+        assertRow(series, 1, 1586217600L, 1200, 130, 11);
+    }
+
+    @Test
+    public void lastLineWithoutALineBreakIsKept() throws IOException
+    {
+        StateTimeSeries series = this.parse(HEADER + "1586131200,1000,100,10\n1586217600,1200,130,11 ", Long.MIN_VALUE);
+        assertEquals(2, series.size());
+        assertRow(series, 1, 1586217600L, 1200, 130, 11);
+
+        // A last line that isn't complete is still skipped
+        assertEquals(1, this.parse("1586131200,1000,100,10\n1586217600,1200,", Long.MIN_VALUE).size());
+    }
+
+    @Test
+    public void linesThatAreNotFourNumbersAreSkipped() throws IOException
+    {
+        String data = "1,2,3\n"
+            + "1,2,3,4,5\n"
+            + "1,,3,4\n"
+            + "1,2,3,x\n"
+            + "1.5,2,3,4\n"
+            + "1,2,-,4\n"
+            + "1586131200,-5,100,10\n";
+
+        StateTimeSeries series = this.parse(data, Long.MIN_VALUE);
+        assertEquals(1, series.size());
+
+        // Negative numbers are kept (a source can report a correction as a negative count)
+        assertRow(series, 0, 1586131200L, -5, 100, 10);
+    }
+
+    @Test
+    public void rowsAtOrBeforeTheGivenTimeAreSkipped() throws IOException
+    {
+        String data = HEADER + "100,1,1,1\n200,2,2,2\n300,3,3,3\n";
+
+        assertEquals(3, this.parse(data, 99).size());
+        assertEquals(1, this.parse(data, 200).size());
+        assertRow(this.parse(data, 200), 0, 300, 3, 3, 3);
+        assertEquals(0, this.parse(data, 300).size());
+        assertEquals(3, mParser.parse(new ByteArrayInputStream(data.getBytes(UTF_8))).size());
+        assertEquals(2, mParser.parse(new ByteArrayInputStream(data.getBytes(UTF_8)), "ny", 100).size());
+    }
+
+    @Test
+    public void linesSplitAcrossReadsAreParsedWhole() throws IOException
+    {
+        StringBuilder data = new StringBuilder(HEADER);
+
+        for (int row = 0; row < 2000; row++)
+        {
+            data.append(1586131200L + (row * 86400L)).append(',').append(row * 1000L).append(',')
+                .append(row * 100L).append(',').append(row).append("\r\n");
+        }
+
+        // Fewer bytes than a line per read, then more lines than fit in the parser's buffer
+        for (final int chunk : new int[] {3, Integer.MAX_VALUE})
+        {
+            InputStream inputStream = new FilterInputStream(new ByteArrayInputStream(data.toString().getBytes(UTF_8)))
+            {
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException
+                {
+                    return super.read(buffer, offset, Math.min(length, chunk));
+                }
+            };
+
+            StateTimeSeries series = mParser.parse(inputStream, Long.MIN_VALUE);
+            assertEquals(2000, series.size());
+            assertRow(series, 1999, 1586131200L + (1999 * 86400L), 1999000, 199900, 1999);
+        }
+    }
+
+    /**
+     * @param data CSV data
+     * @param afterEpochSeconds Rows updated at or before this time are skipped
+     * @return Returns the rows parsed from the data
+     * @throws IOException Never thrown by an in-memory stream
+     */
+    private StateTimeSeries parse(String data, long afterEpochSeconds) throws IOException
+    {
+        return mParser.parse(new ByteArrayInputStream(data.getBytes(UTF_8)), afterEpochSeconds);
+    }
+
+    /**
+     * @param series Parsed rows
+     * @param row Index of the row to check
+     * @param epochSeconds Expected time
+     * @param tested Expected number tested
+     * @param positive Expected number of positive tests
+     * @param deaths Expected number of deaths
+     */
+    private static void assertRow(StateTimeSeries series, int row, long epochSeconds, long tested, long positive, long deaths)
+    {
+        assertEquals(epochSeconds, series.getEpochSeconds(row));
+        assertEquals(tested, series.getTested(row));
+        assertEquals(positive, series.getPositive(row));
+        assertEquals(deaths, series.getDeaths(row));
+    }
+}
@@ -0,0 +1,135 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests DataFetcher against a local stub server: gzip bodies, validators, 304 responses and the
+ * number of bytes reported
+ * @author Jeffrey Trotz
+ * @date 5/6/2020
+ * @version 1.0
+ */
+public class DataFetcherTest
+{
+    private static final String STATE = "NY"; // State requested by every test
+    private static final String ETAG = "\"abc123\""; // ETag sent by the server
+    private static final String LAST_MODIFIED = "Wed, 15 Apr 2020 12:00:00 GMT"; // Last-Modified date sent by the server
+
+    private StubServer mServer; // Server the fetcher talks to
+    private DataFetcher mFetcher; // Fetcher under test
+
+    @Before
+    public void setUp() throws IOException
+    {
+        mServer = new StubServer();
+        mFetcher = new DataFetcher("stub", mServer.getUrlTemplate(), new CovidDataParser(), new RateLimiter(1000, 1000));
+    }
+
+    @After
+    public void tearDown()
+    {
+        mServer.stop();
+    }
+
+    @Test
+    public void gzipBodyIsDecompressedAndCompressedBytesAreCounted() throws IOException
+    {
+        StubServer.Response response = new StubServer.Response(DataProvider.HTTP_OK, csv(200)).gzip();
+        mServer.enqueue(response);
+
+        FetchResult result = mFetcher.fetch(STATE, null, null, Long.MIN_VALUE);
+
+        assertEquals(DataProvider.HTTP_OK, result.getResponseCode());
+        assertEquals(200, result.getNewRows().size());
+        assertEquals("gzip", mServer.getRequest(0).getFirst("Accept-Encoding"));
+        assertEquals(response.getEncodedBody().length, result.getBytesTransferred());
+        assertTrue(result.getBytesTransferred() < response.getBodyLength());
+    }
+
+    @Test
+    public void uncompressedBodyCountsEveryByte() throws IOException
+    {
+        StubServer.Response response = new StubServer.Response(DataProvider.HTTP_OK, csv(20));
+        mServer.enqueue(response);
+
+        FetchResult result = mFetcher.fetch(STATE, null, null, Long.MIN_VALUE);
+
+        assertEquals(20, result.getNewRows().size());
+        assertEquals(response.getBodyLength(), result.getBytesTransferred());
+    }
+
+    @Test
+    public void okResponseReturnsValidatorsAndSkipsOldRows() throws IOException
+    {
+        mServer.enqueue(new StubServer.Response(DataProvider.HTTP_OK, csv(10))
+            .header("ETag", ETAG).header("Last-Modified", LAST_MODIFIED));
+
+        FetchResult result = mFetcher.fetch(STATE, null, null, epochSeconds(6));
+
+        assertEquals(ETAG, result.getETag());
+        assertEquals(LAST_MODIFIED, result.getLastModified());
+        assertEquals(3, result.getNewRows().size());
+        assertEquals(epochSeconds(7), result.getNewRows().getEpochSeconds(0));
+        assertNull(mServer.getRequest(0).getFirst("If-None-Match"));
+    }
+
+    @Test
+    public void validatorsAreSentAndNotModifiedKeepsThem() throws IOException
+    {
+        mServer.enqueue(new StubServer.Response(DataProvider.HTTP_NOT_MODIFIED, ""));
+
+        FetchResult result = mFetcher.fetch(STATE, ETAG, LAST_MODIFIED, epochSeconds(9));
+
+        assertEquals(ETAG, mServer.getRequest(0).getFirst("If-None-Match"));
+        assertEquals(LAST_MODIFIED, mServer.getRequest(0).getFirst("If-Modified-Since"));
+        assertTrue(result.isNotModified());
+        assertTrue(result.getNewRows().isEmpty());
+        assertEquals(0, result.getBytesTransferred());
+        assertEquals(ETAG, result.getETag());
+        assertEquals(LAST_MODIFIED, result.getLastModified());
+    }
+
+    @Test
+    public void notModifiedWithNewValidatorsReplacesThem() throws IOException
+    {
+        mServer.enqueue(new StubServer.Response(DataProvider.HTTP_NOT_MODIFIED, "").header("ETag", "\"def456\""));
+
+        FetchResult result = mFetcher.fetch(STATE, ETAG, LAST_MODIFIED, epochSeconds(9));
+
+        assertEquals("\"def456\"", result.getETag());
+        assertEquals(LAST_MODIFIED, result.getLastModified());
+    }
+
+    /**
+     * @param count Number of rows
+     * @return Returns a CSV body in the API's format, one row per day
+     */
+    static String csv(int count)
+    {
+        StringBuilder builder = new StringBuilder("seconds_since_Epoch,tested,positive,deaths\n");
+
+        for (int i = 0; i < count; i++)
+        {
+            builder.append(epochSeconds(i)).append(',').append(1000 * (i + 1)).append(',')
+                .append(100 * (i + 1)).append(',').append(i).append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * @param row Index of a row
+     * @return Returns the time of the row in a body built by csv()
+     */
+    static long epochSeconds(int row)
+    {
+        return 1586000000L + (row * 86400L);
+    }
+}
@@ -0,0 +1,127 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Tests that Downsampler keeps the first and last points and the peaks that stand out, keeps
+ * exactly the threshold's number of points, and leaves short series alone
+ * @author Jeffrey Trotz
+ * @date 5/7/2020
+ * @version 1.0
+ */
+public class DownsamplerTest
+{
+    private static final int LENGTH = 1000; // Number of points in the long series
+    private static final long SEED = 7; // Seed for the random points, so every run is the same
+
+    @Test
+    public void shortSeriesAreReturnedUnchanged()
+    {
+        double[] x = xValues(10);
+        double[] y = new double[10];
+
+        // No more points than the threshold, or a threshold too small to leave any buckets
+        for (int threshold : new int[] {10, 11, 500, 2, 0})
+        {
+            int[] selected = new int[10];
+            assertEquals(10, Downsampler.downsample(x, y, 10, threshold, selected));
+
+            for (int i = 0; i < 10; i++)
+            {
+                assertEquals(i, selected[i]);
+            }
+        }
+
+        // Only the first length points of the arrays are read
+        int[] selected = new int[10];
+        assertEquals(4, Downsampler.downsample(x, y, 4, 5, selected));
+        assertEquals(3, selected[3]);
+    }
+
+    @Test
+    public void firstLastAndOnePointPerBucketAreKept()
+    {
+        Random random = new Random(SEED);
+        double[] x = xValues(LENGTH);
+        double[] y = new double[LENGTH];
+
+        for (int i = 0; i < LENGTH; i++)
+        {
+            y[i] = random.nextGaussian() * 100;
+        }
+
+        for (int threshold : new int[] {3, 4, 50, 333, LENGTH - 1})
+        {
+            int[] selected = new int[LENGTH];
+            int kept = Downsampler.downsample(x, y, LENGTH, threshold, selected);
+            assertEquals(threshold, kept);
+            assertEquals(0, selected[0]);
+            assertEquals(LENGTH - 1, selected[kept - 1]);
+
+            for (int i = 1; i < kept; i++)
+            {
+                assertTrue("Indexes out of order at " + i, selected[i] > selected[i - 1]);
+            }
+        }
+    }
+
+    @Test
+    public void peaksAndDipsAreKept()
+    {
+        // A slowly rising line with one spike and one dip, as a single bad day looks on a graph
+        double[] x = xValues(LENGTH);
+        double[] y = new double[LENGTH];
+
+        for (int i = 0; i < LENGTH; i++)
+        {
+            y[i] = i * 0.01;
+        }
+
+        y[437] = 500;
+        y[712] = -500;
+
+        int[] selected = new int[LENGTH];
+        int kept = Downsampler.downsample(x, y, LENGTH, 50, selected);
+        assertTrue(contains(selected, kept, 437));
+        assertTrue(contains(selected, kept, 712));
+    }
+
+    /**
+     * @param length Number of points
+     * @return Returns evenly spaced X values, one a day in seconds
+     */
+    private static double[] xValues(int length)
+    {
+        double[] x = new double[length];
+
+        for (int i = 0; i < length; i++)
+        {
+            x[i] = 1586131200.0 + (i * 86400.0);
+        }
+
+        return x;
+    }
+
+    /**
+     * @param selected Indexes kept
+     * @param kept Number of indexes kept
+     * @param index Index to look for
+     * @return Returns true if the index was kept
+     */
+    private static boolean contains(int[] selected, int kept, int index)
+    {
+        for (int i = 0; i < kept; i++)
+        {
+            if (selected[i] == index)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,126 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Runs the CSV fixtures in src/test/resources/local_provider through LocalFileProvider and
+ * CsvColumnParser, the same way the offline pipeline reads them
+ * @author Jeffrey Trotz
+ * @date 5/6/2020
+ * @version 1.0
+ */
+public class LocalFileProviderTest
+{
+    private static final String FIXTURE_DIRECTORY = "local_provider"; // Directory of the fixtures on the test classpath
+    private static final long MARCH_1 = 1583020800L; // 2020-03-01 at midnight UTC
+    private static final long APRIL_1 = 1585699200L; // 2020-04-01 at midnight UTC
+    private static final long DAY = 86400L; // Number of seconds in a day
+
+    private File mDirectory; // Directory holding the fixtures
+
+    @Before
+    public void setUp() throws URISyntaxException
+    {
+        mDirectory = new File(getClass().getClassLoader().getResource(FIXTURE_DIRECTORY).toURI());
+    }
+
+    @Test
+    public void readsReorderedQuotedColumnsWithEmptyCells() throws IOException
+    {
+        LocalFileProvider provider = new LocalFileProvider("local", mDirectory,
+            new CsvColumnParser("date", "tested", "positive", "deaths", null));
+
+        FetchResult result = provider.fetch("NY", null, null, Long.MIN_VALUE);
+        StateTimeSeries series = result.getNewRows();
+
+        // The blank line and the note at the end aren't rows
+        assertEquals(DataProvider.HTTP_OK, result.getResponseCode());
+        assertEquals(5, series.size());
+
+        // Empty tested cell on the first row, quoted positive count with a thousands separator
+        // on the second, escaped quotes in a skipped column and a yyyyMMdd date on the third
+        assertRow(series, 0, MARCH_1, 0, 1, 0);
+        assertRow(series, 1, MARCH_1 + DAY, 5000, 1234, 0);
+        assertRow(series, 2, MARCH_1 + (2 * DAY), 10500, 2000, 3);
+
+        // Empty deaths cell and a decimal count
+        assertRow(series, 3, MARCH_1 + (3 * DAY), 12000, 2500, 0);
+        assertRow(series, 4, MARCH_1 + (4 * DAY), 15000, 3000, 5);
+    }
+
+    @Test
+    public void skipsRowsAlreadyCachedAndReportsUnchangedFiles() throws IOException
+    {
+        LocalFileProvider provider = new LocalFileProvider("local", mDirectory,
+            new CsvColumnParser("date", "tested", "positive", "deaths", null));
+
+        FetchResult result = provider.fetch("NY", null, null, MARCH_1 + (2 * DAY));
+        assertEquals(2, result.getNewRows().size());
+        assertEquals(MARCH_1 + (3 * DAY), result.getNewRows().getEpochSeconds(0));
+
+        // Sending back the version of the file read gets a 304, like a server would send
+        FetchResult unchanged = provider.fetch("NY", null, result.getLastModified(), MARCH_1 + (4 * DAY));
+        assertTrue(unchanged.isNotModified());
+        assertTrue(unchanged.getNewRows().isEmpty());
+    }
+
+    @Test
+    public void keepsOnlyTheRequestedRegionFromAFileWithSeveral() throws IOException
+    {
+        LocalFileProvider provider = new LocalFileProvider("counties", mDirectory,
+            new CsvColumnParser("date", null, "cases", "deaths", "fips"));
+
+        StateTimeSeries series = provider.fetch("17031", null, null, Long.MIN_VALUE).getNewRows();
+
+        // Quoted county names contain commas, and the repeated 04-02 row isn't newer so it's skipped
+        assertEquals(3, series.size());
+        assertRow(series, 0, APRIL_1, 0, 100, 2);
+        assertRow(series, 1, APRIL_1 + DAY, 0, 150, 3);
+        assertRow(series, 2, APRIL_1 + (2 * DAY), 0, 210, 0);
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void missingRegionFileFails() throws IOException
+    {
+        new LocalFileProvider("local", mDirectory, new CsvColumnParser("date", null, "positive", null, null))
+            .fetch("CA", null, null, Long.MIN_VALUE);
+    }
+
+    @Test
+    public void splitHandlesQuotesAndEmptyFields()
+    {
+        String[] fields = CsvColumnParser.split("a,\"b, c\",,\"say \"\"hi\"\"\",");
+        assertEquals(5, fields.length);
+        assertEquals("a", fields[0]);
+        assertEquals("b, c", fields[1]);
+        assertEquals("", fields[2]);
+        assertEquals("say \"hi\"", fields[3]);
+        assertEquals("", fields[4]);
+    }
+
+    /**
+     * Checks every value of a row
+     * @param series Series holding the row
+     * @param row Index of the row
+     * @param epochSeconds Expected time
+     * @param tested Expected number tested
+     * @param positive Expected number of positive tests
+     * @param deaths Expected number of deaths
+     */
+    private static void assertRow(StateTimeSeries series, int row, long epochSeconds, long tested, long positive,
+        long deaths)
+    {
+        assertEquals(epochSeconds, series.getEpochSeconds(row));
+        assertEquals(tested, series.getTested(row));
+        assertEquals(positive, series.getPositive(row));
+        assertEquals(deaths, series.getDeaths(row));
+    }
+}
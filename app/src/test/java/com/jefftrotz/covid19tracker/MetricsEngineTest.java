@@ -0,0 +1,236 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests that MetricsEngine's changes, rates and rolling means match their definitions, and that
+ * processing only new rows gives the same metrics as processing the whole series again
+ * @author Jeffrey Trotz
+ * @date 5/7/2020
+ * @version 1.0
+ */
+public class MetricsEngineTest
+{
+    private static final long START_EPOCH_SECONDS = 1586131200L; // Time of the first row
+    private static final long SECONDS_PER_DAY = 86400; // Time between rows
+    private static final double DELTA = 1e-9; // Largest difference allowed between rates and means
+    private static final int[] WINDOWS = {3, 7, 200}; // Rolling windows, including one longer than any series used
+
+    @Test
+    public void changesAndRatesMatchTheirDefinitions()
+    {
+        StateTimeSeries series = new StateTimeSeries();
+        series.append(START_EPOCH_SECONDS, 0, 0, 0);
+        series.append(START_EPOCH_SECONDS + SECONDS_PER_DAY, 100, 10, 1);
+        series.append(START_EPOCH_SECONDS + (2 * SECONDS_PER_DAY), 300, 25, 1);
+
+        // A total revised down
+        series.append(START_EPOCH_SECONDS + (3 * SECONDS_PER_DAY), 280, 20, 3);
+
+        MetricsEngine metrics = new MetricsEngine(WINDOWS);
+        assertEquals(4, metrics.update(series));
+        assertEquals(4, metrics.size());
+
+        // Nothing to compare the first row to, and nothing to divide by
+        assertEquals(0, metrics.get(MetricsEngine.Metric.NEW_TESTED, 0), DELTA);
+        assertEquals(0, metrics.get(MetricsEngine.Metric.POSITIVITY_RATE, 0), DELTA);
+        assertEquals(0, metrics.get(MetricsEngine.Metric.GROWTH_RATE, 1), DELTA);
+
+        assertEquals(200, metrics.get(MetricsEngine.Metric.NEW_TESTED, 2), DELTA);
+        assertEquals(15, metrics.get(MetricsEngine.Metric.NEW_POSITIVE, 2), DELTA);
+        assertEquals(0, metrics.get(MetricsEngine.Metric.NEW_DEATHS, 2), DELTA);
+        assertEquals(-5, metrics.get(MetricsEngine.Metric.NEW_POSITIVE, 3), DELTA);
+        assertEquals(2, metrics.getLatest(MetricsEngine.Metric.NEW_DEATHS), DELTA);
+        assertEquals(25.0 / 300, metrics.get(MetricsEngine.Metric.POSITIVITY_RATE, 2), DELTA);
+        assertEquals(15.0 / 10, metrics.get(MetricsEngine.Metric.GROWTH_RATE, 2), DELTA);
+        assertEquals(-5.0 / 25, metrics.getLatest(MetricsEngine.Metric.GROWTH_RATE), DELTA);
+    }
+
+    @Test
+    public void rollingMeansAverageTheRowsAvailable()
+    {
+        StateTimeSeries series = rows(0, 30);
+        MetricsEngine metrics = new MetricsEngine(WINDOWS);
+        metrics.update(series);
+
+        for (int window : WINDOWS)
+        {
+            for (int row = 0; row < series.size(); row++)
+            {
+                // Sum the changes inside the window directly (the first row's change is 0)
+                int first = Math.max(0, row - window + 1);
+                long sum = 0;
+
+                for (int i = Math.max(1, first); i <= row; i++)
+                {
+                    sum += series.getPositive(i) - series.getPositive(i - 1);
+                }
+
+                assertEquals((double) sum / (row - first + 1),
+                    metrics.getRollingMean(MetricsEngine.Metric.NEW_POSITIVE, window, row), DELTA);
+            }
+        }
+
+        // The window longer than the data averages over every row
+        assertEquals((double) (series.getLatestTested() - series.getTested(0)) / series.size(),
+            metrics.getLatestRollingMean(MetricsEngine.Metric.NEW_TESTED, 200), DELTA);
+    }
+
+    @Test
+    public void onlyNewRowsAreProcessed()
+    {
+        // Grow the same series in place, then replace it with longer copies (as SeriesRepository
+        // does), past the capacity the columns start with
+        StateTimeSeries series = rows(0, 10);
+        MetricsEngine metrics = new MetricsEngine(WINDOWS);
+        assertEquals(10, metrics.update(series));
+        assertEquals(0, metrics.update(series));
+
+        series.appendAll(rows(10, 5));
+        assertEquals(5, metrics.update(series));
+        assertMetricsEqual(fresh(series), metrics);
+
+        for (int size = 15; size < 150; size += 27)
+        {
+            StateTimeSeries copy = new StateTimeSeries(size + 27);
+            copy.appendAll(series);
+            copy.appendAll(rows(size, 27));
+            series = copy;
+            assertEquals(27, metrics.update(series));
+            assertMetricsEqual(fresh(series), metrics);
+        }
+    }
+
+    @Test
+    public void seriesThatDoesNotContinueStartsOver()
+    {
+        MetricsEngine metrics = new MetricsEngine(WINDOWS);
+        metrics.update(rows(0, 20));
+
+        // The source's history was replaced, so the last processed row has a different time
+        StateTimeSeries revised = new StateTimeSeries();
+
+        for (int row = 0; row < 25; row++)
+        {
+            revised.append(START_EPOCH_SECONDS + (row * SECONDS_PER_DAY) + 3600, 5000 + (row * 90L), 800 + (row * row), row * 2L);
+        }
+
+        assertEquals(25, metrics.update(revised));
+        assertMetricsEqual(fresh(revised), metrics);
+
+        // A shorter series can't continue either
+        StateTimeSeries shorter = rows(0, 8);
+        assertEquals(8, metrics.update(shorter));
+        assertMetricsEqual(fresh(shorter), metrics);
+    }
+
+    @Test
+    public void invalidWindowsAndRowsAreRejected()
+    {
+        try
+        {
+            new MetricsEngine(7, 0);
+            fail("Created an engine with an empty window");
+        }
+
+        // Expected
+        catch (IllegalArgumentException illegalArgumentException)
+        {
+        }
+
+        MetricsEngine metrics = new MetricsEngine(WINDOWS);
+        metrics.update(rows(0, 5));
+
+        try
+        {
+            metrics.getRollingMean(MetricsEngine.Metric.NEW_POSITIVE, 14, 4);
+            fail("Read a rolling mean over a window the engine doesn't keep");
+        }
+
+        // Expected
+        catch (IllegalArgumentException illegalArgumentException)
+        {
+        }
+
+        try
+        {
+            metrics.getRollingMean(MetricsEngine.Metric.POSITIVITY_RATE, 7, 4);
+            fail("Read a rolling mean of a rate");
+        }
+
+        // Expected
+        catch (IllegalArgumentException illegalArgumentException)
+        {
+        }
+
+        try
+        {
+            metrics.get(MetricsEngine.Metric.NEW_TESTED, 5);
+            fail("Read a row that hasn't been processed");
+        }
+
+        // Expected
+        catch (IndexOutOfBoundsException indexOutOfBoundsException)
+        {
+        }
+    }
+
+    /**
+     * @param first Index of the first row (rows with the same index are always the same)
+     * @param count Number of rows
+     * @return Returns a day per row with uneven growth
+     */
+    private static StateTimeSeries rows(int first, int count)
+    {
+        StateTimeSeries series = new StateTimeSeries();
+
+        for (int row = first; row < first + count; row++)
+        {
+            series.append(START_EPOCH_SECONDS + (row * SECONDS_PER_DAY), 1000 + (row * 150L) + ((row % 7) * 40),
+                100 + (row * 17L) + ((row % 5) * 9), row / 3);
+        }
+
+        return series;
+    }
+
+    /**
+     * @param series Series to derive the metrics from
+     * @return Returns a new engine that has processed the whole series at once
+     */
+    private static MetricsEngine fresh(StateTimeSeries series)
+    {
+        MetricsEngine metrics = new MetricsEngine(WINDOWS);
+        metrics.update(series);
+        return metrics;
+    }
+
+    /**
+     * @param expected Metrics of a new engine
+     * @param actual Metrics of an engine that was updated along the way
+     */
+    private static void assertMetricsEqual(MetricsEngine expected, MetricsEngine actual)
+    {
+        assertEquals(expected.size(), actual.size());
+
+        for (int row = 0; row < expected.size(); row++)
+        {
+            for (MetricsEngine.Metric metric : MetricsEngine.Metric.values())
+            {
+                assertEquals(expected.get(metric, row), actual.get(metric, row), DELTA);
+            }
+
+            for (int window : WINDOWS)
+            {
+                assertEquals(expected.getRollingMean(MetricsEngine.Metric.NEW_TESTED, window, row),
+                    actual.getRollingMean(MetricsEngine.Metric.NEW_TESTED, window, row), DELTA);
+                assertEquals(expected.getRollingMean(MetricsEngine.Metric.NEW_POSITIVE, window, row),
+                    actual.getRollingMean(MetricsEngine.Metric.NEW_POSITIVE, window, row), DELTA);
+                assertEquals(expected.getRollingMean(MetricsEngine.Metric.NEW_DEATHS, window, row),
+                    actual.getRollingMean(MetricsEngine.Metric.NEW_DEATHS, window, row), DELTA);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that PerfMonitor's JSON dump can be parsed and holds the histogram counts, percentiles
+ * and counters that were recorded
+ * @author Jeffrey Trotz
+ * @date 5/6/2020
+ * @version 1.0
+ */
+public class PerfMonitorTest
+{
+    private final PerfMonitor mPerfMonitor = PerfMonitor.getInstance(); // Monitor under test
+
+    @Before
+    public void setUp()
+    {
+        mPerfMonitor.reset();
+    }
+
+    @Test
+    public void jsonHoldsEachStatesHistogram()
+    {
+        // One sample in each of buckets 0, 1, 2, 7 and 10
+        for (long micros : new long[] {0, 1, 3, 100, 1000})
+        {
+            mPerfMonitor.record("NY", PerfMonitor.Stage.PARSE, micros * 1000);
+        }
+
+        Map<String, Object> parse = stage(parse(mPerfMonitor.toJson()), "NY", "parse");
+
+        assertEquals(5L, parse.get("count"));
+        assertEquals(0L, parse.get("min"));
+        assertEquals(1000L, parse.get("max"));
+        assertEquals(220L, parse.get("mean"));
+        assertEquals(3L, parse.get("p50"));
+        assertEquals(1000L, parse.get("p90"));
+        assertEquals(1000L, parse.get("p99"));
+        assertEquals(Arrays.<Object>asList(1L, 1L, 1L, 0L, 0L, 0L, 0L, 1L, 0L, 0L, 1L), parse.get("buckets"));
+    }
+
+    @Test
+    public void jsonCombinesStatesAndLeavesOutEmptyStages()
+    {
+        for (int i = 0; i < 90; i++)
+        {
+            mPerfMonitor.record("NY", PerfMonitor.Stage.TTFB, 10000);
+        }
+
+        for (int i = 0; i < 10; i++)
+        {
+            mPerfMonitor.record("CA", PerfMonitor.Stage.TTFB, 2000000);
+        }
+
+        mPerfMonitor.count("NY", PerfMonitor.Counter.REQUESTS, 3);
+        mPerfMonitor.count("CA", PerfMonitor.Counter.REQUESTS, 2);
+        mPerfMonitor.count("CA", PerfMonitor.Counter.NOT_MODIFIED, 1);
+        mPerfMonitor.count("CA", PerfMonitor.Counter.RETRIES, 2);
+        Map<String, Object> json = parse(mPerfMonitor.toJson());
+
+        // 10 us samples land in bucket 4 (8-15 us), 2 ms samples in bucket 11 (1024-2047 us)
+        Map<String, Object> all = stage(json, PerfMonitor.ALL_STATES, "ttfb");
+        assertEquals(100L, all.get("count"));
+        assertEquals(15L, all.get("p50"));
+        assertEquals(15L, all.get("p90"));
+        assertEquals(2000L, all.get("p99"));
+        assertEquals(10L, stage(json, "CA", "ttfb").get("count"));
+        assertFalse(object(object(object(json, "states"), "NY"), "stages").containsKey("parse"));
+
+        Map<String, Object> counters = object(object(object(json, "states"), PerfMonitor.ALL_STATES), "counters");
+        assertEquals(5L, counters.get("requests"));
+        assertEquals(1L, counters.get("not_modified"));
+        assertEquals(2L, counters.get("retries"));
+        assertEquals(0L, counters.get("failures"));
+    }
+
+    @Test
+    public void customGroupNamesAreEscaped()
+    {
+        // Custom group names come straight from the user
+        String group = RegionGroup.CUSTOM_ID_PREFIX + "Mom's \"area\" \\ west\n";
+        mPerfMonitor.record(group, PerfMonitor.Stage.PARSE, 5000);
+        mPerfMonitor.count(group, PerfMonitor.Counter.REQUESTS, 1);
+        Map<String, Object> json = parse(mPerfMonitor.toJson());
+
+        assertEquals(1L, stage(json, group, "parse").get("count"));
+        assertEquals(1L, object(object(object(json, "states"), group), "counters").get("requests"));
+        assertEquals(1L, stage(json, PerfMonitor.ALL_STATES, "parse").get("count"));
+    }
+
+    @Test
+    public void emptyMonitorDumpsNoStates()
+    {
+        assertEquals(0, object(parse(mPerfMonitor.toJson()), "states").size());
+    }
+
+    /**
+     * @param json Parsed dump
+     * @param state Key of a state
+     * @param stage Name of a stage
+     * @return Returns the stage's histogram
+     */
+    private static Map<String, Object> stage(Map<String, Object> json, String state, String stage)
+    {
+        return object(object(object(object(json, "states"), state), "stages"), stage);
+    }
+
+    /**
+     * @param parent JSON object
+     * @param key Key of an object in it
+     * @return Returns the object
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(Map<String, Object> parent, String key)
+    {
+        return (Map<String, Object>) parent.get(key);
+    }
+
+    /**
+     * @param json JSON text holding an object
+     * @return Returns the object
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> parse(String json)
+    {
+        JsonParser parser = new JsonParser(json);
+        Object value = parser.readValue();
+        assertEquals("Trailing text in " + json, json.length(), parser.mPosition);
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * Minimal parser for the subset of JSON PerfMonitor writes: objects, arrays, strings and whole
+     * numbers (read as Longs)
+     */
+    private static class JsonParser
+    {
+        private final String mText; // Text being parsed
+        private int mPosition; // Index of the next character to read
+
+        /**
+         * Constructor
+         * @param text Text to parse
+         */
+        JsonParser(String text)
+        {
+            mText = text;
+        }
+
+        /**
+         * @return Returns the value starting at the current position
+         */
+        Object readValue()
+        {
+            char next = mText.charAt(mPosition);
+
+            if (next == '{')
+            {
+                Map<String, Object> object = new LinkedHashMap<>();
+                this.expect('{');
+
+                while (mText.charAt(mPosition) != '}')
+                {
+                    String key = this.readString();
+                    this.expect(':');
+                    object.put(key, this.readValue());
+                    this.skipComma('}');
+                }
+
+                this.expect('}');
+                return object;
+            }
+
+            if (next == '[')
+            {
+                List<Object> array = new ArrayList<>();
+                this.expect('[');
+
+                while (mText.charAt(mPosition) != ']')
+                {
+                    array.add(this.readValue());
+                    this.skipComma(']');
+                }
+
+                this.expect(']');
+                return array;
+            }
+
+            if (next == '"')
+            {
+                return this.readString();
+            }
+
+            int start = mPosition;
+
+            while (mPosition < mText.length() && (mText.charAt(mPosition) == '-' || Character.isDigit(mText.charAt(mPosition))))
+            {
+                mPosition++;
+            }
+
+            return Long.parseLong(mText.substring(start, mPosition));
+        }
+
+        /**
+         * @return Returns the string starting at the current position
+         */
+        private String readString()
+        {
+            this.expect('"');
+            StringBuilder value = new StringBuilder();
+            char next;
+
+            while ((next = mText.charAt(mPosition++)) != '"')
+            {
+                assertTrue("Unescaped control character in " + mText, next >= 0x20);
+
+                if (next != '\\')
+                {
+                    value.append(next);
+                    continue;
+                }
+
+                char escaped = mText.charAt(mPosition++);
+
+                switch (escaped)
+                {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        value.append((char) Integer.parseInt(mText.substring(mPosition, mPosition + 4), 16));
+                        mPosition += 4;
+                        break;
+                    default:
+                        assertTrue("Bad escape in " + mText, escaped == '"' || escaped == '\\' || escaped == '/');
+                        value.append(escaped);
+                        break;
+                }
+            }
+
+            return value.toString();
+        }
+
+        /**
+         * Skips the comma between two values, unless the current object or array is closing
+         * @param close Character closing the current object or array
+         */
+        private void skipComma(char close)
+        {
+            if (mText.charAt(mPosition) != close)
+            {
+                this.expect(',');
+            }
+        }
+
+        /**
+         * @param expected Character that must come next
+         */
+        private void expect(char expected)
+        {
+            assertEquals("Position " + mPosition + " of " + mText, expected, mText.charAt(mPosition));
+            mPosition++;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that RankingIndex keeps each ranking in the same order a full sort would give as states
+ * are moved one at a time, and that data that's older or unchanged doesn't move anything
+ * @author Jeffrey Trotz
+ * @date 5/7/2020
+ * @version 1.0
+ */
+public class RankingIndexTest
+{
+    private static final long START_EPOCH_SECONDS = 1586131200L; // Time of each state's first row
+    private static final long SECONDS_PER_DAY = 86400; // Time between rows
+    private static final int STATE_COUNT = 20; // Number of states in the moving test
+    private static final long SEED = 42; // Seed for the random totals, so every run is the same
+
+    private RankingIndex mIndex; // Index being tested
+    private int mNotifications; // Number of times the index told its listener states moved
+
+    @Before
+    public void setUp()
+    {
+        mIndex = new RankingIndex();
+        mIndex.addListener(new RankingIndex.Listener()
+        {
+            @Override
+            public void onRankingChanged()
+            {
+                mNotifications++;
+            }
+        });
+    }
+
+    @Test
+    public void movedStatesMatchAFullSort()
+    {
+        Random random = new Random(SEED);
+        Map<String, StateTimeSeries> data = new HashMap<>();
+
+        for (int state = 0; state < STATE_COUNT; state++)
+        {
+            String abbreviation = String.format("S%02d", state);
+            StateTimeSeries series = new StateTimeSeries();
+            addRows(series, 10, random);
+            data.put(abbreviation, series);
+            mIndex.update(abbreviation, series);
+        }
+
+        this.assertMatchesAFullSort();
+
+        // Move a few states at a time, sometimes giving one the same latest values as another
+        for (int round = 0; round < 50; round++)
+        {
+            for (int move = 0; move < 3; move++)
+            {
+                String abbreviation = String.format("S%02d", random.nextInt(STATE_COUNT));
+                StateTimeSeries series = copy(data.get(abbreviation));
+                addRows(series, 1 + random.nextInt(3), random);
+                data.put(abbreviation, series);
+                mIndex.update(abbreviation, series);
+            }
+
+            this.assertMatchesAFullSort();
+        }
+
+        assertEquals(STATE_COUNT, mIndex.size());
+    }
+
+    @Test
+    public void topStatesAreTheStartOfTheSortedList()
+    {
+        for (int state = 0; state < 8; state++)
+        {
+            StateTimeSeries series = new StateTimeSeries();
+            series.append(START_EPOCH_SECONDS, 1000 + (state * 37 % 11), 100 + (state * 13 % 7), state);
+            mIndex.update("S" + state, series);
+        }
+
+        for (RankingIndex.Ranking ranking : RankingIndex.Ranking.values())
+        {
+            for (boolean ascending : new boolean[] {false, true})
+            {
+                List<RankingIndex.Entry> sorted = mIndex.getSorted(ranking, ascending);
+                assertEquals(sorted.subList(0, 3), mIndex.getTop(ranking, 3, ascending));
+                assertEquals(sorted, mIndex.getTop(ranking, 100, ascending));
+                assertTrue(mIndex.getTop(ranking, 0, ascending).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void nanRanksLastAndTiesAreBrokenByAbbreviation()
+    {
+        List<RankingIndex.Entry> entries = new ArrayList<>();
+        entries.add(entry("AA", Double.NaN));
+        entries.add(entry("BB", 0.5));
+        entries.add(entry("CC", -1));
+        entries.add(entry("DD", 0.5));
+        entries.add(entry("EE", 2));
+        entries.add(entry("FF", Double.NaN));
+        Collections.shuffle(entries, new Random(SEED));
+        sort(entries, RankingIndex.Ranking.GROWTH_RATE);
+        assertEquals("[EE, BB, DD, CC, AA, FF]", abbreviations(entries).toString());
+
+        // Two states with the same data tie in every ranking
+        StateTimeSeries series = new StateTimeSeries();
+        series.append(START_EPOCH_SECONDS, 1000, 100, 10);
+        mIndex.update("ZZ", series);
+        mIndex.update("AA", series);
+
+        for (RankingIndex.Ranking ranking : RankingIndex.Ranking.values())
+        {
+            assertEquals("[AA, ZZ]", abbreviations(mIndex.getSorted(ranking, false)).toString());
+            assertEquals("[ZZ, AA]", abbreviations(mIndex.getSorted(ranking, true)).toString());
+        }
+    }
+
+    @Test
+    public void olderOrUnchangedDataDoesNotMoveAnything()
+    {
+        StateTimeSeries newer = new StateTimeSeries();
+        newer.append(START_EPOCH_SECONDS, 1000, 100, 10);
+        newer.append(START_EPOCH_SECONDS + SECONDS_PER_DAY, 1200, 130, 11);
+        StateTimeSeries older = new StateTimeSeries();
+        older.append(START_EPOCH_SECONDS, 5000, 500, 50);
+        StateTimeSeries other = new StateTimeSeries();
+        other.append(START_EPOCH_SECONDS, 3000, 300, 30);
+
+        mIndex.update("AA", newer);
+        mIndex.update("BB", other);
+        assertEquals(2, mNotifications);
+        RankingIndex.Entry shown = mIndex.getSorted(RankingIndex.Ranking.POSITIVE, false).get(1);
+
+        // History read by load() while a refresh was being written
+        mIndex.update("AA", older);
+        assertEquals(2, mNotifications);
+        assertSame(shown, mIndex.getSorted(RankingIndex.Ranking.POSITIVE, false).get(1));
+        assertEquals(START_EPOCH_SECONDS + SECONDS_PER_DAY, shown.getEpochSeconds());
+
+        // The same rows again (a refresh that found nothing new) and an empty series
+        mIndex.update("AA", copy(newer));
+        mIndex.update("AA", new StateTimeSeries());
+        assertEquals(2, mNotifications);
+        assertSame(shown, mIndex.getSorted(RankingIndex.Ranking.POSITIVE, false).get(1));
+    }
+
+    /**
+     * Checks every ranking against a full sort of the same entries, both ways round
+     */
+    private void assertMatchesAFullSort()
+    {
+        for (RankingIndex.Ranking ranking : RankingIndex.Ranking.values())
+        {
+            List<RankingIndex.Entry> sorted = mIndex.getSorted(ranking, false);
+            List<RankingIndex.Entry> expected = new ArrayList<>(sorted);
+            Collections.shuffle(expected, new Random(SEED));
+            sort(expected, ranking);
+            assertEquals(expected, sorted);
+
+            Collections.reverse(expected);
+            assertEquals(expected, mIndex.getSorted(ranking, true));
+        }
+    }
+
+    /**
+     * Adds rows a day apart with random increases (sometimes none, so values tie)
+     * @param series Series to add to
+     * @param count Number of rows to add
+     * @param random Source of the increases
+     */
+    private static void addRows(StateTimeSeries series, int count, Random random)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            boolean empty = series.isEmpty();
+            long epochSeconds = empty ? START_EPOCH_SECONDS : series.getLatestEpochSeconds() + SECONDS_PER_DAY;
+            long tested = (empty ? 0 : series.getLatestTested()) + (random.nextInt(4) * 100);
+            long positive = (empty ? 0 : series.getLatestPositive()) + (random.nextInt(3) * 10);
+            long deaths = (empty ? 0 : series.getLatestDeaths()) + random.nextInt(2);
+            series.append(epochSeconds, tested, positive, deaths);
+        }
+    }
+
+    /**
+     * @param series Published data
+     * @return Returns a copy that more rows can be added to (published data must not change)
+     */
+    private static StateTimeSeries copy(StateTimeSeries series)
+    {
+        StateTimeSeries copy = new StateTimeSeries(series.size() + 4);
+        copy.appendAll(series);
+        return copy;
+    }
+
+    /**
+     * @param abbreviation 2 letter abbreviation of the state
+     * @param value Value of every metric
+     * @return Returns an entry with the same value for every metric
+     */
+    private static RankingIndex.Entry entry(String abbreviation, double value)
+    {
+        double[] values = new double[RankingIndex.Ranking.values().length];
+
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = value;
+        }
+
+        return new RankingIndex.Entry(abbreviation, START_EPOCH_SECONDS, values);
+    }
+
+    /**
+     * Sorts entries from scratch the way the index orders them (highest first)
+     * @param entries Entries to sort
+     * @param ranking Metric to sort by
+     */
+    private static void sort(List<RankingIndex.Entry> entries, final RankingIndex.Ranking ranking)
+    {
+        Collections.sort(entries, new Comparator<RankingIndex.Entry>()
+        {
+            @Override
+            public int compare(RankingIndex.Entry first, RankingIndex.Entry second)
+            {
+                return RankingIndex.compare(first, second, ranking);
+            }
+        });
+    }
+
+    /**
+     * @param entries Entries in order
+     * @return Returns the abbreviation of each entry, in the same order
+     */
+    private static List<String> abbreviations(List<RankingIndex.Entry> entries)
+    {
+        List<String> abbreviations = new ArrayList<>();
+
+        for (RankingIndex.Entry entry : entries)
+        {
+            abbreviations.add(entry.getAbbreviation());
+        }
+
+        return abbreviations;
+    }
+}
@@ -0,0 +1,497 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests ResilientProvider, RetryPolicy and CircuitBreaker against a local stub server with a fake
+ * clock: which failures are retried, how long the waits are, how the circuit moves between its
+ * states, and that cached data can still be read while the circuit is open
+ * @author Jeffrey Trotz
+ * @date 5/6/2020
+ * @version 1.0
+ */
+public class ResilientProviderTest
+{
+    private static final String STATE = "NY"; // State requested by every test
+    private static final int MAX_ATTEMPTS = 4; // Most times a request is sent
+    private static final long BASE_DELAY_MILLIS = 100; // Longest wait before the first retry
+    private static final long MAX_DELAY_MILLIS = 5000; // Longest wait before any retry
+    private static final long OPEN_MILLIS = 60000; // Time the circuit stays open
+    private static final int SHORT_TIMEOUT_MILLIS = 200; // Connect and read timeout of the fetcher used for slow responses
+    private static final long SLOW_RESPONSE_MILLIS = 1000; // Time a slow response waits before answering
+
+    private StubServer mServer; // Server the fetcher talks to
+    private FakeClock mClock; // Records waits instead of sleeping
+    private DataFetcher mFetcher; // Fetcher wrapped by the provider under test
+    private File mDirectory; // Directory the cache is stored in (only made by the stale data test)
+
+    @Before
+    public void setUp() throws IOException
+    {
+        mServer = new StubServer();
+        mClock = new FakeClock();
+        mFetcher = new DataFetcher("stub", mServer.getUrlTemplate(), new CovidDataParser(), new RateLimiter(1000, 1000));
+    }
+
+    @After
+    public void tearDown()
+    {
+        mServer.stop();
+
+        if (mDirectory != null)
+        {
+            for (File file : mDirectory.listFiles())
+            {
+                file.delete();
+            }
+
+            mDirectory.delete();
+        }
+    }
+
+    @Test
+    public void serverErrorsAndTooManyRequestsAreRetried() throws IOException
+    {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(10, OPEN_MILLIS, mClock);
+        mServer.enqueue(new StubServer.Response(503, ""));
+        mServer.enqueue(new StubServer.Response(429, ""));
+        mServer.enqueue(new StubServer.Response(500, ""));
+        mServer.enqueue(new StubServer.Response(DataProvider.HTTP_OK, DataFetcherTest.csv(5)));
+
+        FetchResult result = this.provider(circuitBreaker).fetch(STATE, null, null, Long.MIN_VALUE);
+
+        assertEquals(DataProvider.HTTP_OK, result.getResponseCode());
+        assertEquals(5, result.getNewRows().size());
+        assertEquals(4, mServer.getRequestCount());
+        assertEquals(3, mClock.mSleeps.size());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void clientErrorsAreNotRetried() throws IOException
+    {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(1, OPEN_MILLIS, mClock);
+        ResilientProvider provider = this.provider(circuitBreaker);
+
+        for (int responseCode : new int[] {400, 403, 404})
+        {
+            mServer.enqueue(new StubServer.Response(responseCode, ""));
+            assertEquals(responseCode, provider.fetch(STATE, null, null, Long.MIN_VALUE).getResponseCode());
+        }
+
+        // A client error is still an answer, so even a breaker that opens on one failure stays closed
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(0, mClock.mSleeps.size());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void lastResultIsReturnedWhenTheAttemptsRunOut() throws IOException
+    {
+        mServer.setDefaultResponse(new StubServer.Response(502, ""));
+
+        FetchResult result = this.provider(new CircuitBreaker(10, OPEN_MILLIS, mClock))
+            .fetch(STATE, null, null, Long.MIN_VALUE);
+
+        assertEquals(502, result.getResponseCode());
+        assertEquals(MAX_ATTEMPTS, mServer.getRequestCount());
+        assertEquals(MAX_ATTEMPTS - 1, mClock.mSleeps.size());
+    }
+
+    @Test
+    public void timeoutsAreRetriedButCancelledRequestsAreNot() throws IOException
+    {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(10, OPEN_MILLIS, mClock);
+        ThrowingProvider throwing = new ThrowingProvider(mFetcher);
+        ResilientProvider provider = new ResilientProvider(throwing, new RetryPolicy(MAX_ATTEMPTS,
+            BASE_DELAY_MILLIS, MAX_DELAY_MILLIS), circuitBreaker, mClock);
+        mServer.setDefaultResponse(new StubServer.Response(DataProvider.HTTP_OK, DataFetcherTest.csv(2)));
+
+        throwing.mFailures.add(new SocketTimeoutException("Read timed out"));
+        throwing.mFailures.add(new IOException("Connection reset"));
+        assertEquals(DataProvider.HTTP_OK, provider.fetch(STATE, null, null, Long.MIN_VALUE).getResponseCode());
+        assertEquals(3, throwing.mCallCount);
+        assertEquals(1, mServer.getRequestCount());
+
+        throwing.mFailures.add(new InterruptedIOException("Cancelled"));
+
+        try
+        {
+            provider.fetch(STATE, null, null, Long.MIN_VALUE);
+            fail("Retried a cancelled request");
+        }
+
+        // Expected, after a single attempt
+        catch (InterruptedIOException interruptedIOException)
+        {
+            assertEquals(4, throwing.mCallCount);
+        }
+
+        assertEquals(2, mClock.mSleeps.size());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void slowResponsesTimeOutAndAreRetried() throws IOException
+    {
+        DataFetcher fetcher = new DataFetcher("stub", mServer.getUrlTemplate(), new CovidDataParser(),
+            new RateLimiter(1000, 1000), SHORT_TIMEOUT_MILLIS, SHORT_TIMEOUT_MILLIS);
+        RetryPolicy retryPolicy = new RetryPolicy(MAX_ATTEMPTS, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(10, OPEN_MILLIS, mClock);
+
+        // The fetcher gives up on a server that answers too slowly, with an error worth retrying
+        mServer.enqueue(new StubServer.Response(DataProvider.HTTP_OK, DataFetcherTest.csv(2)).delay(SLOW_RESPONSE_MILLIS));
+
+        try
+        {
+            fetcher.fetch(STATE, null, null, Long.MIN_VALUE);
+            fail("Waited for a response slower than the read timeout");
+        }
+
+        // Expected
+        catch (SocketTimeoutException socketTimeoutException)
+        {
+            assertTrue(retryPolicy.isRetryable(socketTimeoutException));
+        }
+
+        // Through the provider, the timed out request is sent again and the second answer is used
+        mServer.enqueue(new StubServer.Response(DataProvider.HTTP_OK, DataFetcherTest.csv(2)).delay(SLOW_RESPONSE_MILLIS));
+        mServer.enqueue(new StubServer.Response(DataProvider.HTTP_OK, DataFetcherTest.csv(3)));
+        FetchResult result = new ResilientProvider(fetcher, retryPolicy, circuitBreaker, mClock)
+            .fetch(STATE, null, null, Long.MIN_VALUE);
+
+        assertEquals(DataProvider.HTTP_OK, result.getResponseCode());
+        assertEquals(3, result.getNewRows().size());
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(1, mClock.mSleeps.size());
+    }
+
+    @Test
+    public void droppedConnectionsAreRetried() throws IOException
+    {
+        RetryPolicy retryPolicy = new RetryPolicy(MAX_ATTEMPTS, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS);
+        CircuitBreaker circuitBreaker = new CircuitBreaker(10, OPEN_MILLIS, mClock);
+        ResilientProvider provider = new ResilientProvider(mFetcher, retryPolicy, circuitBreaker, mClock);
+        mServer.setDefaultResponse(new StubServer.Response(DataProvider.HTTP_OK, DataFetcherTest.csv(2)).dropConnection());
+
+        // The fetcher fails when the server closes the connection without answering, with an error
+        // worth retrying
+        try
+        {
+            mFetcher.fetch(STATE, null, null, Long.MIN_VALUE);
+            fail("Read a response from a dropped connection");
+        }
+
+        // Expected
+        catch (IOException ioException)
+        {
+            assertTrue(retryPolicy.isRetryable(ioException));
+        }
+
+        // Through the provider, every attempt is used before giving up. The HTTP client may also
+        // resend a request once on its own, so only the provider's waits are counted exactly.
+        try
+        {
+            provider.fetch(STATE, null, null, Long.MIN_VALUE);
+            fail("Read a response from a dropped connection");
+        }
+
+        // Expected, after every attempt
+        catch (IOException ioException)
+        {
+            assertEquals(MAX_ATTEMPTS - 1, mClock.mSleeps.size());
+        }
+
+        // Once the server answers again, so does the provider
+        mServer.setDefaultResponse(new StubServer.Response(DataProvider.HTTP_OK, DataFetcherTest.csv(4)));
+        assertEquals(4, provider.fetch(STATE, null, null, Long.MIN_VALUE).getNewRows().size());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void backoffStaysWithinTheCeilingForEachRetry()
+    {
+        RetryPolicy randomPolicy = new RetryPolicy(MAX_ATTEMPTS, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS, new Random(42));
+        RetryPolicy lowestPolicy = new RetryPolicy(MAX_ATTEMPTS, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS, new FixedRandom(0));
+        RetryPolicy highestPolicy = new RetryPolicy(MAX_ATTEMPTS, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS,
+            new FixedRandom(Math.nextDown(1.0)));
+
+        // Past 30 retries the shift is capped, so the ceiling never overflows
+        for (int retry = 0; retry <= 70; retry++)
+        {
+            long ceiling = Math.min(MAX_DELAY_MILLIS, BASE_DELAY_MILLIS << Math.min(retry, 30));
+            long highest = 0;
+
+            for (int i = 0; i < 1000; i++)
+            {
+                long delayMillis = randomPolicy.getDelayMillis(retry);
+                assertTrue(delayMillis >= 0 && delayMillis <= ceiling);
+                highest = Math.max(highest, delayMillis);
+            }
+
+            // The waits are spread over the whole range, not bunched at the bottom
+            assertTrue(highest > ceiling / 2);
+            assertEquals(0, lowestPolicy.getDelayMillis(retry));
+            assertEquals(ceiling, highestPolicy.getDelayMillis(retry));
+        }
+    }
+
+    @Test
+    public void circuitOpensThenClosesOrReopensAfterATrialRequest() throws IOException
+    {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(3, OPEN_MILLIS, mClock);
+        StateRecorder recorder = new StateRecorder(mFetcher, circuitBreaker);
+        ResilientProvider provider = new ResilientProvider(recorder, new RetryPolicy(MAX_ATTEMPTS,
+            BASE_DELAY_MILLIS, MAX_DELAY_MILLIS), circuitBreaker, mClock);
+        mServer.setDefaultResponse(new StubServer.Response(503, ""));
+
+        // The third failure in a row opens the circuit, which ends the retries early
+        assertEquals(503, provider.fetch(STATE, null, null, Long.MIN_VALUE).getResponseCode());
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(1, circuitBreaker.getOpenCount());
+
+        // Requests are turned away without reaching the server until the open time has passed
+        mClock.mNow += OPEN_MILLIS - 1;
+        assertEquals(1, circuitBreaker.getRetryAfterMillis());
+        this.assertRejected(provider);
+        assertEquals(3, mServer.getRequestCount());
+
+        // A failed trial request opens the circuit again straight away, without any retries
+        mClock.mNow += 1;
+        assertEquals(503, provider.fetch(STATE, null, null, Long.MIN_VALUE).getResponseCode());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, recorder.mStates.get(recorder.mStates.size() - 1));
+        assertEquals(4, mServer.getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertEquals(2, circuitBreaker.getOpenCount());
+        assertEquals(OPEN_MILLIS, circuitBreaker.getRetryAfterMillis());
+        this.assertRejected(provider);
+
+        // A trial request that works closes the circuit
+        mClock.mNow += OPEN_MILLIS;
+        mServer.enqueue(new StubServer.Response(DataProvider.HTTP_OK, DataFetcherTest.csv(3)));
+        assertEquals(DataProvider.HTTP_OK, provider.fetch(STATE, null, null, Long.MIN_VALUE).getResponseCode());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, recorder.mStates.get(recorder.mStates.size() - 1));
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+        assertEquals(0, circuitBreaker.getRetryAfterMillis());
+        assertEquals(5, mServer.getRequestCount());
+    }
+
+    @Test
+    public void cachedDataIsServedWhileTheCircuitIsOpen() throws IOException
+    {
+        mDirectory = File.createTempFile("series", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker(2, OPEN_MILLIS, mClock);
+        SeriesRepository repository = new SeriesRepository(new SeriesCache(mDirectory), new ResilientProvider(mFetcher,
+            new RetryPolicy(2, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS), circuitBreaker, mClock));
+
+        // Cache some data while the source is working
+        mServer.enqueue(new StubServer.Response(DataProvider.HTTP_OK, DataFetcherTest.csv(5)));
+        assertEquals(5, repository.refresh(STATE, repository.readCached(STATE)).getData().size());
+
+        // The source goes down and the refresh fails, opening the circuit
+        mServer.setDefaultResponse(new StubServer.Response(503, ""));
+        StateTimeSeries cachedData = repository.readCached(STATE);
+
+        try
+        {
+            repository.refresh(STATE, cachedData);
+            fail("Refresh worked while the source was down");
+        }
+
+        // Expected: the repository treats the last 503 as an error
+        catch (IOException ioException)
+        {
+            assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        }
+
+        int requestCount = mServer.getRequestCount();
+
+        // While the circuit is open, refreshes fail straight away and the cached rows are still there
+        try
+        {
+            repository.refresh(STATE, repository.readCached(STATE));
+            fail("Refresh wasn't turned away while the circuit was open");
+        }
+
+        // Expected, so the caller shows the cached data
+        catch (CircuitBreaker.CircuitOpenException circuitOpenException)
+        {
+            assertTrue(circuitOpenException.getRetryAfterMillis() > 0);
+        }
+
+        assertEquals(requestCount, mServer.getRequestCount());
+        StateTimeSeries stale = repository.readCached(STATE);
+        assertNotNull(stale);
+        assertEquals(5, stale.size());
+        assertEquals(DataFetcherTest.epochSeconds(4), stale.getLatestEpochSeconds());
+    }
+
+    /**
+     * @param circuitBreaker Circuit breaker for the provider
+     * @return Returns a provider wrapping the fetcher with the test's retry policy
+     */
+    private ResilientProvider provider(CircuitBreaker circuitBreaker)
+    {
+        return new ResilientProvider(mFetcher, new RetryPolicy(MAX_ATTEMPTS, BASE_DELAY_MILLIS, MAX_DELAY_MILLIS),
+            circuitBreaker, mClock);
+    }
+
+    /**
+     * Checks that a request is turned away by an open circuit
+     * @param provider Provider to send the request through
+     * @throws IOException Thrown if the request fails in another way
+     */
+    private void assertRejected(ResilientProvider provider) throws IOException
+    {
+        try
+        {
+            provider.fetch(STATE, null, null, Long.MIN_VALUE);
+            fail("Request sent while the circuit was open");
+        }
+
+        // Expected
+        catch (CircuitBreaker.CircuitOpenException circuitOpenException)
+        {
+            assertTrue(circuitOpenException.getRetryAfterMillis() > 0);
+        }
+    }
+
+    /**
+     * Clock that only moves when told to, or when something sleeps
+     */
+    private static class FakeClock implements Clock
+    {
+        long mNow = 1000000; // Current time in milliseconds
+        final List<Long> mSleeps = new ArrayList<>(); // Every wait, in order
+
+        @Override
+        public long elapsedMillis()
+        {
+            return mNow;
+        }
+
+        @Override
+        public void sleep(long millis)
+        {
+            mSleeps.add(millis);
+            mNow += millis;
+        }
+    }
+
+    /**
+     * Random whose nextDouble() always returns the same value
+     */
+    private static class FixedRandom extends Random
+    {
+        private static final long serialVersionUID = 1L; // Random is Serializable, but this is never serialized
+        private final double mValue; // Value returned by nextDouble()
+
+        /**
+         * Constructor
+         * @param value Value returned by nextDouble() (0 up to but not including 1)
+         */
+        FixedRandom(double value)
+        {
+            mValue = value;
+        }
+
+        @Override
+        public double nextDouble()
+        {
+            return mValue;
+        }
+    }
+
+    /**
+     * Throws queued exceptions before passing requests on to another provider
+     */
+    private static class ThrowingProvider implements DataProvider
+    {
+        private final DataProvider mProvider; // Provider requests are passed on to
+        final LinkedList<IOException> mFailures = new LinkedList<>(); // Thrown by the next requests, in order
+        int mCallCount; // Number of requests made
+
+        /**
+         * Constructor
+         * @param provider Provider requests are passed on to once the failures run out
+         */
+        ThrowingProvider(DataProvider provider)
+        {
+            mProvider = provider;
+        }
+
+        @Override
+        public String getId()
+        {
+            return mProvider.getId();
+        }
+
+        @Override
+        public FetchResult fetch(String regionId, String eTag, String lastModified, long afterEpochSeconds)
+            throws IOException
+        {
+            mCallCount++;
+
+            if (!mFailures.isEmpty())
+            {
+                throw mFailures.removeFirst();
+            }
+
+            return mProvider.fetch(regionId, eTag, lastModified, afterEpochSeconds);
+        }
+    }
+
+    /**
+     * Records the state of the circuit each time a request reaches the provider
+     */
+    private static class StateRecorder implements DataProvider
+    {
+        private final DataProvider mProvider; // Provider requests are passed on to
+        private final CircuitBreaker mCircuitBreaker; // Circuit breaker whose state is recorded
+        final List<CircuitBreaker.State> mStates = new ArrayList<>(); // State during each request, in order
+
+        /**
+         * Constructor
+         * @param provider Provider requests are passed on to
+         * @param circuitBreaker Circuit breaker whose state is recorded
+         */
+        StateRecorder(DataProvider provider, CircuitBreaker circuitBreaker)
+        {
+            mProvider = provider;
+            mCircuitBreaker = circuitBreaker;
+        }
+
+        @Override
+        public String getId()
+        {
+            return mProvider.getId();
+        }
+
+        @Override
+        public FetchResult fetch(String regionId, String eTag, String lastModified, long afterEpochSeconds)
+            throws IOException
+        {
+            mStates.add(mCircuitBreaker.getState());
+            return mProvider.fetch(regionId, eTag, lastModified, afterEpochSeconds);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that SeriesCache only hands out validators when the rows they belong to can be read, so
+ * a 304 response never leaves the app with nothing to show
+ * @author Jeffrey Trotz
+ * @date 5/6/2020
+ * @version 1.0
+ */
+public class SeriesCacheTest
+{
+    private static final String STATE = "NY"; // State used by every test
+    private static final String ETAG = "\"v1\""; // ETag stored with the state's rows
+
+    private File mDirectory; // Directory the cache is stored in
+    private SeriesCache mCache; // Cache under test
+
+    @Before
+    public void setUp() throws IOException
+    {
+        mDirectory = File.createTempFile("series", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+        mCache = new SeriesCache(mDirectory);
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File file : mDirectory.listFiles())
+        {
+            file.delete();
+        }
+
+        mDirectory.delete();
+    }
+
+    @Test
+    public void validatorsAreReadWithTheirRows()
+    {
+        mCache.append(STATE, rows(2));
+        mCache.writeValidators(STATE, ETAG, null);
+
+        assertEquals(ETAG, mCache.readValidators(STATE).getETag());
+    }
+
+    @Test
+    public void validatorsAreNotReadForAHeaderOnlyCacheFile() throws IOException
+    {
+        mCache.append(STATE, rows(1));
+        mCache.writeValidators(STATE, ETAG, null);
+
+        // Cut the file back to its header
+        truncate(new File(mDirectory, STATE + ".bin"), 8);
+        assertNull(mCache.readValidators(STATE).getETag());
+    }
+
+    @Test
+    public void validatorsAreNotReadForACorruptCacheFile() throws IOException
+    {
+        mCache.append(STATE, rows(2));
+        mCache.writeValidators(STATE, ETAG, null);
+
+        try (FileOutputStream outputStream = new FileOutputStream(new File(mDirectory, STATE + ".bin")))
+        {
+            outputStream.write(new byte[8 + 32]);
+        }
+
+        assertNull(mCache.readValidators(STATE).getETag());
+    }
+
+    /**
+     * @param count Number of rows
+     * @return Returns a series with one row per day
+     */
+    static StateTimeSeries rows(int count)
+    {
+        StateTimeSeries series = new StateTimeSeries(count);
+
+        for (int i = 0; i < count; i++)
+        {
+            series.append(1586000000L + (i * 86400L), 100 * (i + 1), 10 * (i + 1), i);
+        }
+
+        return series;
+    }
+
+    /**
+     * @param file File to shorten
+     * @param length New length of the file
+     * @throws IOException Thrown if the file can't be changed
+     */
+    private static void truncate(File file, long length) throws IOException
+    {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+        {
+            randomAccessFile.setLength(length);
+        }
+    }
+}
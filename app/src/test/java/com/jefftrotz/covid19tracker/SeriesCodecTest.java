@@ -0,0 +1,289 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that SeriesCodec gives back exactly the rows it was given, including totals that go
+ * down, that a row cut off part way through is dropped when reading and appending, and that
+ * malformed rows are rejected rather than dropped
+ * @author Jeffrey Trotz
+ * @date 5/6/2020
+ * @version 1.0
+ */
+public class SeriesCodecTest
+{
+    private static final String REGION_ID = "ny"; // Region every series is encoded for
+    private static final long START_EPOCH_SECONDS = 1586000000L; // Time of the first row
+    private static final long SECONDS_PER_DAY = 86400; // Usual time between rows
+
+    private File mFile; // File the append tests write to
+
+    @Before
+    public void setUp() throws IOException
+    {
+        mFile = File.createTempFile("codec", ".bin");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        mFile.delete();
+    }
+
+    @Test
+    public void encodedRowsDecodeToTheSameSeries() throws IOException
+    {
+        StateTimeSeries series = rows(0, 100);
+
+        // A gap that isn't a whole day, then one that's back to normal
+        series.append(series.getLatestEpochSeconds() + 3600, 2000, 300, 20);
+        series.append(series.getLatestEpochSeconds() + SECONDS_PER_DAY, 2500, 350, 21);
+
+        byte[] encoded = SeriesCodec.encode(REGION_ID, series);
+        SeriesCodec.Decoded decoded = SeriesCodec.decode(encoded);
+        assertEquals(REGION_ID, decoded.getRegionId());
+        assertEquals(encoded.length, decoded.getLength());
+        assertSeriesEquals(series, decoded.getSeries());
+        assertSeriesEquals(series, SeriesCodec.read(new ByteArrayInputStream(encoded)).getSeries());
+    }
+
+    @Test
+    public void totalsThatGoDownAreZigzagEncoded() throws IOException
+    {
+        assertEquals(0, SeriesCodec.zigzagEncode(0));
+        assertEquals(1, SeriesCodec.zigzagEncode(-1));
+        assertEquals(2, SeriesCodec.zigzagEncode(1));
+        assertEquals(3, SeriesCodec.zigzagEncode(-2));
+
+        for (long value : new long[] {0, 1, -1, 63, -64, 1L << 40, -(1L << 40), Long.MAX_VALUE, Long.MIN_VALUE})
+        {
+            assertEquals(value, SeriesCodec.zigzagDecode(SeriesCodec.zigzagEncode(value)));
+        }
+
+        // Totals revised down, a gap much shorter than the one before it, and very large values
+        StateTimeSeries series = new StateTimeSeries();
+        series.append(START_EPOCH_SECONDS, 1000, 100, 10);
+        series.append(START_EPOCH_SECONDS + SECONDS_PER_DAY, 900, 80, 9);
+        series.append(START_EPOCH_SECONDS + SECONDS_PER_DAY + 60, 0, 0, 0);
+        series.append(START_EPOCH_SECONDS + (3 * SECONDS_PER_DAY), Long.MAX_VALUE, 1L << 40, 1);
+        series.append(START_EPOCH_SECONDS + (4 * SECONDS_PER_DAY), 5, 4, 3);
+
+        byte[] encoded = SeriesCodec.encode(REGION_ID, series);
+        assertSeriesEquals(series, SeriesCodec.decode(encoded).getSeries());
+
+        // A small drop stays small: one byte for each value of the row
+        StateTimeSeries drop = rows(0, 2);
+        drop.append(drop.getLatestEpochSeconds() + SECONDS_PER_DAY, drop.getLatestTested() - 1,
+            drop.getLatestPositive() - 1, drop.getLatestDeaths() - 1);
+        assertEquals(SeriesCodec.encode(REGION_ID, rows(0, 2)).length + 4, SeriesCodec.encode(REGION_ID, drop).length);
+    }
+
+    @Test
+    public void partialTrailingRowIsDropped() throws IOException
+    {
+        byte[] complete = SeriesCodec.encode(REGION_ID, rows(0, 10));
+        byte[] longer = SeriesCodec.encode(REGION_ID, rows(0, 11));
+
+        // The rows are deltas, so the first 10 rows encode the same either way
+        assertArrayEquals(complete, Arrays.copyOf(longer, complete.length));
+
+        for (int cut = complete.length; cut < longer.length; cut++)
+        {
+            SeriesCodec.Decoded decoded = SeriesCodec.decode(Arrays.copyOf(longer, cut));
+            assertSeriesEquals(rows(0, 10), decoded.getSeries());
+            assertEquals(complete.length, decoded.getLength());
+        }
+    }
+
+    @Test
+    public void dataInAnotherFormatIsRejected()
+    {
+        byte[] encoded = SeriesCodec.encode(REGION_ID, rows(0, 2));
+        byte[] wrongMagic = encoded.clone();
+        wrongMagic[0] ^= 1;
+        byte[] wrongVersion = encoded.clone();
+        wrongVersion[4] = (byte) (SeriesCodec.FORMAT_VERSION + 1);
+
+        for (byte[] data : new byte[][] {wrongMagic, wrongVersion, Arrays.copyOf(encoded, 7), new byte[0]})
+        {
+            try
+            {
+                SeriesCodec.decode(data);
+                fail("Decoded data that isn't in the format");
+            }
+
+            // Expected
+            catch (IOException ioException)
+            {
+            }
+        }
+    }
+
+    @Test
+    public void malformedRowsAreRejectedNotDropped() throws IOException
+    {
+        byte[] encoded = SeriesCodec.encode(REGION_ID, rows(0, 10));
+
+        // A variable length integer that never ends, part way through the rows
+        byte[] corrupt = encoded.clone();
+        Arrays.fill(corrupt, encoded.length - 30, encoded.length - 18, (byte) 0xFF);
+
+        try
+        {
+            SeriesCodec.decode(corrupt);
+            fail("Decoded malformed data");
+        }
+
+        // Expected, and not mistaken for a row that was cut off
+        catch (IOException ioException)
+        {
+            assertFalse(ioException instanceof EOFException);
+        }
+
+        try (FileOutputStream outputStream = new FileOutputStream(mFile))
+        {
+            outputStream.write(corrupt);
+        }
+
+        try
+        {
+            SeriesCodec.append(mFile, REGION_ID, rows(10, 2));
+            fail("Appended to a file with malformed data");
+        }
+
+        // Expected, and the rows after the malformed data are left alone
+        catch (IOException ioException)
+        {
+            assertArrayEquals(corrupt, readFile());
+        }
+    }
+
+    @Test
+    public void appendContinuesFromTheLastRow() throws IOException
+    {
+        SeriesCodec.append(mFile, REGION_ID, rows(0, 5));
+        SeriesCodec.append(mFile, REGION_ID, rows(5, 3));
+        SeriesCodec.append(mFile, REGION_ID, new StateTimeSeries());
+
+        // Appending in batches writes the same bytes as encoding everything at once
+        byte[] expected = SeriesCodec.encode(REGION_ID, rows(0, 8));
+        assertArrayEquals(expected, readFile());
+        assertSeriesEquals(rows(0, 8), readDecoded().getSeries());
+    }
+
+    @Test
+    public void appendRemovesAPartialTrailingRow() throws IOException
+    {
+        byte[] longer = SeriesCodec.encode(REGION_ID, rows(0, 6));
+
+        // Leave the file with 5 complete rows and part of the 6th, as if a crash stopped the write
+        try (FileOutputStream outputStream = new FileOutputStream(mFile))
+        {
+            outputStream.write(longer, 0, longer.length - 1);
+        }
+
+        SeriesCodec.append(mFile, REGION_ID, rows(5, 2));
+        assertArrayEquals(SeriesCodec.encode(REGION_ID, rows(0, 7)), readFile());
+    }
+
+    @Test
+    public void appendRejectsAFileForAnotherRegion() throws IOException
+    {
+        SeriesCodec.append(mFile, REGION_ID, rows(0, 3));
+
+        try
+        {
+            SeriesCodec.append(mFile, "ca", rows(3, 1));
+            fail("Appended to another region's file");
+        }
+
+        // Expected, and the file is left alone
+        catch (IOException ioException)
+        {
+            assertSeriesEquals(rows(0, 3), readDecoded().getSeries());
+        }
+    }
+
+    /**
+     * @param first Index of the first row (rows with the same index are always the same)
+     * @param count Number of rows
+     * @return Returns a day per row with slowly growing totals
+     */
+    private static StateTimeSeries rows(int first, int count)
+    {
+        StateTimeSeries series = new StateTimeSeries(Math.max(1, count));
+
+        for (int row = first; row < first + count; row++)
+        {
+            series.append(START_EPOCH_SECONDS + (row * SECONDS_PER_DAY), 1000 + (row * 150L), 100 + (row * 17L), row);
+        }
+
+        return series;
+    }
+
+    /**
+     * @param expected Expected rows
+     * @param actual Decoded rows
+     */
+    private static void assertSeriesEquals(StateTimeSeries expected, StateTimeSeries actual)
+    {
+        assertEquals(expected.size(), actual.size());
+
+        for (int row = 0; row < expected.size(); row++)
+        {
+            assertEquals(expected.getEpochSeconds(row), actual.getEpochSeconds(row));
+            assertEquals(expected.getTested(row), actual.getTested(row));
+            assertEquals(expected.getPositive(row), actual.getPositive(row));
+            assertEquals(expected.getDeaths(row), actual.getDeaths(row));
+        }
+    }
+
+    /**
+     * @return Returns the bytes of the file
+     * @throws IOException Thrown if the file can't be read
+     */
+    private byte[] readFile() throws IOException
+    {
+        byte[] data = new byte[(int) mFile.length()];
+
+        try (InputStream inputStream = new FileInputStream(mFile))
+        {
+            int offset = 0;
+
+            while (offset < data.length)
+            {
+                offset += inputStream.read(data, offset, data.length - offset);
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * @return Returns the file's decoded contents
+     * @throws IOException Thrown if the file can't be read or decoded
+     */
+    private SeriesCodec.Decoded readDecoded() throws IOException
+    {
+        try (InputStream inputStream = new FileInputStream(mFile))
+        {
+            return SeriesCodec.read(inputStream);
+        }
+    }
+}
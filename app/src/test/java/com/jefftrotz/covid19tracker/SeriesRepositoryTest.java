@@ -0,0 +1,108 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that SeriesRepository recovers when the server says nothing has changed but there's no
+ * cached data to show
+ * @author Jeffrey Trotz
+ * @date 5/6/2020
+ * @version 1.0
+ */
+public class SeriesRepositoryTest
+{
+    private static final String PROVIDER_ID = "fake"; // ID of the fake provider
+    private static final String STATE = "NY"; // State used by every test
+    private static final String CACHE_KEY = PROVIDER_ID + "_" + STATE; // Key the state's data is cached under
+    private static final String ETAG = "\"v1\""; // ETag sent by the fake provider
+
+    private File mDirectory; // Directory the cache is stored in
+    private SeriesCache mCache; // Cache the repository reads and writes
+    private FakeProvider mProvider; // Records the requests made by the repository
+
+    @Before
+    public void setUp() throws IOException
+    {
+        mDirectory = File.createTempFile("series", "");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+        mCache = new SeriesCache(mDirectory);
+        mProvider = new FakeProvider();
+    }
+
+    @After
+    public void tearDown()
+    {
+        for (File file : mDirectory.listFiles())
+        {
+            file.delete();
+        }
+
+        mDirectory.delete();
+    }
+
+    @Test
+    public void notModifiedWithoutCachedDataFetchesAgainWithoutValidators() throws IOException
+    {
+        // Validators are stored, but the caller has no cached data to fall back on
+        mCache.append(CACHE_KEY, SeriesCacheTest.rows(2));
+        mCache.writeValidators(CACHE_KEY, ETAG, null);
+        mProvider.mResponseCodes.add(DataProvider.HTTP_NOT_MODIFIED);
+        mProvider.mResponseCodes.add(DataProvider.HTTP_OK);
+
+        SeriesRepository.Refresh refresh = new SeriesRepository(mCache, mProvider).refresh(STATE, null);
+
+        assertEquals(2, mProvider.mETags.size());
+        assertEquals(ETAG, mProvider.mETags.get(0));
+        assertNull(mProvider.mETags.get(1));
+        assertEquals(3, refresh.getData().size());
+    }
+
+    @Test
+    public void notModifiedWithCachedDataKeepsTheCachedData() throws IOException
+    {
+        mCache.append(CACHE_KEY, SeriesCacheTest.rows(2));
+        mCache.writeValidators(CACHE_KEY, ETAG, null);
+        mProvider.mResponseCodes.add(DataProvider.HTTP_NOT_MODIFIED);
+        StateTimeSeries cachedData = mCache.read(CACHE_KEY);
+
+        SeriesRepository.Refresh refresh = new SeriesRepository(mCache, mProvider).refresh(STATE, cachedData);
+
+        assertEquals(1, mProvider.mETags.size());
+        assertSame(cachedData, refresh.getData());
+    }
+
+    /**
+     * Provider that answers with queued response codes and records the ETag of each request
+     */
+    private static class FakeProvider implements DataProvider
+    {
+        private final List<Integer> mResponseCodes = new ArrayList<>(); // Response code of each request, in order
+        private final List<String> mETags = new ArrayList<>(); // ETag sent with each request
+
+        @Override
+        public String getId()
+        {
+            return PROVIDER_ID;
+        }
+
+        @Override
+        public FetchResult fetch(String regionId, String eTag, String lastModified, long afterEpochSeconds)
+        {
+            mETags.add(eTag);
+            int responseCode = mResponseCodes.remove(0);
+            StateTimeSeries newRows = responseCode == HTTP_OK ? SeriesCacheTest.rows(3) : new StateTimeSeries(0);
+            return new FetchResult(responseCode, newRows, ETAG, null, 0);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests that each kind of SeriesWindow starts at the right row, including windows that reach
+ * past either end of the data
+ * @author Jeffrey Trotz
+ * @date 5/7/2020
+ * @version 1.0
+ */
+public class SeriesWindowTest
+{
+    private static final long START_EPOCH_SECONDS = 1586131200L; // Time of the first row
+    private static final long SECONDS_PER_DAY = 86400; // Time between rows
+    private static final int ROW_COUNT = 30; // Number of rows in the test series
+
+    private final StateTimeSeries mSeries = rows(ROW_COUNT); // A row a day
+
+    @Test
+    public void lastDaysCountsBackFromTheLatestRow()
+    {
+        // The window is measured from the data, not the clock, so old data still fills it
+        assertEquals(ROW_COUNT - 8, SeriesWindow.lastDays(7).getStartRow(mSeries));
+        assertEquals(ROW_COUNT - 1, SeriesWindow.lastDays(0).getStartRow(mSeries));
+        assertEquals(1, SeriesWindow.lastDays(ROW_COUNT - 2).getStartRow(mSeries));
+        assertEquals(0, SeriesWindow.lastDays(ROW_COUNT - 1).getStartRow(mSeries));
+        assertEquals(0, SeriesWindow.lastDays(1000).getStartRow(mSeries));
+        assertEquals(SeriesWindow.Mode.LAST_DAYS, SeriesWindow.lastDays(7).getMode());
+
+        try
+        {
+            SeriesWindow.lastDays(-1);
+            fail("Created a window with a negative number of days");
+        }
+
+        // Expected
+        catch (IllegalArgumentException illegalArgumentException)
+        {
+        }
+    }
+
+    @Test
+    public void sinceStartsAtTheFirstRowNotBeforeTheTime()
+    {
+        assertEquals(10, SeriesWindow.since(time(10)).getStartRow(mSeries));
+        assertEquals(11, SeriesWindow.since(time(10) + 1).getStartRow(mSeries));
+        assertEquals(0, SeriesWindow.since(Long.MIN_VALUE).getStartRow(mSeries));
+        assertEquals(0, SeriesWindow.since(START_EPOCH_SECONDS - SECONDS_PER_DAY).getStartRow(mSeries));
+
+        // A start after the latest row leaves the window empty
+        assertEquals(ROW_COUNT, SeriesWindow.since(time(ROW_COUNT)).getStartRow(mSeries));
+        assertEquals(SeriesWindow.Mode.SINCE, SeriesWindow.since(0).getMode());
+    }
+
+    @Test
+    public void fullHistoryAndEmptySeriesStartAtTheFirstRow()
+    {
+        assertEquals(0, SeriesWindow.fullHistory().getStartRow(mSeries));
+        assertSame(SeriesWindow.fullHistory(), SeriesWindow.fullHistory());
+        assertEquals(SeriesWindow.Mode.FULL_HISTORY, SeriesWindow.fullHistory().getMode());
+
+        StateTimeSeries empty = new StateTimeSeries();
+
+        for (SeriesWindow window : new SeriesWindow[] {SeriesWindow.lastDays(7), SeriesWindow.since(time(10)), SeriesWindow.fullHistory()})
+        {
+            assertEquals(0, window.getStartRow(empty));
+        }
+    }
+
+    /**
+     * @param row Index of a row
+     * @return Returns the time of the row in the test series
+     */
+    private static long time(int row)
+    {
+        return START_EPOCH_SECONDS + (row * SECONDS_PER_DAY);
+    }
+
+    /**
+     * @param count Number of rows
+     * @return Returns a day per row
+     */
+    private static StateTimeSeries rows(int count)
+    {
+        StateTimeSeries series = new StateTimeSeries();
+
+        for (int row = 0; row < count; row++)
+        {
+            series.append(time(row), row * 10L, row, 0);
+        }
+
+        return series;
+    }
+}
@@ -0,0 +1,133 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that the offline boundary index never gives a border city the neighboring state, and
+ * still finds the state of cities well inside one or on the coast
+ * @author Jeffrey Trotz
+ * @date 5/6/2020
+ * @version 1.0
+ */
+public class StateBoundaryIndexTest
+{
+    private static final String BOUNDARIES_PATH = "src/main/assets/" + StateBoundaryIndex.ASSET_NAME; // Boundary file, relative to the app module
+
+    // Cities next to a state border: name, state, latitude, longitude
+    private static final Object[][] BORDER_CITIES = {
+        {"Arlington", "VA", 38.8816, -77.0910},
+        {"Alexandria", "VA", 38.8048, -77.0469},
+        {"Washington", "DC", 38.9072, -77.0369},
+        {"Bethesda", "MD", 38.9847, -77.0947},
+        {"Omaha", "NE", 41.2565, -95.9345},
+        {"Council Bluffs", "IA", 41.2619, -95.8608},
+        {"Covington", "KY", 39.0837, -84.5086},
+        {"Cincinnati", "OH", 39.1031, -84.5120},
+        {"East St. Louis", "IL", 38.6245, -90.1510},
+        {"St. Louis", "MO", 38.6270, -90.1994},
+        {"Kansas City", "KS", 39.1141, -94.6275},
+        {"Kansas City", "MO", 39.0997, -94.5786},
+        {"Texarkana", "AR", 33.4418, -94.0377},
+        {"Vancouver", "WA", 45.6387, -122.6615},
+        {"Portland", "OR", 45.5152, -122.6784},
+        {"Camden", "NJ", 39.9259, -75.1196},
+        {"Philadelphia", "PA", 39.9526, -75.1652},
+        {"Jersey City", "NJ", 40.7178, -74.0431},
+        {"Fargo", "ND", 46.8772, -96.7898},
+        {"Moorhead", "MN", 46.8738, -96.7678},
+        {"Bristol", "TN", 36.5951, -82.1887}
+    };
+
+    // Cities well inside a state: name, state, latitude, longitude
+    private static final Object[][] INLAND_CITIES = {
+        {"Denver", "CO", 39.7392, -104.9903},
+        {"Indianapolis", "IN", 39.7684, -86.1581},
+        {"Dallas", "TX", 32.7767, -96.7970},
+        {"Atlanta", "GA", 33.7490, -84.3880},
+        {"Nashville", "TN", 36.1627, -86.7816},
+        {"Columbus", "OH", 39.9612, -82.9988},
+        {"Des Moines", "IA", 41.5868, -93.6250},
+        {"Wichita", "KS", 37.6872, -97.3301},
+        {"Oklahoma City", "OK", 35.4676, -97.5164},
+        {"Salt Lake City", "UT", 40.7608, -111.8910},
+        {"Phoenix", "AZ", 33.4484, -112.0740},
+        {"Minneapolis", "MN", 44.9778, -93.2650},
+        {"Harrisburg", "PA", 40.2732, -76.8867},
+        {"Boise", "ID", 43.6150, -116.2023},
+        {"Lincoln", "NE", 40.8136, -96.7026},
+        {"Lexington", "KY", 38.0406, -84.5037},
+        {"Springfield", "IL", 39.7817, -89.6501}
+    };
+
+    // Cities on a coast or lakeshore, or in one of the small states: name, state, latitude, longitude
+    private static final Object[][] COASTAL_CITIES = {
+        {"Chicago", "IL", 41.8781, -87.6298},
+        {"Milwaukee", "WI", 43.0389, -87.9065},
+        {"Detroit", "MI", 42.3314, -83.0458},
+        {"Cleveland", "OH", 41.4993, -81.6944},
+        {"Buffalo", "NY", 42.8864, -78.8784},
+        {"Boston", "MA", 42.3601, -71.0589},
+        {"Baltimore", "MD", 39.2904, -76.6122},
+        {"Miami", "FL", 25.7617, -80.1918},
+        {"Tampa", "FL", 27.9506, -82.4572},
+        {"Houston", "TX", 29.7604, -95.3698},
+        {"San Diego", "CA", 32.7157, -117.1611},
+        {"San Francisco", "CA", 37.7749, -122.4194},
+        {"Seattle", "WA", 47.6062, -122.3321},
+        {"Honolulu", "HI", 21.3069, -157.8583},
+        {"Washington", "DC", 38.9072, -77.0369},
+        {"Providence", "RI", 41.8240, -71.4128},
+        {"Wilmington", "DE", 39.7391, -75.5398},
+        {"Dover", "DE", 39.1582, -75.5244}
+    };
+
+    private static StateBoundaryIndex sIndex; // Index built from the app's boundary file
+
+    @BeforeClass
+    public static void loadIndex() throws IOException
+    {
+        sIndex = StateBoundaryIndex.load(new FileInputStream(BOUNDARIES_PATH));
+    }
+
+    @Test
+    public void borderCitiesAreLeftToGeocoderOrGivenTheirOwnState()
+    {
+        for (Object[] city : BORDER_CITIES)
+        {
+            String found = sIndex.findAbbreviation((Double) city[2], (Double) city[3]);
+            assertTrue(city[0] + ", " + city[1] + " was given " + found, found == null || found.equals(city[1]));
+        }
+    }
+
+    @Test
+    public void inlandCitiesAreFoundOffline()
+    {
+        for (Object[] city : INLAND_CITIES)
+        {
+            assertEquals(city[0] + ", " + city[1], city[1], sIndex.findAbbreviation((Double) city[2], (Double) city[3]));
+        }
+    }
+
+    @Test
+    public void coastalCitiesAreFoundOffline()
+    {
+        for (Object[] city : COASTAL_CITIES)
+        {
+            assertEquals(city[0] + ", " + city[1], city[1], sIndex.findAbbreviation((Double) city[2], (Double) city[3]));
+        }
+    }
+
+    @Test
+    public void locationsOutsideTheUsAreNotFound()
+    {
+        assertNull(sIndex.findAbbreviation(51.5074, -0.1278));
+        assertNull(sIndex.findAbbreviation(30.0, -40.0));
+    }
+}
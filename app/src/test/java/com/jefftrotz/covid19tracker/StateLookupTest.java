@@ -0,0 +1,63 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+
+/**
+ * Tests that StateLookup converts every state the same way as the StateNameConverter it
+ * replaced, in both directions, and rejects anything that isn't a state
+ * @author Jeffrey Trotz
+ * @date 5/7/2020
+ * @version 1.0
+ */
+public class StateLookupTest
+{
+    private static final int STATE_COUNT = 51; // Number of states, including Washington DC
+
+    private final StateLookup mLookup = StateLookup.getInstance(); // Lookup being tested
+    private final StateNameConverter mConverter = new StateNameConverter(); // Lookup it replaced
+
+    @Test
+    public void everyStateMatchesTheOldConverter()
+    {
+        assertEquals(STATE_COUNT, mLookup.getCount());
+        Set<String> abbreviations = new HashSet<>();
+
+        for (int index = 0; index < STATE_COUNT; index++)
+        {
+            String name = mLookup.getName(index);
+            String abbreviation = mLookup.getAbbreviation(index);
+            abbreviations.add(abbreviation);
+
+            assertEquals(name, mConverter.getStateSpinnerIndex(name), index);
+            assertEquals(name, mConverter.getStateAbbreviation(name), abbreviation);
+            assertEquals(name, index, mLookup.getIndexForName(name));
+            assertEquals(name, abbreviation, mLookup.getAbbreviation(name));
+            assertEquals(name, index, mLookup.getIndexForAbbreviation(abbreviation));
+
+            // A name built at runtime is a different String object with the same hash code
+            assertEquals(name, index, mLookup.getIndexForName(new String(name.toCharArray())));
+        }
+
+        assertEquals(STATE_COUNT, abbreviations.size());
+    }
+
+    @Test
+    public void anythingElseIsNotFound()
+    {
+        for (String name : new String[] {null, "", "new york", "New York ", "Puerto Rico", "Washington D.C.", "NY"})
+        {
+            assertEquals(String.valueOf(name), StateLookup.NOT_FOUND, mLookup.getIndexForName(name));
+            assertNull(mLookup.getAbbreviation(name));
+        }
+
+        for (String abbreviation : new String[] {null, "", "N", "NYC", "ny", "PR", "ZZ", "A[", "@A"})
+        {
+            assertEquals(String.valueOf(abbreviation), StateLookup.NOT_FOUND, mLookup.getIndexForAbbreviation(abbreviation));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.jefftrotz.covid19tracker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests that StateTimeSeries finds and copies the right rows at the edges of its data, and keeps
+ * its rows as it grows and shrinks
+ * @author Jeffrey Trotz
+ * @date 5/7/2020
+ * @version 1.0
+ */
+public class StateTimeSeriesTest
+{
+    private static final long START_EPOCH_SECONDS = 1586131200L; // Time of the first row
+    private static final long SECONDS_PER_DAY = 86400; // Time between rows
+    private static final int ROW_COUNT = 10; // Number of rows in the test series
+
+    @Test
+    public void indexAtOrAfterFindsTheFirstRowNotBeforeTheTime()
+    {
+        StateTimeSeries series = rows(ROW_COUNT);
+
+        assertEquals(0, series.indexAtOrAfter(Long.MIN_VALUE));
+        assertEquals(0, series.indexAtOrAfter(START_EPOCH_SECONDS));
+        assertEquals(1, series.indexAtOrAfter(START_EPOCH_SECONDS + 1));
+        assertEquals(5, series.indexAtOrAfter(time(5)));
+        assertEquals(5, series.indexAtOrAfter(time(5) - 1));
+        assertEquals(ROW_COUNT - 1, series.indexAtOrAfter(time(ROW_COUNT - 1)));
+        assertEquals(ROW_COUNT, series.indexAtOrAfter(time(ROW_COUNT - 1) + 1));
+        assertEquals(ROW_COUNT, series.indexAtOrAfter(Long.MAX_VALUE));
+        assertEquals(0, new StateTimeSeries().indexAtOrAfter(START_EPOCH_SECONDS));
+
+        // Rows with the same time: the first of them is found
+        StateTimeSeries repeated = new StateTimeSeries();
+        repeated.append(START_EPOCH_SECONDS, 1, 1, 1);
+        repeated.append(time(1), 2, 2, 2);
+        repeated.append(time(1), 3, 3, 3);
+        repeated.append(time(2), 4, 4, 4);
+        assertEquals(1, repeated.indexAtOrAfter(time(1)));
+    }
+
+    @Test
+    public void sliceKeepsRowsInTheRangeInclusive()
+    {
+        StateTimeSeries series = rows(ROW_COUNT);
+
+        assertRows(series.slice(time(2), time(5)), 2, 6);
+        assertRows(series.slice(time(2) - 1, time(5) + 1), 2, 6);
+        assertRows(series.slice(time(2) + 1, time(5) - 1), 3, 5);
+        assertRows(series.slice(Long.MIN_VALUE, Long.MAX_VALUE), 0, ROW_COUNT);
+        assertRows(series.slice(time(7), Long.MAX_VALUE), 7, ROW_COUNT);
+        assertRows(series.slice(time(4), time(4)), 4, 5);
+
+        // Ranges with no rows in them
+        assertTrue(series.slice(time(5), time(2)).isEmpty());
+        assertTrue(series.slice(time(ROW_COUNT), Long.MAX_VALUE).isEmpty());
+        assertTrue(series.slice(Long.MIN_VALUE, START_EPOCH_SECONDS - 1).isEmpty());
+        assertTrue(series.slice(time(3) + 1, time(4) - 1).isEmpty());
+    }
+
+    @Test
+    public void sliceRowsCopiesTheRowsAndRejectsBadRanges()
+    {
+        StateTimeSeries series = rows(ROW_COUNT);
+        assertRows(series.sliceRows(0, ROW_COUNT), 0, ROW_COUNT);
+        assertRows(series.sliceRows(3, 3), 3, 3);
+
+        // The slice is a copy that can grow on its own
+        StateTimeSeries slice = series.sliceRows(8, ROW_COUNT);
+        slice.append(time(ROW_COUNT), 0, 0, 0);
+        assertEquals(3, slice.size());
+        assertEquals(ROW_COUNT, series.size());
+
+        for (int[] range : new int[][] {{-1, 2}, {0, ROW_COUNT + 1}, {5, 4}})
+        {
+            try
+            {
+                series.sliceRows(range[0], range[1]);
+                fail("Sliced rows " + range[0] + " to " + range[1]);
+            }
+
+            // Expected
+            catch (IndexOutOfBoundsException indexOutOfBoundsException)
+            {
+            }
+        }
+    }
+
+    @Test
+    public void rowsSurviveGrowingAndTrimming()
+    {
+        // Start with no room, grow past the default capacity, trim, then grow again
+        StateTimeSeries series = new StateTimeSeries(0);
+
+        for (int row = 0; row < 100; row++)
+        {
+            series.append(time(row), row * 10L, row, row / 10);
+        }
+
+        series.trimToSize();
+        series.append(time(100), 1000, 100, 10);
+        StateTimeSeries copy = new StateTimeSeries(1);
+        copy.appendAll(series);
+        assertRows(copy, 0, 101);
+        assertEquals(time(100), copy.getLatestEpochSeconds());
+        assertEquals(1000, copy.getLatestTested());
+        assertEquals(100, copy.getLatestPositive());
+        assertEquals(10, copy.getLatestDeaths());
+
+        try
+        {
+            series.getTested(101);
+            fail("Read a row past the end");
+        }
+
+        // Expected
+        catch (IndexOutOfBoundsException indexOutOfBoundsException)
+        {
+        }
+    }
+
+    /**
+     * @param row Index of a row
+     * @return Returns the time of the row in the test series
+     */
+    private static long time(int row)
+    {
+        return START_EPOCH_SECONDS + (row * SECONDS_PER_DAY);
+    }
+
+    /**
+     * @param count Number of rows
+     * @return Returns a day per row, with the row's index in every total
+     */
+    private static StateTimeSeries rows(int count)
+    {
+        StateTimeSeries series = new StateTimeSeries();
+
+        for (int row = 0; row < count; row++)
+        {
+            series.append(time(row), row * 10L, row, row / 10);
+        }
+
+        return series;
+    }
+
+    /**
+     * Checks that a series holds the test series' rows in a range
+     * @param series Series to check
+     * @param fromRow Index of the first expected row (inclusive)
+     * @param toRow Index of the last expected row (exclusive)
+     */
+    private static void assertRows(StateTimeSeries series, int fromRow, int toRow)
+    {
+        assertEquals(toRow - fromRow, series.size());
+
+        for (int row = fromRow; row < toRow; row++)
+        {
+            assertEquals(time(row), series.getEpochSeconds(row - fromRow));
+            assertEquals(row * 10L, series.getTested(row - fromRow));
+            assertEquals(row, series.getPositive(row - fromRow));
+            assertEquals(row / 10, series.getDeaths(row - fromRow));
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.jefftrotz.covid19tracker;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local HTTP server for tests that talk to the network. Each request is answered with the next
+ * queued Response (or the default one once the queue is empty), which can be delayed, gzipped or
+ * cut off to inject latency and errors. The headers of every request are kept so tests can check
+ * what was sent.
+ * @author Jeffrey Trotz
+ * @date 5/6/2020
+ * @version 1.0
+ */
+public class StubServer
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8"); // Encoding of response bodies
+
+    private final HttpServer mServer; // Server answering the requests
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool(); // Answers each request on its own thread, so a delayed response doesn't hold up the next one
+    private final LinkedList<Response> mResponses = new LinkedList<>(); // Responses waiting to be sent, in order
+    private final List<Headers> mRequests = Collections.synchronizedList(new ArrayList<Headers>()); // Headers of each request received
+    private volatile Response mDefaultResponse = new Response(DataProvider.HTTP_OK, ""); // Sent when no responses are queued
+
+    /**
+     * Constructor. Starts the server on a free port.
+     * @throws IOException Thrown if the server can't be started
+     */
+    public StubServer() throws IOException
+    {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                mRequests.add(exchange.getRequestHeaders());
+                respond(exchange, nextResponse());
+            }
+        });
+        mServer.setExecutor(mExecutor);
+        mServer.start();
+    }
+
+    /**
+     * @return Returns a URL template pointing at the server, for DataFetcher
+     */
+    public String getUrlTemplate()
+    {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/" + DataFetcher.REGION_PLACEHOLDER;
+    }
+
+    /**
+     * @param response Response to send to the next request that doesn't have one queued yet
+     */
+    public synchronized void enqueue(Response response)
+    {
+        mResponses.add(response);
+    }
+
+    /**
+     * @param response Response sent once the queue is empty
+     */
+    public void setDefaultResponse(Response response)
+    {
+        mDefaultResponse = response;
+    }
+
+    /**
+     * @return Returns the number of requests received so far
+     */
+    public int getRequestCount()
+    {
+        return mRequests.size();
+    }
+
+    /**
+     * @param index Index of a request (0 for the first)
+     * @return Returns the headers sent with the request
+     */
+    public Headers getRequest(int index)
+    {
+        return mRequests.get(index);
+    }
+
+    /**
+     * Stops the server
+     */
+    public void stop()
+    {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return Returns the next queued response, or the default one if none are queued
+     */
+    private synchronized Response nextResponse()
+    {
+        return mResponses.isEmpty() ? mDefaultResponse : mResponses.removeFirst();
+    }
+
+    /**
+     * Sends a response
+     * @param exchange Request being answered
+     * @param response Response to send
+     * @throws IOException Thrown if the response can't be sent
+     */
+    private static void respond(HttpExchange exchange, Response response) throws IOException
+    {
+        try
+        {
+            Thread.sleep(response.mDelayMillis);
+        }
+
+        // Answer straight away if the server is stopped while waiting
+        catch (InterruptedException interruptedException)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (response.mDropConnection)
+        {
+            exchange.close();
+            return;
+        }
+
+        exchange.getResponseHeaders().putAll(response.mHeaders);
+        byte[] body = response.getEncodedBody();
+
+        if (body.length == 0)
+        {
+            exchange.sendResponseHeaders(response.mResponseCode, -1);
+        }
+
+        else
+        {
+            exchange.sendResponseHeaders(response.mResponseCode, body.length);
+
+            try (OutputStream outputStream = exchange.getResponseBody())
+            {
+                outputStream.write(body);
+            }
+        }
+
+        exchange.close();
+    }
+
+    /**
+     * Response sent by the server
+     */
+    public static class Response
+    {
+        private final int mResponseCode; // HTTP response code
+        private final byte[] mBody; // Body before it's compressed
+        private final Headers mHeaders = new Headers(); // Headers to send
+        private boolean mGzip; // Whether the body is gzipped
+        private long mDelayMillis; // Time to wait before answering
+        private boolean mDropConnection; // Whether the connection is closed without answering
+
+        /**
+         * Constructor
+         * @param responseCode HTTP response code
+         * @param body Body of the response (empty for none)
+         */
+        public Response(int responseCode, String body)
+        {
+            mResponseCode = responseCode;
+            mBody = body.getBytes(UTF_8);
+        }
+
+        /**
+         * @param name Name of a header to send
+         * @param value Value of the header
+         * @return Returns this response
+         */
+        public Response header(String name, String value)
+        {
+            mHeaders.add(name, value);
+            return this;
+        }
+
+        /**
+         * @return Returns this response with its body gzipped
+         */
+        public Response gzip()
+        {
+            mGzip = true;
+            return this.header("Content-Encoding", "gzip");
+        }
+
+        /**
+         * @param delayMillis Time to wait before answering in milliseconds
+         * @return Returns this response
+         */
+        public Response delay(long delayMillis)
+        {
+            mDelayMillis = delayMillis;
+            return this;
+        }
+
+        /**
+         * @return Returns this response, changed to close the connection without answering
+         */
+        public Response dropConnection()
+        {
+            mDropConnection = true;
+            return this;
+        }
+
+        /**
+         * @return Returns the length of the body before it's compressed
+         */
+        public int getBodyLength()
+        {
+            return mBody.length;
+        }
+
+        /**
+         * @return Returns the body as it's sent (gzipped if asked for)
+         * @throws IOException Thrown if the body can't be compressed
+         */
+        public byte[] getEncodedBody() throws IOException
+        {
+            if (!mGzip)
+            {
+                return mBody;
+            }
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+            try (GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream))
+            {
+                gzipStream.write(mBody);
+            }
+
+            return outputStream.toByteArray();
+        }
+    }
+}
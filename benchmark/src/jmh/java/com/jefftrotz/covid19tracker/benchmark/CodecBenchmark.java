@@ -0,0 +1,102 @@
+package com.jefftrotz.covid19tracker.benchmark;
+
+import com.jefftrotz.covid19tracker.CovidDataParser;
+import com.jefftrotz.covid19tracker.SeriesCodec;
+import com.jefftrotz.covid19tracker.StateTimeSeries;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares decoding a series from SeriesCodec's binary format with parsing the same rows from the
+ * API's CSV, and measures encoding. JMH only reports times, so encode() also reports the size of
+ * the CSV and the encoded data as auxiliary counters next to its time.
+ * @author Jeffrey Trotz
+ * @date 5/2/2020
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CodecBenchmark
+{
+    private static final String REGION_ID = "ny"; // Region the data sets are encoded for
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int rows; // Number of rows in the data set
+
+    private byte[] mCsv; // Synthetic API response
+    private byte[] mEncoded; // Same rows encoded by SeriesCodec
+    private StateTimeSeries mSeries; // Same rows as a series
+
+    /**
+     * Builds the data sets before the benchmarks run
+     */
+    @Setup
+    public void setUp()
+    {
+        mCsv = SyntheticData.csv(rows);
+        mSeries = SyntheticData.series(rows);
+        mEncoded = SeriesCodec.encode(REGION_ID, mSeries);
+    }
+
+    /**
+     * Decodes the binary data
+     * @return Returns the decoded series
+     * @throws IOException Never thrown for data made by encode()
+     */
+    @Benchmark
+    public StateTimeSeries decode() throws IOException
+    {
+        return SeriesCodec.decode(mEncoded).getSeries();
+    }
+
+    /**
+     * Parses the same rows from the CSV with the streaming parser
+     * @return Returns the parsed series
+     * @throws IOException Never thrown when reading from memory
+     */
+    @Benchmark
+    public StateTimeSeries parseCsv() throws IOException
+    {
+        return new CovidDataParser().parse(new ByteArrayInputStream(mCsv));
+    }
+
+    /**
+     * Encodes the series
+     * @param sizes Counters the sizes of the data set are reported in
+     * @return Returns the encoded data
+     */
+    @Benchmark
+    public byte[] encode(Sizes sizes)
+    {
+        byte[] encoded = SeriesCodec.encode(REGION_ID, mSeries);
+
+        // Set rather than added up, so each iteration reports the sizes of a single data set
+        sizes.csvBytes = mCsv.length;
+        sizes.encodedBytes = encoded.length;
+        sizes.encodedBytesPerRow = (double) encoded.length / rows;
+        return encoded;
+    }
+
+    /**
+     * Sizes of the data set, reported by JMH as auxiliary counters next to encode()'s time
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Sizes
+    {
+        public long csvBytes; // Size of the CSV
+        public long encodedBytes; // Size of the same rows encoded by SeriesCodec
+        public double encodedBytesPerRow; // Average size of an encoded row
+    }
+}
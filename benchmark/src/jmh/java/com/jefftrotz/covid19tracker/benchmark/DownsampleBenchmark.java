@@ -0,0 +1,62 @@
+package com.jefftrotz.covid19tracker.benchmark;
+
+import com.jefftrotz.covid19tracker.Downsampler;
+import com.jefftrotz.covid19tracker.StateTimeSeries;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of downsampling a time vs. positive tests series to a typical screen width,
+ * compared to the number of points GraphView would otherwise have to draw
+ * @author Jeffrey Trotz
+ * @date 4/21/2020
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DownsampleBenchmark
+{
+    private static final int SCREEN_WIDTH = 1080; // Width in pixels of a typical phone screen
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int rows; // Number of rows in the data set
+
+    private double[] mX; // X values (time) of every row
+    private double[] mY; // Y values (positive tests) of every row
+    private int[] mSelected; // Receives the indexes of the points kept
+
+    /**
+     * Builds the x/y values before the benchmarks run
+     */
+    @Setup
+    public void setUp()
+    {
+        StateTimeSeries series = SyntheticData.series(rows);
+        mX = new double[rows];
+        mY = new double[rows];
+        mSelected = new int[rows];
+
+        for (int i = 0; i < rows; i++)
+        {
+            mX[i] = series.getEpochSeconds(i) * 1000.0;
+            mY[i] = series.getPositive(i);
+        }
+    }
+
+    /**
+     * @return Returns the number of points kept when reduced to the screen's width
+     */
+    @Benchmark
+    public int downsampleToScreen()
+    {
+        return Downsampler.downsample(mX, mY, rows, SCREEN_WIDTH, mSelected);
+    }
+}
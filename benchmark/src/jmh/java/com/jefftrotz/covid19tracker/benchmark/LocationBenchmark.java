@@ -0,0 +1,89 @@
+package com.jefftrotz.covid19tracker.benchmark;
+
+import com.jefftrotz.covid19tracker.StateBoundaryIndex;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures finding the state for a batch of random locations in the lower 48 states with the
+ * offline boundary index, compared to testing every polygon, plus the one time cost of loading
+ * the index. Geocoder can't run outside of Android; MainActivity logs how long it takes on a
+ * device when it's used as the fallback.
+ * @author Jeffrey Trotz
+ * @date 4/26/2020
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocationBenchmark
+{
+    private static final int LOCATIONS = 1000; // Number of locations looked up per benchmark call
+    private static final long SEED = 42; // Seed for the random locations, so every run uses the same ones
+
+    private StateBoundaryIndex mIndex; // Index under test
+    private double[] mLatitudes; // Latitude of each location
+    private double[] mLongitudes; // Longitude of each location
+
+    /**
+     * Loads the index and picks the locations before the benchmarks run
+     * @throws IOException Thrown if the boundaries can't be read
+     */
+    @Setup
+    public void setUp() throws IOException
+    {
+        mIndex = this.loadIndex();
+        mLatitudes = new double[LOCATIONS];
+        mLongitudes = new double[LOCATIONS];
+        Random random = new Random(SEED);
+
+        for (int i = 0; i < LOCATIONS; i++)
+        {
+            mLatitudes[i] = 25 + (random.nextDouble() * 24);
+            mLongitudes[i] = -124 + (random.nextDouble() * 57);
+        }
+    }
+
+    /**
+     * @param blackhole Consumes the results so they aren't optimized away
+     */
+    @Benchmark
+    public void gridLookup(Blackhole blackhole)
+    {
+        for (int i = 0; i < LOCATIONS; i++)
+        {
+            blackhole.consume(mIndex.findAbbreviation(mLatitudes[i], mLongitudes[i]));
+        }
+    }
+
+    /**
+     * @param blackhole Consumes the results so they aren't optimized away
+     */
+    @Benchmark
+    public void linearScan(Blackhole blackhole)
+    {
+        for (int i = 0; i < LOCATIONS; i++)
+        {
+            blackhole.consume(mIndex.findAbbreviationByScan(mLatitudes[i], mLongitudes[i]));
+        }
+    }
+
+    /**
+     * @return Returns a newly loaded index
+     * @throws IOException Thrown if the boundaries can't be read
+     */
+    @Benchmark
+    public StateBoundaryIndex loadIndex() throws IOException
+    {
+        return StateBoundaryIndex.load(LocationBenchmark.class.getResourceAsStream("/" + StateBoundaryIndex.ASSET_NAME));
+    }
+}
@@ -0,0 +1,127 @@
+package com.jefftrotz.covid19tracker.benchmark;
+
+import com.jefftrotz.covid19tracker.StateLookup;
+import com.jefftrotz.covid19tracker.StateNameConverter;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the switch based StateNameConverter with the table based StateLookup. Each benchmark
+ * converts every state once, the way the spinner and location code would, and the converter is
+ * allocated per call to match how MainActivity originally used it.
+ * @author Jeffrey Trotz
+ * @date 4/19/2020
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LookupBenchmark
+{
+    private String[] mNames; // Full name of every state
+    private String[] mAbbreviations; // Abbreviation of every state
+
+    /**
+     * Builds copies of the state names so lookups can't compare by reference
+     */
+    @Setup
+    public void setUp()
+    {
+        StateLookup stateLookup = StateLookup.getInstance();
+        mNames = new String[stateLookup.getCount()];
+        mAbbreviations = new String[stateLookup.getCount()];
+
+        for (int i = 0; i < mNames.length; i++)
+        {
+            mNames[i] = new String(stateLookup.getName(i).toCharArray());
+            mAbbreviations[i] = new String(stateLookup.getAbbreviation(i).toCharArray());
+        }
+    }
+
+    /**
+     * @param blackhole Consumes the results so they aren't optimized away
+     */
+    @Benchmark
+    public void switchNameToAbbreviation(Blackhole blackhole)
+    {
+        for (String name : mNames)
+        {
+            blackhole.consume(new StateNameConverter().getStateAbbreviation(name));
+        }
+    }
+
+    /**
+     * @param blackhole Consumes the results so they aren't optimized away
+     */
+    @Benchmark
+    public void tableNameToAbbreviation(Blackhole blackhole)
+    {
+        StateLookup stateLookup = StateLookup.getInstance();
+
+        for (String name : mNames)
+        {
+            blackhole.consume(stateLookup.getAbbreviation(name));
+        }
+    }
+
+    /**
+     * @param blackhole Consumes the results so they aren't optimized away
+     */
+    @Benchmark
+    public void switchNameToIndex(Blackhole blackhole)
+    {
+        for (String name : mNames)
+        {
+            blackhole.consume(new StateNameConverter().getStateSpinnerIndex(name));
+        }
+    }
+
+    /**
+     * @param blackhole Consumes the results so they aren't optimized away
+     */
+    @Benchmark
+    public void tableNameToIndex(Blackhole blackhole)
+    {
+        StateLookup stateLookup = StateLookup.getInstance();
+
+        for (String name : mNames)
+        {
+            blackhole.consume(stateLookup.getIndexForName(name));
+        }
+    }
+
+    /**
+     * @param blackhole Consumes the results so they aren't optimized away
+     */
+    @Benchmark
+    public void tableAbbreviationToIndex(Blackhole blackhole)
+    {
+        StateLookup stateLookup = StateLookup.getInstance();
+
+        for (String abbreviation : mAbbreviations)
+        {
+            blackhole.consume(stateLookup.getIndexForAbbreviation(abbreviation));
+        }
+    }
+
+    /**
+     * @param blackhole Consumes the results so they aren't optimized away
+     */
+    @Benchmark
+    public void tableIndexToName(Blackhole blackhole)
+    {
+        StateLookup stateLookup = StateLookup.getInstance();
+
+        for (int i = 0; i < stateLookup.getCount(); i++)
+        {
+            blackhole.consume(stateLookup.getName(i));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.jefftrotz.covid19tracker.benchmark;
+
+import com.jefftrotz.covid19tracker.CovidDataParser;
+import com.jefftrotz.covid19tracker.StateTimeSeries;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the streaming CovidDataParser with the original approach of joining every line of the
+ * response with commas, splitting the result with a regex and parsing each cell with
+ * Long.parseLong(). The original code also re-ran the split once per character of the response,
+ * which is left out here so the larger data sets finish at all.
+ * @author Jeffrey Trotz
+ * @date 4/19/2020
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParserBenchmark
+{
+    private static final int FIELDS_PER_ROW = 4; // Number of values on each line of the CSV data
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int rows; // Number of rows in the data set
+
+    private byte[] mCsv; // Synthetic API response
+
+    /**
+     * Builds the data set before the benchmarks run
+     */
+    @Setup
+    public void setUp()
+    {
+        mCsv = SyntheticData.csv(rows);
+    }
+
+    /**
+     * Parses the response with the streaming parser
+     * @return Returns the parsed series
+     * @throws IOException Never thrown when reading from memory
+     */
+    @Benchmark
+    public StateTimeSeries streamingParser() throws IOException
+    {
+        return new CovidDataParser().parse(new ByteArrayInputStream(mCsv));
+    }
+
+    /**
+     * Parses the response the way FetchDataTask originally did
+     * @return Returns the parsed series
+     * @throws IOException Never thrown when reading from memory
+     */
+    @Benchmark
+    public StateTimeSeries splitParser() throws IOException
+    {
+        // Join the lines with commas like doInBackground() did
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(mCsv)));
+        StringBuilder builder = new StringBuilder();
+        String line;
+
+        while ((line = reader.readLine()) != null)
+        {
+            builder.append(line).append(',');
+        }
+
+        // Split the string and parse every cell after the header like onPostExecute() did
+        String[] cells = builder.toString().split(",");
+        StateTimeSeries series = new StateTimeSeries();
+
+        for (int i = FIELDS_PER_ROW; i + FIELDS_PER_ROW <= cells.length; i += FIELDS_PER_ROW)
+        {
+            series.append(Long.parseLong(cells[i]), Long.parseLong(cells[i + 1]),
+                Long.parseLong(cells[i + 2]), Long.parseLong(cells[i + 3]));
+        }
+
+        return series;
+    }
+}
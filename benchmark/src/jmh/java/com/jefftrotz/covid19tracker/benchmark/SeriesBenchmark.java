@@ -0,0 +1,105 @@
+package com.jefftrotz.covid19tracker.benchmark;
+
+import com.jefftrotz.covid19tracker.StateTimeSeries;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures building a StateTimeSeries and turning it into the x/y values plotted by the graphs.
+ * GraphView's DataPoint and LineGraphSeries come from an Android library that can't be loaded on
+ * a plain JVM, so the point benchmarks fill the x/y arrays those objects are built from.
+ * @author Jeffrey Trotz
+ * @date 4/19/2020
+ * @version 1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SeriesBenchmark
+{
+    private static final int GRAPH_POINTS = 10; // Number of points plotted on each graph by MainActivity
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int rows; // Number of rows in the data set
+
+    private StateTimeSeries mSeries; // Series built before the benchmarks run
+
+    /**
+     * Builds the series before the benchmarks run
+     */
+    @Setup
+    public void setUp()
+    {
+        mSeries = SyntheticData.series(rows);
+    }
+
+    /**
+     * @return Returns a series built one row at a time from an empty series
+     */
+    @Benchmark
+    public StateTimeSeries appendRows()
+    {
+        StateTimeSeries series = new StateTimeSeries();
+
+        for (int i = 0; i < rows; i++)
+        {
+            series.append(SyntheticData.time(i), SyntheticData.tested(i),
+                SyntheticData.positive(i), SyntheticData.deaths(i));
+        }
+
+        return series;
+    }
+
+    /**
+     * @return Returns the rows graphed by MainActivity
+     */
+    @Benchmark
+    public StateTimeSeries sliceLatestRows()
+    {
+        int size = mSeries.size();
+        return mSeries.sliceRows(Math.max(0, size - GRAPH_POINTS), size);
+    }
+
+    /**
+     * @return Returns the x/y values of a time vs. positive tests graph of the whole series
+     */
+    @Benchmark
+    public double[][] buildTimePoints()
+    {
+        int size = mSeries.size();
+        double[][] points = new double[2][size];
+
+        for (int i = 0; i < size; i++)
+        {
+            points[0][i] = mSeries.getEpochSeconds(i) * 1000.0;
+            points[1][i] = mSeries.getPositive(i);
+        }
+
+        return points;
+    }
+
+    /**
+     * @return Returns the x/y values of a tests vs. positive tests graph of the whole series
+     */
+    @Benchmark
+    public double[][] buildTestsPoints()
+    {
+        int size = mSeries.size();
+        double[][] points = new double[2][size];
+
+        for (int i = 0; i < size; i++)
+        {
+            points[0][i] = mSeries.getTested(i);
+            points[1][i] = mSeries.getPositive(i);
+        }
+
+        return points;
+    }
+}
@@ -0,0 +1,99 @@
+package com.jefftrotz.covid19tracker.benchmark;
+
+import com.jefftrotz.covid19tracker.StateTimeSeries;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds synthetic data sets shaped like the API's responses (a header line followed by one line
+ * per day of cumulative numbers) so benchmarks can run without a network connection
+ * @author Jeffrey Trotz
+ * @date 4/19/2020
+ * @version 1.0
+ */
+public final class SyntheticData
+{
+    private static final String HEADER = "seconds_since_Epoch,tested,positive,deaths\n"; // Header line sent by the API
+    private static final long START_TIME = 1583020800L; // First row's time (3/1/2020) in seconds since epoch
+    private static final long SECONDS_PER_DAY = 86400L; // Time between rows
+
+    /**
+     * Not used, only static methods
+     */
+    private SyntheticData()
+    {
+    }
+
+    /**
+     * Builds a CSV response with the given number of rows
+     * @param rows Number of rows after the header
+     * @return Returns the CSV as bytes
+     */
+    public static byte[] csv(int rows)
+    {
+        StringBuilder builder = new StringBuilder(HEADER.length() + (rows * 40));
+        builder.append(HEADER);
+
+        for (int i = 0; i < rows; i++)
+        {
+            builder.append(time(i)).append(',')
+                .append(tested(i)).append(',')
+                .append(positive(i)).append(',')
+                .append(deaths(i)).append('\n');
+        }
+
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Builds a series with the same values as csv() would produce
+     * @param rows Number of rows
+     * @return Returns the series
+     */
+    public static StateTimeSeries series(int rows)
+    {
+        StateTimeSeries series = new StateTimeSeries(rows);
+
+        for (int i = 0; i < rows; i++)
+        {
+            series.append(time(i), tested(i), positive(i), deaths(i));
+        }
+
+        return series;
+    }
+
+    /**
+     * @param row Index of the row
+     * @return Returns the row's time in seconds since epoch
+     */
+    static long time(int row)
+    {
+        return START_TIME + (row * SECONDS_PER_DAY);
+    }
+
+    /**
+     * @param row Index of the row
+     * @return Returns the row's cumulative number of people tested
+     */
+    static long tested(int row)
+    {
+        return 100L + (row * 1500L) + ((row * 37L) % 211);
+    }
+
+    /**
+     * @param row Index of the row
+     * @return Returns the row's cumulative number of positive tests
+     */
+    static long positive(int row)
+    {
+        return 10L + (row * 120L) + ((row * 13L) % 53);
+    }
+
+    /**
+     * @param row Index of the row
+     * @return Returns the row's cumulative number of deaths
+     */
+    static long deaths(int row)
+    {
+        return row * 3L + ((row * 7L) % 5);
+    }
+}